@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.benchmarks;
+
+import com.github.fge.grappa.parsers.BaseParser;
+import com.github.fge.grappa.rules.Rule;
+
+/**
+ * An arithmetic expression evaluator
+ *
+ * <p>Input is a series of expressions separated by semicolons; the value stack
+ * holds the value of each of them.</p>
+ */
+public class ArithmeticParser
+    extends BaseParser<Long>
+{
+    public Rule expressions()
+    {
+        return sequence(spaces(),
+            join(expression()).using(spaces(), ';', spaces()).min(1),
+            spaces(), EOI);
+    }
+
+    public Rule expression()
+    {
+        return sequence(term(), zeroOrMore(spaces(), firstOf(
+            sequence('+', spaces(), term(), push(pop(1) + pop())),
+            sequence('-', spaces(), term(), push(pop(1) - pop()))
+        )));
+    }
+
+    public Rule term()
+    {
+        return sequence(factor(), zeroOrMore(spaces(), firstOf(
+            sequence('*', spaces(), factor(), push(pop(1) * pop())),
+            sequence('%', spaces(), factor(), push(modulo(pop(1), pop())))
+        )));
+    }
+
+    public Rule factor()
+    {
+        return firstOf(number(), parens(),
+            sequence('-', spaces(), factor(), push(-pop())));
+    }
+
+    public Rule parens()
+    {
+        return sequence('(', spaces(), expression(), spaces(), ')');
+    }
+
+    public Rule number()
+    {
+        return sequence(oneOrMore(digit()), push(Long.parseLong(match())));
+    }
+
+    public Rule spaces()
+    {
+        return zeroOrMore(anyOf(" \t\n"));
+    }
+
+    static Long modulo(final Long left, final Long right)
+    {
+        return right == 0L ? left : left % right;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.benchmarks;
+
+import com.github.fge.grappa.parsers.BaseParser;
+import com.github.fge.grappa.rules.Rule;
+
+/**
+ * A CSV parser (RFC 4180), counting records
+ *
+ * <p>The value stack holds the number of records parsed so far.</p>
+ */
+public class CsvParser
+    extends BaseParser<Integer>
+{
+    public Rule file()
+    {
+        return sequence(push(0), join(record()).using(crlf()).min(1),
+            optional(crlf()), EOI);
+    }
+
+    public Rule record()
+    {
+        return sequence(join(field()).using(',').min(1), push(pop() + 1));
+    }
+
+    public Rule field()
+    {
+        return firstOf(quoted(), zeroOrMore(noneOf(",\"\r\n")));
+    }
+
+    public Rule quoted()
+    {
+        return sequence('"', zeroOrMore(firstOf(string("\"\""), noneOf("\""))),
+            '"');
+    }
+
+    public Rule crlf()
+    {
+        return sequence(optional('\r'), '\n');
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.benchmarks;
+
+import com.github.fge.grappa.parsers.BaseParser;
+import com.github.fge.grappa.rules.Rule;
+
+/**
+ * A JSON recognizer (RFC 7159, without actions)
+ */
+public class JsonParser
+    extends BaseParser<Object>
+{
+    public Rule document()
+    {
+        return sequence(spaces(), value(), spaces(), EOI);
+    }
+
+    public Rule value()
+    {
+        return firstOf(object(), array(), string(), number(), literal());
+    }
+
+    public Rule object()
+    {
+        return sequence('{', spaces(),
+            join(member()).using(spaces(), ',', spaces()).min(0),
+            spaces(), '}');
+    }
+
+    public Rule member()
+    {
+        return sequence(string(), spaces(), ':', spaces(), value());
+    }
+
+    public Rule array()
+    {
+        return sequence('[', spaces(),
+            join(value()).using(spaces(), ',', spaces()).min(0),
+            spaces(), ']');
+    }
+
+    public Rule string()
+    {
+        return sequence('"', zeroOrMore(firstOf(escape(), noneOf("\"\\"))),
+            '"');
+    }
+
+    public Rule escape()
+    {
+        return sequence('\\', firstOf(anyOf("\"\\/bfnrt"),
+            sequence('u', repeat(hexDigit()).times(4))));
+    }
+
+    public Rule number()
+    {
+        return sequence(optional('-'), firstOf('0', oneOrMore(digit())),
+            optional('.', oneOrMore(digit())),
+            optional(ignoreCase('e'), optional(anyOf("+-")),
+                oneOrMore(digit())));
+    }
+
+    public Rule literal()
+    {
+        return trie("true", "false", "null");
+    }
+
+    public Rule spaces()
+    {
+        return zeroOrMore(anyOf(" \t\r\n"));
+    }
+}
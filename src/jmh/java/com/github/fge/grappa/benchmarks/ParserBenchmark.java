@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.benchmarks;
+
+import com.github.fge.grappa.run.ParseRunner;
+import com.github.fge.grappa.run.ParsingResult;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse generated inputs of several sizes with all runners
+ *
+ * <p>For each combination of {@link Workload}, input size and {@link
+ * RunnerType}, this benchmark reports:</p>
+ *
+ * <ul>
+ *     <li>the average time per parse, in microseconds;</li>
+ *     <li>the throughput in parses per second, along with the {@code chars}
+ *     secondary result, which is the number of characters parsed per second
+ *     (divide by 2<sup>20</sup> for MB/s of ASCII input);</li>
+ *     <li>with the GC profiler enabled (which the {@code jmh} Gradle task
+ *     does), {@code gc.alloc.rate.norm}, in bytes per parse: divide it by
+ *     the input size for the number of bytes allocated per input
+ *     character.</li>
+ * </ul>
+ *
+ * <p>Runners and rules are built once per trial; only parsing is
+ * measured.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark
+{
+    @Param({ "JSON", "CSV", "ARITHMETIC", "STATEMENTS" })
+    public Workload workload;
+
+    @Param({ "1024", "65536", "1048576" })
+    public int size;
+
+    @Param({ "LISTENING", "BASIC", "COMPILED", "MEMOIZING", "BATCH" })
+    public RunnerType runnerType;
+
+    private String input;
+    private ParseRunner<Object> runner;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        input = workload.generate(size);
+        runner = runnerType.create(workload.createRule());
+        if (!runner.run(input).isSuccess())
+            throw new IllegalStateException("generated input does not match"
+                + " the " + workload + " grammar");
+    }
+
+    @Benchmark
+    public ParsingResult<Object> parse(final CharCounter counter)
+    {
+        counter.chars += input.length();
+        return runner.run(input);
+    }
+
+    /**
+     * Number of characters parsed, reported as a secondary result
+     */
+    @State(Scope.Thread)
+    @AuxCounters
+    public static class CharCounter
+    {
+        public long chars;
+
+        @Setup(Level.Iteration)
+        public void reset()
+        {
+            chars = 0L;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.benchmarks;
+
+import com.github.fge.grappa.rules.Rule;
+import com.github.fge.grappa.run.BasicParseRunner;
+import com.github.fge.grappa.run.BatchParseRunner;
+import com.github.fge.grappa.run.CompiledParseRunner;
+import com.github.fge.grappa.run.ListeningParseRunner;
+import com.github.fge.grappa.run.MemoizingParseRunner;
+import com.github.fge.grappa.run.ParseRunner;
+import com.github.fge.grappa.run.ParseRunnerListener;
+
+/**
+ * The parse runners compared by benchmarks
+ */
+public enum RunnerType
+{
+    /**
+     * A listening runner with a listener doing nothing
+     *
+     * <p>Without any listener, a listening runner skips events altogether;
+     * the listener makes it pay for dispatching them.</p>
+     */
+    LISTENING
+    {
+        @Override
+        public ParseRunner<Object> create(final Rule rule)
+        {
+            final ListeningParseRunner<Object> runner
+                = new ListeningParseRunner<>(rule);
+            runner.registerListener(new ParseRunnerListener<Object>());
+            return runner;
+        }
+    },
+    BASIC
+    {
+        @Override
+        public ParseRunner<Object> create(final Rule rule)
+        {
+            return new BasicParseRunner<>(rule);
+        }
+    },
+    COMPILED
+    {
+        @Override
+        public ParseRunner<Object> create(final Rule rule)
+        {
+            return new CompiledParseRunner<>(rule);
+        }
+    },
+    MEMOIZING
+    {
+        @Override
+        public ParseRunner<Object> create(final Rule rule)
+        {
+            return new MemoizingParseRunner<>(rule);
+        }
+    },
+    BATCH
+    {
+        @Override
+        public ParseRunner<Object> create(final Rule rule)
+        {
+            return new BatchParseRunner<>(rule);
+        }
+    };
+
+    public abstract ParseRunner<Object> create(Rule rule);
+}
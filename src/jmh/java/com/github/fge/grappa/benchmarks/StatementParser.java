@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.benchmarks;
+
+import com.github.fge.grappa.parsers.BaseParser;
+import com.github.fge.grappa.rules.Rule;
+
+/**
+ * A recognizer for a small Java-like statement language
+ *
+ * <p>It supports blocks, variable declarations, assignments, {@code if},
+ * {@code while} and {@code return} statements, method calls, binary operators
+ * with the usual precedence, and line comments.</p>
+ */
+public class StatementParser
+    extends BaseParser<Object>
+{
+    public Rule program()
+    {
+        return sequence(spacing(), zeroOrMore(statement()), EOI);
+    }
+
+    public Rule statement()
+    {
+        return firstOf(block(), ifStatement(), whileStatement(),
+            returnStatement(), declaration(), expressionStatement());
+    }
+
+    public Rule block()
+    {
+        return sequence(symbol('{'), zeroOrMore(statement()), symbol('}'));
+    }
+
+    public Rule ifStatement()
+    {
+        return sequence(keyword("if"), symbol('('), expression(), symbol(')'),
+            statement(), optional(keyword("else"), statement()));
+    }
+
+    public Rule whileStatement()
+    {
+        return sequence(keyword("while"), symbol('('), expression(),
+            symbol(')'), statement());
+    }
+
+    public Rule returnStatement()
+    {
+        return sequence(keyword("return"), optional(expression()),
+            symbol(';'));
+    }
+
+    public Rule declaration()
+    {
+        return sequence(type(), identifier(),
+            optional(symbol('='), expression()), symbol(';'));
+    }
+
+    public Rule expressionStatement()
+    {
+        return sequence(expression(), symbol(';'));
+    }
+
+    public Rule expression()
+    {
+        return firstOf(sequence(identifier(), symbol('='), expression()),
+            or());
+    }
+
+    public Rule or()
+    {
+        return join(and()).using(operator("||")).min(1);
+    }
+
+    public Rule and()
+    {
+        return join(equality()).using(operator("&&")).min(1);
+    }
+
+    public Rule equality()
+    {
+        return join(relational()).using(firstOf(operator("=="),
+            operator("!="))).min(1);
+    }
+
+    public Rule relational()
+    {
+        return join(additive()).using(firstOf(operator("<="),
+            operator(">="), operator("<"), operator(">"))).min(1);
+    }
+
+    public Rule additive()
+    {
+        return join(multiplicative()).using(firstOf(operator("+"),
+            operator("-"))).min(1);
+    }
+
+    public Rule multiplicative()
+    {
+        return join(unary()).using(firstOf(operator("*"), operator("/"),
+            operator("%"))).min(1);
+    }
+
+    public Rule unary()
+    {
+        return firstOf(sequence(firstOf(operator("!"), operator("-")),
+            unary()), primary());
+    }
+
+    public Rule primary()
+    {
+        return firstOf(sequence(symbol('('), expression(), symbol(')')),
+            call(), literal(), identifier());
+    }
+
+    public Rule call()
+    {
+        return sequence(identifier(), symbol('('),
+            join(expression()).using(symbol(',')).min(0), symbol(')'));
+    }
+
+    public Rule literal()
+    {
+        return firstOf(sequence(oneOrMore(digit()), spacing()),
+            sequence('"', zeroOrMore(noneOf("\"\n")), '"', spacing()),
+            keyword("true"), keyword("false"), keyword("null"));
+    }
+
+    public Rule type()
+    {
+        return sequence(trie("int", "boolean", "String", "long"),
+            testNot(identifierChar()), spacing());
+    }
+
+    public Rule identifier()
+    {
+        return sequence(testNot(reserved()),
+            firstOf(alpha(), '_'), zeroOrMore(identifierChar()), spacing());
+    }
+
+    public Rule reserved()
+    {
+        return sequence(trie("if", "else", "while", "return", "int",
+            "boolean", "String", "long", "true", "false", "null"),
+            testNot(identifierChar()));
+    }
+
+    public Rule identifierChar()
+    {
+        return firstOf(alpha(), digit(), '_');
+    }
+
+    public Rule keyword(final String keyword)
+    {
+        return sequence(string(keyword), testNot(identifierChar()),
+            spacing());
+    }
+
+    public Rule operator(final String operator)
+    {
+        return sequence(string(operator), testNot(anyOf("=&|")), spacing());
+    }
+
+    public Rule symbol(final char c)
+    {
+        return sequence(ch(c), spacing());
+    }
+
+    public Rule spacing()
+    {
+        return zeroOrMore(firstOf(oneOrMore(anyOf(" \t\r\n")),
+            sequence("//", zeroOrMore(noneOf("\n")))));
+    }
+}
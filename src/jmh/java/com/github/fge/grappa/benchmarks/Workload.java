@@ -0,0 +1,309 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.benchmarks;
+
+import com.github.fge.grappa.Grappa;
+import com.github.fge.grappa.rules.Rule;
+
+import java.util.Random;
+
+/**
+ * The grammars used by benchmarks, along with generators of input for them
+ *
+ * <p>Inputs are generated from a fixed seed, so that all runs of a benchmark
+ * parse the same text. Generated inputs are always valid.</p>
+ */
+public enum Workload
+{
+    JSON
+    {
+        @Override
+        public Rule createRule()
+        {
+            return Grappa.createParser(JsonParser.class).document();
+        }
+
+        @Override
+        void generate(final StringBuilder sb, final Random random,
+            final int size)
+        {
+            sb.append('[');
+            while (sb.length() < size) {
+                if (sb.length() > 1)
+                    sb.append(",\n");
+                jsonValue(sb, random, 0);
+            }
+            sb.append(']');
+        }
+    },
+    CSV
+    {
+        @Override
+        public Rule createRule()
+        {
+            return Grappa.createParser(CsvParser.class).file();
+        }
+
+        @Override
+        void generate(final StringBuilder sb, final Random random,
+            final int size)
+        {
+            sb.append("id,name,comment,amount");
+            while (sb.length() < size) {
+                sb.append("\r\n").append(random.nextInt(100000)).append(',');
+                word(sb, random);
+                sb.append(",\"");
+                for (int i = random.nextInt(6); i >= 0; i--) {
+                    word(sb, random);
+                    sb.append(random.nextInt(8) == 0 ? "\"\", " : " ");
+                }
+                sb.append("\",").append(random.nextInt(10000)).append('.')
+                    .append(random.nextInt(100));
+            }
+        }
+    },
+    ARITHMETIC
+    {
+        @Override
+        public Rule createRule()
+        {
+            return Grappa.createParser(ArithmeticParser.class).expressions();
+        }
+
+        @Override
+        void generate(final StringBuilder sb, final Random random,
+            final int size)
+        {
+            arithmetic(sb, random, 0);
+            while (sb.length() < size) {
+                sb.append(";\n");
+                arithmetic(sb, random, 0);
+            }
+        }
+    },
+    STATEMENTS
+    {
+        @Override
+        public Rule createRule()
+        {
+            return Grappa.createParser(StatementParser.class).program();
+        }
+
+        @Override
+        void generate(final StringBuilder sb, final Random random,
+            final int size)
+        {
+            while (sb.length() < size)
+                statement(sb, random, 0);
+        }
+    };
+
+    private static final long SEED = 0x6772617070614cL;
+    private static final int MAX_DEPTH = 4;
+    private static final String[] WORDS = {
+        "alpha", "beta", "gamma", "delta", "foo", "bar", "baz", "count",
+        "index", "value", "result", "total"
+    };
+
+    /**
+     * Create the rule to benchmark
+     *
+     * <p>A new parser instance is created on each call.</p>
+     *
+     * @return the rule
+     */
+    public abstract Rule createRule();
+
+    /**
+     * Generate an input of (at least) a given size
+     *
+     * @param size the minimum number of characters
+     * @return the input
+     */
+    public final String generate(final int size)
+    {
+        final StringBuilder sb = new StringBuilder(size + 256);
+        generate(sb, new Random(SEED), size);
+        return sb.toString();
+    }
+
+    abstract void generate(StringBuilder sb, Random random, int size);
+
+    private static void word(final StringBuilder sb, final Random random)
+    {
+        sb.append(WORDS[random.nextInt(WORDS.length)]);
+    }
+
+    private static void jsonValue(final StringBuilder sb, final Random random,
+        final int depth)
+    {
+        final int choice = random.nextInt(depth >= MAX_DEPTH ? 4 : 6);
+
+        switch (choice) {
+            case 0:
+                sb.append(random.nextInt(2000000) - 1000000);
+                break;
+            case 1:
+                sb.append(random.nextDouble() * 1000.0);
+                break;
+            case 2:
+                sb.append('"');
+                word(sb, random);
+                sb.append(random.nextBoolean() ? "\\n" : " \\u00e9t\\u00e9");
+                sb.append('"');
+                break;
+            case 3:
+                sb.append(random.nextBoolean() ? "true" : "null");
+                break;
+            case 4:
+                sb.append("[ ");
+                for (int i = random.nextInt(5); i >= 0; i--) {
+                    jsonValue(sb, random, depth + 1);
+                    if (i > 0)
+                        sb.append(", ");
+                }
+                sb.append(" ]");
+                break;
+            default:
+                sb.append("{\n");
+                for (int i = random.nextInt(5); i >= 0; i--) {
+                    sb.append("  \"");
+                    word(sb, random);
+                    sb.append(i).append("\": ");
+                    jsonValue(sb, random, depth + 1);
+                    if (i > 0)
+                        sb.append(",\n");
+                }
+                sb.append("\n}");
+        }
+    }
+
+    private static void arithmetic(final StringBuilder sb,
+        final Random random, final int depth)
+    {
+        final int nrTerms = 1 + random.nextInt(4);
+
+        for (int i = 0; i < nrTerms; i++) {
+            if (i > 0)
+                sb.append(' ').append("+-*%".charAt(random.nextInt(4)))
+                    .append(' ');
+            if (depth < MAX_DEPTH && random.nextInt(4) == 0) {
+                sb.append('(');
+                arithmetic(sb, random, depth + 1);
+                sb.append(')');
+            } else {
+                if (random.nextInt(8) == 0)
+                    sb.append('-');
+                sb.append(random.nextInt(1000));
+            }
+        }
+    }
+
+    private static void statement(final StringBuilder sb, final Random random,
+        final int depth)
+    {
+        final int choice = random.nextInt(depth >= MAX_DEPTH ? 4 : 7);
+
+        switch (choice) {
+            case 0:
+                sb.append("int ");
+                word(sb, random);
+                sb.append(depth).append(" = ");
+                expression(sb, random, 0);
+                sb.append(";\n");
+                break;
+            case 1:
+                word(sb, random);
+                sb.append(" = ");
+                expression(sb, random, 0);
+                sb.append(";\n");
+                break;
+            case 2:
+                word(sb, random);
+                sb.append('(');
+                expression(sb, random, 1);
+                sb.append(", \"");
+                word(sb, random);
+                sb.append("\");\n");
+                break;
+            case 3:
+                sb.append("// ");
+                word(sb, random);
+                sb.append("\nreturn ");
+                expression(sb, random, 0);
+                sb.append(";\n");
+                break;
+            case 4:
+                sb.append("if (");
+                expression(sb, random, 0);
+                sb.append(") ");
+                statement(sb, random, depth + 1);
+                if (random.nextBoolean()) {
+                    sb.append("else ");
+                    statement(sb, random, depth + 1);
+                }
+                break;
+            case 5:
+                sb.append("while (");
+                expression(sb, random, 0);
+                sb.append(") ");
+                statement(sb, random, depth + 1);
+                break;
+            default:
+                sb.append("{\n");
+                for (int i = random.nextInt(4); i >= 0; i--)
+                    statement(sb, random, depth + 1);
+                sb.append("}\n");
+        }
+    }
+
+    private static void expression(final StringBuilder sb,
+        final Random random, final int depth)
+    {
+        final String[] operators = {
+            " + ", " - ", " * ", " / ", " < ", " >= ", " == ", " && ", " || "
+        };
+        final int nrOperands = 1 + random.nextInt(3);
+
+        for (int i = 0; i < nrOperands; i++) {
+            if (i > 0)
+                sb.append(operators[random.nextInt(operators.length)]);
+            switch (depth < MAX_DEPTH ? random.nextInt(5) : 0) {
+                case 0:
+                    sb.append(random.nextInt(100));
+                    break;
+                case 1:
+                    word(sb, random);
+                    break;
+                case 2:
+                    sb.append('(');
+                    expression(sb, random, depth + 1);
+                    sb.append(')');
+                    break;
+                case 3:
+                    sb.append('!');
+                    word(sb, random);
+                    break;
+                default:
+                    word(sb, random);
+                    sb.append('(');
+                    expression(sb, random, depth + 1);
+                    sb.append(')');
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.annotations;
+
+import com.github.fge.grappa.run.MemoizingParseRunner;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Memoize the outcome of this rule at each input position
+ *
+ * <p>The rule is wrapped into a {@link
+ * com.github.fge.grappa.matchers.wrap.MemoizingMatcher}: when it is tried
+ * again at a position where it has already been tried during the same parsing
+ * run, its outcome (success, end position and effect on the value stack) is
+ * replayed instead of matching again. Unlike a {@link MemoizingParseRunner},
+ * which memoizes all rules, this only costs memory for the rules which need
+ * it, typically those which are backtracked over a lot.</p>
+ *
+ * <p>The same restrictions apply: side effects of actions other than on the
+ * value stack are not replayed.</p>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Memoized
+{
+}
@@ -20,18 +20,10 @@ import com.github.fge.grappa.support.Chars;
 import com.github.fge.grappa.support.IndexRange;
 import com.github.fge.grappa.support.Position;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Range;
-import com.google.common.util.concurrent.Futures;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import javax.annotation.Nonnull;
 import javax.annotation.concurrent.Immutable;
 import java.util.Objects;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.ThreadFactory;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -46,34 +38,45 @@ import java.util.regex.Pattern;
  * <p>Among other things, this means you can use this package on very large
  * files using <a href="https://github.com/fge/largetext">largetext</a>, which
  * implements {@link CharSequence} over multi-gigabyte files.</p>
+ *
+ * <p>Lines are only indexed (using a {@link LineCounter}) the first time a
+ * position or line is requested. Large inputs can be indexed in parallel, but
+ * only on request (see {@link #CharSequenceInputBuffer(CharSequence,
+ * boolean)}).</p>
  */
 @Immutable
 public final class CharSequenceInputBuffer
     implements InputBuffer
 {
-    private static final ExecutorService EXECUTOR_SERVICE;
-
-    static {
-        final ThreadFactory factory = new ThreadFactoryBuilder()
-            .setDaemon(true).setNameFormat("linecounter-thread-%d").build();
-        EXECUTOR_SERVICE = Executors.newCachedThreadPool(factory);
-    }
-
     private final CharSequence charSequence;
-    private final Future<LineCounter> lineCounter;
+    private final boolean parallelLineCounting;
+
+    /*
+     * Built on first use only: a lot of inputs never need positions
+     */
+    private volatile LineCounter lineCounter;
 
     public CharSequenceInputBuffer(@Nonnull final CharSequence charSequence)
+    {
+        this(charSequence, false);
+    }
+
+    /**
+     * Constructor
+     *
+     * <p>If {@code parallelLineCounting} is true, large inputs are indexed in
+     * parallel chunks on a shared {@link java.util.concurrent.ForkJoinPool};
+     * the character sequence must then support concurrent reads (as {@link
+     * String} or {@link java.nio.CharBuffer} do).</p>
+     *
+     * @param charSequence the input
+     * @param parallelLineCounting index lines of large inputs in parallel
+     */
+    public CharSequenceInputBuffer(@Nonnull final CharSequence charSequence,
+        final boolean parallelLineCounting)
     {
         this.charSequence = Objects.requireNonNull(charSequence);
-        lineCounter = EXECUTOR_SERVICE.submit(new Callable<LineCounter>()
-        {
-            @Override
-            public LineCounter call()
-                throws Exception
-            {
-                return new LineCounter(charSequence);
-            }
-        });
+        this.parallelLineCounting = parallelLineCounting;
     }
 
     @Override
@@ -122,17 +125,16 @@ public final class CharSequenceInputBuffer
     @Override
     public Position getPosition(final int index)
     {
-        return Futures.getUnchecked(lineCounter).toPosition(index);
+        return getLineCounter().toPosition(index);
     }
 
     @Override
     public String extractLine(final int lineNumber)
     {
         Preconditions.checkArgument(lineNumber > 0, "line number is negative");
-        final LineCounter counter = Futures.getUnchecked(lineCounter);
-        final Range<Integer> range = counter.getLineRange(lineNumber);
-        final int start = range.lowerEndpoint();
-        int end = range.upperEndpoint();
+        final IndexRange range = getLineCounter().getLineIndexRange(lineNumber);
+        final int start = range.start;
+        int end = range.end;
         if (charAt(end - 1) == '\n')
             end--;
         if (charAt(end - 1) == '\r')
@@ -140,19 +142,16 @@ public final class CharSequenceInputBuffer
         return extract(start, end);
     }
 
-    @SuppressWarnings("AutoUnboxing")
     @Override
     public IndexRange getLineRange(final int lineNumber)
     {
-        final Range<Integer> range
-            = Futures.getUnchecked(lineCounter).getLineRange(lineNumber);
-        return new IndexRange(range.lowerEndpoint(), range.upperEndpoint());
+        return getLineCounter().getLineIndexRange(lineNumber);
     }
 
     @Override
     public int getLineCount()
     {
-        return Futures.getUnchecked(lineCounter).getNrLines();
+        return getLineCounter().getNrLines();
     }
 
     @Override
@@ -160,4 +159,19 @@ public final class CharSequenceInputBuffer
     {
         return charSequence.length();
     }
+
+    private LineCounter getLineCounter()
+    {
+        LineCounter ret = lineCounter;
+        if (ret != null)
+            return ret;
+        synchronized (this) {
+            ret = lineCounter;
+            if (ret == null) {
+                ret = new LineCounter(charSequence, parallelLineCounting);
+                lineCounter = ret;
+            }
+            return ret;
+        }
+    }
 }
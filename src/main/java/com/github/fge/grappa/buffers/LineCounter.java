@@ -16,47 +16,69 @@
 
 package com.github.fge.grappa.buffers;
 
+import com.github.fge.grappa.support.IndexRange;
+import com.github.fge.grappa.support.Position;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Range;
-import com.github.fge.grappa.support.Position;
+import com.google.common.util.concurrent.Futures;
 
 import javax.annotation.ParametersAreNonnullByDefault;
 import javax.annotation.Tainted;
+import javax.annotation.concurrent.Immutable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
-// TODO: get rid of edge cases
-@SuppressWarnings({ "AutoBoxing", "AutoUnboxing" })
+/**
+ * An index of the lines of a {@link CharSequence}
+ *
+ * <p>Line starts are stored in a plain {@code int} array; positions are found
+ * using a binary search over this array.</p>
+ *
+ * <p>If asked to (see {@link #LineCounter(CharSequence, boolean)}), inputs of
+ * at least {@value #PARALLEL_THRESHOLD} characters are scanned in parallel
+ * chunks of {@value #CHUNK_SIZE} characters; the character sequence must then
+ * support concurrent reads, as {@link String} does.</p>
+ */
+@Immutable
 @ParametersAreNonnullByDefault
 public final class LineCounter
 {
-    // TODO: replace with IntRange from largetext
-    private final List<Range<Integer>> lines = Lists.newArrayList();
+    private static final int PARALLEL_THRESHOLD = 1 << 22;
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    private final int[] lineStarts;
     private final int nrLines;
     private final int len;
 
     public LineCounter(final CharSequence input)
     {
-        int lowerBound = 0;
-        int index = 0;
-        len = input.length();
+        this(input, false);
+    }
 
-        while (index < len) {
-            if (input.charAt(index++) != '\n')
-                continue;
-            lines.add(Range.closedOpen(lowerBound, index));
-            lowerBound = index;
-        }
-        lines.add(Range.closedOpen(lowerBound, index));
-        nrLines = lines.size();
+    /**
+     * Constructor
+     *
+     * @param input the input to index
+     * @param parallel scan large inputs in parallel
+     */
+    public LineCounter(final CharSequence input, final boolean parallel)
+    {
+        len = input.length();
+        lineStarts = parallel && len >= PARALLEL_THRESHOLD
+            ? parallelScan(input, len) : scan(input, 0, len, true);
+        nrLines = lineStarts.length;
     }
 
     @VisibleForTesting
-    LineCounter(final List<Range<Integer>> ranges)
+    LineCounter(final int[] lineStarts, final int len)
     {
-        lines.addAll(ranges);
-        nrLines = ranges.size();
-        len = ranges.get(nrLines - 1).upperEndpoint();
+        this.lineStarts = lineStarts.clone();
+        nrLines = lineStarts.length;
+        this.len = len;
     }
 
     public int getNrLines()
@@ -64,10 +86,27 @@ public final class LineCounter
         return nrLines;
     }
 
+    @SuppressWarnings("AutoBoxing")
     public Range<Integer> getLineRange(@Tainted final int lineNr)
+    {
+        final IndexRange range = getLineIndexRange(lineNr);
+        return Range.closedOpen(range.start, range.end);
+    }
+
+    /**
+     * Return the range of a line as an {@link IndexRange}
+     *
+     * <p>This is the same as {@link #getLineRange(int)}, without boxing.</p>
+     *
+     * @param lineNr the line number (starting at 1)
+     * @return the range of the line
+     */
+    public IndexRange getLineIndexRange(@Tainted final int lineNr)
     {
         // Edge case: unfortunately, we can get an illegal line number
-        return lines.get(Math.min(lineNr, nrLines) - 1);
+        final int line = Math.min(lineNr, nrLines) - 1;
+        final int end = line == nrLines - 1 ? len : lineStarts[line + 1];
+        return new IndexRange(lineStarts[line], end);
     }
 
     public Position toPosition(@Tainted final int index)
@@ -75,39 +114,88 @@ public final class LineCounter
         if (index < 0)
             throw new IllegalStateException();
 
-        final Range<Integer> range;
-
         // Edge case: unfortunately, we can get an illegal index
-        if (index >= len) {
-            range = lines.get(nrLines - 1);
-            return new Position(nrLines, len - range.lowerEndpoint() + 1);
-        }
+        if (index >= len)
+            return new Position(nrLines, len - lineStarts[nrLines - 1] + 1);
 
         final int lineNr = binarySearch(index);
 
-        range = lines.get(lineNr);
-        return new Position(lineNr + 1, index - range.lowerEndpoint() + 1);
+        return new Position(lineNr + 1, index - lineStarts[lineNr] + 1);
     }
 
     @VisibleForTesting
     int binarySearch(final int index)
     {
-        return doBinarySearch(0, nrLines - 1, index);
+        final int ret = Arrays.binarySearch(lineStarts, 0, nrLines, index);
+        return ret >= 0 ? ret : -(ret + 1) - 1;
+    }
+
+    /*
+     * Return the starts of the lines beginning in [start, end); the start of
+     * the input counts as a line start only if told so
+     */
+    private static int[] scan(final CharSequence input, final int start,
+        final int end, final boolean first)
+    {
+        int[] starts = new int[16];
+        int nrStarts = 0;
+
+        if (first)
+            starts[nrStarts++] = start;
+
+        for (int index = start; index < end; index++) {
+            if (input.charAt(index) != '\n')
+                continue;
+            if (nrStarts == starts.length)
+                starts = Arrays.copyOf(starts, nrStarts * 2);
+            starts[nrStarts++] = index + 1;
+        }
+
+        return Arrays.copyOf(starts, nrStarts);
+    }
+
+    private static int[] parallelScan(final CharSequence input, final int len)
+    {
+        final List<Callable<int[]>> chunks = new ArrayList<>();
+
+        for (int start = 0; start < len; start += CHUNK_SIZE) {
+            final int chunkStart = start;
+            final int chunkEnd = Math.min(len, start + CHUNK_SIZE);
+            chunks.add(new Callable<int[]>()
+            {
+                @Override
+                public int[] call()
+                {
+                    return scan(input, chunkStart, chunkEnd, chunkStart == 0);
+                }
+            });
+        }
+
+        final List<int[]> results = new ArrayList<>(chunks.size());
+        int total = 0;
+
+        for (final Future<int[]> future: PoolHolder.POOL.invokeAll(chunks)) {
+            final int[] result = Futures.getUnchecked(future);
+            results.add(result);
+            total += result.length;
+        }
+
+        final int[] ret = new int[total];
+        int index = 0;
+
+        for (final int[] result: results) {
+            System.arraycopy(result, 0, ret, index, result.length);
+            index += result.length;
+        }
+
+        return ret;
     }
 
-    private int doBinarySearch(final int low, final int high, final int index)
+    /*
+     * Only created when a large enough input is first indexed
+     */
+    private static final class PoolHolder
     {
-        // Guaranteed to always succeed at this point
-        if (high - low <= 1)
-            return lines.get(low).contains(index) ? low : high;
-
-        final int middle = (low + high) / 2;
-        final Range<Integer> range = lines.get(middle);
-        if (range.contains(index))
-            return middle;
-
-        return index < range.lowerEndpoint()
-            ? doBinarySearch(low, middle, index)
-            : doBinarySearch(middle, high, index);
+        private static final ForkJoinPool POOL = new ForkJoinPool();
     }
 }
@@ -0,0 +1,482 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.buffers;
+
+import com.github.fge.grappa.support.Chars;
+import com.github.fge.grappa.support.IndexRange;
+import com.github.fge.grappa.support.Position;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * An {@link InputBuffer} over a memory mapped file
+ *
+ * <p>Unlike a {@link CharSequenceInputBuffer} over the contents of a file, this
+ * buffer never holds the whole decoded text in memory. When built, it decodes
+ * the file once, sequentially, to record where each window of {@value
+ * #WINDOW_SIZE} characters starts in the file, and where lines start; after
+ * that, windows are decoded again on demand, and only a few of them are kept
+ * in memory at any time. The file is mapped in segments of {@value
+ * #SEGMENT_SIZE} bytes.</p>
+ *
+ * <p>Malformed or unmappable input is replaced with the replacement character
+ * of the charset. Only stateless charsets (such as UTF-8, the ISO-8859 family
+ * or UTF-16 with an explicit byte order) are supported, since windows are
+ * decoded independently of each other.</p>
+ *
+ * <p>As with all input buffers, indices are {@code int}s: a file decoding to
+ * more than {@link Integer#MAX_VALUE} characters cannot be used.</p>
+ *
+ * <p>This buffer must be {@link #close() closed} after use. It is not thread
+ * safe.</p>
+ */
+@NotThreadSafe
+@ParametersAreNonnullByDefault
+public final class MappedFileInputBuffer
+    implements InputBuffer, Closeable
+{
+    private static final int WINDOW_SIZE = 1 << 16;
+    private static final int SEGMENT_SIZE = 1 << 26;
+    private static final int MAX_CACHED_WINDOWS = 8;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final CharsetDecoder decoder;
+    private final int windowSize;
+    private final int segmentSize;
+
+    private int length;
+
+    private int nrWindows;
+    private int[] windowStarts = new int[16];
+    private long[] windowOffsets = new long[16];
+
+    private int nrLines;
+    private int[] lineStarts = new int[16];
+
+    private final Map<Integer, char[]> cache
+        = new LinkedHashMap<Integer, char[]>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(
+            final Map.Entry<Integer, char[]> eldest)
+        {
+            return size() > MAX_CACHED_WINDOWS;
+        }
+    };
+
+    /*
+     * The segment of the file last mapped to decode a window
+     */
+    private ByteBuffer mapped;
+    private long mappedOffset;
+
+    /*
+     * The window last accessed
+     */
+    private char[] current;
+    private int currentStart;
+    private int currentEnd;
+
+    /**
+     * Build a buffer over a UTF-8 encoded file
+     *
+     * @param path the path to the file
+     * @throws IOException failed to read the file
+     * @throws IllegalArgumentException the file is too large
+     */
+    public MappedFileInputBuffer(final Path path)
+        throws IOException
+    {
+        this(path, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Build a buffer over a file with a given encoding
+     *
+     * @param path the path to the file
+     * @param charset the encoding of the file
+     * @throws IOException failed to read the file
+     * @throws IllegalArgumentException the file is too large
+     */
+    public MappedFileInputBuffer(final Path path, final Charset charset)
+        throws IOException
+    {
+        this(path, charset, WINDOW_SIZE, SEGMENT_SIZE);
+    }
+
+    @VisibleForTesting
+    MappedFileInputBuffer(final Path path, final Charset charset,
+        final int windowSize, final int segmentSize)
+        throws IOException
+    {
+        Objects.requireNonNull(path, "path");
+        Objects.requireNonNull(charset, "charset");
+        // a segment must be able to hold at least one encoded character, and
+        // a window at least one surrogate pair
+        Preconditions.checkArgument(segmentSize >= 16,
+            "segment size is too small");
+        Preconditions.checkArgument(windowSize >= 2,
+            "window size is too small");
+
+        this.windowSize = windowSize;
+        this.segmentSize = segmentSize;
+        decoder = charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+
+        try {
+            fileSize = channel.size();
+            scan();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+
+        current = new char[0];
+        currentStart = 0;
+        currentEnd = 0;
+    }
+
+    @Override
+    public char charAt(final int index)
+    {
+        if (index < 0)
+            throw new IllegalArgumentException("index is negative");
+
+        if (index >= currentStart && index < currentEnd)
+            return current[index - currentStart];
+
+        if (index >= length)
+            return Chars.EOI;
+
+        selectWindow(index);
+        return current[index - currentStart];
+    }
+
+    @SuppressWarnings("ImplicitNumericConversion")
+    @Override
+    public int codePointAt(final int index)
+    {
+        if (index >= length)
+            return -1;
+
+        final char c = charAt(index);
+        if (!Character.isHighSurrogate(c))
+            return c;
+        if (index == length - 1)
+            return c;
+        final char c2 = charAt(index + 1);
+        return Character.isLowSurrogate(c2) ? Character.toCodePoint(c, c2) : c;
+    }
+
+    @Override
+    public String extract(final int start, final int end)
+    {
+        final int realStart = Math.max(start, 0);
+        final int realEnd = Math.min(end, length);
+
+        if (realStart >= realEnd)
+            return "";
+
+        final char[] chars = new char[realEnd - realStart];
+
+        int index = realStart;
+        int count;
+
+        while (index < realEnd) {
+            if (index < currentStart || index >= currentEnd)
+                selectWindow(index);
+            count = Math.min(currentEnd, realEnd) - index;
+            System.arraycopy(current, index - currentStart, chars,
+                index - realStart, count);
+            index += count;
+        }
+
+        return new String(chars);
+    }
+
+    @Override
+    public String extract(final IndexRange range)
+    {
+        return extract(range.start, range.end);
+    }
+
+    @Override
+    public Position getPosition(final int index)
+    {
+        if (index < 0)
+            throw new IllegalStateException();
+
+        if (index >= length)
+            return new Position(nrLines,
+                length - lineStarts[nrLines - 1] + 1);
+
+        final int line = lineOf(index);
+        return new Position(line + 1, index - lineStarts[line] + 1);
+    }
+
+    @Override
+    public String extractLine(final int lineNumber)
+    {
+        Preconditions.checkArgument(lineNumber > 0, "line number is negative");
+        final IndexRange range = getLineRange(lineNumber);
+        final int start = range.start;
+        int end = range.end;
+        if (end > start && charAt(end - 1) == '\n')
+            end--;
+        if (end > start && charAt(end - 1) == '\r')
+            end--;
+        return extract(start, end);
+    }
+
+    @Override
+    public IndexRange getLineRange(final int lineNumber)
+    {
+        // Same as LineCounter: an illegal line number means the last line
+        final int line = Math.min(lineNumber, nrLines) - 1;
+        final int end = line == nrLines - 1 ? length : lineStarts[line + 1];
+        return new IndexRange(lineStarts[line], end);
+    }
+
+    @Override
+    public int getLineCount()
+    {
+        return nrLines;
+    }
+
+    @Override
+    public int length()
+    {
+        return length;
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        cache.clear();
+        mapped = null;
+        current = new char[0];
+        currentStart = 0;
+        currentEnd = 0;
+        channel.close();
+    }
+
+    /*
+     * Decode the whole file once, recording window and line starts
+     *
+     * Each segment of the file is mapped once, and decoded window after
+     * window; a window may span several segments. Bytes left undecoded at the
+     * end of a segment (an incomplete character) start the next segment.
+     */
+    private void scan()
+        throws IOException
+    {
+        final CharBuffer chars = CharBuffer.allocate(windowSize);
+
+        long offset = 0L;
+        long total = 0L;
+        boolean windowOpen = false;
+        ByteBuffer segment;
+        CoderResult result;
+        boolean endOfInput;
+        int size;
+
+        addLine(0);
+
+        while (true) {
+            size = (int) Math.min(segmentSize, fileSize - offset);
+            endOfInput = offset + size == fileSize;
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+
+            while (true) {
+                if (!windowOpen) {
+                    addWindow((int) total, offset + segment.position());
+                    chars.clear();
+                    decoder.reset();
+                    windowOpen = true;
+                }
+                result = decoder.decode(segment, chars, endOfInput);
+                if (result.isError())
+                    result.throwException();
+                if (result.isUnderflow())
+                    break;
+                total = endWindow(chars, total);
+                windowOpen = false;
+            }
+
+            if (endOfInput)
+                break;
+
+            offset += segment.position();
+        }
+
+        flush(chars);
+        total = endWindow(chars, total);
+
+        length = (int) total;
+        addWindow(length, fileSize);
+        nrWindows--;
+    }
+
+    /*
+     * Record the lines of a decoded window; return the new number of decoded
+     * characters
+     */
+    private long endWindow(final CharBuffer chars, final long total)
+    {
+        final int size = chars.position();
+
+        if (total + size > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("file decodes to more than "
+                + Integer.MAX_VALUE + " characters");
+
+        for (int i = 0; i < size; i++)
+            if (chars.get(i) == '\n')
+                addLine((int) total + i + 1);
+
+        return total + size;
+    }
+
+    /*
+     * Stateless decoders produce no output when flushed
+     */
+    private void flush(final CharBuffer chars)
+    {
+        final CoderResult result = decoder.flush(chars);
+
+        if (!result.isUnderflow())
+            throw new IllegalArgumentException("charset "
+                + decoder.charset() + " is not supported (stateful decoder)");
+    }
+
+    private void addWindow(final int start, final long offset)
+    {
+        if (nrWindows == windowStarts.length) {
+            windowStarts = Arrays.copyOf(windowStarts, nrWindows * 2);
+            windowOffsets = Arrays.copyOf(windowOffsets, nrWindows * 2);
+        }
+        windowStarts[nrWindows] = start;
+        windowOffsets[nrWindows] = offset;
+        nrWindows++;
+    }
+
+    private void addLine(final int start)
+    {
+        if (nrLines == lineStarts.length)
+            lineStarts = Arrays.copyOf(lineStarts, nrLines * 2);
+        lineStarts[nrLines++] = start;
+    }
+
+    private int lineOf(final int index)
+    {
+        final int ret = Arrays.binarySearch(lineStarts, 0, nrLines, index);
+        return ret >= 0 ? ret : -ret - 2;
+    }
+
+    /*
+     * Make the window containing the given index the current one
+     */
+    private void selectWindow(final int index)
+    {
+        int window = Arrays.binarySearch(windowStarts, 0, nrWindows, index);
+        if (window < 0)
+            window = -window - 2;
+
+        char[] chars = cache.get(window);
+
+        if (chars == null) {
+            chars = decodeWindow(window);
+            cache.put(window, chars);
+        }
+
+        current = chars;
+        currentStart = windowStarts[window];
+        currentEnd = currentStart + chars.length;
+    }
+
+    private char[] decodeWindow(final int window)
+    {
+        final int start = windowStarts[window];
+        final int end = windowStarts[window + 1];
+        final long offset = windowOffsets[window];
+        final int size = (int) (windowOffsets[window + 1] - offset);
+
+        final CharBuffer chars = CharBuffer.allocate(end - start);
+
+        try {
+            final ByteBuffer bytes = mappedBytes(offset, size);
+            decoder.reset();
+            final CoderResult result = decoder.decode(bytes, chars, true);
+            if (result.isError())
+                result.throwException();
+            flush(chars);
+        } catch (IOException e) {
+            throw new IllegalStateException("unable to read characters "
+                + start + " to " + end, e);
+        }
+
+        if (chars.hasRemaining())
+            throw new IllegalStateException("window at characters " + start
+                + " to " + end + " did not decode to the same characters");
+
+        return chars.array();
+    }
+
+    /*
+     * Return the given range of bytes of the file, using the segment last
+     * mapped if it contains them; otherwise, map a new segment starting at
+     * this offset
+     */
+    private ByteBuffer mappedBytes(final long offset, final int size)
+        throws IOException
+    {
+        if (mapped == null || offset < mappedOffset
+            || offset + size > mappedOffset + mapped.capacity()) {
+            mappedOffset = offset;
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+                Math.max(size, Math.min(segmentSize, fileSize - offset)));
+        }
+
+        final ByteBuffer ret = mapped.duplicate();
+        final int position = (int) (offset - mappedOffset);
+
+        ret.limit(position + size).position(position);
+        return ret;
+    }
+}
@@ -0,0 +1,410 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.buffers;
+
+import com.github.fge.grappa.support.Chars;
+import com.github.fge.grappa.support.IndexRange;
+import com.github.fge.grappa.support.Position;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * An {@link InputBuffer} reading its characters from a stream on demand
+ *
+ * <p>Characters are pulled from the underlying {@link Reader} (or channel) only
+ * when the parser asks for them, and are kept in a window which slides forward
+ * as the parse progresses: whenever the parser guarantees that it will never
+ * need an index below a given value again, it can say so using {@link
+ * #discardBefore(int)}, and the characters before this low-water mark are
+ * dropped the next time the window needs room. This allows to parse input of
+ * arbitrary size (a socket, a huge log stream) in bounded memory.</p>
+ *
+ * <p>Typically, the low-water mark is advanced by an action run after each
+ * complete record of the input:</p>
+ *
+ * <pre>
+ *     public boolean release()
+ *     {
+ *         final StreamingInputBuffer buffer
+ *             = (StreamingInputBuffer) getContext().getInputBuffer();
+ *         buffer.discardBefore(currentIndex());
+ *         return true;
+ *     }
+ * </pre>
+ *
+ * <p>Note that the match of any enclosing rule still running at this point
+ * starts before the mark; such rules must not use {@code match()} or
+ * similar. Reading a character, extracting text or computing a position below
+ * the mark throws an {@link IllegalStateException}.</p>
+ *
+ * <p>Line numbers and columns remain correct for the retained region: the
+ * buffer keeps count of the lines it has dropped. However, {@link #length()}
+ * and {@link #getLineCount()} can only be known by reading the whole stream;
+ * rules which need the length of the input (regular expressions, literals
+ * containing {@link Chars#EOI}) should therefore be avoided, as well as
+ * tracing parse runners.</p>
+ *
+ * <p>This buffer must be {@link #close() closed} after use; this closes the
+ * underlying reader. It is not thread safe.</p>
+ */
+@NotThreadSafe
+@ParametersAreNonnullByDefault
+public final class StreamingInputBuffer
+    implements InputBuffer, Closeable
+{
+    private static final int DEFAULT_CAPACITY = 1 << 14;
+
+    private final Reader reader;
+    private final int readSize;
+
+    /*
+     * The window: chars[0] is the character at index offset, and count
+     * characters are available
+     */
+    private char[] chars;
+    private int offset;
+    private int count;
+    private boolean eof;
+
+    private int lowWaterMark;
+
+    /*
+     * Starts of the retained lines; discardedLines lines have been dropped
+     */
+    private int[] lineStarts = new int[16];
+    private int nrLines;
+    private int discardedLines;
+
+    /**
+     * Build a buffer over a reader
+     *
+     * @param reader the reader
+     */
+    public StreamingInputBuffer(final Reader reader)
+    {
+        this(reader, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Build a buffer over a channel with a given encoding
+     *
+     * <p>Malformed or unmappable input is replaced with the replacement
+     * character of the charset.</p>
+     *
+     * @param channel the channel
+     * @param charset the encoding of the channel's contents
+     */
+    public StreamingInputBuffer(final ReadableByteChannel channel,
+        final Charset charset)
+    {
+        this(newReader(channel, charset), DEFAULT_CAPACITY);
+    }
+
+    @VisibleForTesting
+    StreamingInputBuffer(final Reader reader, final int capacity)
+    {
+        this.reader = Objects.requireNonNull(reader, "reader");
+        Preconditions.checkArgument(capacity > 0, "capacity must be positive");
+        readSize = capacity;
+        chars = new char[capacity];
+        lineStarts[nrLines++] = 0;
+    }
+
+    /**
+     * Declare that indices below a given value will never be accessed again
+     *
+     * <p>The mark only ever moves forward: a value lower than the current mark
+     * is ignored.</p>
+     *
+     * @param index the new low-water mark
+     * @throws IllegalArgumentException index is beyond the characters read so
+     * far
+     */
+    public void discardBefore(final int index)
+    {
+        Preconditions.checkArgument(index <= offset + count,
+            "cannot discard characters which have not been read yet");
+        lowWaterMark = Math.max(lowWaterMark, index);
+    }
+
+    /**
+     * Return the current low-water mark
+     *
+     * @return the lowest index which can still be accessed
+     */
+    public int getLowWaterMark()
+    {
+        return lowWaterMark;
+    }
+
+    @Override
+    public char charAt(final int index)
+    {
+        if (index < 0)
+            throw new IllegalArgumentException("index is negative");
+        checkRetained(index);
+
+        final int relative = index - offset;
+        if (relative < count)
+            return chars[relative];
+
+        return fillUpTo(index) ? chars[index - offset] : Chars.EOI;
+    }
+
+    @SuppressWarnings("ImplicitNumericConversion")
+    @Override
+    public int codePointAt(final int index)
+    {
+        final char c = charAt(index);
+        if (c == Chars.EOI && !fillUpTo(index))
+            return -1;
+        if (!Character.isHighSurrogate(c) || !fillUpTo(index + 1))
+            return c;
+        final char c2 = chars[index + 1 - offset];
+        return Character.isLowSurrogate(c2) ? Character.toCodePoint(c, c2) : c;
+    }
+
+    @Override
+    public String extract(final int start, final int end)
+    {
+        final int realStart = Math.max(start, 0);
+
+        if (realStart >= end)
+            return "";
+
+        checkRetained(realStart);
+        fillUpTo(end - 1);
+
+        final int realEnd = Math.min(end, offset + count);
+
+        if (realStart >= realEnd)
+            return "";
+
+        return new String(chars, realStart - offset, realEnd - realStart);
+    }
+
+    @Override
+    public String extract(final IndexRange range)
+    {
+        return extract(range.start, range.end);
+    }
+
+    @Override
+    public Position getPosition(final int index)
+    {
+        if (index < 0)
+            throw new IllegalStateException();
+        checkRetained(index);
+
+        if (!fillUpTo(index)) {
+            final int length = offset + count;
+            return new Position(discardedLines + nrLines,
+                length - lineStarts[nrLines - 1] + 1);
+        }
+
+        final int line = lineOf(index);
+        return new Position(discardedLines + line + 1,
+            index - lineStarts[line] + 1);
+    }
+
+    @Override
+    public String extractLine(final int lineNumber)
+    {
+        Preconditions.checkArgument(lineNumber > 0, "line number is negative");
+        final IndexRange range = getLineRange(lineNumber);
+        final int start = range.start;
+        int end = range.end;
+        if (end > start && charAt(end - 1) == '\n')
+            end--;
+        if (end > start && charAt(end - 1) == '\r')
+            end--;
+        return extract(start, end);
+    }
+
+    @Override
+    public IndexRange getLineRange(final int lineNumber)
+    {
+        if (lineNumber <= discardedLines)
+            throw new IllegalStateException("line " + lineNumber
+                + " is no longer available");
+
+        int line = lineNumber - discardedLines - 1;
+
+        while (line >= nrLines - 1 && !eof)
+            fill();
+
+        // Same as LineCounter: an illegal line number means the last line
+        line = Math.min(line, nrLines - 1);
+        final int start = lineStarts[line];
+        final int end = line == nrLines - 1 ? offset + count
+            : lineStarts[line + 1];
+        if (start < lowWaterMark && end <= lowWaterMark)
+            throw new IllegalStateException("line " + lineNumber
+                + " is no longer available");
+        return new IndexRange(start, end);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This reads the stream until its end.</p>
+     */
+    @Override
+    public int getLineCount()
+    {
+        while (!eof)
+            fill();
+        return discardedLines + nrLines;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This reads the stream until its end.</p>
+     */
+    @Override
+    public int length()
+    {
+        while (!eof)
+            fill();
+        return offset + count;
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        reader.close();
+    }
+
+    @VisibleForTesting
+    int getCapacity()
+    {
+        return chars.length;
+    }
+
+    private void checkRetained(final int index)
+    {
+        if (index < lowWaterMark)
+            throw new IllegalStateException("character at index " + index
+                + " has been discarded");
+    }
+
+    /*
+     * Read until the given index is available; return false if the end of
+     * input comes first
+     */
+    private boolean fillUpTo(final int index)
+    {
+        while (index - offset >= count) {
+            if (eof)
+                return false;
+            fill();
+        }
+        return true;
+    }
+
+    private void fill()
+    {
+        if (chars.length - count < readSize)
+            makeRoom();
+
+        final int nrRead;
+
+        try {
+            nrRead = reader.read(chars, count, chars.length - count);
+        } catch (IOException e) {
+            throw new IllegalStateException("unable to read characters "
+                + "after index " + (offset + count), e);
+        }
+
+        if (nrRead == -1) {
+            eof = true;
+            return;
+        }
+
+        final int start = count;
+        count += nrRead;
+
+        for (int i = start; i < count; i++)
+            if (chars[i] == '\n')
+                addLine(offset + i + 1);
+    }
+
+    /*
+     * Drop the characters below the low-water mark, and the lines ending
+     * before it; grow the window if this is not enough
+     */
+    private void makeRoom()
+    {
+        final int dropped = lowWaterMark - offset;
+
+        if (dropped > 0) {
+            count -= dropped;
+            System.arraycopy(chars, dropped, chars, 0, count);
+            offset = lowWaterMark;
+
+            final int line = lineOf(lowWaterMark);
+            if (line > 0) {
+                nrLines -= line;
+                System.arraycopy(lineStarts, line, lineStarts, 0, nrLines);
+                discardedLines += line;
+            }
+        }
+
+        if (chars.length - count < readSize)
+            chars = Arrays.copyOf(chars, Math.max(chars.length * 2,
+                count + readSize));
+    }
+
+    private void addLine(final int start)
+    {
+        if (nrLines == lineStarts.length)
+            lineStarts = Arrays.copyOf(lineStarts, nrLines * 2);
+        lineStarts[nrLines++] = start;
+    }
+
+    private int lineOf(final int index)
+    {
+        final int ret = Arrays.binarySearch(lineStarts, 0, nrLines, index);
+        return ret >= 0 ? ret : -(ret + 1) - 1;
+    }
+
+    private static Reader newReader(final ReadableByteChannel channel,
+        final Charset charset)
+    {
+        Objects.requireNonNull(channel, "channel");
+        final CharsetDecoder decoder = Objects.requireNonNull(charset,
+            "charset").newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        return Channels.newReader(channel, decoder, -1);
+    }
+}
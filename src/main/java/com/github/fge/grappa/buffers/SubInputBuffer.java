@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.buffers;
+
+import com.github.fge.grappa.support.Chars;
+import com.github.fge.grappa.support.IndexRange;
+import com.github.fge.grappa.support.Position;
+import com.google.common.base.Preconditions;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+import java.util.Objects;
+
+/**
+ * A view of a range of characters of another {@link InputBuffer}
+ *
+ * <p>Indices of this buffer start at 0, which is the start of the range in
+ * the original buffer. However, positions and line numbers are those of the
+ * original input: {@link #getPosition(int)} returns the position of the
+ * corresponding character in the original buffer, and line ranges, while
+ * expressed as indices of this buffer, are clamped to the range.</p>
+ *
+ * <p>This buffer is safe to use from several threads as long as the original
+ * buffer is.</p>
+ */
+@Immutable
+@ParametersAreNonnullByDefault
+public final class SubInputBuffer
+    implements InputBuffer
+{
+    private final InputBuffer buffer;
+    private final int start;
+    private final int length;
+
+    /**
+     * Constructor
+     *
+     * @param buffer the original buffer
+     * @param start the start of the range, inclusive
+     * @param end the end of the range, exclusive
+     * @throws IllegalArgumentException illegal range
+     */
+    public SubInputBuffer(final InputBuffer buffer, final int start,
+        final int end)
+    {
+        this.buffer = Objects.requireNonNull(buffer, "buffer");
+        Preconditions.checkArgument(start >= 0 && start <= end,
+            "illegal range [%s, %s)", start, end);
+        this.start = start;
+        length = end - start;
+    }
+
+    /**
+     * Return the start of this buffer in the original buffer
+     *
+     * @return the index of the first character in the original buffer
+     */
+    public int getStart()
+    {
+        return start;
+    }
+
+    @Override
+    public char charAt(final int index)
+    {
+        if (index < 0)
+            throw new IllegalArgumentException("index is negative");
+
+        return index < length ? buffer.charAt(start + index) : Chars.EOI;
+    }
+
+    @SuppressWarnings("ImplicitNumericConversion")
+    @Override
+    public int codePointAt(final int index)
+    {
+        if (index >= length)
+            return -1;
+        if (index < 0)
+            throw new IllegalArgumentException("index is negative");
+
+        final char c = buffer.charAt(start + index);
+        if (!Character.isHighSurrogate(c) || index == length - 1)
+            return c;
+        final char c2 = buffer.charAt(start + index + 1);
+        return Character.isLowSurrogate(c2) ? Character.toCodePoint(c, c2) : c;
+    }
+
+    @Override
+    public String extract(final int start, final int end)
+    {
+        final int realStart = Math.max(start, 0);
+        final int realEnd = Math.min(end, length);
+
+        if (realStart >= realEnd)
+            return "";
+
+        return buffer.extract(this.start + realStart, this.start + realEnd);
+    }
+
+    @Override
+    public String extract(final IndexRange range)
+    {
+        return extract(range.start, range.end);
+    }
+
+    @Override
+    public Position getPosition(final int index)
+    {
+        if (index < 0)
+            throw new IllegalStateException();
+
+        return buffer.getPosition(start + Math.min(index, length));
+    }
+
+    @Override
+    public String extractLine(final int lineNumber)
+    {
+        return buffer.extractLine(lineNumber);
+    }
+
+    @Override
+    public IndexRange getLineRange(final int lineNumber)
+    {
+        final IndexRange range = buffer.getLineRange(lineNumber);
+        final int lineStart = clamp(range.start - start);
+        final int lineEnd = clamp(range.end - start);
+        return new IndexRange(lineStart, lineEnd);
+    }
+
+    @Override
+    public int getLineCount()
+    {
+        return buffer.getLineCount();
+    }
+
+    @Override
+    public int length()
+    {
+        return length;
+    }
+
+    private int clamp(final int index)
+    {
+        return Math.max(0, Math.min(index, length));
+    }
+}
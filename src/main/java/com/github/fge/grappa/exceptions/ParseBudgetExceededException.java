@@ -0,0 +1,74 @@
+package com.github.fge.grappa.exceptions;
+
+import com.github.fge.grappa.support.Position;
+
+/**
+ * Exception thrown when a parsing run exceeds its budget
+ *
+ * <p>The exception carries the limit which was hit, and the input index (and
+ * corresponding position) of the matcher which was about to run when it was.
+ * </p>
+ *
+ * @see com.github.fge.grappa.run.budget.ParseBudget
+ */
+public final class ParseBudgetExceededException
+    extends GrappaException
+{
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The limits a parsing run may exceed
+     */
+    public enum Limit
+    {
+        INVOCATIONS("maximum number of matcher invocations"),
+        DEPTH("maximum matcher depth"),
+        STACK_SIZE("maximum value stack size"),
+        DEADLINE("deadline"),
+        CANCELLED("parse cancelled"),
+        INTERRUPTED("thread interrupted"),
+        ;
+
+        private final String description;
+
+        Limit(final String description)
+        {
+            this.description = description;
+        }
+
+        @Override
+        public String toString()
+        {
+            return description;
+        }
+    }
+
+    private final Limit limit;
+    private final int index;
+    private final Position position;
+
+    public ParseBudgetExceededException(final Limit limit, final int index,
+        final Position position)
+    {
+        super(String.format("parse budget exceeded (%s) at input position %s",
+            limit, position));
+        this.limit = limit;
+        this.index = index;
+        this.position = position;
+    }
+
+    public Limit getLimit()
+    {
+        return limit;
+    }
+
+    public int getIndex()
+    {
+        return index;
+    }
+
+    public Position getPosition()
+    {
+        return position;
+    }
+}
@@ -46,6 +46,16 @@ public final class CharIgnoreCaseMatcher
         return MatcherType.TERMINAL;
     }
 
+    public char getLowerBound()
+    {
+        return lowerBound;
+    }
+
+    public char getUpperBound()
+    {
+        return upperBound;
+    }
+
     @Override
     public <V> boolean match(final MatcherContext<V> context)
     {
@@ -43,6 +43,11 @@ public final class CharMatcher
         return MatcherType.TERMINAL;
     }
 
+    public char getCharacter()
+    {
+        return character;
+    }
+
     // TODO: remove...
     private static String getLabel(final char c)
     {
@@ -47,6 +47,16 @@ public final class CharRangeMatcher
         return MatcherType.TERMINAL;
     }
 
+    public char getLowerBound()
+    {
+        return lowerBound;
+    }
+
+    public char getUpperBound()
+    {
+        return upperBound;
+    }
+
     @Override
     public <V> boolean match(final MatcherContext<V> context)
     {
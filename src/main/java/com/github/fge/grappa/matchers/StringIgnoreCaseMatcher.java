@@ -16,9 +16,11 @@
 
 package com.github.fge.grappa.matchers;
 
+import com.github.fge.grappa.buffers.InputBuffer;
 import com.github.fge.grappa.matchers.base.AbstractMatcher;
 import com.github.fge.grappa.matchers.delegate.SequenceMatcher;
 import com.github.fge.grappa.run.context.MatcherContext;
+import com.github.fge.grappa.support.Chars;
 
 import java.util.Objects;
 
@@ -29,12 +31,35 @@ import java.util.Objects;
 public final class StringIgnoreCaseMatcher
     extends AbstractMatcher
 {
-    private final String input;
+
+    /*
+     * Characters are compared the same way String's .equalsIgnoreCase() does:
+     * two characters are equal if they are the same, or if their uppercase
+     * versions are the same, or if the lowercase versions of their uppercase
+     * versions are the same. We precompute both for the string to match.
+     */
+    private final char[] chars;
+    private final char[] upper;
+    private final char[] folded;
+    private final boolean checkLength;
 
     public StringIgnoreCaseMatcher(final String input)
     {
         super("stringIgnoreCase(" + input + ')');
-        this.input = Objects.requireNonNull(input);
+        Objects.requireNonNull(input);
+
+        chars = input.toCharArray();
+
+        final int len = chars.length;
+        upper = new char[len];
+        folded = new char[len];
+
+        for (int i = 0; i < len; i++) {
+            upper[i] = Character.toUpperCase(chars[i]);
+            folded[i] = Character.toLowerCase(upper[i]);
+        }
+
+        checkLength = input.indexOf(Chars.EOI) != -1;
     }
     
     @Override
@@ -43,16 +68,34 @@ public final class StringIgnoreCaseMatcher
         return MatcherType.TERMINAL;
     }
 
+    public String getString()
+    {
+        return new String(chars);
+    }
+
     @Override
     public <V> boolean match(final MatcherContext<V> context)
     {
-        final int len = input.length();
+        final int len = chars.length;
         final int index = context.getCurrentIndex();
-        final String s = context.getInputBuffer().extract(index, index + len);
+        final InputBuffer buffer = context.getInputBuffer();
 
-        if (!s.equalsIgnoreCase(input))
+        if (checkLength && index + len > buffer.length())
             return false;
 
+        char c;
+
+        for (int i = 0; i < len; i++) {
+            c = buffer.charAt(index + i);
+            if (c == chars[i])
+                continue;
+            c = Character.toUpperCase(c);
+            if (c == upper[i])
+                continue;
+            if (Character.toLowerCase(c) != folded[i])
+                return false;
+        }
+
         context.advanceIndex(len);
         return true;
     }
@@ -16,9 +16,11 @@
 
 package com.github.fge.grappa.matchers;
 
+import com.github.fge.grappa.buffers.InputBuffer;
 import com.github.fge.grappa.matchers.base.AbstractMatcher;
 import com.github.fge.grappa.matchers.delegate.SequenceMatcher;
 import com.github.fge.grappa.run.context.MatcherContext;
+import com.github.fge.grappa.support.Chars;
 
 import java.util.Objects;
 
@@ -29,12 +31,19 @@ import java.util.Objects;
 public final class StringMatcher
     extends AbstractMatcher
 {
-    private final String input;
+    private final char[] chars;
+    /*
+     * InputBuffer's .charAt() returns EOI past the end of input; if the string
+     * contains this character, we need to check the length of the input first
+     */
+    private final boolean checkLength;
 
     public StringMatcher(final String input)
     {
         super("string(" + input + ')');
-        this.input = Objects.requireNonNull(input);
+        Objects.requireNonNull(input);
+        chars = input.toCharArray();
+        checkLength = input.indexOf(Chars.EOI) != -1;
     }
     
     @Override
@@ -43,16 +52,25 @@ public final class StringMatcher
         return MatcherType.TERMINAL;
     }
 
+    public String getString()
+    {
+        return new String(chars);
+    }
+
     @Override
     public <V> boolean match(final MatcherContext<V> context)
     {
-        final int len = input.length();
+        final int len = chars.length;
         final int index = context.getCurrentIndex();
-        final String s = context.getInputBuffer().extract(index, index + len);
+        final InputBuffer buffer = context.getInputBuffer();
 
-        if (!s.equals(input))
+        if (checkLength && index + len > buffer.length())
             return false;
 
+        for (int i = 0; i < len; i++)
+            if (buffer.charAt(index + i) != chars[i])
+                return false;
+
         context.advanceIndex(len);
         return true;
     }
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.matchers.analysis;
+
+import com.github.fge.grappa.matchers.base.Matcher;
+import com.github.fge.grappa.support.Characters;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * A lookup table of the alternatives of an ordered choice which can match at
+ * a given character
+ *
+ * <p>For a given current character, the candidates returned by {@link
+ * #getCandidates(char)} are the alternatives whose {@link FirstSet} contains
+ * this character, in their original order; alternatives which are guaranteed
+ * to fail are therefore never tried, and the semantics of ordered choice are
+ * preserved.</p>
+ *
+ * <p>Lookups for ASCII characters use a dense table; lookups for other
+ * characters use a binary search among the characters explicitly listed in
+ * the FIRST sets of alternatives, and default to the alternatives which can
+ * match any other character.</p>
+ */
+@Immutable
+@ParametersAreNonnullByDefault
+public final class FirstCharDispatch
+{
+    private static final int ASCII_SIZE = 128;
+
+    private final Matcher[][] asciiCandidates = new Matcher[ASCII_SIZE][];
+    private final char[] chars;
+    private final Matcher[][] charCandidates;
+    private final Matcher[] otherCandidates;
+
+    /**
+     * Build a dispatch table for a list of alternatives
+     *
+     * @param alternatives the alternatives, in order
+     * @return a dispatch table
+     */
+    @Nonnull
+    public static FirstCharDispatch build(final List<Matcher> alternatives)
+    {
+        final FirstSetAnalyzer analyzer = new FirstSetAnalyzer();
+        final int size = alternatives.size();
+        final Characters[] sets = new Characters[size];
+
+        for (int i = 0; i < size; i++)
+            sets[i] = analyzer.analyze(alternatives.get(i)).getCandidates();
+
+        return new FirstCharDispatch(alternatives, sets);
+    }
+
+    private FirstCharDispatch(final List<Matcher> alternatives,
+        final Characters[] sets)
+    {
+        /*
+         * Identical lists of candidates share the same array
+         */
+        final Map<List<Matcher>, Matcher[]> interned = new HashMap<>();
+
+        for (int c = 0; c < ASCII_SIZE; c++)
+            asciiCandidates[c] = candidates(alternatives, sets, (char) c,
+                interned);
+
+        final SortedSet<Character> listed = new TreeSet<>();
+
+        for (final Characters set: sets)
+            for (final char c: set.getChars())
+                if (c >= ASCII_SIZE)
+                    listed.add(c);
+
+        final int nrChars = listed.size();
+
+        chars = new char[nrChars];
+        charCandidates = new Matcher[nrChars][];
+
+        int index = 0;
+
+        for (final char c: listed) {
+            chars[index] = c;
+            charCandidates[index] = candidates(alternatives, sets, c,
+                interned);
+            index++;
+        }
+
+        /*
+         * A character not listed in any set is only contained in subtractive
+         * sets
+         */
+        final List<Matcher> others = new ArrayList<>();
+
+        for (int i = 0; i < sets.length; i++)
+            if (sets[i].isSubtractive())
+                others.add(alternatives.get(i));
+
+        otherCandidates = intern(others, interned);
+    }
+
+    /**
+     * Get the alternatives to try for a given current character
+     *
+     * @param c the current character
+     * @return the alternatives, in order (do not modify!)
+     */
+    @Nonnull
+    public Matcher[] getCandidates(final char c)
+    {
+        if (c < ASCII_SIZE)
+            return asciiCandidates[c];
+
+        final int index = Arrays.binarySearch(chars, c);
+        return index >= 0 ? charCandidates[index] : otherCandidates;
+    }
+
+    private static Matcher[] candidates(final List<Matcher> alternatives,
+        final Characters[] sets, final char c,
+        final Map<List<Matcher>, Matcher[]> interned)
+    {
+        final List<Matcher> list = new ArrayList<>();
+
+        for (int i = 0; i < sets.length; i++)
+            if (sets[i].contains(c))
+                list.add(alternatives.get(i));
+
+        return intern(list, interned);
+    }
+
+    private static Matcher[] intern(final List<Matcher> list,
+        final Map<List<Matcher>, Matcher[]> interned)
+    {
+        Matcher[] ret = interned.get(list);
+
+        if (ret == null) {
+            ret = list.toArray(new Matcher[list.size()]);
+            interned.put(list, ret);
+        }
+
+        return ret;
+    }
+}
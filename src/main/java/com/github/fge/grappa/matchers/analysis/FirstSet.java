@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.matchers.analysis;
+
+import com.github.fge.grappa.support.Characters;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+import java.util.Objects;
+
+/**
+ * The FIRST set of a matcher
+ *
+ * <p>A FIRST set is made of two character sets, both of which relate to the
+ * current character of the input when the matcher is tried:</p>
+ *
+ * <ul>
+ *     <li>the characters with which a match consuming input can start;</li>
+ *     <li>the characters at which the matcher can succeed without consuming
+ *     anything; for instance, this is the set of all characters for {@code
+ *     optional()} or actions, and the end of input character for {@code
+ *     EOI}.</li>
+ * </ul>
+ *
+ * <p>Both sets are supersets: a matcher whose set of {@link #getCandidates()
+ * candidates} does not contain the current character of the input is
+ * guaranteed to fail.</p>
+ *
+ * @see FirstSetAnalyzer
+ */
+@Immutable
+@ParametersAreNonnullByDefault
+public final class FirstSet
+{
+    /**
+     * The FIRST set of a matcher which never matches
+     */
+    public static final FirstSet NOTHING
+        = new FirstSet(Characters.NONE, Characters.NONE);
+
+    /**
+     * The FIRST set of a matcher about which nothing is known
+     */
+    public static final FirstSet ANYTHING
+        = new FirstSet(Characters.ALL, Characters.ALL);
+
+    private final Characters consuming;
+    private final Characters empty;
+
+    /**
+     * Create a FIRST set for a matcher which always consumes input
+     *
+     * @param chars the characters the match can start with
+     * @return a FIRST set
+     */
+    public static FirstSet consuming(final Characters chars)
+    {
+        return new FirstSet(chars, Characters.NONE);
+    }
+
+    /**
+     * Create a FIRST set for a matcher which never consumes input
+     *
+     * @param chars the characters at which the matcher can succeed
+     * @return a FIRST set
+     */
+    public static FirstSet empty(final Characters chars)
+    {
+        return new FirstSet(Characters.NONE, chars);
+    }
+
+    public FirstSet(final Characters consuming, final Characters empty)
+    {
+        this.consuming = Objects.requireNonNull(consuming, "consuming");
+        this.empty = Objects.requireNonNull(empty, "empty");
+    }
+
+    /**
+     * Get the characters with which a match consuming input can start
+     *
+     * @return a character set
+     */
+    @Nonnull
+    public Characters getConsuming()
+    {
+        return consuming;
+    }
+
+    /**
+     * Get the characters at which an empty match can succeed
+     *
+     * @return a character set
+     */
+    @Nonnull
+    public Characters getEmpty()
+    {
+        return empty;
+    }
+
+    /**
+     * Tell whether the matcher can succeed without consuming input
+     *
+     * @return true if this is the case
+     */
+    public boolean isNullable()
+    {
+        return !empty.equals(Characters.NONE);
+    }
+
+    /**
+     * Get the characters at which the matcher can possibly succeed
+     *
+     * @return the union of both character sets
+     */
+    @Nonnull
+    public Characters getCandidates()
+    {
+        return consuming.add(empty);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "consuming: " + consuming + ", empty: " + empty;
+    }
+}
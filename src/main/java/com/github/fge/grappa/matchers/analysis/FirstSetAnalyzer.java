@@ -0,0 +1,348 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.matchers.analysis;
+
+import com.github.fge.grappa.matchers.ActionMatcher;
+import com.github.fge.grappa.matchers.AnyMatcher;
+import com.github.fge.grappa.matchers.AnyOfMatcher;
+import com.github.fge.grappa.matchers.CharIgnoreCaseMatcher;
+import com.github.fge.grappa.matchers.CharMatcher;
+import com.github.fge.grappa.matchers.CharRangeMatcher;
+import com.github.fge.grappa.matchers.EmptyMatcher;
+import com.github.fge.grappa.matchers.EndOfInputMatcher;
+import com.github.fge.grappa.matchers.NothingMatcher;
+import com.github.fge.grappa.matchers.StringIgnoreCaseMatcher;
+import com.github.fge.grappa.matchers.StringMatcher;
+import com.github.fge.grappa.matchers.base.Matcher;
+import com.github.fge.grappa.matchers.delegate.FirstOfMatcher;
+import com.github.fge.grappa.matchers.delegate.OptionalMatcher;
+import com.github.fge.grappa.matchers.delegate.SequenceMatcher;
+import com.github.fge.grappa.matchers.join.JoinMatcher;
+import com.github.fge.grappa.matchers.predicates.TestMatcher;
+import com.github.fge.grappa.matchers.predicates.TestNotMatcher;
+import com.github.fge.grappa.matchers.repeat.RepeatMatcher;
+import com.github.fge.grappa.matchers.trie.CaseInsensitiveTrieMatcher;
+import com.github.fge.grappa.matchers.trie.TrieMatcher;
+import com.github.fge.grappa.matchers.unicode.CodePointMatcher;
+import com.github.fge.grappa.matchers.wrap.MemoizingMatcher;
+import com.github.fge.grappa.matchers.wrap.ProxyMatcher;
+import com.github.fge.grappa.matchers.wrap.VarFramingMatcher;
+import com.github.fge.grappa.support.Chars;
+import com.github.fge.grappa.support.Characters;
+import com.github.fge.grappa.transform.compile.CompiledMatcher;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes {@link FirstSet}s of matchers
+ *
+ * <p>The analysis is conservative: matchers it knows nothing about (regexes,
+ * code point ranges, large character ranges, custom matchers etc) are deemed
+ * to be able to match anything. Proxies, var framing matchers and compiled
+ * matchers are seen through.</p>
+ *
+ * <p>Actions are also deemed to be able to match anything, since they must be
+ * run whatever the current character is; as a result, a matcher which can run
+ * an action before consuming any input is never pruned.</p>
+ *
+ * <p>Results are cached per instance of this class; recursive rules are
+ * handled by considering a rule which is being analyzed as able to match
+ * anything.</p>
+ *
+ * <p>Note that this analysis must only be performed once the rule graph is
+ * complete, that is when all proxies are armed.</p>
+ */
+@NotThreadSafe
+@ParametersAreNonnullByDefault
+public final class FirstSetAnalyzer
+{
+    /*
+     * Char ranges larger than this are considered to match anything
+     */
+    private static final int MAX_RANGE_SIZE = 256;
+
+    private final Map<Matcher, FirstSet> cache = new IdentityHashMap<>();
+
+    /**
+     * Compute the FIRST set of a matcher
+     *
+     * @param matcher the matcher
+     * @return the FIRST set
+     */
+    @Nonnull
+    public FirstSet analyze(final Matcher matcher)
+    {
+        final Matcher target = unwrap(matcher);
+
+        FirstSet ret = cache.get(target);
+
+        if (ret != null)
+            return ret;
+
+        // Guard against recursive rules
+        cache.put(target, FirstSet.ANYTHING);
+        ret = compute(target);
+        cache.put(target, ret);
+        return ret;
+    }
+
+    private static Matcher unwrap(final Matcher matcher)
+    {
+        Matcher ret = matcher;
+        Matcher unwrapped;
+
+        while (true) {
+            unwrapped = VarFramingMatcher.unwrap(ProxyMatcher.unwrap(ret));
+            if (unwrapped instanceof CompiledMatcher)
+                unwrapped = ((CompiledMatcher) unwrapped).getSource();
+            if (unwrapped instanceof MemoizingMatcher)
+                unwrapped = ((MemoizingMatcher) unwrapped).getInner();
+            if (unwrapped == ret)
+                return ret;
+            ret = unwrapped;
+        }
+    }
+
+    @SuppressWarnings({ "OverlyComplexMethod", "OverlyLongMethod" })
+    private FirstSet compute(final Matcher matcher)
+    {
+        /*
+         * Terminals
+         */
+        if (matcher instanceof CharMatcher)
+            return FirstSet.consuming(
+                Characters.of(((CharMatcher) matcher).getCharacter()));
+
+        if (matcher instanceof CharIgnoreCaseMatcher) {
+            final CharIgnoreCaseMatcher m = (CharIgnoreCaseMatcher) matcher;
+            return FirstSet.consuming(Characters.of(m.getLowerBound())
+                .add(m.getUpperBound()));
+        }
+
+        if (matcher instanceof CharRangeMatcher) {
+            final CharRangeMatcher m = (CharRangeMatcher) matcher;
+            return FirstSet.consuming(charRange(m.getLowerBound(),
+                m.getUpperBound()));
+        }
+
+        if (matcher instanceof AnyOfMatcher)
+            return FirstSet.consuming(
+                ((AnyOfMatcher) matcher).getCharacters());
+
+        if (matcher instanceof AnyMatcher)
+            return FirstSet.consuming(Characters.ALL);
+
+        if (matcher instanceof StringMatcher) {
+            final String s = ((StringMatcher) matcher).getString();
+            return s.isEmpty() ? FirstSet.empty(Characters.ALL)
+                : FirstSet.consuming(Characters.of(s.charAt(0)));
+        }
+
+        if (matcher instanceof StringIgnoreCaseMatcher) {
+            final String s = ((StringIgnoreCaseMatcher) matcher).getString();
+            return s.isEmpty() ? FirstSet.empty(Characters.ALL)
+                : FirstSet.consuming(ignoreCaseVariants(s.charAt(0)));
+        }
+
+        if (matcher instanceof TrieMatcher)
+            return FirstSet.consuming(Characters.of(
+                ((TrieMatcher) matcher).getTrie().getFirstChars()));
+
+        if (matcher instanceof CaseInsensitiveTrieMatcher)
+            return FirstSet.consuming(swappedCaseVariants(
+                ((CaseInsensitiveTrieMatcher) matcher).getTrie()
+                    .getFirstChars()));
+
+        if (matcher instanceof CodePointMatcher) {
+            final int codePoint = ((CodePointMatcher) matcher).getCodePoint();
+            return FirstSet.consuming(
+                Characters.of(Character.toChars(codePoint)[0]));
+        }
+
+        if (matcher instanceof EmptyMatcher)
+            return FirstSet.empty(Characters.ALL);
+
+        if (matcher instanceof NothingMatcher)
+            return FirstSet.NOTHING;
+
+        if (matcher instanceof EndOfInputMatcher)
+            return FirstSet.empty(Characters.of(Chars.EOI));
+
+        if (matcher instanceof ActionMatcher)
+            return FirstSet.ANYTHING;
+
+        /*
+         * Composites; for sequences and choices, we only handle exact classes
+         * since both of them can be extended
+         */
+        final Class<?> c = matcher.getClass();
+        final List<Matcher> children = matcher.getChildren();
+
+        if (c == SequenceMatcher.class)
+            return sequence(children);
+
+        if (c == FirstOfMatcher.class)
+            return firstOf(children);
+
+        if (matcher instanceof OptionalMatcher)
+            return new FirstSet(analyze(children.get(0)).getConsuming(),
+                Characters.ALL);
+
+        if (matcher instanceof RepeatMatcher)
+            return cycles(analyze(children.get(0)),
+                ((RepeatMatcher) matcher).getMinCycles());
+
+        if (matcher instanceof JoinMatcher)
+            return cycles(analyze(children.get(0)),
+                ((JoinMatcher) matcher).getMinCycles());
+
+        if (matcher instanceof TestMatcher)
+            return FirstSet.empty(analyze(children.get(0)).getCandidates());
+
+        if (matcher instanceof TestNotMatcher)
+            return FirstSet.empty(Characters.ALL);
+
+        return FirstSet.ANYTHING;
+    }
+
+    /*
+     * A sequence can start consuming with the first consuming characters of
+     * its first element, or with those of its second element if the first can
+     * match empty at that character, etc.
+     */
+    private FirstSet sequence(final List<Matcher> children)
+    {
+        Characters consuming = Characters.NONE;
+        Characters empty = Characters.ALL;
+
+        FirstSet set;
+
+        for (final Matcher child: children) {
+            set = analyze(child);
+            consuming = consuming.add(intersection(empty, set.getConsuming()));
+            empty = intersection(empty, set.getEmpty());
+            if (empty.equals(Characters.NONE))
+                break;
+        }
+
+        return new FirstSet(consuming, empty);
+    }
+
+    private FirstSet firstOf(final List<Matcher> children)
+    {
+        Characters consuming = Characters.NONE;
+        Characters empty = Characters.NONE;
+
+        FirstSet set;
+
+        for (final Matcher child: children) {
+            set = analyze(child);
+            consuming = consuming.add(set.getConsuming());
+            empty = empty.add(set.getEmpty());
+        }
+
+        return new FirstSet(consuming, empty);
+    }
+
+    private static FirstSet cycles(final FirstSet set, final int minCycles)
+    {
+        return minCycles == 0
+            ? new FirstSet(set.getConsuming(), Characters.ALL) : set;
+    }
+
+    private static Characters intersection(final Characters a,
+        final Characters b)
+    {
+        if (a.equals(Characters.ALL))
+            return b;
+        if (b.equals(Characters.ALL))
+            return a;
+        return a.remove(Characters.ALL.remove(b));
+    }
+
+    private static Characters charRange(final char lowerBound,
+        final char upperBound)
+    {
+        if (upperBound - lowerBound >= MAX_RANGE_SIZE)
+            return Characters.ALL;
+
+        final char[] chars = new char[upperBound - lowerBound + 1];
+
+        for (int i = 0; i < chars.length; i++)
+            chars[i] = (char) (lowerBound + i);
+
+        return Characters.of(chars);
+    }
+
+    /*
+     * All characters which StringIgnoreCaseMatcher considers equal to the
+     * given character
+     */
+    private static Characters ignoreCaseVariants(final char c)
+    {
+        final char upper = Character.toUpperCase(c);
+        final char folded = Character.toLowerCase(upper);
+
+        final StringBuilder sb = new StringBuilder();
+
+        char x;
+        char u;
+
+        for (int i = 0; i <= Character.MAX_VALUE; i++) {
+            x = (char) i;
+            u = Character.toUpperCase(x);
+            if (x == c || u == upper || Character.toLowerCase(u) == folded)
+                sb.append(x);
+        }
+
+        return Characters.of(sb.toString());
+    }
+
+    /*
+     * All characters which a case insensitive trie will accept as one of the
+     * given (sorted) first characters
+     */
+    private static Characters swappedCaseVariants(final char[] firstChars)
+    {
+        final StringBuilder sb = new StringBuilder();
+
+        char x;
+        boolean isUpper;
+
+        for (int i = 0; i <= Character.MAX_VALUE; i++) {
+            x = (char) i;
+            if (Arrays.binarySearch(firstChars, x) >= 0) {
+                sb.append(x);
+                continue;
+            }
+            isUpper = Character.isUpperCase(x);
+            if (isUpper == Character.isLowerCase(x))
+                continue;
+            x = isUpper ? Character.toLowerCase(x) : Character.toUpperCase(x);
+            if (Arrays.binarySearch(firstChars, x) >= 0)
+                sb.append((char) i);
+        }
+
+        return Characters.of(sb.toString());
+    }
+}
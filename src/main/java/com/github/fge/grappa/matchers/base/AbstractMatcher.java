@@ -21,6 +21,7 @@ import com.google.common.collect.ImmutableList;
 import com.github.fge.grappa.run.context.MatcherContext;
 import com.github.fge.grappa.misc.ImmutableGraphNode;
 
+import java.util.List;
 import java.util.Objects;
 
 /**
@@ -90,6 +91,32 @@ public abstract class AbstractMatcher
         return clone;
     }
 
+    /**
+     * Replace the children of this matcher
+     *
+     * <p>This is only meant to be used by the {@link RuleLinker}, with
+     * children equivalent to the existing ones.</p>
+     *
+     * @param children the new children
+     */
+    final void relink(final List<Matcher> children)
+    {
+        setChildren(children);
+        childrenChanged();
+    }
+
+    /**
+     * Called when the children of this matcher have been replaced
+     *
+     * <p>Matchers which keep references to their children, or data computed
+     * from them, must override this method to refresh them; since other
+     * threads may be using the matcher meanwhile, the fields holding them must
+     * be volatile.</p>
+     */
+    protected void childrenChanged()
+    {
+    }
+
     // default implementation is to simply delegate to the context
     @Override
     public <V> MatcherContext<V> getSubContext(final MatcherContext<V> context)
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.matchers.base;
+
+import com.github.fge.grappa.matchers.wrap.MemoizingMatcher;
+import com.github.fge.grappa.matchers.wrap.ProxyMatcher;
+import com.github.fge.grappa.matchers.wrap.VarFramingMatcher;
+import com.github.fge.grappa.rules.Rule;
+import com.github.fge.grappa.support.Var;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.MapMaker;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Removes the indirections left in a rule graph after its construction
+ *
+ * <p>While rules are being built, recursive rules are referenced through
+ * {@link ProxyMatcher}s, and rules using {@link Var}s are wrapped into {@link
+ * VarFramingMatcher}s. Once the root rule is
+ * obtained, linking rewires the graph so that matchers reference the targets
+ * of proxies directly, and nested var framing matchers are folded into a
+ * single one; the resulting graph contains no proxy (unless one is not armed,
+ * which means the grammar is incomplete).</p>
+ *
+ * <p>Linking is done in place, since recursive rules cannot be expressed
+ * otherwise; as proxies are transparent, the graph keeps matching exactly the
+ * same way at all times, even while it is being linked. Linking an already
+ * linked graph modifies nothing. The parse runners link their root rule when
+ * they are built.</p>
+ *
+ * <p>Since graphs may be shared, linking is serialized, and the result of
+ * linking a given root rule is remembered (for as long as the rule is
+ * reachable): building several runners for the same rule, in any thread, only
+ * links its graph once.</p>
+ */
+@ParametersAreNonnullByDefault
+public final class RuleLinker
+{
+    private static final Object LOCK = new Object();
+
+    /*
+     * Linked roots; keys are compared by identity
+     */
+    private static final Map<Matcher, Matcher> LINKED
+        = new MapMaker().weakKeys().weakValues().makeMap();
+
+    private final Map<Matcher, Matcher> resolved = new IdentityHashMap<>();
+
+    private RuleLinker()
+    {
+    }
+
+    /**
+     * Link a rule graph
+     *
+     * @param rule the root rule
+     * @return the linked root rule (which may be a different instance)
+     */
+    public static Rule link(final Rule rule)
+    {
+        Objects.requireNonNull(rule, "rule");
+        final Matcher root = (Matcher) rule;
+
+        synchronized (LOCK) {
+            Matcher ret = LINKED.get(root);
+            if (ret == null) {
+                ret = new RuleLinker().linkGraph(root);
+                LINKED.put(root, ret);
+                LINKED.put(ret, ret);
+            }
+            return ret;
+        }
+    }
+
+    private Matcher linkGraph(final Matcher root)
+    {
+        final Matcher ret = resolve(root);
+        final Map<Matcher, Boolean> visited = new IdentityHashMap<>();
+        final Deque<Matcher> queue = new ArrayDeque<>();
+
+        queue.add(ret);
+
+        Matcher matcher;
+        List<Matcher> children;
+        List<Matcher> linked;
+        boolean changed;
+        Matcher child;
+
+        while (!queue.isEmpty()) {
+            matcher = queue.remove();
+            if (visited.put(matcher, Boolean.TRUE) != null)
+                continue;
+
+            if (matcher instanceof VarFramingMatcher) {
+                queue.add(((VarFramingMatcher) matcher).getInner());
+                continue;
+            }
+
+            if (matcher instanceof MemoizingMatcher) {
+                queue.add(((MemoizingMatcher) matcher).getInner());
+                continue;
+            }
+
+            children = matcher.getChildren();
+            linked = new ArrayList<>(children.size());
+            changed = false;
+
+            for (final Matcher original: children) {
+                child = resolve(original);
+                changed |= child != original;
+                linked.add(child);
+                queue.add(child);
+            }
+
+            if (changed && matcher instanceof AbstractMatcher)
+                ((AbstractMatcher) matcher).relink(linked);
+        }
+
+        return ret;
+    }
+
+    /*
+     * Find the matcher which should replace a given matcher: the innermost
+     * target of a proxy, or a var framing or memoizing matcher wrapping a
+     * resolved matcher
+     */
+    private Matcher resolve(final Matcher matcher)
+    {
+        Matcher ret = resolved.get(matcher);
+
+        if (ret != null)
+            return ret;
+
+        // A cycle of wrapping matchers without any other matcher in between
+        Preconditions.checkState(!resolved.containsKey(matcher),
+            "rule %s references itself", matcher);
+        resolved.put(matcher, null);
+
+        if (matcher instanceof ProxyMatcher) {
+            ret = ProxyMatcher.unwrap(matcher);
+            // unarmed
+            if (ret != matcher)
+                ret = resolve(ret);
+        } else if (matcher instanceof VarFramingMatcher) {
+            ret = resolveVarFraming((VarFramingMatcher) matcher);
+        } else if (matcher instanceof MemoizingMatcher) {
+            ret = resolveMemoizing((MemoizingMatcher) matcher);
+        } else {
+            ret = matcher;
+        }
+
+        resolved.put(matcher, ret);
+        return ret;
+    }
+
+    private Matcher resolveVarFraming(final VarFramingMatcher matcher)
+    {
+        final Matcher inner = matcher.getInner();
+        final Matcher target = resolve(inner);
+
+        if (target instanceof VarFramingMatcher)
+            return matcher.fold((VarFramingMatcher) target);
+
+        return target == inner ? matcher : matcher.withInner(target);
+    }
+
+    private Matcher resolveMemoizing(final MemoizingMatcher matcher)
+    {
+        final Matcher inner = matcher.getInner();
+        final Matcher target = resolve(inner);
+
+        return target == inner ? matcher : matcher.withInner(target);
+    }
+}
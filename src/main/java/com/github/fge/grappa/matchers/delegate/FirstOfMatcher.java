@@ -17,6 +17,7 @@
 package com.github.fge.grappa.matchers.delegate;
 
 import com.github.fge.grappa.matchers.MatcherType;
+import com.github.fge.grappa.matchers.analysis.FirstCharDispatch;
 import com.github.fge.grappa.matchers.base.CustomDefaultLabelMatcher;
 import com.github.fge.grappa.matchers.base.Matcher;
 import com.github.fge.grappa.rules.Rule;
@@ -26,10 +27,17 @@ import java.util.Objects;
 
 /**
  * A {@link Matcher} trying all of its submatchers in sequence and succeeding when the first submatcher succeeds.
+ *
+ * <p>Submatchers which cannot possibly match at the current character are not
+ * tried; see {@link FirstCharDispatch}. The dispatch table is built when this
+ * matcher is first used, since the rule graph is complete by then; it is
+ * built anew if the matcher is relinked.</p>
  */
 public class FirstOfMatcher
     extends CustomDefaultLabelMatcher<FirstOfMatcher>
 {
+    private volatile FirstCharDispatch dispatch = null;
+
     public FirstOfMatcher(final Rule[] subRules)
     {
         super(Objects.requireNonNull(subRules, "subRules"), "firstOf");
@@ -41,12 +49,44 @@ public class FirstOfMatcher
         return MatcherType.COMPOSITE;
     }
 
+    @Override
+    protected void childrenChanged()
+    {
+        dispatch = null;
+    }
+
     @Override
     public <V> boolean match(final MatcherContext<V> context)
     {
-        for (final Matcher matcher: getChildren())
+        for (final Matcher matcher: getCandidates(context.getCurrentChar()))
             if (matcher.getSubContext(context).runMatcher())
                 return true;
         return false;
     }
+
+    /**
+     * Return the alternatives which are tried when the input is at a given
+     * character
+     *
+     * <p>The returned array must not be modified.</p>
+     *
+     * @param c the current character
+     * @return the candidate alternatives, in order
+     *
+     * @see FirstCharDispatch#getCandidates(char)
+     */
+    public Matcher[] getCandidates(final char c)
+    {
+        FirstCharDispatch table = dispatch;
+
+        /*
+         * Building the table is idempotent; no need to synchronize
+         */
+        if (table == null) {
+            table = FirstCharDispatch.build(getChildren());
+            dispatch = table;
+        }
+
+        return table.getCandidates(c);
+    }
 }
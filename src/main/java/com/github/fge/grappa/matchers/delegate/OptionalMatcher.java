@@ -30,7 +30,7 @@ import java.util.Objects;
 public final class OptionalMatcher
     extends CustomDefaultLabelMatcher<OptionalMatcher>
 {
-    private final Matcher subMatcher;
+    private volatile Matcher subMatcher;
 
     public OptionalMatcher(final Rule subRule)
     {
@@ -44,6 +44,12 @@ public final class OptionalMatcher
         return MatcherType.COMPOSITE;
     }
 
+    @Override
+    protected void childrenChanged()
+    {
+        subMatcher = getChildren().get(0);
+    }
+
     @Override
     public <V> boolean match(final MatcherContext<V> context)
     {
@@ -37,6 +37,18 @@ public final class BoundedBothJoinMatcher
         this.maxCycles = maxCycles;
     }
 
+    @Override
+    public int getMinCycles()
+    {
+        return minCycles;
+    }
+
+    @Override
+    public int getMaxCycles()
+    {
+        return maxCycles;
+    }
+
     @Override
     protected boolean runAgain(final int cycles)
     {
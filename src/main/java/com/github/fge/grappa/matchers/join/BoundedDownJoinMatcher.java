@@ -35,6 +35,18 @@ public final class BoundedDownJoinMatcher
         this.minCycles = minCycles;
     }
 
+    @Override
+    public int getMinCycles()
+    {
+        return minCycles;
+    }
+
+    @Override
+    public int getMaxCycles()
+    {
+        return Integer.MAX_VALUE;
+    }
+
     @Override
     protected boolean runAgain(final int cycles)
     {
@@ -35,6 +35,18 @@ public final class BoundedUpJoinMatcher
         this.maxCycles = maxCycles;
     }
 
+    @Override
+    public int getMinCycles()
+    {
+        return 0;
+    }
+
+    @Override
+    public int getMaxCycles()
+    {
+        return maxCycles;
+    }
+
     @Override
     protected boolean runAgain(final int cycles)
     {
@@ -36,6 +36,18 @@ public final class ExactMatchesJoinMatcher
         this.nrCycles = nrCycles;
     }
 
+    @Override
+    public int getMinCycles()
+    {
+        return nrCycles;
+    }
+
+    @Override
+    public int getMaxCycles()
+    {
+        return nrCycles;
+    }
+
     @Override
     protected boolean runAgain(final int cycles)
     {
@@ -68,8 +68,8 @@ public abstract class JoinMatcher
     private static final int JOINED_CHILD_INDEX = 0;
     private static final int JOINING_CHILD_INDEX = 1;
 
-    protected final Matcher joined;
-    protected final Matcher joining;
+    protected volatile Matcher joined;
+    protected volatile Matcher joining;
 
     protected JoinMatcher(final Rule joined, final Rule joining)
     {
@@ -78,6 +78,13 @@ public abstract class JoinMatcher
         this.joining = getChildren().get(JOINING_CHILD_INDEX);
     }
 
+    @Override
+    protected final void childrenChanged()
+    {
+        joined = getChildren().get(JOINED_CHILD_INDEX);
+        joining = getChildren().get(JOINING_CHILD_INDEX);
+    }
+
     @Override
     public final MatcherType getType()
     {
@@ -120,6 +127,21 @@ public abstract class JoinMatcher
         return enoughCycles(cycles);
     }
 
+    /**
+     * Get the minimum number of cycles for this matcher to succeed
+     *
+     * @return the minimum number of cycles
+     */
+    public abstract int getMinCycles();
+
+    /**
+     * Get the maximum number of cycles this matcher will run
+     *
+     * @return the maximum number of cycles ({@link Integer#MAX_VALUE} if
+     * unbounded)
+     */
+    public abstract int getMaxCycles();
+
     protected abstract boolean runAgain(final int cycles);
 
     protected abstract boolean enoughCycles(final int cycles);
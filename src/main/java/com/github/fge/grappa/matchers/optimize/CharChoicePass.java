@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.matchers.optimize;
+
+import com.github.fge.grappa.matchers.AnyOfMatcher;
+import com.github.fge.grappa.matchers.CharMatcher;
+import com.github.fge.grappa.matchers.CharRangeMatcher;
+import com.github.fge.grappa.matchers.base.Matcher;
+import com.github.fge.grappa.matchers.delegate.FirstOfMatcher;
+import com.github.fge.grappa.support.Characters;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Merges runs of single character alternatives in a choice into a single
+ * {@link AnyOfMatcher}
+ *
+ * <p>For instance, {@code firstOf('+', '-', digit())} becomes {@code
+ * firstOf(anyOf("+-"), digit())}. The alternatives considered are character
+ * matchers, character sets and character ranges of no more than {@value
+ * #MAX_RANGE_SIZE} characters, provided that they have no custom label.</p>
+ *
+ * <p>Since all these alternatives match exactly one character, their order
+ * within a run does not matter.</p>
+ */
+@ParametersAreNonnullByDefault
+public final class CharChoicePass
+    extends OptimizationPass
+{
+    private static final int MAX_RANGE_SIZE = 256;
+
+    @Override
+    public String getName()
+    {
+        return "charChoice";
+    }
+
+    @Override
+    protected Matcher rewrite(final Matcher matcher, final PassReport report)
+    {
+        if (matcher.getClass() != FirstOfMatcher.class)
+            return matcher;
+
+        final List<Matcher> children = matcher.getChildren();
+        final int size = children.size();
+        final List<Matcher> newChildren = new ArrayList<>(size);
+
+        int merged = 0;
+        int start = 0;
+        int end;
+        Characters characters;
+
+        while (start < size) {
+            end = start;
+            while (end < size && charactersOf(children.get(end)) != null)
+                end++;
+
+            if (end - start < 2) {
+                newChildren.add(children.get(start));
+                start++;
+                continue;
+            }
+
+            characters = Characters.NONE;
+            for (int i = start; i < end; i++)
+                characters = characters.add(charactersOf(children.get(i)));
+            newChildren.add(new AnyOfMatcher(characters));
+            merged += end - start;
+            start = end;
+        }
+
+        if (merged == 0)
+            return matcher;
+
+        report.record("%s: merged %d single character alternative(s)",
+            matcher, merged);
+
+        if (newChildren.size() == 1 && !matcher.hasCustomLabel())
+            return newChildren.get(0);
+
+        return MatcherRebuilder.rebuild(matcher, newChildren);
+    }
+
+    /*
+     * Return the set of characters matched by a matcher, or null if it is not
+     * a single character matcher we can merge
+     */
+    @Nullable
+    private static Characters charactersOf(final Matcher matcher)
+    {
+        if (matcher instanceof CharMatcher) {
+            final char c = ((CharMatcher) matcher).getCharacter();
+            return matcher.getLabel().equals(new CharMatcher(c).getLabel())
+                ? Characters.of(c) : null;
+        }
+
+        if (matcher instanceof AnyOfMatcher) {
+            final Characters characters
+                = ((AnyOfMatcher) matcher).getCharacters();
+            return matcher.getLabel().equals(characters.toString())
+                ? characters : null;
+        }
+
+        if (!(matcher instanceof CharRangeMatcher))
+            return null;
+
+        final CharRangeMatcher range = (CharRangeMatcher) matcher;
+        final char lowerBound = range.getLowerBound();
+        final char upperBound = range.getUpperBound();
+
+        if (upperBound - lowerBound >= MAX_RANGE_SIZE)
+            return null;
+        if (!matcher.getLabel().equals(
+            new CharRangeMatcher(lowerBound, upperBound).getLabel()))
+            return null;
+
+        Characters ret = Characters.NONE;
+        for (int c = lowerBound; c <= upperBound; c++)
+            ret = ret.add((char) c);
+        return ret;
+    }
+}
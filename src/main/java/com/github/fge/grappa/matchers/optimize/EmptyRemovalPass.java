@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.matchers.optimize;
+
+import com.github.fge.grappa.matchers.EmptyMatcher;
+import com.github.fge.grappa.matchers.MatcherType;
+import com.github.fge.grappa.matchers.base.Matcher;
+import com.github.fge.grappa.matchers.delegate.FirstOfMatcher;
+import com.github.fge.grappa.matchers.delegate.SequenceMatcher;
+import com.github.fge.grappa.matchers.wrap.ProxyMatcher;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Removes {@link EmptyMatcher}s where they have no effect
+ *
+ * <ul>
+ *     <li>in a sequence, an empty matcher is removed unless it is followed by
+ *     an action (which would then see another match);</li>
+ *     <li>in a choice, an empty matcher always succeeds, therefore all
+ *     alternatives after it are removed;</li>
+ *     <li>a sequence without a custom label which is left with a single
+ *     terminal, or with no children at all, is replaced with this terminal, or
+ *     an empty matcher, respectively.</li>
+ * </ul>
+ */
+@ParametersAreNonnullByDefault
+public final class EmptyRemovalPass
+    extends OptimizationPass
+{
+    @Override
+    public String getName()
+    {
+        return "removeEmpty";
+    }
+
+    @Override
+    protected Matcher rewrite(final Matcher matcher, final PassReport report)
+    {
+        final Class<?> c = matcher.getClass();
+
+        if (c == SequenceMatcher.class)
+            return rewriteSequence(matcher, report);
+        if (c == FirstOfMatcher.class)
+            return rewriteFirstOf(matcher, report);
+        return matcher;
+    }
+
+    private static Matcher rewriteSequence(final Matcher matcher,
+        final PassReport report)
+    {
+        final List<Matcher> children = matcher.getChildren();
+        final int size = children.size();
+        final List<Matcher> newChildren = new ArrayList<>(size);
+
+        Matcher child;
+
+        for (int i = 0; i < size; i++) {
+            child = children.get(i);
+            if (isEmpty(child)
+                && !(i + 1 < size && isAction(children.get(i + 1))))
+                continue;
+            newChildren.add(child);
+        }
+
+        final int removed = size - newChildren.size();
+        if (removed == 0)
+            return matcher;
+
+        report.record("%s: removed %d empty matcher(s)", matcher, removed);
+
+        if (!matcher.hasCustomLabel()) {
+            if (newChildren.isEmpty())
+                return children.get(0);
+            if (newChildren.size() == 1) {
+                child = newChildren.get(0);
+                if (!(child instanceof ProxyMatcher)
+                    && child.getType() == MatcherType.TERMINAL)
+                    return child;
+            }
+        }
+
+        return MatcherRebuilder.rebuild(matcher, newChildren);
+    }
+
+    private static Matcher rewriteFirstOf(final Matcher matcher,
+        final PassReport report)
+    {
+        final List<Matcher> children = matcher.getChildren();
+        final int size = children.size();
+
+        for (int i = 0; i < size - 1; i++) {
+            if (!isEmpty(children.get(i)))
+                continue;
+            report.record("%s: removed %d unreachable alternative(s)",
+                matcher, size - i - 1);
+            return MatcherRebuilder.rebuild(matcher,
+                children.subList(0, i + 1));
+        }
+
+        return matcher;
+    }
+
+    private static boolean isEmpty(final Matcher matcher)
+    {
+        return ProxyMatcher.unwrap(matcher) instanceof EmptyMatcher;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.matchers.optimize;
+
+import com.github.fge.grappa.matchers.base.Matcher;
+import com.github.fge.grappa.matchers.delegate.FirstOfMatcher;
+import com.github.fge.grappa.matchers.delegate.SequenceMatcher;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Flattens nested sequences and nested choices
+ *
+ * <p>A {@link SequenceMatcher} child of a sequence is replaced with its own
+ * children, and likewise for a {@link FirstOfMatcher} child of a choice. Only
+ * children without a custom label are flattened, so rules written as methods
+ * of the parser (which are labeled with the method name) are kept as is.</p>
+ *
+ * <p>A nested sequence is not flattened if it starts with an action, or if it
+ * is followed by an action: this would change the match these actions see.
+ * </p>
+ */
+@ParametersAreNonnullByDefault
+public final class FlatteningPass
+    extends OptimizationPass
+{
+    @Override
+    public String getName()
+    {
+        return "flatten";
+    }
+
+    @Override
+    protected Matcher rewrite(final Matcher matcher, final PassReport report)
+    {
+        final Class<?> c = matcher.getClass();
+
+        if (c == SequenceMatcher.class)
+            return flattenSequence(matcher, report);
+        if (c == FirstOfMatcher.class)
+            return flattenFirstOf(matcher, report);
+        return matcher;
+    }
+
+    private static Matcher flattenSequence(final Matcher matcher,
+        final PassReport report)
+    {
+        final List<Matcher> children = matcher.getChildren();
+        final int size = children.size();
+        final List<Matcher> newChildren = new ArrayList<>();
+
+        int flattened = 0;
+        Matcher child;
+        List<Matcher> grandChildren;
+
+        for (int i = 0; i < size; i++) {
+            child = children.get(i);
+            if (child.getClass() != SequenceMatcher.class
+                || child.hasCustomLabel()
+                || i + 1 < size && isAction(children.get(i + 1))) {
+                newChildren.add(child);
+                continue;
+            }
+            grandChildren = child.getChildren();
+            if (grandChildren.isEmpty() || isAction(grandChildren.get(0))) {
+                newChildren.add(child);
+                continue;
+            }
+            newChildren.addAll(grandChildren);
+            flattened++;
+        }
+
+        if (flattened == 0)
+            return matcher;
+
+        report.record("%s: flattened %d nested sequence(s)", matcher,
+            flattened);
+        return MatcherRebuilder.rebuild(matcher, newChildren);
+    }
+
+    private static Matcher flattenFirstOf(final Matcher matcher,
+        final PassReport report)
+    {
+        final List<Matcher> newChildren = new ArrayList<>();
+
+        int flattened = 0;
+
+        for (final Matcher child: matcher.getChildren()) {
+            if (child.getClass() != FirstOfMatcher.class
+                || child.hasCustomLabel()) {
+                newChildren.add(child);
+                continue;
+            }
+            newChildren.addAll(child.getChildren());
+            flattened++;
+        }
+
+        if (flattened == 0)
+            return matcher;
+
+        report.record("%s: flattened %d nested choice(s)", matcher, flattened);
+        return MatcherRebuilder.rebuild(matcher, newChildren);
+    }
+}
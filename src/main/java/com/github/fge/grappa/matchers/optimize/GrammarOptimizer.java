@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.matchers.optimize;
+
+import com.github.fge.grappa.matchers.base.Matcher;
+import com.github.fge.grappa.matchers.wrap.ProxyMatcher;
+import com.github.fge.grappa.rules.Rule;
+import com.google.common.collect.ImmutableList;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Runs a series of {@link OptimizationPass}es over a rule graph
+ *
+ * <p>The optimizer never modifies the graph it is given: each pass produces a
+ * new graph, which shares with the original all the subgraphs the pass left
+ * untouched. Shared subgraphs are rewritten only once.</p>
+ *
+ * <p>Recursive rules are handled by creating new {@link ProxyMatcher}s where a
+ * rewritten cycle needs them, whether the original cycle went through a proxy
+ * or not (see {@link com.github.fge.grappa.matchers.base.RuleLinker}). This
+ * means the optimizer must only be used once the rule graph is complete, that
+ * is when all proxies are armed.</p>
+ *
+ * <p>Typical use:</p>
+ *
+ * <pre>
+ *     final MyParser parser = Grappa.createParser(MyParser.class);
+ *     final OptimizationResult result
+ *         = GrammarOptimizer.withDefaultPasses().optimize(parser.rule());
+ *     final ParseRunner&lt;Object&gt; runner
+ *         = new BasicParseRunner&lt;&gt;(result.getRule());
+ * </pre>
+ */
+@NotThreadSafe
+@ParametersAreNonnullByDefault
+public final class GrammarOptimizer
+{
+    private final List<OptimizationPass> passes;
+
+    /**
+     * Return an optimizer running the default passes
+     *
+     * <p>These are, in order: {@link FlatteningPass}, {@link
+     * EmptyRemovalPass}, {@link StringFoldingPass}, {@link CharChoicePass} and
+     * {@link HashConsingPass}.</p>
+     *
+     * @return a new optimizer
+     */
+    public static GrammarOptimizer withDefaultPasses()
+    {
+        return new GrammarOptimizer(new FlatteningPass(),
+            new EmptyRemovalPass(), new StringFoldingPass(),
+            new CharChoicePass(), new HashConsingPass());
+    }
+
+    public GrammarOptimizer(final List<? extends OptimizationPass> passes)
+    {
+        this.passes = ImmutableList.copyOf(passes);
+    }
+
+    public GrammarOptimizer(final OptimizationPass... passes)
+    {
+        this(ImmutableList.copyOf(passes));
+    }
+
+    /**
+     * Optimize a rule
+     *
+     * @param rule the rule
+     * @return the result
+     */
+    public OptimizationResult optimize(final Rule rule)
+    {
+        Objects.requireNonNull(rule, "rule");
+
+        final List<PassReport> reports = new ArrayList<>(passes.size());
+
+        Matcher matcher = (Matcher) rule;
+        PassReport report;
+
+        for (final OptimizationPass pass: passes) {
+            report = new PassReport(pass.getName());
+            pass.start(matcher);
+            matcher = new Walk(pass, report).visit(matcher);
+            reports.add(report);
+        }
+
+        return new OptimizationResult(matcher, reports);
+    }
+
+    private static final class Walk
+    {
+        private final OptimizationPass pass;
+        private final PassReport report;
+
+        private final Map<Matcher, Matcher> done = new IdentityHashMap<>();
+        private final Map<Matcher, Boolean> inProgress
+            = new IdentityHashMap<>();
+        private final Map<Matcher, ProxyMatcher> pending
+            = new IdentityHashMap<>();
+
+        private Walk(final OptimizationPass pass, final PassReport report)
+        {
+            this.pass = pass;
+            this.report = report;
+        }
+
+        private Matcher visit(final Matcher matcher)
+        {
+            Matcher ret = done.get(matcher);
+            if (ret != null)
+                return ret;
+
+            if (matcher instanceof ProxyMatcher)
+                return visitProxy(matcher);
+
+            // a cycle without a proxy, in a linked graph
+            if (inProgress.containsKey(matcher))
+                return pendingProxy(matcher);
+
+            inProgress.put(matcher, Boolean.TRUE);
+
+            ret = pass.enter(matcher, report);
+            if (ret == null)
+                ret = pass.rewrite(visitChildren(matcher), report);
+
+            inProgress.remove(matcher);
+            final ProxyMatcher proxy = pending.remove(matcher);
+            if (proxy != null)
+                proxy.arm(ret);
+
+            done.put(matcher, ret);
+            return ret;
+        }
+
+        /*
+         * A proxy whose target is being visited closes a cycle: hand out a new
+         * proxy which will be armed with the rewritten target when it is done.
+         */
+        private Matcher visitProxy(final Matcher matcher)
+        {
+            Matcher target = matcher;
+            Matcher next;
+
+            // proxies may wrap other proxies; an unarmed one is left alone
+            while (target instanceof ProxyMatcher) {
+                next = ProxyMatcher.unwrap(target);
+                if (next == target)
+                    return matcher;
+                target = next;
+            }
+
+            if (!inProgress.containsKey(target)) {
+                final Matcher ret = visit(target);
+                done.put(matcher, ret);
+                return ret;
+            }
+
+            return pendingProxy(target);
+        }
+
+        private ProxyMatcher pendingProxy(final Matcher target)
+        {
+            ProxyMatcher proxy = pending.get(target);
+            if (proxy == null) {
+                proxy = new ProxyMatcher();
+                pending.put(target, proxy);
+            }
+            return proxy;
+        }
+
+        private Matcher visitChildren(final Matcher matcher)
+        {
+            if (!MatcherRebuilder.canRebuild(matcher))
+                return matcher;
+
+            final List<Matcher> children = MatcherRebuilder.childrenOf(matcher);
+            final List<Matcher> newChildren = new ArrayList<>(children.size());
+
+            boolean changed = false;
+            Matcher newChild;
+
+            for (final Matcher child: children) {
+                newChild = visit(child);
+                changed |= newChild != child;
+                newChildren.add(newChild);
+            }
+
+            return changed ? MatcherRebuilder.rebuild(matcher, newChildren)
+                : matcher;
+        }
+    }
+}
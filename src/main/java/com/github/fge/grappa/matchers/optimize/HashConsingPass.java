@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.matchers.optimize;
+
+import com.github.fge.grappa.matchers.AnyMatcher;
+import com.github.fge.grappa.matchers.AnyOfMatcher;
+import com.github.fge.grappa.matchers.CharIgnoreCaseMatcher;
+import com.github.fge.grappa.matchers.CharMatcher;
+import com.github.fge.grappa.matchers.CharRangeMatcher;
+import com.github.fge.grappa.matchers.EmptyMatcher;
+import com.github.fge.grappa.matchers.EndOfInputMatcher;
+import com.github.fge.grappa.matchers.NothingMatcher;
+import com.github.fge.grappa.matchers.StringIgnoreCaseMatcher;
+import com.github.fge.grappa.matchers.StringMatcher;
+import com.github.fge.grappa.matchers.base.Matcher;
+import com.github.fge.grappa.matchers.join.JoinMatcher;
+import com.github.fge.grappa.matchers.repeat.RepeatMatcher;
+import com.github.fge.grappa.matchers.unicode.CodePointMatcher;
+import com.github.fge.grappa.matchers.wrap.MemoizingMatcher;
+import com.github.fge.grappa.matchers.wrap.VarFramingMatcher;
+import com.google.common.base.Equivalence;
+import com.google.common.collect.ImmutableSet;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Replaces structurally identical subgraphs with a single instance
+ *
+ * <p>Two matchers are identical if they are of the same class, have the same
+ * label, the same parameters (character, string, number of cycles...) and
+ * their children are the same instances; since the graph is rewritten bottom
+ * up, this is enough to detect identical subgraphs of any depth.</p>
+ *
+ * <p>Actions, var framing matchers and matchers unknown to this pass are never
+ * considered identical to anything but themselves. Sharing matchers does not
+ * change what a parse does, but it makes the graph smaller and helps runners
+ * which key their state on matcher instances, such as the {@link
+ * com.github.fge.grappa.run.MemoizingParseRunner}.</p>
+ */
+@ParametersAreNonnullByDefault
+public final class HashConsingPass
+    extends OptimizationPass
+{
+    private static final Set<Class<?>> PLAIN_TERMINALS
+        = ImmutableSet.<Class<?>>of(EmptyMatcher.class, NothingMatcher.class,
+        AnyMatcher.class, EndOfInputMatcher.class);
+
+    private final Map<List<Object>, Matcher> instances = new HashMap<>();
+
+    @Override
+    public String getName()
+    {
+        return "hashCons";
+    }
+
+    @Override
+    protected void start(final Matcher root)
+    {
+        instances.clear();
+    }
+
+    @Override
+    protected Matcher rewrite(final Matcher matcher, final PassReport report)
+    {
+        final List<Object> key = keyOf(matcher);
+
+        if (key == null)
+            return matcher;
+
+        final Matcher instance = instances.get(key);
+
+        if (instance == null) {
+            instances.put(key, matcher);
+            return matcher;
+        }
+
+        if (instance != matcher)
+            report.record("%s: shared with an identical matcher", matcher);
+        return instance;
+    }
+
+    @Nullable
+    private static List<Object> keyOf(final Matcher matcher)
+    {
+        final Class<?> c = matcher.getClass();
+        final List<Object> key = new ArrayList<>();
+
+        key.add(c);
+        key.add(matcher.getLabel());
+        key.add(matcher.hasCustomLabel());
+
+        if (PLAIN_TERMINALS.contains(c))
+            return key;
+
+        if (matcher instanceof CharMatcher) {
+            key.add(((CharMatcher) matcher).getCharacter());
+            return key;
+        }
+
+        if (matcher instanceof CharIgnoreCaseMatcher) {
+            final CharIgnoreCaseMatcher m = (CharIgnoreCaseMatcher) matcher;
+            key.addAll(Arrays.asList(m.getLowerBound(), m.getUpperBound()));
+            return key;
+        }
+
+        if (matcher instanceof CharRangeMatcher) {
+            final CharRangeMatcher m = (CharRangeMatcher) matcher;
+            key.addAll(Arrays.asList(m.getLowerBound(), m.getUpperBound()));
+            return key;
+        }
+
+        if (matcher instanceof AnyOfMatcher) {
+            key.add(((AnyOfMatcher) matcher).getCharacters());
+            return key;
+        }
+
+        if (matcher instanceof StringMatcher) {
+            key.add(((StringMatcher) matcher).getString());
+            return key;
+        }
+
+        if (matcher instanceof StringIgnoreCaseMatcher) {
+            key.add(((StringIgnoreCaseMatcher) matcher).getString());
+            return key;
+        }
+
+        if (matcher instanceof CodePointMatcher) {
+            key.add(((CodePointMatcher) matcher).getCodePoint());
+            return key;
+        }
+
+        if (c == VarFramingMatcher.class || c == MemoizingMatcher.class
+            || !MatcherRebuilder.canRebuild(matcher))
+            return null;
+
+        if (matcher instanceof RepeatMatcher) {
+            final RepeatMatcher m = (RepeatMatcher) matcher;
+            key.addAll(Arrays.asList(m.getMinCycles(), m.getMaxCycles()));
+        } else if (matcher instanceof JoinMatcher) {
+            final JoinMatcher m = (JoinMatcher) matcher;
+            key.addAll(Arrays.asList(m.getMinCycles(), m.getMaxCycles()));
+        }
+
+        final Equivalence<Object> identity = Equivalence.identity();
+        for (final Matcher child: matcher.getChildren())
+            key.add(identity.wrap(child));
+
+        return key;
+    }
+}
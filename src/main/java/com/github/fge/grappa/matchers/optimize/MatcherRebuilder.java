@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.matchers.optimize;
+
+import com.github.fge.grappa.matchers.base.Matcher;
+import com.github.fge.grappa.matchers.delegate.FirstOfMatcher;
+import com.github.fge.grappa.matchers.delegate.OptionalMatcher;
+import com.github.fge.grappa.matchers.delegate.SequenceMatcher;
+import com.github.fge.grappa.matchers.join.BoundedBothJoinMatcher;
+import com.github.fge.grappa.matchers.join.BoundedDownJoinMatcher;
+import com.github.fge.grappa.matchers.join.BoundedUpJoinMatcher;
+import com.github.fge.grappa.matchers.join.ExactMatchesJoinMatcher;
+import com.github.fge.grappa.matchers.join.JoinMatcher;
+import com.github.fge.grappa.matchers.predicates.TestMatcher;
+import com.github.fge.grappa.matchers.predicates.TestNotMatcher;
+import com.github.fge.grappa.matchers.repeat.BoundedBothRepeatMatcher;
+import com.github.fge.grappa.matchers.repeat.BoundedDownRepeatMatcher;
+import com.github.fge.grappa.matchers.repeat.BoundedUpRepeatMatcher;
+import com.github.fge.grappa.matchers.repeat.ExactMatchesRepeatMatcher;
+import com.github.fge.grappa.matchers.repeat.RepeatMatcher;
+import com.github.fge.grappa.matchers.wrap.MemoizingMatcher;
+import com.github.fge.grappa.matchers.wrap.VarFramingMatcher;
+import com.github.fge.grappa.rules.Rule;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Utility methods to rebuild composite matchers with new children
+ *
+ * <p>Only the composite matchers shipped with grappa can be rebuilt; subclasses
+ * of them are not, since they may carry behaviour of their own. Custom labels
+ * are preserved.</p>
+ */
+@ParametersAreNonnullByDefault
+public final class MatcherRebuilder
+{
+    private static final Set<Class<?>> REBUILDABLE
+        = ImmutableSet.<Class<?>>of(SequenceMatcher.class,
+        FirstOfMatcher.class, OptionalMatcher.class, TestMatcher.class,
+        TestNotMatcher.class, VarFramingMatcher.class, MemoizingMatcher.class,
+        BoundedBothRepeatMatcher.class, BoundedDownRepeatMatcher.class,
+        BoundedUpRepeatMatcher.class, ExactMatchesRepeatMatcher.class,
+        BoundedBothJoinMatcher.class, BoundedDownJoinMatcher.class,
+        BoundedUpJoinMatcher.class, ExactMatchesJoinMatcher.class);
+
+    private MatcherRebuilder()
+    {
+    }
+
+    /**
+     * Tell whether a matcher can be rebuilt
+     *
+     * @param matcher the matcher
+     * @return true if {@link #rebuild(Matcher, List)} can be used
+     */
+    public static boolean canRebuild(final Matcher matcher)
+    {
+        return REBUILDABLE.contains(matcher.getClass());
+    }
+
+    /**
+     * Return the matchers which {@link #rebuild(Matcher, List)} expects
+     *
+     * <p>This is the list of children of the matcher, except for var framing
+     * and memoizing matchers where it is the wrapped matcher.</p>
+     *
+     * @param matcher the matcher
+     * @return the list of children
+     */
+    public static List<Matcher> childrenOf(final Matcher matcher)
+    {
+        if (matcher instanceof VarFramingMatcher)
+            return ImmutableList.of(((VarFramingMatcher) matcher).getInner());
+        if (matcher instanceof MemoizingMatcher)
+            return ImmutableList.of(((MemoizingMatcher) matcher).getInner());
+        return matcher.getChildren();
+    }
+
+    /**
+     * Rebuild a matcher with new children
+     *
+     * @param matcher the original matcher
+     * @param children the new children
+     * @return a new matcher
+     * @throws IllegalArgumentException matcher cannot be rebuilt, or the
+     * number of children is wrong
+     *
+     * @see #canRebuild(Matcher)
+     */
+    public static Matcher rebuild(final Matcher matcher,
+        final List<Matcher> children)
+    {
+        final Class<?> c = matcher.getClass();
+        if (!REBUILDABLE.contains(c))
+            throw new IllegalArgumentException("don't know how to rebuild "
+                + "matchers of class " + c.getName());
+
+        final Rule[] rules = children.toArray(new Rule[children.size()]);
+
+        if (c == SequenceMatcher.class)
+            return relabel(matcher, new SequenceMatcher(rules));
+        if (c == FirstOfMatcher.class)
+            return relabel(matcher, new FirstOfMatcher(rules));
+
+        if (c == VarFramingMatcher.class) {
+            checkChildren(matcher, rules, 1);
+            return ((VarFramingMatcher) matcher).withInner(rules[0]);
+        }
+        if (c == MemoizingMatcher.class) {
+            checkChildren(matcher, rules, 1);
+            return ((MemoizingMatcher) matcher).withInner(rules[0]);
+        }
+
+        if (c == OptionalMatcher.class) {
+            checkChildren(matcher, rules, 1);
+            return relabel(matcher, new OptionalMatcher(rules[0]));
+        }
+        if (c == TestMatcher.class) {
+            checkChildren(matcher, rules, 1);
+            return relabel(matcher, new TestMatcher(rules[0]));
+        }
+        if (c == TestNotMatcher.class) {
+            checkChildren(matcher, rules, 1);
+            return relabel(matcher, new TestNotMatcher(rules[0]));
+        }
+
+        if (matcher instanceof RepeatMatcher) {
+            checkChildren(matcher, rules, 1);
+            final RepeatMatcher repeat = (RepeatMatcher) matcher;
+            return relabel(matcher, rebuildRepeat(rules[0],
+                repeat.getMinCycles(), repeat.getMaxCycles()));
+        }
+
+        checkChildren(matcher, rules, 2);
+        final JoinMatcher join = (JoinMatcher) matcher;
+        return relabel(matcher, rebuildJoin(rules[0], rules[1],
+            join.getMinCycles(), join.getMaxCycles()));
+    }
+
+    private static Matcher rebuildRepeat(final Rule rule, final int min,
+        final int max)
+    {
+        if (max == Integer.MAX_VALUE)
+            return new BoundedDownRepeatMatcher(rule, min);
+        if (min == 0)
+            return new BoundedUpRepeatMatcher(rule, max);
+        return min == max ? new ExactMatchesRepeatMatcher(rule, min)
+            : new BoundedBothRepeatMatcher(rule, min, max);
+    }
+
+    private static Matcher rebuildJoin(final Rule joined, final Rule joining,
+        final int min, final int max)
+    {
+        if (max == Integer.MAX_VALUE)
+            return new BoundedDownJoinMatcher(joined, joining, min);
+        if (min == 0)
+            return new BoundedUpJoinMatcher(joined, joining, max);
+        return min == max ? new ExactMatchesJoinMatcher(joined, joining, min)
+            : new BoundedBothJoinMatcher(joined, joining, min, max);
+    }
+
+    private static Matcher relabel(final Matcher original,
+        final Matcher rebuilt)
+    {
+        return original.hasCustomLabel()
+            ? (Matcher) rebuilt.label(original.getLabel())
+            : rebuilt;
+    }
+
+    private static void checkChildren(final Matcher matcher,
+        final Rule[] rules, final int expected)
+    {
+        if (rules.length != expected)
+            throw new IllegalArgumentException("matcher " + matcher
+                + " expects " + expected + " child(ren), got "
+                + rules.length);
+    }
+}
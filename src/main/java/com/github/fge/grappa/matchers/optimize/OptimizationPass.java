@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.matchers.optimize;
+
+import com.github.fge.grappa.matchers.ActionMatcher;
+import com.github.fge.grappa.matchers.base.Matcher;
+import com.github.fge.grappa.matchers.wrap.ProxyMatcher;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * One rewrite pass over a rule graph
+ *
+ * <p>The {@link GrammarOptimizer} walks the graph depth first and calls two
+ * hooks on each matcher:</p>
+ *
+ * <ul>
+ *     <li>{@link #enter(Matcher, PassReport)} before the children of the
+ *     matcher are visited; if it returns a matcher, this matcher replaces the
+ *     original and the children are not visited at all;</li>
+ *     <li>{@link #rewrite(Matcher, PassReport)} after the children have been
+ *     rewritten; the matcher passed as an argument is a copy of the original
+ *     with the rewritten children if any of them changed.</li>
+ * </ul>
+ *
+ * <p>Rewrites must preserve the language matched by the grammar <em>and</em>
+ * what actions see (their position in sequences, the value stack). Labels are
+ * not considered to be semantics, but passes should avoid dropping custom
+ * labels.</p>
+ *
+ * <p>Proxies are never handed to either hook; cycles in the graph are taken
+ * care of by the optimizer. Note however that while a cycle is being rewritten,
+ * children of a matcher may be {@link ProxyMatcher}s which are not armed yet:
+ * passes must not call any method on such children.</p>
+ *
+ * <p>A pass instance is used by one optimization run at a time; {@link
+ * #start(Matcher)} is called before each run so that passes can reset their
+ * state.</p>
+ */
+@ParametersAreNonnullByDefault
+public abstract class OptimizationPass
+{
+    /**
+     * Return the name of this pass, as it will appear in reports
+     *
+     * @return the name
+     */
+    public abstract String getName();
+
+    /**
+     * Called before the graph is walked
+     *
+     * @param root the root of the graph
+     */
+    protected void start(final Matcher root)
+    {
+    }
+
+    /**
+     * Pre-order hook
+     *
+     * <p>The default implementation returns null.</p>
+     *
+     * @param matcher the matcher
+     * @param report the report for this pass
+     * @return a replacement matcher, or null to visit the children normally
+     */
+    @Nullable
+    protected Matcher enter(final Matcher matcher, final PassReport report)
+    {
+        return null;
+    }
+
+    /**
+     * Post-order hook
+     *
+     * <p>The default implementation returns its argument.</p>
+     *
+     * @param matcher the matcher, its children already rewritten
+     * @param report the report for this pass
+     * @return the matcher to use instead (may be the argument)
+     */
+    protected Matcher rewrite(final Matcher matcher, final PassReport report)
+    {
+        return matcher;
+    }
+
+    /**
+     * Tell whether a matcher is an action
+     *
+     * <p>Actions see the match of the sibling which precedes them in a
+     * sequence; passes must take care not to change what this sibling is.</p>
+     *
+     * @param matcher the matcher
+     * @return true if this is an {@link ActionMatcher}
+     */
+    protected static boolean isAction(final Matcher matcher)
+    {
+        return ProxyMatcher.unwrap(matcher) instanceof ActionMatcher;
+    }
+
+    @Override
+    public final String toString()
+    {
+        return getName();
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.matchers.optimize;
+
+import com.github.fge.grappa.rules.Rule;
+import com.google.common.collect.ImmutableList;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The outcome of a {@link GrammarOptimizer} run
+ *
+ * <p>This contains the rewritten rule and one {@link PassReport} per pass, in
+ * the order the passes were run.</p>
+ */
+@Immutable
+@ParametersAreNonnullByDefault
+public final class OptimizationResult
+{
+    private final Rule rule;
+    private final List<PassReport> reports;
+
+    OptimizationResult(final Rule rule, final List<PassReport> reports)
+    {
+        this.rule = Objects.requireNonNull(rule, "rule");
+        this.reports = ImmutableList.copyOf(reports);
+    }
+
+    public Rule getRule()
+    {
+        return rule;
+    }
+
+    public List<PassReport> getReports()
+    {
+        return reports;
+    }
+
+    /**
+     * Tell whether any pass changed the grammar
+     *
+     * @return true if at least one report has changes
+     */
+    public boolean hasChanges()
+    {
+        for (final PassReport report: reports)
+            if (report.hasChanges())
+                return true;
+        return false;
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder("optimization of ")
+            .append(rule);
+        for (final PassReport report: reports)
+            sb.append('\n').append(report);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.matchers.optimize;
+
+import com.google.common.collect.ImmutableList;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The changes made by one {@link OptimizationPass} during one optimization run
+ *
+ * <p>Passes record one human readable line per change they make; a report with
+ * no changes means the pass left the grammar untouched.</p>
+ */
+@ParametersAreNonnullByDefault
+public final class PassReport
+{
+    private final String passName;
+    private final List<String> changes = new ArrayList<>();
+
+    PassReport(final String passName)
+    {
+        this.passName = Objects.requireNonNull(passName, "passName");
+    }
+
+    /**
+     * Record a change
+     *
+     * @param format the format string
+     * @param args the format arguments
+     *
+     * @see String#format(String, Object...)
+     */
+    public void record(final String format, final Object... args)
+    {
+        Objects.requireNonNull(format, "format");
+        changes.add(String.format(format, args));
+    }
+
+    public String getPassName()
+    {
+        return passName;
+    }
+
+    public List<String> getChanges()
+    {
+        return ImmutableList.copyOf(changes);
+    }
+
+    public boolean hasChanges()
+    {
+        return !changes.isEmpty();
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder(passName).append(": ");
+
+        if (changes.isEmpty())
+            return sb.append("no changes").toString();
+
+        sb.append(changes.size()).append(" change(s)");
+        for (final String change: changes)
+            sb.append("\n    ").append(change);
+        return sb.toString();
+    }
+}
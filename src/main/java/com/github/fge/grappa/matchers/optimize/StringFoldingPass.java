@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.matchers.optimize;
+
+import com.github.fge.grappa.matchers.CharMatcher;
+import com.github.fge.grappa.matchers.StringMatcher;
+import com.github.fge.grappa.matchers.base.Matcher;
+import com.github.fge.grappa.matchers.delegate.SequenceMatcher;
+import com.github.fge.grappa.support.Chars;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Folds runs of character and string literals in a sequence into a single
+ * {@link StringMatcher}
+ *
+ * <p>For instance, {@code sequence('a', 'b', "cd")} becomes {@code "abcd"}.
+ * Literals with a custom label and literals containing {@link Chars#EOI} are
+ * left alone. If a run is followed by an action, its last element is kept
+ * apart so that the action still sees the same match.</p>
+ */
+@ParametersAreNonnullByDefault
+public final class StringFoldingPass
+    extends OptimizationPass
+{
+    @Override
+    public String getName()
+    {
+        return "foldStrings";
+    }
+
+    @Override
+    protected Matcher rewrite(final Matcher matcher, final PassReport report)
+    {
+        if (matcher.getClass() != SequenceMatcher.class)
+            return matcher;
+
+        final List<Matcher> children = matcher.getChildren();
+        final int size = children.size();
+        final List<Matcher> newChildren = new ArrayList<>(size);
+        final StringBuilder sb = new StringBuilder();
+
+        int folded = 0;
+        int start = 0;
+        int end;
+        String literal;
+
+        while (start < size) {
+            end = start;
+            while (end < size && literalOf(children.get(end)) != null)
+                end++;
+            if (end < size && isAction(children.get(end)) && end > start)
+                end--;
+
+            if (end - start < 2) {
+                newChildren.add(children.get(start));
+                start++;
+                continue;
+            }
+
+            sb.setLength(0);
+            for (int i = start; i < end; i++) {
+                literal = literalOf(children.get(i));
+                sb.append(literal);
+            }
+            newChildren.add(new StringMatcher(sb.toString()));
+            folded += end - start;
+            start = end;
+        }
+
+        if (folded == 0)
+            return matcher;
+
+        report.record("%s: folded %d literal(s) into %d string(s)", matcher,
+            folded, folded - size + newChildren.size());
+
+        if (newChildren.size() == 1 && !matcher.hasCustomLabel())
+            return newChildren.get(0);
+
+        return MatcherRebuilder.rebuild(matcher, newChildren);
+    }
+
+    /*
+     * Return the literal matched by a matcher, or null if it is not a literal
+     * we can fold
+     */
+    @Nullable
+    private static String literalOf(final Matcher matcher)
+    {
+        final String ret;
+
+        if (matcher instanceof CharMatcher) {
+            final char c = ((CharMatcher) matcher).getCharacter();
+            if (!matcher.getLabel().equals(new CharMatcher(c).getLabel()))
+                return null;
+            ret = String.valueOf(c);
+        } else if (matcher instanceof StringMatcher) {
+            ret = ((StringMatcher) matcher).getString();
+            if (!matcher.getLabel().equals(new StringMatcher(ret).getLabel()))
+                return null;
+        } else
+            return null;
+
+        return ret.indexOf(Chars.EOI) == -1 ? ret : null;
+    }
+}
@@ -31,7 +31,7 @@ import java.util.Objects;
 public final class TestMatcher
     extends CustomDefaultLabelMatcher<TestMatcher>
 {
-    private final Matcher subMatcher;
+    private volatile Matcher subMatcher;
 
     public TestMatcher(final Rule subRule)
     {
@@ -45,6 +45,12 @@ public final class TestMatcher
         return MatcherType.PREDICATE;
     }
 
+    @Override
+    protected void childrenChanged()
+    {
+        subMatcher = getChildren().get(0);
+    }
+
     @Override
     public <V> boolean match(final MatcherContext<V> context)
     {
@@ -31,7 +31,7 @@ import java.util.Objects;
 public final class TestNotMatcher
     extends CustomDefaultLabelMatcher<TestNotMatcher>
 {
-    private final Matcher subMatcher;
+    private volatile Matcher subMatcher;
 
     public TestNotMatcher(final Rule subRule)
     {
@@ -45,6 +45,12 @@ public final class TestNotMatcher
         return MatcherType.PREDICATE;
     }
 
+    @Override
+    protected void childrenChanged()
+    {
+        subMatcher = getChildren().get(0);
+    }
+
     @Override
     public <V> boolean match(final MatcherContext<V> context)
     {
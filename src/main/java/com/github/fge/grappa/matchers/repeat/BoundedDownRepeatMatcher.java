@@ -13,6 +13,18 @@ public final class BoundedDownRepeatMatcher
         this.minCycles = minCycles;
     }
 
+    @Override
+    public int getMinCycles()
+    {
+        return minCycles;
+    }
+
+    @Override
+    public int getMaxCycles()
+    {
+        return Integer.MAX_VALUE;
+    }
+
     @Override
     protected boolean enoughCycles(final int cycles)
     {
@@ -13,6 +13,18 @@ public final class ExactMatchesRepeatMatcher
         this.nrCycles = nrCycles;
     }
 
+    @Override
+    public int getMinCycles()
+    {
+        return nrCycles;
+    }
+
+    @Override
+    public int getMaxCycles()
+    {
+        return nrCycles;
+    }
+
     @Override
     protected boolean enoughCycles(final int cycles)
     {
@@ -26,7 +26,7 @@ import com.github.fge.grappa.run.context.MatcherContext;
 public abstract class RepeatMatcher
     extends AbstractMatcher
 {
-    private final Matcher matcher;
+    private volatile Matcher matcher;
 
     protected RepeatMatcher(final Rule subRule)
     {
@@ -40,6 +40,12 @@ public abstract class RepeatMatcher
         return MatcherType.COMPOSITE;
     }
 
+    @Override
+    protected void childrenChanged()
+    {
+        matcher = getChildren().get(0);
+    }
+
     @Override
     public <V> boolean match(final MatcherContext<V> context)
     {
@@ -62,6 +68,21 @@ public abstract class RepeatMatcher
         return enoughCycles(cycles);
     }
 
+    /**
+     * Get the minimum number of cycles for this matcher to succeed
+     *
+     * @return the minimum number of cycles
+     */
+    public abstract int getMinCycles();
+
+    /**
+     * Get the maximum number of cycles this matcher will run
+     *
+     * @return the maximum number of cycles ({@link Integer#MAX_VALUE} if
+     * unbounded)
+     */
+    public abstract int getMaxCycles();
+
     protected abstract boolean enoughCycles(final int cycles);
 
     protected abstract boolean runAgain(final int cycles);
@@ -45,6 +45,11 @@ public final class CaseInsensitiveTrieMatcher
         return MatcherType.TERMINAL;
     }
 
+    public Trie getTrie()
+    {
+        return trie;
+    }
+
     /**
      * Tries a match on the given MatcherContext.
      *
@@ -55,29 +60,14 @@ public final class CaseInsensitiveTrieMatcher
     public <V> boolean match(final MatcherContext<V> context)
     {
         /*
-         * Since the trie knows about the length of its possible longest match,
-         * extract that many characters from the buffer. Remind that .extract()
-         * will adjust illegal indices automatically.
-         *
-         * Convert the word to lowercase, since all characters are stored as
-         * lowercase in the trie.
-         */
-        final int maxLength = trie.getMaxLength();
-        final int index = context.getCurrentIndex();
-        final String input = context.getInputBuffer()
-            .extract(index, index + maxLength);
-
-        /*
-         * We now just have to trie and search... (pun intended)
+         * The trie walks the input buffer directly, and returns the length of
+         * the longest match, or -1 if there is no match.
          */
-        final int ret = trie.search(input, true);
+        final int ret = trie.search(context.getInputBuffer(),
+            context.getCurrentIndex(), true);
         if (ret == -1)
             return false;
 
-        /*
-         * and since the result, when positive, is the length of the match,
-         * advance the index in the buffer by that many positions.
-         */
         context.advanceIndex(ret);
         return true;
     }
@@ -16,9 +16,17 @@
 
 package com.github.fge.grappa.matchers.trie;
 
+import com.github.fge.grappa.buffers.InputBuffer;
+import com.github.fge.grappa.support.Chars;
 import com.google.common.annotations.Beta;
 
 import javax.annotation.concurrent.Immutable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
 
 /**
  * "User-facing" class of a {@link TrieMatcher}
@@ -32,8 +40,12 @@ import javax.annotation.concurrent.Immutable;
  * target="_blank">radix tree</a>, but it is efficient enough that searching
  * for a string among a series of strings is very fast.</p>
  *
- * <p>The core of the trie search algorithm is implemented by {@link
- * TrieNode}.</p>
+ * <p>The trie is built using {@link TrieNodeBuilder}s, then flattened into
+ * arrays: nodes are numbered in breadth first order (the root node being node
+ * 0), and the transitions of all nodes are stored in one array of characters,
+ * sorted for each node, along with an array of target nodes. The transitions
+ * from the root node for ASCII characters are also available in a dense table.
+ * Searching is therefore a simple loop which allocates nothing.</p>
  *
  * @since 1.0.0-beta.6
  */
@@ -41,9 +53,31 @@ import javax.annotation.concurrent.Immutable;
 @Beta
 public final class Trie
 {
+    private static final int ASCII_SIZE = 128;
+
     private final int nrWords;
     private final int maxLength;
-    private final TrieNode node;
+
+    /*
+     * Whether a node matches a full word
+     */
+    private final boolean[] fullWord;
+    /*
+     * Transitions of node n are at indices edgeStart[n] (inclusive) to
+     * edgeStart[n + 1] (exclusive) of edgeChars and edgeTargets
+     */
+    private final int[] edgeStart;
+    private final char[] edgeChars;
+    private final int[] edgeTargets;
+    /*
+     * Transitions from the root node for ASCII characters, -1 if none
+     */
+    private final int[] rootTable = new int[ASCII_SIZE];
+    /*
+     * If one of the words contains EOI, we need to bound searches in input
+     * buffers to their length; see InputBuffer#charAt()
+     */
+    private final boolean checkLength;
 
     /**
      * Create a new builder for this class
@@ -75,21 +109,160 @@ public final class Trie
         return maxLength;
     }
 
+    /**
+     * Get the characters which words in this trie start with
+     *
+     * @return a sorted array of characters
+     */
+    public char[] getFirstChars()
+    {
+        return Arrays.copyOfRange(edgeChars, edgeStart[0], edgeStart[1]);
+    }
+
     /**
      * Search for a string into this trie
      *
      * @param needle the string to search
+     * @param ignoreCase whether to ignore case
      * @return the length of the match (ie, the string) or -1 if not found
      */
     public int search(final String needle, final boolean ignoreCase)
     {
-        return node.search(needle, ignoreCase);
+        final int length = needle.length();
+
+        int node = 0;
+        int ret = fullWord[0] ? 0 : -1;
+
+        for (int i = 0; i < length; i++) {
+            node = transition(node, needle.charAt(i), ignoreCase);
+            if (node == -1)
+                break;
+            if (fullWord[node])
+                ret = i + 1;
+        }
+
+        return ret;
+    }
+
+    /**
+     * Search for the longest match in an input buffer at a given index
+     *
+     * @param buffer the input buffer
+     * @param index the index in the buffer
+     * @param ignoreCase whether to ignore case
+     * @return the length of the match or -1 if not found
+     */
+    public int search(final InputBuffer buffer, final int index,
+        final boolean ignoreCase)
+    {
+        final int limit = checkLength
+            ? Math.min(maxLength, buffer.length() - index) : maxLength;
+
+        int node = 0;
+        int ret = fullWord[0] ? 0 : -1;
+
+        for (int i = 0; i < limit; i++) {
+            node = transition(node, buffer.charAt(index + i), ignoreCase);
+            if (node == -1)
+                break;
+            if (fullWord[node])
+                ret = i + 1;
+        }
+
+        return ret;
     }
 
     Trie(final TrieBuilder builder)
     {
         nrWords = builder.nrWords;
         maxLength = builder.maxLength;
-        node = builder.nodeBuilder.build();
+
+        /*
+         * Number the nodes in breadth first order
+         */
+        final List<TrieNodeBuilder> nodes = new ArrayList<>();
+        final Deque<TrieNodeBuilder> queue = new ArrayDeque<>();
+
+        queue.add(builder.nodeBuilder);
+
+        int nrEdges = 0;
+        TrieNodeBuilder node;
+
+        while (!queue.isEmpty()) {
+            node = queue.remove();
+            nodes.add(node);
+            nrEdges += node.getSubnodes().size();
+            queue.addAll(node.getSubnodes().values());
+        }
+
+        final int nrNodes = nodes.size();
+
+        fullWord = new boolean[nrNodes];
+        edgeStart = new int[nrNodes + 1];
+        edgeChars = new char[nrEdges];
+        edgeTargets = new int[nrEdges];
+
+        /*
+         * Since nodes are numbered in breadth first order, and subnodes are
+         * sorted, the children of a node are numbered right after the children
+         * of the node before it.
+         */
+        int edge = 0;
+        int target = 1;
+        boolean hasEoi = false;
+
+        for (int i = 0; i < nrNodes; i++) {
+            node = nodes.get(i);
+            fullWord[i] = node.isFullWord();
+            edgeStart[i] = edge;
+            for (final Map.Entry<Character, TrieNodeBuilder> entry:
+                node.getSubnodes().entrySet()) {
+                edgeChars[edge] = entry.getKey();
+                edgeTargets[edge] = target++;
+                hasEoi |= edgeChars[edge] == Chars.EOI;
+                edge++;
+            }
+        }
+        edgeStart[nrNodes] = edge;
+
+        checkLength = hasEoi;
+
+        Arrays.fill(rootTable, -1);
+        for (int i = edgeStart[0]; i < edgeStart[1]; i++)
+            if (edgeChars[i] < ASCII_SIZE)
+                rootTable[edgeChars[i]] = edgeTargets[i];
+    }
+
+    /*
+     * Find the node reached from a node using a given character, -1 if none;
+     * when ignoring case, the character is tried as is first, then with its
+     * case swapped if it has one.
+     */
+    private int transition(final int node, final char c,
+        final boolean ignoreCase)
+    {
+        final int ret = step(node, c);
+
+        if (ret != -1 || !ignoreCase)
+            return ret;
+
+        final boolean isUpper = Character.isUpperCase(c);
+
+        if (isUpper == Character.isLowerCase(c))
+            return -1;
+
+        return step(node, isUpper ? Character.toLowerCase(c)
+            : Character.toUpperCase(c));
+    }
+
+    private int step(final int node, final char c)
+    {
+        if (node == 0 && c < ASCII_SIZE)
+            return rootTable[c];
+
+        final int index = Arrays.binarySearch(edgeChars, edgeStart[node],
+            edgeStart[node + 1], c);
+
+        return index < 0 ? -1 : edgeTargets[index];
     }
 }
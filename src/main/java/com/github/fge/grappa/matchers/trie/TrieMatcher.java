@@ -55,6 +55,11 @@ public final class TrieMatcher
         return MatcherType.TERMINAL;
     }
 
+    public Trie getTrie()
+    {
+        return trie;
+    }
+
     /**
      * Tries a match on the given MatcherContext.
      *
@@ -65,26 +70,14 @@ public final class TrieMatcher
     public <V> boolean match(final MatcherContext<V> context)
     {
         /*
-         * Since the trie knows about the length of its possible longest match,
-         * extract that many characters from the buffer. Remind that .extract()
-         * will adjust illegal indices automatically.
-         */
-        final int maxLength = trie.getMaxLength();
-        final int index = context.getCurrentIndex();
-        final String input = context.getInputBuffer()
-            .extract(index, index + maxLength);
-
-        /*
-         * We now just have to trie and search... (pun intended)
+         * The trie walks the input buffer directly, and returns the length of
+         * the longest match, or -1 if there is no match.
          */
-        final int ret = trie.search(input, false);
+        final int ret = trie.search(context.getInputBuffer(),
+            context.getCurrentIndex(), false);
         if (ret == -1)
             return false;
 
-        /*
-         * and since the result, when positive, is the length of the match,
-         * advance the index in the buffer by that many positions.
-         */
         context.advanceIndex(ret);
         return true;
     }
@@ -74,6 +74,16 @@ public final class TrieNodeBuilder
         builder.doAddWord(buffer);
     }
 
+    boolean isFullWord()
+    {
+        return fullWord;
+    }
+
+    Map<Character, TrieNodeBuilder> getSubnodes()
+    {
+        return subnodes;
+    }
+
     public TrieNode build()
     {
         final char[] nextChars = new char[subnodes.size()];
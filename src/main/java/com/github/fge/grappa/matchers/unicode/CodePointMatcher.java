@@ -46,6 +46,11 @@ public final class CodePointMatcher
         return MatcherType.TERMINAL;
     }
 
+    public int getCodePoint()
+    {
+        return codePoint;
+    }
+
     @Override
     public <V> boolean match(final MatcherContext<V> context)
     {
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.matchers.wrap;
+
+import com.github.fge.grappa.annotations.Memoized;
+import com.github.fge.grappa.buffers.InputBuffer;
+import com.github.fge.grappa.matchers.MatcherType;
+import com.github.fge.grappa.matchers.base.Matcher;
+import com.github.fge.grappa.rules.Rule;
+import com.github.fge.grappa.run.context.DefaultMatcherContext;
+import com.github.fge.grappa.run.context.MatcherContext;
+import com.github.fge.grappa.run.memo.MemoEntry;
+import com.github.fge.grappa.run.memo.PositionTable;
+import com.github.fge.grappa.stack.ValueStack;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Wrapping matcher memoizing the outcome of its inner matcher per position
+ *
+ * <p>This is the matcher generated for rules annotated with {@link Memoized}.
+ * </p>
+ *
+ * <p>Outcomes are only valid for a given parsing run; a run is identified by
+ * its input buffer, its value stack and, since a {@link
+ * com.github.fge.grappa.run.BatchParseRunner} reuses both, the {@link
+ * DefaultMatcherContext#getRunId() run identifier} of its contexts. Memo
+ * tables are kept per thread, so that a matcher can be shared by parse
+ * runners used concurrently, and are bounded in size.</p>
+ *
+ * @see MemoEntry
+ */
+public final class MemoizingMatcher
+    implements Matcher
+{
+    private static final int MAX_ENTRIES = 1 << 18;
+
+    private final Matcher inner;
+
+    private final ThreadLocal<RunState> state = new ThreadLocal<RunState>()
+    {
+        @Override
+        protected RunState initialValue()
+        {
+            return new RunState();
+        }
+    };
+
+    public MemoizingMatcher(final Rule inner)
+    {
+        this.inner = Objects.requireNonNull((Matcher) inner, "inner");
+    }
+
+    /**
+     * Return the wrapped matcher
+     *
+     * @return the inner matcher
+     */
+    public Matcher getInner()
+    {
+        return inner;
+    }
+
+    /**
+     * Return a new memoizing matcher with a different inner rule
+     *
+     * @param inner the new inner rule
+     * @return a new matcher
+     */
+    public MemoizingMatcher withInner(final Rule inner)
+    {
+        return new MemoizingMatcher(inner);
+    }
+
+    @Override
+    public MatcherType getType()
+    {
+        return inner.getType();
+    }
+
+    @Override
+    public <V> boolean match(final MatcherContext<V> context)
+    {
+        final ValueStack<V> stack = context.getValueStack();
+        final PositionTable table = state.get().tableFor(context);
+        final int index = context.getCurrentIndex();
+        final MemoEntry entry = table.get(index);
+
+        if (entry != null && entry.replay(stack)) {
+            if (entry.isSuccess())
+                context.setCurrentIndex(entry.getEndIndex());
+            return entry.isSuccess();
+        }
+
+        final MemoEntry newEntry = MemoEntry.match(inner, context);
+
+        table.put(index, newEntry);
+        return newEntry.isSuccess();
+    }
+
+    // GraphNode
+
+    @Override
+    public List<Matcher> getChildren()
+    {
+        return inner.getChildren();
+    }
+
+    // Rule
+
+    @Override
+    public Rule label(final String label)
+    {
+        return new MemoizingMatcher(inner.label(label));
+    }
+
+    // Matcher
+
+    @Override
+    public String getLabel()
+    {
+        return inner.getLabel();
+    }
+
+    @Override
+    public boolean hasCustomLabel()
+    {
+        return inner.hasCustomLabel();
+    }
+
+    @Override
+    public <V> MatcherContext<V> getSubContext(final MatcherContext<V> context)
+    {
+        final MatcherContext<V> subContext = inner.getSubContext(context);
+        // we need to inject ourselves here otherwise we get cut out
+        subContext.setMatcher(this);
+        return subContext;
+    }
+
+    @Override
+    public String toString()
+    {
+        return inner.toString();
+    }
+
+    /*
+     * The memo tables of one thread, valid for the run they were filled by;
+     * outcomes differ within predicates, where actions may be skipped
+     */
+    private static final class RunState
+    {
+        private final PositionTable outcomes = new PositionTable(MAX_ENTRIES);
+        private final PositionTable predicateOutcomes
+            = new PositionTable(MAX_ENTRIES);
+
+        private WeakReference<InputBuffer> buffer = new WeakReference<>(null);
+        private WeakReference<ValueStack<?>> stack = new WeakReference<>(null);
+        private long runId = 0L;
+
+        private PositionTable tableFor(final MatcherContext<?> context)
+        {
+            final InputBuffer currentBuffer = context.getInputBuffer();
+            final ValueStack<?> currentStack = context.getValueStack();
+            final long currentRunId = context instanceof DefaultMatcherContext
+                ? ((DefaultMatcherContext<?>) context).getRunId() : 0L;
+
+            if (buffer.get() != currentBuffer || stack.get() != currentStack
+                || runId != currentRunId) {
+                outcomes.clear();
+                predicateOutcomes.clear();
+                buffer = new WeakReference<>(currentBuffer);
+                stack = new WeakReference<ValueStack<?>>(currentStack);
+                runId = currentRunId;
+            }
+
+            return context.inPredicate() ? predicateOutcomes : outcomes;
+        }
+    }
+}
@@ -21,6 +21,7 @@ import com.github.fge.grappa.matchers.base.Matcher;
 import com.github.fge.grappa.rules.Rule;
 import com.github.fge.grappa.run.context.MatcherContext;
 import com.github.fge.grappa.support.Var;
+import com.google.common.collect.ObjectArrays;
 
 import java.util.List;
 import java.util.Objects;
@@ -41,6 +42,43 @@ public final class VarFramingMatcher
         this.variables = Objects.requireNonNull(variables, "variables");
     }
 
+    /**
+     * Return the wrapped matcher
+     *
+     * @return the inner matcher
+     */
+    public Matcher getInner()
+    {
+        return inner;
+    }
+
+    /**
+     * Return a new var framing matcher with the same variables but a
+     * different inner rule
+     *
+     * @param inner the new inner rule
+     * @return a new matcher
+     */
+    public VarFramingMatcher withInner(final Rule inner)
+    {
+        return new VarFramingMatcher(inner, variables);
+    }
+
+    /**
+     * Fold a var framing matcher wrapped by this one into a single matcher
+     *
+     * <p>The returned matcher wraps the inner matcher of {@code inner}, and
+     * frames the variables of both matchers.</p>
+     *
+     * @param inner the var framing matcher wrapped by this one
+     * @return a new matcher
+     */
+    public VarFramingMatcher fold(final VarFramingMatcher inner)
+    {
+        return new VarFramingMatcher(inner.inner,
+            ObjectArrays.concat(variables, inner.variables, Var.class));
+    }
+
     @Override
     public MatcherType getType()
     {
@@ -49,16 +87,29 @@ public final class VarFramingMatcher
 
     @Override
     public <V> boolean match(final MatcherContext<V> context)
+    {
+        enterFrames();
+        final boolean matched = inner.match(context);
+        exitFrames();
+        return matched;
+    }
+
+    /**
+     * Enter a new frame for all variables of this matcher
+     */
+    public void enterFrames()
     {
         for (final Var<?> var: variables)
             var.enterFrame();
+    }
 
-        final boolean matched = inner.match(context);
-
+    /**
+     * Exit the current frame of all variables of this matcher
+     */
+    public void exitFrames()
+    {
         for (final Var<?> var : variables)
             var.exitFrame();
-
-        return matched;
     }
 
     // GraphNode
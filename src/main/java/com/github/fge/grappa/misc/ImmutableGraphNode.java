@@ -39,8 +39,11 @@ public class ImmutableGraphNode<T extends GraphNode<T>>
      * frankly, also a mess) and regular lists.
      *
      * Find a way to separate.
+     *
+     * Volatile since children can be replaced (see setChildren()) while other
+     * threads match.
      */
-    private final List<T> children;
+    private volatile List<T> children;
 
     public ImmutableGraphNode()
     {
@@ -65,4 +68,15 @@ public class ImmutableGraphNode<T extends GraphNode<T>>
     {
         return children;
     }
+
+    /**
+     * Replace the children of this node
+     *
+     * @param children the new children
+     */
+    protected final void setChildren(@Nonnull final List<T> children)
+    {
+        Objects.requireNonNull(children);
+        this.children = ImmutableList.copyOf(children);
+    }
 }
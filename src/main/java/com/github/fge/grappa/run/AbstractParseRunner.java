@@ -20,13 +20,17 @@ import com.github.fge.grappa.buffers.CharSequenceInputBuffer;
 import com.github.fge.grappa.buffers.InputBuffer;
 import com.github.fge.grappa.internal.NonFinalForTesting;
 import com.github.fge.grappa.matchers.base.Matcher;
+import com.github.fge.grappa.matchers.base.RuleLinker;
 import com.github.fge.grappa.rules.Rule;
+import com.github.fge.grappa.run.budget.ParseBudget;
 import com.github.fge.grappa.run.context.DefaultMatcherContext;
 import com.github.fge.grappa.run.context.MatcherContext;
 import com.github.fge.grappa.stack.DefaultValueStack;
 import com.github.fge.grappa.stack.ValueStack;
+import com.google.common.base.Supplier;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.Objects;
 
 public abstract class AbstractParseRunner<V>
@@ -36,9 +40,23 @@ public abstract class AbstractParseRunner<V>
     protected ValueStack<V> valueStack;
     protected Object stackSnapshot;
 
+    private Supplier<? extends ValueStack<V>> valueStackSupplier
+        = new Supplier<ValueStack<V>>()
+    {
+        @Override
+        public ValueStack<V> get()
+        {
+            return new DefaultValueStack<>();
+        }
+    };
+
+    @Nullable
+    private ParseBudget parseBudget = null;
+
     protected AbstractParseRunner(@Nonnull final Rule rule)
     {
-        rootMatcher = Objects.requireNonNull((Matcher) rule, "rule");
+        Objects.requireNonNull(rule, "rule");
+        rootMatcher = (Matcher) RuleLinker.link(rule);
     }
 
     public final ValueStack<V> getValueStack()
@@ -46,6 +64,38 @@ public abstract class AbstractParseRunner<V>
         return valueStack;
     }
 
+    /**
+     * Set the supplier of value stacks for this runner
+     *
+     * <p>A new value stack is obtained from this supplier at the beginning of
+     * each parsing run. The default supplier creates {@link
+     * DefaultValueStack} instances.</p>
+     *
+     * @param valueStackSupplier the supplier
+     *
+     * @see com.github.fge.grappa.stack.PersistentValueStack
+     */
+    public final void setValueStackSupplier(
+        @Nonnull final Supplier<? extends ValueStack<V>> valueStackSupplier)
+    {
+        this.valueStackSupplier = Objects.requireNonNull(valueStackSupplier,
+            "valueStackSupplier");
+    }
+
+    /**
+     * Set the budget of parsing runs
+     *
+     * <p>When a run exceeds this budget, it fails with a {@link
+     * com.github.fge.grappa.exceptions.ParseBudgetExceededException}. By
+     * default, runs have no budget.</p>
+     *
+     * @param parseBudget the budget, or null to remove it
+     */
+    public final void setParseBudget(@Nullable final ParseBudget parseBudget)
+    {
+        this.parseBudget = parseBudget;
+    }
+
     @Override
     public final ParsingResult<V> run(final CharSequence input)
     {
@@ -55,8 +105,8 @@ public abstract class AbstractParseRunner<V>
 
     protected final void resetValueStack()
     {
-        // TODO: write a "memoizing" API
-        valueStack = new DefaultValueStack<>();
+        valueStack = Objects.requireNonNull(valueStackSupplier.get(),
+            "value stack supplier returned null");
         stackSnapshot = null;
     }
 
@@ -64,8 +114,10 @@ public abstract class AbstractParseRunner<V>
     protected MatcherContext<V> createRootContext(
         final InputBuffer inputBuffer, final MatchHandler matchHandler)
     {
-        return new DefaultMatcherContext<>(inputBuffer, valueStack,
-            matchHandler, rootMatcher);
+        final MatchHandler handler = parseBudget == null ? matchHandler
+            : parseBudget.newHandler(matchHandler);
+        return new DefaultMatcherContext<>(inputBuffer, valueStack, handler,
+            rootMatcher);
     }
 
     @NonFinalForTesting
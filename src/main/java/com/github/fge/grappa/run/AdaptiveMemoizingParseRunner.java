@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.run;
+
+import com.github.fge.grappa.buffers.InputBuffer;
+import com.github.fge.grappa.matchers.base.Matcher;
+import com.github.fge.grappa.rules.Rule;
+import com.github.fge.grappa.run.context.MatcherContext;
+import com.google.common.base.Preconditions;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A parse runner only memoizing the matchers which are seen backtracking
+ *
+ * <p>Packrat parsing protects against exponential parsing times, but comes
+ * at a cost for every matcher, even those which are never tried twice at the
+ * same position. This runner starts with no memoization at all; it watches,
+ * for each memoizable matcher, the last input positions at which it was tried,
+ * and counts the times it is tried again at one of these positions. Once this
+ * count reaches a threshold, the outcomes of the matcher are memoized for the
+ * rest of the run, exactly as a {@link MemoizingParseRunner} does.</p>
+ *
+ * <p>Since backtracking usually goes back to recent positions, only a small,
+ * fixed number of positions is remembered per matcher: the cost of watching a
+ * matcher does not depend on the size of the input. All state is reset at the
+ * beginning of a parsing run.</p>
+ *
+ * @param <V> type of values produced by the parser
+ */
+@ParametersAreNonnullByDefault
+public final class AdaptiveMemoizingParseRunner<V>
+    extends MemoizingParseRunner<V>
+{
+    /**
+     * Default number of re-entries after which a matcher is memoized
+     */
+    public static final int DEFAULT_THRESHOLD = 3;
+
+    /*
+     * Number of start positions remembered per watched matcher
+     */
+    private static final int RECENT_POSITIONS = 16;
+
+    private final int threshold;
+
+    private final Map<Matcher, Tracker> trackers = new IdentityHashMap<>();
+    private final Map<Matcher, Boolean> memoized = new IdentityHashMap<>();
+
+    /**
+     * Constructor with the default threshold and maximum number of entries
+     *
+     * @param rule the parser rule
+     *
+     * @see #DEFAULT_THRESHOLD
+     * @see #DEFAULT_MAX_ENTRIES
+     */
+    public AdaptiveMemoizingParseRunner(final Rule rule)
+    {
+        this(rule, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Constructor with the default maximum number of entries
+     *
+     * @param rule the parser rule
+     * @param threshold number of re-entries after which a matcher is memoized
+     * @throws IllegalArgumentException threshold is not strictly positive
+     *
+     * @see #DEFAULT_MAX_ENTRIES
+     */
+    public AdaptiveMemoizingParseRunner(final Rule rule, final int threshold)
+    {
+        this(rule, threshold, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param rule the parser rule
+     * @param threshold number of re-entries after which a matcher is memoized
+     * @param maxEntries the maximum number of memoized outcomes
+     * @throws IllegalArgumentException threshold or maximum is not strictly
+     * positive
+     */
+    public AdaptiveMemoizingParseRunner(final Rule rule, final int threshold,
+        final int maxEntries)
+    {
+        super(rule, maxEntries);
+        Preconditions.checkArgument(threshold > 0,
+            "threshold must be strictly positive");
+        this.threshold = threshold;
+    }
+
+    @Override
+    public ParsingResult<V> run(final InputBuffer inputBuffer)
+    {
+        trackers.clear();
+        memoized.clear();
+        return super.run(inputBuffer);
+    }
+
+    @Override
+    public <T> boolean match(final MatcherContext<T> context)
+    {
+        final Matcher matcher = context.getMatcher();
+
+        if (!memoized.containsKey(matcher) && super.isMemoizable(matcher))
+            watch(matcher, context.getCurrentIndex());
+
+        return super.match(context);
+    }
+
+    @Override
+    protected boolean isMemoizable(final Matcher matcher)
+    {
+        return memoized.containsKey(matcher);
+    }
+
+    /**
+     * Tell whether a matcher is memoized in the current (or last) run
+     *
+     * @param matcher the matcher
+     * @return true if the matcher has reached the re-entry threshold
+     */
+    public boolean isMemoized(final Matcher matcher)
+    {
+        return memoized.containsKey(matcher);
+    }
+
+    private void watch(final Matcher matcher, final int index)
+    {
+        Tracker tracker = trackers.get(matcher);
+
+        if (tracker == null) {
+            tracker = new Tracker();
+            trackers.put(matcher, tracker);
+        }
+
+        if (!tracker.seen(index))
+            return;
+
+        if (++tracker.reentries < threshold)
+            return;
+
+        trackers.remove(matcher);
+        memoized.put(matcher, Boolean.TRUE);
+    }
+
+    /*
+     * The last start positions of a matcher, in a ring
+     */
+    private static final class Tracker
+    {
+        private final int[] positions = new int[RECENT_POSITIONS];
+        private int next = 0;
+        private int reentries = 0;
+
+        private Tracker()
+        {
+            Arrays.fill(positions, -1);
+        }
+
+        /*
+         * Tell whether this position is one of the last ones; if not, it
+         * replaces the oldest one
+         */
+        private boolean seen(final int index)
+        {
+            for (final int position: positions)
+                if (position == index)
+                    return true;
+
+            positions[next] = index;
+            next = (next + 1) % RECENT_POSITIONS;
+            return false;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.run;
+
+import com.github.fge.grappa.buffers.InputBuffer;
+import com.github.fge.grappa.internal.NonFinalForTesting;
+import com.github.fge.grappa.rules.Rule;
+import com.github.fge.grappa.run.context.MatcherContext;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Objects;
+
+/**
+ * The simplest parse runner
+ *
+ * <p>This runner runs matchers directly, without producing any event: it
+ * cannot have listeners, and is therefore the fastest way to run a rule in
+ * production. Like a {@link ListeningParseRunner}, it does not report parse
+ * errors nor recover from them; the result is simply marked as unmatched if
+ * the input does not match the rule.</p>
+ *
+ * @param <V> type of values produced by the parser
+ */
+@SuppressWarnings("DesignForExtension")
+@ParametersAreNonnullByDefault
+@NonFinalForTesting
+public class BasicParseRunner<V>
+    extends AbstractParseRunner<V>
+    implements MatchHandler
+{
+    /**
+     * Constructor
+     *
+     * @param rule the parser rule
+     */
+    public BasicParseRunner(final Rule rule)
+    {
+        super(rule);
+    }
+
+    @Override
+    public ParsingResult<V> run(final InputBuffer inputBuffer)
+    {
+        Objects.requireNonNull(inputBuffer, "inputBuffer");
+        resetValueStack();
+
+        final MatcherContext<V> rootContext
+            = createRootContext(inputBuffer, this);
+        final boolean matched = rootContext.runMatcher();
+
+        return createParsingResult(matched, rootContext);
+    }
+
+    @Override
+    public <T> boolean match(final MatcherContext<T> context)
+    {
+        return context.getMatcher().match(context);
+    }
+}
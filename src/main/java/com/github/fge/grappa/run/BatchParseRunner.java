@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.run;
+
+import com.github.fge.grappa.buffers.CharSequenceInputBuffer;
+import com.github.fge.grappa.buffers.InputBuffer;
+import com.github.fge.grappa.matchers.base.Matcher;
+import com.github.fge.grappa.matchers.base.RuleLinker;
+import com.github.fge.grappa.rules.Rule;
+import com.github.fge.grappa.run.context.DefaultMatcherContext;
+import com.github.fge.grappa.run.context.MatcherContext;
+import com.github.fge.grappa.stack.DefaultValueStack;
+import com.github.fge.grappa.stack.ValueStack;
+import com.google.common.base.Function;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.Iterables;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Objects;
+
+/**
+ * A parse runner for running one grammar over a lot of small inputs
+ *
+ * <p>Unlike other runners, this runner keeps no run state of its own: each
+ * thread using it gets its own value stack and its own chain of matcher
+ * contexts, which are reused from one run to the next instead of being
+ * created anew. A single instance can therefore be shared by all threads of
+ * an application.</p>
+ *
+ * <p>The counterpart is that the {@link ParsingResult} of a run, and in
+ * particular its value stack, is only valid until the next run <em>on the same
+ * thread</em>; extract what you need from it before running again. This is
+ * also true of results returned by {@link #runAll(Iterable)}.</p>
+ *
+ * <p>Note that parsers are not thread safe as soon as their rules use actions
+ * (the context of a parser is a plain field). In this case, use {@link
+ * #BatchParseRunner(Supplier)} so that each thread uses its own parser
+ * instance:</p>
+ *
+ * <pre>
+ *     new BatchParseRunner&lt;&gt;(new Supplier&lt;Rule&gt;()
+ *     {
+ *         &#64;Override
+ *         public Rule get()
+ *         {
+ *             return Grappa.createParser(MyParser.class).rule();
+ *         }
+ *     });
+ * </pre>
+ *
+ * @param <V> type of values produced by the parser
+ */
+@ThreadSafe
+@ParametersAreNonnullByDefault
+public final class BatchParseRunner<V>
+    implements ParseRunner<V>
+{
+    private final ThreadLocal<RunState<V>> state;
+
+    /**
+     * Build a runner for a rule shared by all threads
+     *
+     * @param rule the rule
+     */
+    public BatchParseRunner(final Rule rule)
+    {
+        this(Suppliers.ofInstance(
+            RuleLinker.link(Objects.requireNonNull(rule, "rule"))));
+    }
+
+    /**
+     * Build a runner obtaining a rule for each thread
+     *
+     * @param ruleSupplier the supplier of rules; it is called once per thread
+     */
+    public BatchParseRunner(final Supplier<? extends Rule> ruleSupplier)
+    {
+        this(ruleSupplier, new Supplier<ValueStack<V>>()
+        {
+            @Override
+            public ValueStack<V> get()
+            {
+                return new DefaultValueStack<>();
+            }
+        });
+    }
+
+    /**
+     * Build a runner obtaining a rule for each thread, with a given value
+     * stack implementation
+     *
+     * @param ruleSupplier the supplier of rules; it is called once per thread
+     * @param valueStackSupplier the supplier of value stacks; it is called
+     * once per thread
+     */
+    public BatchParseRunner(final Supplier<? extends Rule> ruleSupplier,
+        final Supplier<? extends ValueStack<V>> valueStackSupplier)
+    {
+        Objects.requireNonNull(ruleSupplier, "ruleSupplier");
+        Objects.requireNonNull(valueStackSupplier, "valueStackSupplier");
+        state = new ThreadLocal<RunState<V>>()
+        {
+            @Override
+            protected RunState<V> initialValue()
+            {
+                final Rule rule = Objects.requireNonNull(ruleSupplier.get(),
+                    "rule supplier returned null");
+                final ValueStack<V> valueStack = Objects.requireNonNull(
+                    valueStackSupplier.get(),
+                    "value stack supplier returned null");
+                return new RunState<>((Matcher) RuleLinker.link(rule),
+                    valueStack);
+            }
+        };
+    }
+
+    @Override
+    public ParsingResult<V> run(final CharSequence input)
+    {
+        Objects.requireNonNull(input, "input");
+        return run(new CharSequenceInputBuffer(input));
+    }
+
+    @Override
+    public ParsingResult<V> run(final InputBuffer inputBuffer)
+    {
+        Objects.requireNonNull(inputBuffer, "inputBuffer");
+        return state.get().run(inputBuffer);
+    }
+
+    /**
+     * Run the rule over a series of inputs
+     *
+     * <p>The returned iterable is lazy: each input is parsed when the iterator
+     * reaches it, by the thread iterating. As for {@link #run(CharSequence)},
+     * a result is only valid until the next one is obtained.</p>
+     *
+     * @param inputs the inputs
+     * @return the results, in the order of the inputs
+     */
+    public Iterable<ParsingResult<V>> runAll(
+        final Iterable<? extends CharSequence> inputs)
+    {
+        Objects.requireNonNull(inputs, "inputs");
+        return Iterables.transform(inputs,
+            new Function<CharSequence, ParsingResult<V>>()
+            {
+                @Override
+                public ParsingResult<V> apply(@Nonnull final CharSequence input)
+                {
+                    return run(input);
+                }
+            });
+    }
+
+    /*
+     * The state of one thread
+     */
+    private static final class RunState<V>
+        implements MatchHandler
+    {
+        private final Matcher rootMatcher;
+        private final ValueStack<V> valueStack;
+        private DefaultMatcherContext<V> rootContext;
+
+        private RunState(final Matcher rootMatcher,
+            final ValueStack<V> valueStack)
+        {
+            this.rootMatcher = rootMatcher;
+            this.valueStack = valueStack;
+        }
+
+        private ParsingResult<V> run(final InputBuffer inputBuffer)
+        {
+            valueStack.clear();
+
+            if (rootContext == null)
+                rootContext = new DefaultMatcherContext<>(inputBuffer,
+                    valueStack, this, rootMatcher);
+            else
+                rootContext.reset(inputBuffer, rootMatcher);
+
+            final boolean matched = rootContext.runMatcher();
+            return new ParsingResult<>(matched, valueStack, inputBuffer);
+        }
+
+        @Override
+        public <T> boolean match(final MatcherContext<T> context)
+        {
+            return context.getMatcher().match(context);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.run;
+
+import com.github.fge.grappa.internal.NonFinalForTesting;
+import com.github.fge.grappa.matchers.optimize.GrammarOptimizer;
+import com.github.fge.grappa.rules.Rule;
+import com.github.fge.grappa.transform.compile.CompilingPass;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * A parse runner which compiles its rule to bytecode before running it
+ *
+ * <p>All parts of the rule graph which contain no actions are replaced with
+ * generated code working directly on the input buffer (see {@link
+ * CompilingPass}); a grammar without any action is therefore run as a single
+ * generated method call. Other matchers are run as usual.</p>
+ *
+ * <p>This runner does not support listeners: subgraphs which are compiled do
+ * not produce any event anyway. It can otherwise be used in place of a {@link
+ * BasicParseRunner}.</p>
+ *
+ * <p>Compilation happens once, when the runner is built.</p>
+ */
+@SuppressWarnings("DesignForExtension")
+@ParametersAreNonnullByDefault
+@NonFinalForTesting
+public class CompiledParseRunner<V>
+    extends BasicParseRunner<V>
+{
+    public CompiledParseRunner(final Rule rule)
+    {
+        super(new GrammarOptimizer(new CompilingPass()).optimize(rule)
+            .getRule());
+    }
+}
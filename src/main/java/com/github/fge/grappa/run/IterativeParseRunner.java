@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.run;
+
+import com.github.fge.grappa.buffers.InputBuffer;
+import com.github.fge.grappa.internal.NonFinalForTesting;
+import com.github.fge.grappa.matchers.base.Matcher;
+import com.github.fge.grappa.rules.Rule;
+import com.github.fge.grappa.run.context.MatcherContext;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Objects;
+
+/**
+ * A parse runner which does not use the Java stack for nesting rules
+ *
+ * <p>With other runners, each level of rule nesting costs several Java stack
+ * frames, since each matcher runs its children; deeply nested inputs (for
+ * instance, thousands of nested brackets) end with a {@link
+ * StackOverflowError}. This runner runs the composite matchers shipped with
+ * grappa (sequences, alternatives, repetitions, joins, predicates and
+ * optionals) itself, using frames allocated on the heap: the nesting depth is
+ * then only limited by memory.</p>
+ *
+ * <p>Other matchers are run normally; this includes terminals and actions,
+ * but also custom matchers, compiled matchers and memoizing matchers. The
+ * results are the same as those of a {@link BasicParseRunner}, except that
+ * only the matchers run normally go through the {@link
+ * #setParseBudget(com.github.fge.grappa.run.budget.ParseBudget) budget} of the
+ * runner, if any.</p>
+ *
+ * <p>Like a {@link BasicParseRunner}, this runner has no listeners.</p>
+ *
+ * @param <V> type of values produced by the parser
+ */
+@SuppressWarnings("DesignForExtension")
+@ParametersAreNonnullByDefault
+@NonFinalForTesting
+public class IterativeParseRunner<V>
+    extends AbstractParseRunner<V>
+    implements MatchHandler
+{
+    private final MatcherInterpreter interpreter = new MatcherInterpreter();
+
+    /**
+     * Constructor
+     *
+     * @param rule the parser rule
+     */
+    public IterativeParseRunner(final Rule rule)
+    {
+        super(rule);
+    }
+
+    @Override
+    public ParsingResult<V> run(final InputBuffer inputBuffer)
+    {
+        Objects.requireNonNull(inputBuffer, "inputBuffer");
+        resetValueStack();
+        interpreter.reset();
+
+        final MatcherContext<V> rootContext
+            = createRootContext(inputBuffer, this);
+        final boolean matched = rootContext.runMatcher();
+
+        return createParsingResult(matched, rootContext);
+    }
+
+    @Override
+    public <T> boolean match(final MatcherContext<T> context)
+    {
+        final Matcher matcher = context.getMatcher();
+
+        return MatcherInterpreter.interprets(matcher)
+            ? interpreter.run(context) : matcher.match(context);
+    }
+}
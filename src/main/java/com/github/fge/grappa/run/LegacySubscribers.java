@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.fge.grappa.run;
+
+import com.github.fge.grappa.exceptions.GrappaException;
+import com.google.common.base.Throwables;
+import com.google.common.eventbus.Subscribe;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The {@link Subscribe}-annotated methods of a {@link ParseRunnerListener}
+ *
+ * <p>Parse runner events used to be dispatched using an {@link
+ * com.google.common.eventbus.EventBus}, and listeners could therefore declare
+ * additional subscriber methods. For compatibility, such methods are still
+ * called, using reflection, when the event they accept is produced; methods
+ * overriding the ones of {@link ParseRunnerListener} are excluded, since
+ * they are called directly.</p>
+ */
+@ParametersAreNonnullByDefault
+final class LegacySubscribers
+{
+    private final Object listener;
+    private final Method[] methods;
+
+    private LegacySubscribers(final Object listener, final Method[] methods)
+    {
+        this.listener = listener;
+        this.methods = methods;
+    }
+
+    /**
+     * Find the additional subscriber methods of a listener
+     *
+     * @param listener the listener
+     * @return the subscribers, or null if the listener has none
+     */
+    @Nullable
+    static LegacySubscribers find(final ParseRunnerListener<?> listener)
+    {
+        final Set<String> seen = new HashSet<>();
+        final List<Method> found = new ArrayList<>();
+
+        for (final Method method: ParseRunnerListener.class.getMethods())
+            seen.add(signature(method));
+
+        for (Class<?> c = listener.getClass(); c != ParseRunnerListener.class;
+            c = c.getSuperclass())
+            for (final Method method: c.getDeclaredMethods()) {
+                if (!method.isAnnotationPresent(Subscribe.class))
+                    continue;
+                if (method.getParameterTypes().length != 1)
+                    throw new IllegalArgumentException("subscriber method "
+                        + method + " must have exactly one argument");
+                if (!seen.add(signature(method)))
+                    continue;
+                method.setAccessible(true);
+                found.add(method);
+            }
+
+        return found.isEmpty() ? null
+            : new LegacySubscribers(listener,
+                found.toArray(new Method[found.size()]));
+    }
+
+    /**
+     * Call the subscriber methods accepting this event
+     *
+     * @param event the event
+     */
+    void post(final Object event)
+    {
+        for (final Method method: methods) {
+            if (!method.getParameterTypes()[0].isInstance(event))
+                continue;
+            try {
+                method.invoke(listener, event);
+            } catch (InvocationTargetException e) {
+                final Throwable cause = e.getCause();
+                Throwables.propagateIfPossible(cause);
+                throw new GrappaException(cause);
+            } catch (IllegalAccessException e) {
+                throw new GrappaException(e);
+            }
+        }
+    }
+
+    private static String signature(final Method method)
+    {
+        return method.getName()
+            + Arrays.toString(method.getParameterTypes());
+    }
+}
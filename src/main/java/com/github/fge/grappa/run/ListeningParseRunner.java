@@ -22,53 +22,65 @@ import com.github.fge.grappa.internal.NonFinalForTesting;
 import com.github.fge.grappa.matchers.base.Matcher;
 import com.github.fge.grappa.rules.Rule;
 import com.github.fge.grappa.run.context.MatcherContext;
-import com.github.fge.grappa.run.events.MatchContextEvent;
 import com.github.fge.grappa.run.events.MatchFailureEvent;
 import com.github.fge.grappa.run.events.MatchSuccessEvent;
 import com.github.fge.grappa.run.events.PostParseEvent;
 import com.github.fge.grappa.run.events.PreMatchEvent;
 import com.github.fge.grappa.run.events.PreParseEvent;
-import com.google.common.eventbus.EventBus;
-import com.google.common.eventbus.SubscriberExceptionContext;
-import com.google.common.eventbus.SubscriberExceptionHandler;
 
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Arrays;
 import java.util.Objects;
 
 /**
- * The most basic of all {@link ParseRunner} implementations. It runs a rule
- * against a given input text and builds a corresponding {@link ParsingResult}
- * instance. However, it does not report any parse errors nor recover from them.
- * Instead it simply marks the ParsingResult as "unmatched" if the input is not
- * valid with regard to the rule grammar.It never causes the parser to perform
- * more than one parsing run and is the fastest way to determine whether a given
- * input conforms to the rule grammar.
+ * A {@link ParseRunner} producing events which {@link ParseRunnerListener}s can
+ * subscribe to
+ *
+ * <p>It runs a rule against a given input text and builds a corresponding
+ * {@link ParsingResult} instance. However, it does not report any parse errors
+ * nor recover from them. Instead it simply marks the ParsingResult as
+ * "unmatched" if the input is not valid with regard to the rule grammar.</p>
+ *
+ * <p>Listeners are called directly, in the order in which they were
+ * registered. If a listener throws an exception, the other listeners are
+ * still called for this event; the first exception thrown (with the others
+ * added as {@link Throwable#addSuppressed(Throwable) suppressed exceptions})
+ * is then rethrown, wrapped in a {@link GrappaException}.</p>
+ *
+ * <p>Match events are reused: there is one event of each type per context
+ * level, and a new one is only created when the context at this level
+ * changes. Listeners should therefore not keep references to them.</p>
+ *
+ * <p>As long as no listener is registered, no event is produced at all: this
+ * runner then behaves like a {@link BasicParseRunner}.</p>
  */
-@SuppressWarnings("DesignForExtension")
+@SuppressWarnings({ "DesignForExtension", "unchecked", "rawtypes" })
 @ParametersAreNonnullByDefault
 @NonFinalForTesting
 public class ListeningParseRunner<V>
     extends AbstractParseRunner<V>
     implements MatchHandler
 {
-    // TODO: does it need to be volatile?
-    private volatile Throwable throwable = null;
+    private static final int INITIAL_LEVELS = 16;
 
-    private final EventBus bus = new EventBus(new SubscriberExceptionHandler()
-    {
-        @Override
-        public void handleException(final Throwable exception,
-            final SubscriberExceptionContext context)
-        {
-            if (throwable == null)
-                throwable = exception;
-            else
-                throwable.addSuppressed(exception);
-        }
-    });
+    @Nullable
+    private Throwable throwable = null;
+
+    private ParseRunnerListener[] listeners = new ParseRunnerListener[0];
+    private LegacySubscribers[] legacySubscribers = new LegacySubscribers[0];
+
+    /*
+     * Events reused for each context level
+     */
+    private PreMatchEvent[] preMatchEvents = new PreMatchEvent[INITIAL_LEVELS];
+    private MatchSuccessEvent[] successEvents
+        = new MatchSuccessEvent[INITIAL_LEVELS];
+    private MatchFailureEvent[] failureEvents
+        = new MatchFailureEvent[INITIAL_LEVELS];
 
     /**
-     * Creates a new BasicParseRunner instance for the given rule.
+     * Creates a new ListeningParseRunner instance for the given rule.
      *
      * @param rule the parser rule
      */
@@ -77,10 +89,34 @@ public class ListeningParseRunner<V>
         super(rule);
     }
 
+    /**
+     * Register a listener
+     *
+     * <p>Registering the same listener more than once has no effect.</p>
+     *
+     * @param listener the listener
+     */
     // TODO: replace with a supplier mechanism
     public final void registerListener(final ParseRunnerListener<V> listener)
     {
-        bus.register(listener);
+        Objects.requireNonNull(listener, "listener");
+
+        for (final ParseRunnerListener registered: listeners)
+            if (registered == listener)
+                return;
+
+        final int nrListeners = listeners.length;
+        listeners = Arrays.copyOf(listeners, nrListeners + 1);
+        listeners[nrListeners] = listener;
+
+        final LegacySubscribers subscribers = LegacySubscribers.find(listener);
+
+        if (subscribers == null)
+            return;
+
+        final int nrSubscribers = legacySubscribers.length;
+        legacySubscribers = Arrays.copyOf(legacySubscribers, nrSubscribers + 1);
+        legacySubscribers[nrSubscribers] = subscribers;
     }
 
     @Override
@@ -88,10 +124,24 @@ public class ListeningParseRunner<V>
     {
         Objects.requireNonNull(inputBuffer, "inputBuffer");
         resetValueStack();
+        throwable = null;
 
         final MatcherContext<V> rootContext
             = createRootContext(inputBuffer, this);
-        bus.post(new PreParseEvent<>(rootContext));
+
+        if (listeners.length == 0)
+            return createParsingResult(rootContext.runMatcher(), rootContext);
+
+        final PreParseEvent<V> preParseEvent = new PreParseEvent<>(rootContext);
+
+        for (final ParseRunnerListener listener: listeners)
+            try {
+                listener.beforeParse(preParseEvent);
+            } catch (Throwable t) {
+                addThrowable(t);
+            }
+
+        postLegacy(preParseEvent);
 
         if (throwable != null)
             throw new GrappaException("parsing listener error (before parse)",
@@ -100,8 +150,16 @@ public class ListeningParseRunner<V>
         final boolean matched = rootContext.runMatcher();
         final ParsingResult<V> result
             = createParsingResult(matched, rootContext);
+        final PostParseEvent<V> postParseEvent = new PostParseEvent<>(result);
+
+        for (final ParseRunnerListener listener: listeners)
+            try {
+                listener.afterParse(postParseEvent);
+            } catch (Throwable t) {
+                addThrowable(t);
+            }
 
-        bus.post(new PostParseEvent<>(result));
+        postLegacy(postParseEvent);
 
         if (throwable != null)
             throw new GrappaException("parsing listener error (after parse)",
@@ -114,9 +172,30 @@ public class ListeningParseRunner<V>
     public <T> boolean match(final MatcherContext<T> context)
     {
         final Matcher matcher = context.getMatcher();
+        final ParseRunnerListener[] array = listeners;
+
+        if (array.length == 0)
+            return matcher.match(context);
+
+        final int level = context.getLevel();
+
+        if (level >= preMatchEvents.length)
+            growPools(level);
 
-        final PreMatchEvent<T> preMatchEvent = new PreMatchEvent<>(context);
-        bus.post(preMatchEvent);
+        PreMatchEvent<T> preMatchEvent = preMatchEvents[level];
+        if (preMatchEvent == null || preMatchEvent.getContext() != context) {
+            preMatchEvent = new PreMatchEvent<>(context);
+            preMatchEvents[level] = preMatchEvent;
+        }
+
+        for (final ParseRunnerListener listener: array)
+            try {
+                listener.beforeMatch(preMatchEvent);
+            } catch (Throwable t) {
+                addThrowable(t);
+            }
+
+        postLegacy(preMatchEvent);
 
         if (throwable != null)
             throw new GrappaException("parsing listener error (before match)",
@@ -126,11 +205,33 @@ public class ListeningParseRunner<V>
         @SuppressWarnings("ConstantConditions")
         final boolean match = matcher.match(context);
 
-        final MatchContextEvent<T> postMatchEvent = match
-            ? new MatchSuccessEvent<>(context)
-            : new MatchFailureEvent<>(context);
-
-        bus.post(postMatchEvent);
+        if (match) {
+            MatchSuccessEvent<T> event = successEvents[level];
+            if (event == null || event.getContext() != context) {
+                event = new MatchSuccessEvent<>(context);
+                successEvents[level] = event;
+            }
+            for (final ParseRunnerListener listener: array)
+                try {
+                    listener.matchSuccess(event);
+                } catch (Throwable t) {
+                    addThrowable(t);
+                }
+            postLegacy(event);
+        } else {
+            MatchFailureEvent<T> event = failureEvents[level];
+            if (event == null || event.getContext() != context) {
+                event = new MatchFailureEvent<>(context);
+                failureEvents[level] = event;
+            }
+            for (final ParseRunnerListener listener: array)
+                try {
+                    listener.matchFailure(event);
+                } catch (Throwable t) {
+                    addThrowable(t);
+                }
+            postLegacy(event);
+        }
 
         if (throwable != null)
             throw new GrappaException("parsing listener error (after match)",
@@ -138,4 +239,33 @@ public class ListeningParseRunner<V>
 
         return match;
     }
+
+    /*
+     * Call the deprecated @Subscribe methods of listeners, if any
+     */
+    private void postLegacy(final Object event)
+    {
+        for (final LegacySubscribers subscribers: legacySubscribers)
+            try {
+                subscribers.post(event);
+            } catch (Throwable t) {
+                addThrowable(t);
+            }
+    }
+
+    private void addThrowable(final Throwable t)
+    {
+        if (throwable == null)
+            throwable = t;
+        else
+            throwable.addSuppressed(t);
+    }
+
+    private void growPools(final int level)
+    {
+        final int size = Math.max(level + 1, preMatchEvents.length * 2);
+        preMatchEvents = Arrays.copyOf(preMatchEvents, size);
+        successEvents = Arrays.copyOf(successEvents, size);
+        failureEvents = Arrays.copyOf(failureEvents, size);
+    }
 }
@@ -0,0 +1,506 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.run;
+
+import com.github.fge.grappa.exceptions.GrappaException;
+import com.github.fge.grappa.matchers.base.Matcher;
+import com.github.fge.grappa.matchers.delegate.FirstOfMatcher;
+import com.github.fge.grappa.matchers.delegate.OptionalMatcher;
+import com.github.fge.grappa.matchers.delegate.SequenceMatcher;
+import com.github.fge.grappa.matchers.join.BoundedBothJoinMatcher;
+import com.github.fge.grappa.matchers.join.BoundedDownJoinMatcher;
+import com.github.fge.grappa.matchers.join.BoundedUpJoinMatcher;
+import com.github.fge.grappa.matchers.join.ExactMatchesJoinMatcher;
+import com.github.fge.grappa.matchers.join.JoinMatcher;
+import com.github.fge.grappa.matchers.predicates.TestMatcher;
+import com.github.fge.grappa.matchers.predicates.TestNotMatcher;
+import com.github.fge.grappa.matchers.repeat.BoundedBothRepeatMatcher;
+import com.github.fge.grappa.matchers.repeat.BoundedDownRepeatMatcher;
+import com.github.fge.grappa.matchers.repeat.BoundedUpRepeatMatcher;
+import com.github.fge.grappa.matchers.repeat.ExactMatchesRepeatMatcher;
+import com.github.fge.grappa.matchers.repeat.RepeatMatcher;
+import com.github.fge.grappa.matchers.wrap.VarFramingMatcher;
+import com.github.fge.grappa.run.context.MatcherContext;
+import com.github.fge.grappa.stack.ValueStack;
+import com.google.common.collect.ImmutableMap;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the composite matchers shipped with grappa using an explicit stack
+ *
+ * <p>Each composite matcher being run has a frame, made of one slot in each
+ * of the arrays below. Instead of calling {@link MatcherContext#runMatcher()}
+ * on the subcontext of a child which is also a composite, a frame is pushed
+ * for it; its outcome is then fed back to the parent frame, which decides on
+ * the next child to run. The Java stack therefore does not grow with the
+ * depth of the input.</p>
+ *
+ * <p>All other matchers (terminals, actions, custom or compiled matchers,
+ * memoizing matchers...) are run normally. If they have children, these are
+ * run through the match handler, which may enter this interpreter again; this
+ * is why {@link #run(MatcherContext)} is reentrant.</p>
+ */
+@NotThreadSafe
+@ParametersAreNonnullByDefault
+final class MatcherInterpreter
+{
+    private static final int INITIAL_FRAMES = 64;
+
+    private static final int NONE = -1;
+    private static final int SEQUENCE = 0;
+    private static final int FIRST_OF = 1;
+    private static final int OPTIONAL = 2;
+    private static final int TEST = 3;
+    private static final int TEST_NOT = 4;
+    private static final int REPEAT = 5;
+    private static final int JOIN = 6;
+    private static final int VAR_FRAMING = 7;
+
+    // Phases of a join frame
+    private static final int JOINED_FIRST = 0;
+    private static final int JOINING = 1;
+    private static final int JOINED = 2;
+
+    /*
+     * Only exact classes: subclasses may override the matching logic
+     */
+    private static final Map<Class<?>, Integer> KINDS
+        = ImmutableMap.<Class<?>, Integer>builder()
+        .put(SequenceMatcher.class, SEQUENCE)
+        .put(FirstOfMatcher.class, FIRST_OF)
+        .put(OptionalMatcher.class, OPTIONAL)
+        .put(TestMatcher.class, TEST)
+        .put(TestNotMatcher.class, TEST_NOT)
+        .put(BoundedBothRepeatMatcher.class, REPEAT)
+        .put(BoundedDownRepeatMatcher.class, REPEAT)
+        .put(BoundedUpRepeatMatcher.class, REPEAT)
+        .put(ExactMatchesRepeatMatcher.class, REPEAT)
+        .put(BoundedBothJoinMatcher.class, JOIN)
+        .put(BoundedDownJoinMatcher.class, JOIN)
+        .put(BoundedUpJoinMatcher.class, JOIN)
+        .put(ExactMatchesJoinMatcher.class, JOIN)
+        .put(VarFramingMatcher.class, VAR_FRAMING)
+        .build();
+
+    private MatcherContext<?>[] contexts
+        = new MatcherContext<?>[INITIAL_FRAMES];
+    private Matcher[] matchers = new Matcher[INITIAL_FRAMES];
+    private int[] kinds = new int[INITIAL_FRAMES];
+    // whether the frame must retire its context (see runMatcher())
+    private boolean[] owned = new boolean[INITIAL_FRAMES];
+    // child index, or number of cycles
+    private int[] cursors = new int[INITIAL_FRAMES];
+    // input index to restore or compare to
+    private int[] marks = new int[INITIAL_FRAMES];
+    private int[] phases = new int[INITIAL_FRAMES];
+    private Object[] snapshots = new Object[INITIAL_FRAMES];
+    private Matcher[][] candidates = new Matcher[INITIAL_FRAMES][];
+
+    private int top = 0;
+
+    // Set by step()
+    private boolean outcome;
+    private boolean sameContext;
+
+    /**
+     * Tell whether a matcher is run by this interpreter
+     *
+     * @param matcher the matcher
+     * @return true if this is one of the composites known to the interpreter
+     */
+    static boolean interprets(final Matcher matcher)
+    {
+        return KINDS.containsKey(matcher.getClass());
+    }
+
+    /**
+     * Drop all frames, which may have been left over by a failed run
+     */
+    void reset()
+    {
+        Arrays.fill(contexts, 0, top, null);
+        Arrays.fill(matchers, 0, top, null);
+        Arrays.fill(snapshots, 0, top, null);
+        Arrays.fill(candidates, 0, top, null);
+        top = 0;
+    }
+
+    /**
+     * Run the matcher of a context
+     *
+     * <p>As when a matcher is called by a match handler, the caller is
+     * responsible for retiring the context.</p>
+     *
+     * @param context the context
+     * @return true if the matcher matched
+     */
+    boolean run(final MatcherContext<?> context)
+    {
+        final int base = top;
+        final Matcher root = context.getMatcher();
+
+        push(context, root, kindOf(root), false);
+
+        boolean result = false;
+        boolean resume = false;
+        int frame;
+        Matcher next;
+        MatcherContext<?> subContext;
+        int kind;
+
+        while (true) {
+            frame = top - 1;
+            try {
+                next = step(frame, resume, result);
+            } catch (GrappaException e) {
+                throw e;
+            } catch (Throwable t) {
+                throw wrap(contexts[frame], t);
+            }
+
+            if (next == null) {
+                result = outcome;
+                pop(frame, result);
+                if (top == base)
+                    return result;
+                resume = true;
+                continue;
+            }
+
+            if (sameContext) {
+                kind = kindOf(next);
+                if (kind != NONE) {
+                    push(contexts[frame], next, kind, false);
+                    resume = false;
+                    continue;
+                }
+                try {
+                    result = next.match(contexts[frame]);
+                } catch (GrappaException e) {
+                    throw e;
+                } catch (Throwable t) {
+                    throw wrap(contexts[frame], t);
+                }
+                resume = true;
+                continue;
+            }
+
+            subContext = subContext(frame, next);
+            kind = kindOf(subContext.getMatcher());
+            if (kind != NONE) {
+                push(subContext, subContext.getMatcher(), kind, true);
+                resume = false;
+                continue;
+            }
+
+            result = subContext.runMatcher();
+            resume = true;
+        }
+    }
+
+    /*
+     * Advance a frame: return the next child to run, or null if the frame is
+     * done, in which case its outcome is in the outcome field
+     */
+    @Nullable
+    private Matcher step(final int frame, final boolean resume,
+        final boolean result)
+    {
+        sameContext = false;
+
+        switch (kinds[frame]) {
+            case SEQUENCE:
+                return stepSequence(frame, resume, result);
+            case FIRST_OF:
+                return stepFirstOf(frame, resume, result);
+            case OPTIONAL:
+                return resume ? complete(true) : firstChild(frame);
+            case TEST:
+            case TEST_NOT:
+                return stepTest(frame, resume, result);
+            case REPEAT:
+                return stepRepeat(frame, resume, result);
+            case JOIN:
+                return stepJoin(frame, resume, result);
+            case VAR_FRAMING:
+                return stepVarFraming(frame, resume, result);
+            default:
+                throw new IllegalStateException("unknown frame kind");
+        }
+    }
+
+    @Nullable
+    private Matcher stepSequence(final int frame, final boolean resume,
+        final boolean result)
+    {
+        final ValueStack<?> stack = contexts[frame].getValueStack();
+
+        if (!resume) {
+            snapshots[frame] = stack.takeSnapshot();
+        } else if (!result) {
+            stack.restoreSnapshot(snapshots[frame]);
+            return complete(false);
+        }
+
+        final List<Matcher> children = matchers[frame].getChildren();
+
+        if (cursors[frame] == children.size())
+            return complete(true);
+
+        return children.get(cursors[frame]++);
+    }
+
+    @Nullable
+    private Matcher stepFirstOf(final int frame, final boolean resume,
+        final boolean result)
+    {
+        if (!resume)
+            candidates[frame] = ((FirstOfMatcher) matchers[frame])
+                .getCandidates(contexts[frame].getCurrentChar());
+        else if (result)
+            return complete(true);
+
+        final Matcher[] alternatives = candidates[frame];
+
+        if (cursors[frame] == alternatives.length)
+            return complete(false);
+
+        return alternatives[cursors[frame]++];
+    }
+
+    @Nullable
+    private Matcher stepTest(final int frame, final boolean resume,
+        final boolean result)
+    {
+        final MatcherContext<?> context = contexts[frame];
+
+        if (!resume) {
+            marks[frame] = context.getCurrentIndex();
+            snapshots[frame] = context.getValueStack().takeSnapshot();
+            return firstChild(frame);
+        }
+
+        if (result != (kinds[frame] == TEST))
+            return complete(false);
+
+        // reset location, Test matchers never advance
+        context.setCurrentIndex(marks[frame]);
+        context.getValueStack().restoreSnapshot(snapshots[frame]);
+        return complete(true);
+    }
+
+    @Nullable
+    private Matcher stepRepeat(final int frame, final boolean resume,
+        final boolean result)
+    {
+        final RepeatMatcher repeat = (RepeatMatcher) matchers[frame];
+        final int index = contexts[frame].getCurrentIndex();
+
+        if (!resume) {
+            marks[frame] = index;
+        } else {
+            if (!result)
+                return complete(cursors[frame] >= repeat.getMinCycles());
+            if (index == marks[frame])
+                throw new GrappaException("Inner rule of a RepeatMatcher"
+                    + " cannot match an empty character sequence");
+            marks[frame] = index;
+            cursors[frame]++;
+        }
+
+        if (cursors[frame] < repeat.getMaxCycles())
+            return firstChild(frame);
+
+        return complete(cursors[frame] >= repeat.getMinCycles());
+    }
+
+    @Nullable
+    private Matcher stepJoin(final int frame, final boolean resume,
+        final boolean result)
+    {
+        final JoinMatcher join = (JoinMatcher) matchers[frame];
+        final MatcherContext<?> context = contexts[frame];
+        final Matcher joined = join.getChildren().get(0);
+        final Matcher joining = join.getChildren().get(1);
+
+        if (!resume) {
+            phases[frame] = JOINED_FIRST;
+            return joined;
+        }
+
+        switch (phases[frame]) {
+            case JOINED_FIRST:
+                if (!result)
+                    return complete(join.getMinCycles() <= 0);
+                cursors[frame] = 1;
+                break;
+            case JOINING:
+                if (!result)
+                    return endJoin(frame, join);
+                if (context.getCurrentIndex() == marks[frame])
+                    throw new GrappaException("joining rule (" + joining
+                        + ") of a JoinMatcher cannot match an empty character"
+                        + " sequence!");
+                phases[frame] = JOINED;
+                return joined;
+            case JOINED:
+                if (!result)
+                    return endJoin(frame, join);
+                cursors[frame]++;
+                break;
+            default:
+                throw new IllegalStateException("unknown join phase");
+        }
+
+        marks[frame] = context.getCurrentIndex();
+        snapshots[frame] = context.getValueStack().takeSnapshot();
+
+        if (cursors[frame] < join.getMaxCycles()) {
+            phases[frame] = JOINING;
+            return joining;
+        }
+
+        return endJoin(frame, join);
+    }
+
+    @Nullable
+    private Matcher endJoin(final int frame, final JoinMatcher join)
+    {
+        final MatcherContext<?> context = contexts[frame];
+
+        context.getValueStack().restoreSnapshot(snapshots[frame]);
+        context.setCurrentIndex(marks[frame]);
+        return complete(cursors[frame] >= join.getMinCycles());
+    }
+
+    @Nullable
+    private Matcher stepVarFraming(final int frame, final boolean resume,
+        final boolean result)
+    {
+        final VarFramingMatcher matcher = (VarFramingMatcher) matchers[frame];
+
+        if (resume) {
+            matcher.exitFrames();
+            return complete(result);
+        }
+
+        matcher.enterFrames();
+        sameContext = true;
+        return matcher.getInner();
+    }
+
+    @Nullable
+    private Matcher complete(final boolean result)
+    {
+        outcome = result;
+        return null;
+    }
+
+    private Matcher firstChild(final int frame)
+    {
+        return matchers[frame].getChildren().get(0);
+    }
+
+    /*
+     * Repeat matchers create the subcontext themselves, other matchers let
+     * their child do it
+     */
+    @SuppressWarnings("unchecked")
+    private MatcherContext<?> subContext(final int frame, final Matcher child)
+    {
+        final MatcherContext<Object> context
+            = (MatcherContext<Object>) contexts[frame];
+        return kinds[frame] == REPEAT ? context.getSubContext(child)
+            : child.getSubContext(context);
+    }
+
+    private static int kindOf(final Matcher matcher)
+    {
+        final Integer kind = KINDS.get(matcher.getClass());
+        return kind == null ? NONE : kind;
+    }
+
+    private void push(final MatcherContext<?> context, final Matcher matcher,
+        final int kind, final boolean owns)
+    {
+        if (top == kinds.length)
+            grow();
+
+        contexts[top] = context;
+        matchers[top] = matcher;
+        kinds[top] = kind;
+        owned[top] = owns;
+        cursors[top] = 0;
+        top++;
+    }
+
+    /*
+     * Pop a frame; for frames owning their context, do what runMatcher() does
+     * once the match handler has returned
+     */
+    private void pop(final int frame, final boolean result)
+    {
+        final MatcherContext<?> context = contexts[frame];
+
+        if (owned[frame]) {
+            context.setMatcher(null);
+            final MatcherContext<?> parent = context.getParent();
+            if (result && parent != null)
+                parent.setCurrentIndex(context.getCurrentIndex());
+        }
+
+        contexts[frame] = null;
+        matchers[frame] = null;
+        snapshots[frame] = null;
+        candidates[frame] = null;
+        top--;
+    }
+
+    private void grow()
+    {
+        final int size = kinds.length * 2;
+
+        contexts = Arrays.copyOf(contexts, size);
+        matchers = Arrays.copyOf(matchers, size);
+        kinds = Arrays.copyOf(kinds, size);
+        owned = Arrays.copyOf(owned, size);
+        cursors = Arrays.copyOf(cursors, size);
+        marks = Arrays.copyOf(marks, size);
+        phases = Arrays.copyOf(phases, size);
+        snapshots = Arrays.copyOf(snapshots, size);
+        candidates = Arrays.copyOf(candidates, size);
+    }
+
+    /*
+     * Same as what runMatcher() does for exceptions thrown by a matcher
+     */
+    private static GrappaException wrap(final MatcherContext<?> context,
+        final Throwable t)
+    {
+        final String msg = String.format(
+            "exception thrown when parsing rule '%s' at input position %s",
+            context, context.getInputBuffer().getPosition(
+                context.getCurrentIndex()));
+        return new GrappaException(msg, t);
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.run;
+
+import com.github.fge.grappa.buffers.InputBuffer;
+import com.github.fge.grappa.internal.NonFinalForTesting;
+import com.github.fge.grappa.matchers.MatcherType;
+import com.github.fge.grappa.matchers.base.Matcher;
+import com.github.fge.grappa.rules.Rule;
+import com.github.fge.grappa.run.context.MatcherContext;
+import com.github.fge.grappa.run.memo.MemoEntry;
+import com.github.fge.grappa.run.memo.PositionTable;
+import com.github.fge.grappa.stack.PersistentValueStack;
+import com.github.fge.grappa.stack.ValueStack;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A packrat parse runner
+ *
+ * <p>This runner remembers, for each composite and predicate matcher, the
+ * outcome of the matcher at a given input position (whether it succeeded, the
+ * index at which the match ended, and its effect on the value stack). When
+ * the same matcher is tried again at the same position, which happens a lot
+ * with grammars doing heavy backtracking, the recorded outcome is replayed
+ * instead of matching again.</p>
+ *
+ * <p>The number of remembered outcomes is capped (see {@link
+ * #MemoizingParseRunner(Rule, int)}). When the cap is reached, the outcomes
+ * recorded at the positions furthest behind the current one (those before
+ * the middle of the lowest recorded position and the current one) are
+ * dropped, since a parse rarely backtracks that far; all outcomes are dropped
+ * only if this frees nothing. All entries are also dropped at the beginning of
+ * a parsing run.</p>
+ *
+ * <p>Recording an outcome only costs in proportion to the values the match
+ * changed on the value stack (see {@link MemoEntry#match(Matcher,
+ * MatcherContext)}). However, sequences take a snapshot of the value stack
+ * each time they run; this runner therefore uses {@link PersistentValueStack}s
+ * by default, whose snapshots are O(1), so that parsing time stays linear in
+ * the size of the input.</p>
+ *
+ * <p>Note that only the effect of a match on the value stack is replayed; any
+ * other side effect of actions (on {@link com.github.fge.grappa.support.Var}s,
+ * on fields of the parser, etc) is not. Grammars relying on such side effects
+ * should not use this runner.</p>
+ *
+ * @param <V> type of values produced by the parser
+ *
+ * @see MemoEntry
+ */
+@SuppressWarnings("DesignForExtension")
+@ParametersAreNonnullByDefault
+@NonFinalForTesting
+public class MemoizingParseRunner<V>
+    extends AbstractParseRunner<V>
+    implements MatchHandler
+{
+    /**
+     * Default maximum number of memoized outcomes
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 1 << 20;
+
+    private final int maxEntries;
+
+    /*
+     * Outcomes per matcher, outside of and within predicates
+     */
+    private final Map<Matcher, PositionTable> memo = new IdentityHashMap<>();
+    private final Map<Matcher, PositionTable> predicateMemo
+        = new IdentityHashMap<>();
+
+    private int memoSize = 0;
+    /*
+     * No outcome is recorded before this position
+     */
+    private int lowestIndex = Integer.MAX_VALUE;
+    private int predicateDepth = 0;
+
+    /**
+     * Constructor with the default maximum number of entries
+     *
+     * @param rule the parser rule
+     *
+     * @see #DEFAULT_MAX_ENTRIES
+     */
+    public MemoizingParseRunner(final Rule rule)
+    {
+        this(rule, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param rule the parser rule
+     * @param maxEntries the maximum number of memoized outcomes
+     * @throws IllegalArgumentException maximum is not strictly positive
+     */
+    public MemoizingParseRunner(final Rule rule, final int maxEntries)
+    {
+        super(rule);
+        Preconditions.checkArgument(maxEntries > 0,
+            "maximum number of entries must be strictly positive");
+        this.maxEntries = maxEntries;
+        setValueStackSupplier(new Supplier<ValueStack<V>>()
+        {
+            @Override
+            public ValueStack<V> get()
+            {
+                return new PersistentValueStack<>();
+            }
+        });
+    }
+
+    @Override
+    public ParsingResult<V> run(final InputBuffer inputBuffer)
+    {
+        Objects.requireNonNull(inputBuffer, "inputBuffer");
+        resetValueStack();
+        memo.clear();
+        predicateMemo.clear();
+        memoSize = 0;
+        lowestIndex = Integer.MAX_VALUE;
+        predicateDepth = 0;
+
+        final MatcherContext<V> rootContext
+            = createRootContext(inputBuffer, this);
+        final boolean matched = rootContext.runMatcher();
+
+        return createParsingResult(matched, rootContext);
+    }
+
+    @Override
+    public <T> boolean match(final MatcherContext<T> context)
+    {
+        final Matcher matcher = context.getMatcher();
+        final MatcherType type = matcher.getType();
+
+        if (type != MatcherType.PREDICATE)
+            return isMemoizable(matcher) ? memoizedMatch(context)
+                : matcher.match(context);
+
+        predicateDepth++;
+        try {
+            return isMemoizable(matcher) ? memoizedMatch(context)
+                : matcher.match(context);
+        } finally {
+            predicateDepth--;
+        }
+    }
+
+    /**
+     * Tell whether the outcome of a matcher should be memoized
+     *
+     * <p>The default is to memoize composite and predicate matchers only.</p>
+     *
+     * @param matcher the matcher
+     * @return true if the matcher should be memoized
+     */
+    protected boolean isMemoizable(final Matcher matcher)
+    {
+        final MatcherType type = matcher.getType();
+        return type == MatcherType.COMPOSITE || type == MatcherType.PREDICATE;
+    }
+
+    /**
+     * Return the number of currently memoized outcomes
+     *
+     * @return see description
+     */
+    public final int getMemoSize()
+    {
+        return memoSize;
+    }
+
+    private <T> boolean memoizedMatch(final MatcherContext<T> context)
+    {
+        final Matcher matcher = context.getMatcher();
+        final Map<Matcher, PositionTable> tables = predicateDepth > 0
+            ? predicateMemo : memo;
+        final int index = context.getCurrentIndex();
+
+        final PositionTable table = tables.get(matcher);
+        final MemoEntry entry = table == null ? null : table.get(index);
+
+        if (entry != null && entry.replay(context.getValueStack())) {
+            if (!entry.isSuccess())
+                return false;
+            context.setCurrentIndex(entry.getEndIndex());
+            return true;
+        }
+
+        final MemoEntry newEntry = MemoEntry.match(matcher, context);
+
+        if (memoSize >= maxEntries)
+            evict(index);
+
+        // Look the table up again: the match may have evicted it
+        PositionTable newTable = tables.get(matcher);
+
+        if (newTable == null) {
+            newTable = new PositionTable(maxEntries);
+            tables.put(matcher, newTable);
+        }
+
+        final int sizeBefore = newTable.size();
+        newTable.put(index, newEntry);
+        memoSize += newTable.size() - sizeBefore;
+        lowestIndex = Math.min(lowestIndex, index);
+
+        return newEntry.isSuccess();
+    }
+
+    private void evict(final int index)
+    {
+        final int threshold = lowestIndex + (index - lowestIndex) / 2;
+
+        if (threshold > lowestIndex) {
+            removeBefore(memo, threshold);
+            removeBefore(predicateMemo, threshold);
+            lowestIndex = threshold;
+        }
+
+        if (memoSize < maxEntries)
+            return;
+
+        memo.clear();
+        predicateMemo.clear();
+        memoSize = 0;
+        lowestIndex = Integer.MAX_VALUE;
+    }
+
+    private void removeBefore(final Map<Matcher, PositionTable> tables,
+        final int index)
+    {
+        final Iterator<PositionTable> iterator = tables.values().iterator();
+        PositionTable table;
+
+        while (iterator.hasNext()) {
+            table = iterator.next();
+            memoSize -= table.removeBefore(index);
+            if (table.size() == 0)
+                iterator.remove();
+        }
+    }
+}
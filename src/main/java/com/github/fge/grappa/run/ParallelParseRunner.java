@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.run;
+
+import com.github.fge.grappa.buffers.CharSequenceInputBuffer;
+import com.github.fge.grappa.buffers.InputBuffer;
+import com.github.fge.grappa.buffers.SubInputBuffer;
+import com.github.fge.grappa.rules.Rule;
+import com.github.fge.grappa.stack.DefaultValueStack;
+import com.github.fge.grappa.stack.ValueStack;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.collect.Lists;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A parse runner splitting its input into chunks parsed concurrently
+ *
+ * <p>The input is cut into chunks of roughly a given size, on record
+ * boundaries found by a {@link RecordSplitter}; each chunk is then parsed, on
+ * a {@link ForkJoinPool}, by its own {@link BasicParseRunner} with its own
+ * value stack. The rule must therefore accept any sequence of complete
+ * records, for instance {@code sequence(zeroOrMore(record()), EOI)}.</p>
+ *
+ * <p>Chunks are parsed using {@link SubInputBuffer}s, so that positions
+ * reported while parsing a chunk are positions in the original input. The
+ * results of all chunks can be obtained with {@link #runChunks(InputBuffer)};
+ * {@link #run(InputBuffer)} merges them: the merged result is a success if
+ * all chunks are, and its value stack contains the values of all chunks, in
+ * the order of the chunks (the values of the last chunk being on top).</p>
+ *
+ * <p>Since chunks are parsed at the same time, the input must support
+ * concurrent reads. A {@link CharSequenceInputBuffer} is read directly (its
+ * character sequence must then be thread safe, as {@link String} is); any
+ * other buffer, for instance a {@link
+ * com.github.fge.grappa.buffers.MappedFileInputBuffer}, is first copied, on the
+ * calling thread, into a {@link CharSequenceInputBuffer}, and chunks are views
+ * of that copy.</p>
+ *
+ * <p>Parsers are not thread safe as soon as their rules use actions; this is
+ * why this runner takes a supplier of rules, which is called once per thread
+ * of the pool.</p>
+ *
+ * @param <V> type of values produced by the parser
+ */
+@ThreadSafe
+@ParametersAreNonnullByDefault
+public final class ParallelParseRunner<V>
+    implements ParseRunner<V>
+{
+    /**
+     * Default target chunk size, in characters
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    private final ThreadLocal<BasicParseRunner<V>> runners;
+    private final RecordSplitter splitter;
+    private final int chunkSize;
+    private final ForkJoinPool pool;
+
+    /**
+     * Build a runner with the default chunk size, using a shared pool
+     *
+     * @param ruleSupplier the supplier of rules
+     * @param splitter the record splitter
+     */
+    public ParallelParseRunner(final Supplier<? extends Rule> ruleSupplier,
+        final RecordSplitter splitter)
+    {
+        this(ruleSupplier, splitter, DEFAULT_CHUNK_SIZE, PoolHolder.POOL);
+    }
+
+    /**
+     * Build a runner
+     *
+     * @param ruleSupplier the supplier of rules
+     * @param splitter the record splitter
+     * @param chunkSize the target chunk size
+     * @param pool the pool to parse chunks on
+     * @throws IllegalArgumentException chunk size is not strictly positive
+     */
+    public ParallelParseRunner(final Supplier<? extends Rule> ruleSupplier,
+        final RecordSplitter splitter, final int chunkSize,
+        final ForkJoinPool pool)
+    {
+        Objects.requireNonNull(ruleSupplier, "ruleSupplier");
+        this.splitter = Objects.requireNonNull(splitter, "splitter");
+        Preconditions.checkArgument(chunkSize > 0,
+            "chunk size must be strictly positive");
+        this.chunkSize = chunkSize;
+        this.pool = Objects.requireNonNull(pool, "pool");
+        runners = new ThreadLocal<BasicParseRunner<V>>()
+        {
+            @Override
+            protected BasicParseRunner<V> initialValue()
+            {
+                return new BasicParseRunner<>(Objects.requireNonNull(
+                    ruleSupplier.get(), "rule supplier returned null"));
+            }
+        };
+    }
+
+    @Override
+    public ParsingResult<V> run(final CharSequence input)
+    {
+        Objects.requireNonNull(input, "input");
+        return run(new CharSequenceInputBuffer(input));
+    }
+
+    @Override
+    public ParsingResult<V> run(final InputBuffer inputBuffer)
+    {
+        final List<ParsingResult<V>> results = runChunks(inputBuffer);
+        final ValueStack<V> valueStack = new DefaultValueStack<>();
+        boolean success = true;
+
+        for (final ParsingResult<V> result: results) {
+            success &= result.isSuccess();
+            // Stacks iterate from the top: push the values bottom up
+            for (final V value: Lists.reverse(Lists.newArrayList(
+                result.getValueStack())))
+                valueStack.push(value);
+        }
+
+        return new ParsingResult<>(success, valueStack, inputBuffer);
+    }
+
+    /**
+     * Parse all chunks of an input, and return their results
+     *
+     * <p>The input buffer of each result is a {@link SubInputBuffer}; its
+     * {@link SubInputBuffer#getStart() start} is the index of the chunk in
+     * the original input.</p>
+     *
+     * <p>If the input is not a {@link CharSequenceInputBuffer}, chunks are
+     * views of a copy of it, not of the input itself (see the class
+     * description).</p>
+     *
+     * @param inputBuffer the input
+     * @return the results, in the order of the chunks
+     */
+    public List<ParsingResult<V>> runChunks(final InputBuffer inputBuffer)
+    {
+        Objects.requireNonNull(inputBuffer, "inputBuffer");
+
+        final List<ChunkTask> tasks = new ArrayList<>();
+
+        for (final SubInputBuffer chunk: split(inputBuffer))
+            tasks.add(new ChunkTask(chunk));
+
+        pool.invoke(new RecursiveAction()
+        {
+            @Override
+            protected void compute()
+            {
+                invokeAll(tasks);
+            }
+        });
+
+        final List<ParsingResult<V>> ret = new ArrayList<>(tasks.size());
+
+        for (final ChunkTask task: tasks)
+            ret.add(task.join());
+
+        return ret;
+    }
+
+    private List<SubInputBuffer> split(final InputBuffer input)
+    {
+        final InputBuffer inputBuffer = input instanceof CharSequenceInputBuffer
+            ? input : new CharSequenceInputBuffer(input.extract(0,
+            input.length()));
+        final List<SubInputBuffer> ret = new ArrayList<>();
+        final int length = inputBuffer.length();
+
+        int start = 0;
+        int end;
+
+        while (start < length) {
+            end = length - start <= chunkSize ? length
+                : splitter.nextBoundary(inputBuffer, start + chunkSize);
+            if (end <= start || end > length)
+                throw new IllegalStateException("record splitter returned an"
+                    + " illegal boundary (" + end + ") after index " + start);
+            ret.add(new SubInputBuffer(inputBuffer, start, end));
+            start = end;
+        }
+
+        if (ret.isEmpty())
+            ret.add(new SubInputBuffer(inputBuffer, 0, 0));
+
+        return ret;
+    }
+
+    // never serialized
+    @SuppressWarnings("serial")
+    private final class ChunkTask
+        extends RecursiveTask<ParsingResult<V>>
+    {
+        private final InputBuffer chunk;
+
+        private ChunkTask(final InputBuffer chunk)
+        {
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected ParsingResult<V> compute()
+        {
+            return runners.get().run(chunk);
+        }
+    }
+
+    /*
+     * Only created when a runner is built without an explicit pool
+     */
+    private static final class PoolHolder
+    {
+        private static final ForkJoinPool POOL = new ForkJoinPool();
+    }
+}
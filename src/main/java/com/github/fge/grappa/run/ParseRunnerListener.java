@@ -25,30 +25,77 @@ import com.google.common.eventbus.Subscribe;
 
 import javax.annotation.ParametersAreNonnullByDefault;
 
+/**
+ * A listener to the events of a {@link ListeningParseRunner}
+ *
+ * <p>All methods do nothing by default; override the ones you need.</p>
+ *
+ * <p>Match events are reused by the runner, once per context level: the
+ * events passed to {@link #beforeMatch(PreMatchEvent)}, {@link
+ * #matchSuccess(MatchSuccessEvent)} and {@link
+ * #matchFailure(MatchFailureEvent)} are only valid for the duration of the
+ * call.</p>
+ *
+ * <p>Methods of subclasses annotated with Guava's {@link Subscribe} are still
+ * called with the events they accept, as they were when events were
+ * dispatched using an event bus. This is deprecated; override the methods of
+ * this class instead.</p>
+ *
+ * @param <V> type of values produced by the parser
+ */
 @ParametersAreNonnullByDefault
 public class ParseRunnerListener<V>
 {
-    @Subscribe
+    /**
+     * Called once before the parsing run starts
+     *
+     * @param event the event
+     */
     public void beforeParse(final PreParseEvent<V> event)
     {
     }
 
-    @Subscribe
+    /**
+     * Called before a matcher is run
+     *
+     * <p>The event is reused for other matchers at the same context level:
+     * do not keep a reference to it, or to its context, after this call.</p>
+     *
+     * @param event the event
+     */
     public void beforeMatch(final PreMatchEvent<V> event)
     {
     }
 
-    @Subscribe
+    /**
+     * Called when a matcher succeeds
+     *
+     * <p>The event is reused for other matchers at the same context level:
+     * do not keep a reference to it, or to its context, after this call.</p>
+     *
+     * @param event the event
+     */
     public void matchSuccess(final MatchSuccessEvent<V> event)
     {
     }
 
-    @Subscribe
+    /**
+     * Called when a matcher fails
+     *
+     * <p>The event is reused for other matchers at the same context level:
+     * do not keep a reference to it, or to its context, after this call.</p>
+     *
+     * @param event the event
+     */
     public void matchFailure(final MatchFailureEvent<V> event)
     {
     }
 
-    @Subscribe
+    /**
+     * Called once the parsing run is over
+     *
+     * @param event the event
+     */
     public void afterParse(final PostParseEvent<V> event)
     {
     }
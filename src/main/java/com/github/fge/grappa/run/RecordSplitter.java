@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.run;
+
+import com.github.fge.grappa.buffers.InputBuffer;
+import com.github.fge.grappa.buffers.SubInputBuffer;
+import com.github.fge.grappa.matchers.base.Matcher;
+import com.github.fge.grappa.rules.Rule;
+import com.github.fge.grappa.run.context.DefaultMatcherContext;
+import com.github.fge.grappa.run.context.MatcherContext;
+import com.github.fge.grappa.stack.DefaultValueStack;
+import com.github.fge.grappa.stack.ValueStack;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Objects;
+
+/**
+ * A strategy to find record boundaries in an input
+ *
+ * <p>A {@link ParallelParseRunner} uses a splitter to cut its input into
+ * chunks which can be parsed independently of each other: a boundary is the
+ * index of the first character of a record.</p>
+ *
+ * <p>Implementations must be thread safe.</p>
+ *
+ * @see #newline()
+ * @see #delimiter(Rule)
+ */
+@ParametersAreNonnullByDefault
+public abstract class RecordSplitter
+{
+    private static final RecordSplitter NEWLINE = new RecordSplitter()
+    {
+        @Override
+        public int nextBoundary(final InputBuffer buffer, final int index)
+        {
+            final int length = buffer.length();
+
+            for (int i = index; i < length; i++)
+                if (buffer.charAt(i) == '\n')
+                    return i + 1;
+
+            return length;
+        }
+    };
+
+    /**
+     * Return a splitter where records are lines
+     *
+     * @return a splitter cutting after line feeds
+     */
+    public static RecordSplitter newline()
+    {
+        return NEWLINE;
+    }
+
+    /**
+     * Return a splitter where records are separated by matches of a rule
+     *
+     * <p>The boundary is the end of the first match of the rule found from
+     * the given index. The rule must match a non empty text, and must not
+     * have actions, since it is run concurrently.</p>
+     *
+     * @param rule the delimiter rule
+     * @return a splitter cutting after matches of the rule
+     */
+    public static RecordSplitter delimiter(final Rule rule)
+    {
+        final Matcher matcher = (Matcher) Objects.requireNonNull(rule,
+            "rule");
+
+        return new RecordSplitter()
+        {
+            @Override
+            public int nextBoundary(final InputBuffer buffer, final int index)
+            {
+                final int length = buffer.length();
+                final MatchHandler handler = new MatchHandler()
+                {
+                    @Override
+                    public <V> boolean match(final MatcherContext<V> context)
+                    {
+                        return context.getMatcher().match(context);
+                    }
+                };
+
+                final ValueStack<Object> stack = new DefaultValueStack<>();
+                DefaultMatcherContext<Object> context = null;
+                InputBuffer sub;
+
+                for (int i = index; i < length; i++) {
+                    sub = new SubInputBuffer(buffer, i, length);
+                    stack.clear();
+                    if (context == null)
+                        context = new DefaultMatcherContext<>(sub, stack,
+                            handler, matcher);
+                    else
+                        context.reset(sub, matcher);
+                    if (context.runMatcher() && context.getCurrentIndex() > 0)
+                        return i + context.getCurrentIndex();
+                }
+
+                return length;
+            }
+        };
+    }
+
+    /**
+     * Find the first record boundary at or after a given index
+     *
+     * @param buffer the input
+     * @param index the index to start searching from
+     * @return the boundary, or the length of the input if there is none
+     */
+    public abstract int nextBoundary(InputBuffer buffer, int index);
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.run.budget;
+
+import com.github.fge.grappa.exceptions.ParseBudgetExceededException;
+import com.github.fge.grappa.exceptions.ParseBudgetExceededException.Limit;
+import com.github.fge.grappa.run.MatchHandler;
+import com.github.fge.grappa.run.context.MatcherContext;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * The match handler enforcing a {@link ParseBudget} over one parsing run
+ *
+ * <p>Only the depth is checked on each invocation; the other checks are done
+ * when the invocation count reaches the next checkpoint, which is also how the
+ * maximum number of invocations is enforced exactly.</p>
+ */
+@NotThreadSafe
+final class BudgetMatchHandler
+    implements MatchHandler
+{
+    private final ParseBudget budget;
+    private final MatchHandler delegate;
+    private final boolean hasDeadline;
+    private final long deadline;
+
+    private long invocations = 0L;
+    private long nextCheck = 1L;
+
+    BudgetMatchHandler(final ParseBudget budget, final MatchHandler delegate)
+    {
+        this.budget = budget;
+        this.delegate = delegate;
+        hasDeadline = budget.timeoutNanos != Long.MAX_VALUE;
+        deadline = hasDeadline ? System.nanoTime() + budget.timeoutNanos : 0L;
+    }
+
+    @Override
+    public <V> boolean match(final MatcherContext<V> context)
+    {
+        if (context.getLevel() > budget.maxDepth)
+            throw exceeded(Limit.DEPTH, context);
+        if (++invocations >= nextCheck)
+            check(context);
+        return delegate.match(context);
+    }
+
+    private void check(final MatcherContext<?> context)
+    {
+        if (invocations > budget.maxInvocations)
+            throw exceeded(Limit.INVOCATIONS, context);
+
+        final long remaining = budget.maxInvocations - invocations;
+        nextCheck = remaining < budget.checkInterval
+            ? budget.maxInvocations + 1L
+            : invocations + budget.checkInterval;
+
+        if (context.getValueStack().size() > budget.maxStackSize)
+            throw exceeded(Limit.STACK_SIZE, context);
+        if (budget.token != null && budget.token.isCancelled())
+            throw exceeded(Limit.CANCELLED, context);
+        if (Thread.currentThread().isInterrupted())
+            throw exceeded(Limit.INTERRUPTED, context);
+        if (hasDeadline && System.nanoTime() - deadline > 0L)
+            throw exceeded(Limit.DEADLINE, context);
+    }
+
+    private static ParseBudgetExceededException exceeded(final Limit limit,
+        final MatcherContext<?> context)
+    {
+        final int index = context.getCurrentIndex();
+        return new ParseBudgetExceededException(limit, index,
+            context.getInputBuffer().getPosition(index));
+    }
+}
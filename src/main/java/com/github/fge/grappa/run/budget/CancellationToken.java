@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.run.budget;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A token used to cancel parsing runs from another thread
+ *
+ * <p>Cancellation is only noticed at the next budget check (see {@link
+ * ParseBudgetBuilder#checkInterval(int)}); once cancelled, a token remains so.
+ * </p>
+ *
+ * @see ParseBudgetBuilder#cancellationToken(CancellationToken)
+ */
+@ThreadSafe
+public final class CancellationToken
+{
+    private volatile boolean cancelled = false;
+
+    public void cancel()
+    {
+        cancelled = true;
+    }
+
+    public boolean isCancelled()
+    {
+        return cancelled;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.run.budget;
+
+import com.github.fge.grappa.exceptions.ParseBudgetExceededException;
+import com.github.fge.grappa.run.MatchHandler;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+import java.util.Objects;
+
+/**
+ * Limits on the work a single parsing run may do
+ *
+ * <p>A budget may limit the number of matcher invocations, the depth of
+ * matcher contexts, the size of the value stack and the duration of a run;
+ * a run may also be cancelled using a {@link CancellationToken} or by
+ * interrupting the parsing thread. When a limit is hit, the run fails with a
+ * {@link ParseBudgetExceededException}.</p>
+ *
+ * <p>The depth is checked for each invocation; all other checks are only
+ * performed every {@link ParseBudgetBuilder#checkInterval(int) n}
+ * invocations, so that they cost next to nothing.</p>
+ *
+ * <p>Use {@link #newBuilder()} to create a budget; by default, nothing is
+ * limited.</p>
+ *
+ * @see com.github.fge.grappa.run.AbstractParseRunner#setParseBudget(
+ * ParseBudget)
+ */
+@Immutable
+@ParametersAreNonnullByDefault
+public final class ParseBudget
+{
+    final long maxInvocations;
+    final int maxDepth;
+    final int maxStackSize;
+    final long timeoutNanos;
+    @Nullable
+    final CancellationToken token;
+    final int checkInterval;
+
+    /**
+     * Create a new builder for this class
+     *
+     * @return a builder
+     */
+    public static ParseBudgetBuilder newBuilder()
+    {
+        return new ParseBudgetBuilder();
+    }
+
+    ParseBudget(final ParseBudgetBuilder builder)
+    {
+        maxInvocations = builder.maxInvocations;
+        maxDepth = builder.maxDepth;
+        maxStackSize = builder.maxStackSize;
+        timeoutNanos = builder.timeoutNanos;
+        token = builder.token;
+        checkInterval = builder.checkInterval;
+    }
+
+    /**
+     * Create the match handler enforcing this budget for one parsing run
+     *
+     * <p>The time limit starts when this method is called.</p>
+     *
+     * @param delegate the match handler of the run
+     * @return a new match handler
+     */
+    @Nonnull
+    public MatchHandler newHandler(final MatchHandler delegate)
+    {
+        Objects.requireNonNull(delegate, "delegate");
+        return new BudgetMatchHandler(this, delegate);
+    }
+}
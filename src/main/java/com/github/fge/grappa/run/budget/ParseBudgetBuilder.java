@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.run.budget;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nonnull;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A builder for a {@link ParseBudget}
+ */
+public final class ParseBudgetBuilder
+{
+    /**
+     * Default number of invocations between two budget checks
+     */
+    public static final int DEFAULT_CHECK_INTERVAL = 1024;
+
+    long maxInvocations = Long.MAX_VALUE;
+    int maxDepth = Integer.MAX_VALUE;
+    int maxStackSize = Integer.MAX_VALUE;
+    long timeoutNanos = Long.MAX_VALUE;
+    CancellationToken token = null;
+    int checkInterval = DEFAULT_CHECK_INTERVAL;
+
+    ParseBudgetBuilder()
+    {
+    }
+
+    /**
+     * Limit the number of matcher invocations of a run
+     *
+     * @param maxInvocations the maximum number of invocations
+     * @return this
+     * @throws IllegalArgumentException maximum is not strictly positive
+     */
+    public ParseBudgetBuilder maxInvocations(final long maxInvocations)
+    {
+        Preconditions.checkArgument(maxInvocations > 0L,
+            "maximum number of invocations must be strictly positive");
+        this.maxInvocations = maxInvocations;
+        return this;
+    }
+
+    /**
+     * Limit the level of matcher contexts
+     *
+     * @param maxDepth the maximum level (the root context has level 0)
+     * @return this
+     * @throws IllegalArgumentException maximum is negative
+     *
+     * @see com.github.fge.grappa.run.context.Context#getLevel()
+     */
+    public ParseBudgetBuilder maxDepth(final int maxDepth)
+    {
+        Preconditions.checkArgument(maxDepth >= 0,
+            "maximum depth must not be negative");
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    /**
+     * Limit the size of the value stack
+     *
+     * @param maxStackSize the maximum number of values on the stack
+     * @return this
+     * @throws IllegalArgumentException maximum is negative
+     */
+    public ParseBudgetBuilder maxStackSize(final int maxStackSize)
+    {
+        Preconditions.checkArgument(maxStackSize >= 0,
+            "maximum stack size must not be negative");
+        this.maxStackSize = maxStackSize;
+        return this;
+    }
+
+    /**
+     * Limit the duration of a run
+     *
+     * @param duration the maximum duration
+     * @param unit the unit of the duration
+     * @return this
+     * @throws IllegalArgumentException duration is not strictly positive
+     */
+    public ParseBudgetBuilder timeout(final long duration,
+        @Nonnull final TimeUnit unit)
+    {
+        Objects.requireNonNull(unit, "unit");
+        Preconditions.checkArgument(duration > 0L,
+            "timeout must be strictly positive");
+        timeoutNanos = unit.toNanos(duration);
+        return this;
+    }
+
+    /**
+     * Allow runs to be cancelled using a token
+     *
+     * @param token the token
+     * @return this
+     */
+    public ParseBudgetBuilder cancellationToken(
+        @Nonnull final CancellationToken token)
+    {
+        this.token = Objects.requireNonNull(token, "token");
+        return this;
+    }
+
+    /**
+     * Set the number of invocations between two checks of the limits other
+     * than the depth
+     *
+     * @param checkInterval the number of invocations
+     * @return this
+     * @throws IllegalArgumentException interval is not strictly positive
+     *
+     * @see #DEFAULT_CHECK_INTERVAL
+     */
+    public ParseBudgetBuilder checkInterval(final int checkInterval)
+    {
+        Preconditions.checkArgument(checkInterval > 0,
+            "check interval must be strictly positive");
+        this.checkInterval = checkInterval;
+        return this;
+    }
+
+    public ParseBudget build()
+    {
+        return new ParseBudget(this);
+    }
+}
@@ -36,6 +36,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * <p>The Context implementation orchestrating most of the matching process.</p>
@@ -72,12 +73,19 @@ public final class DefaultMatcherContext<V>
     implements MatcherContext<V>
 {
     private static final Joiner JOINER = Joiner.on('/');
+    private static final AtomicLong RUN_IDS = new AtomicLong();
 
-    private final InputBuffer inputBuffer;
+    private InputBuffer inputBuffer;
     private final ValueStack<V> valueStack;
     private final MatchHandler matchHandler;
     private final DefaultMatcherContext<V> parent;
     private final int level;
+    private long runId;
+    /*
+     * Whether the matcher of this context, or of one of its parents, is a
+     * predicate; kept up to date when the matcher changes
+     */
+    private boolean inPredicate;
 
     private DefaultMatcherContext<V> subContext;
     private int startIndex;
@@ -105,7 +113,7 @@ public final class DefaultMatcherContext<V>
             Objects.requireNonNull(matchHandler, "matchHandler"), null, 0);
         Objects.requireNonNull(matcher);
         // TODO: what the...
-        this.matcher = ProxyMatcher.unwrap(matcher);
+        setMatcher(ProxyMatcher.unwrap(matcher));
     }
 
     private DefaultMatcherContext(final InputBuffer inputBuffer,
@@ -118,6 +126,38 @@ public final class DefaultMatcherContext<V>
         this.matchHandler = matchHandler;
         this.parent = parent;
         this.level = level;
+        runId = parent == null ? RUN_IDS.incrementAndGet() : parent.runId;
+    }
+
+    /**
+     * Prepare this root context for a new parsing run
+     *
+     * <p>The subcontexts created by previous runs are kept and reused; they are
+     * bound to the new input buffer, and get a new {@link #getRunId() run
+     * identifier}. Note that the value stack is not cleared.</p>
+     *
+     * @param inputBuffer the input buffer for the new run
+     * @param matcher the root matcher
+     * @throws IllegalStateException this is not a root context
+     */
+    public void reset(@Nonnull final InputBuffer inputBuffer,
+        @Nonnull final Matcher matcher)
+    {
+        Preconditions.checkState(parent == null, "not a root context");
+        Objects.requireNonNull(inputBuffer, "inputBuffer");
+        setMatcher(ProxyMatcher.unwrap(Objects.requireNonNull(matcher)));
+        startIndex = 0;
+        currentIndex = 0;
+        hasError = false;
+
+        final long newRunId = RUN_IDS.incrementAndGet();
+
+        for (DefaultMatcherContext<V> context = this; context != null;
+            context = context.subContext) {
+            context.inputBuffer = inputBuffer;
+            context.runId = newRunId;
+            context.path = null;
+        }
     }
 
     @Override
@@ -177,15 +217,23 @@ public final class DefaultMatcherContext<V>
         return level;
     }
 
+    /**
+     * Return the identifier of the current parsing run
+     *
+     * <p>All contexts of a run share the same identifier; a new root context,
+     * or a root context which is reset for a new run, gets a new one.</p>
+     *
+     * @return the run identifier
+     */
+    public long getRunId()
+    {
+        return runId;
+    }
+
     @Override
     public boolean inPredicate()
     {
-        //noinspection SimplifiableIfStatement
-        if (matcher.getType() == MatcherType.PREDICATE)
-            return true;
-
-        return parent != null && parent.inPredicate();
-
+        return inPredicate;
     }
 
     @Override
@@ -255,6 +303,9 @@ public final class DefaultMatcherContext<V>
     public void setMatcher(final Matcher matcher)
     {
         this.matcher = matcher;
+        // null retires the context
+        inPredicate = parent != null && parent.inPredicate
+            || matcher != null && matcher.getType() == MatcherType.PREDICATE;
     }
 
     @Override
@@ -296,7 +347,7 @@ public final class DefaultMatcherContext<V>
     {
         final DefaultMatcherContext<V> sc
             = (DefaultMatcherContext<V>) getBasicSubContext();
-        sc.matcher = matcher;
+        sc.setMatcher(matcher);
         sc.setStartIndex(currentIndex);
         sc.setCurrentIndex(currentIndex);
         sc.hasError = false;
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.run.memo;
+
+import com.github.fge.grappa.matchers.base.Matcher;
+import com.github.fge.grappa.run.context.MatcherContext;
+import com.github.fge.grappa.stack.ValueStack;
+import com.github.fge.grappa.stack.ValueStackBase;
+import com.google.common.collect.Iterables;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * The memoized outcome of a matcher at a given input position
+ *
+ * <p>An entry records whether the match succeeded, the index at which it
+ * ended, and the effect the match had on the value stack: the values it
+ * removed from the top of the stack, and the values it left there instead.</p>
+ *
+ * <p>Values are compared by reference: an entry can only be {@link
+ * #replay(ValueStack) replayed} if the values it popped when it was recorded
+ * are the very same objects which are on top of the stack at replay time.</p>
+ *
+ * <p>When the value stack extends {@link ValueStackBase}, {@link
+ * #match(Matcher, MatcherContext)} uses change tracking so that the cost of
+ * recording an entry is proportional to the number of values the match
+ * changed; other value stacks are copied entirely before and after the match.
+ * </p>
+ */
+@Immutable
+@ParametersAreNonnullByDefault
+public final class MemoEntry
+{
+    private static final Object[] NO_VALUES = new Object[0];
+
+    private final boolean success;
+    private final int endIndex;
+    // Both arrays have the top of the stack first
+    private final Object[] popped;
+    private final Object[] pushed;
+
+    /**
+     * Run a matcher and record its outcome
+     *
+     * @param matcher the matcher
+     * @param context the context to run the matcher with
+     * @return a new entry
+     */
+    @Nonnull
+    public static MemoEntry match(final Matcher matcher,
+        final MatcherContext<?> context)
+    {
+        final ValueStack<?> stack = context.getValueStack();
+
+        if (!(stack instanceof ValueStackBase)) {
+            final Object[] before = stackContents(stack);
+            final boolean success = matcher.match(context);
+            return record(success, context.getCurrentIndex(), before, stack);
+        }
+
+        final ValueStackBase<?> base = (ValueStackBase<?>) stack;
+        final int sizeBefore = base.size();
+        boolean success = false;
+        Object[] popped = NO_VALUES;
+
+        base.startTracking();
+        try {
+            success = matcher.match(context);
+        } finally {
+            popped = base.endTracking();
+        }
+
+        final int untouched = sizeBefore - popped.length;
+        final int nrPushed = base.size() - untouched;
+        final Object[] pushed = nrPushed == 0 ? NO_VALUES
+            : new Object[nrPushed];
+        final Iterator<?> iterator = base.iterator();
+
+        for (int i = 0; i < nrPushed; i++)
+            pushed[i] = iterator.next();
+
+        return new MemoEntry(success, context.getCurrentIndex(), popped,
+            pushed);
+    }
+
+    /**
+     * Capture the contents of a value stack before running a matcher
+     *
+     * @param stack the value stack
+     * @return the values of the stack, top first
+     */
+    @Nonnull
+    public static Object[] stackContents(final ValueStack<?> stack)
+    {
+        return stack.isEmpty() ? NO_VALUES
+            : Iterables.toArray(stack, Object.class);
+    }
+
+    /**
+     * Record the outcome of a matcher
+     *
+     * @param success whether the matcher succeeded
+     * @param endIndex the index at which the match ended
+     * @param before the contents of the stack before the match (see {@link
+     * #stackContents(ValueStack)})
+     * @param stack the value stack after the match
+     * @return a new entry
+     */
+    @Nonnull
+    public static MemoEntry record(final boolean success, final int endIndex,
+        final Object[] before, final ValueStack<?> stack)
+    {
+        final Object[] after = stackContents(stack);
+
+        int beforeIndex = before.length;
+        int afterIndex = after.length;
+
+        /*
+         * Find the part of the stack which has been left untouched; since the
+         * top of the stack comes first, this is a common suffix.
+         */
+        while (beforeIndex > 0 && afterIndex > 0
+            && before[beforeIndex - 1] == after[afterIndex - 1]) {
+            beforeIndex--;
+            afterIndex--;
+        }
+
+        final Object[] popped = beforeIndex == 0 ? NO_VALUES
+            : Arrays.copyOf(before, beforeIndex);
+        final Object[] pushed = afterIndex == 0 ? NO_VALUES
+            : Arrays.copyOf(after, afterIndex);
+
+        return new MemoEntry(success, endIndex, popped, pushed);
+    }
+
+    private MemoEntry(final boolean success, final int endIndex,
+        final Object[] popped, final Object[] pushed)
+    {
+        this.success = success;
+        this.endIndex = endIndex;
+        this.popped = popped;
+        this.pushed = pushed;
+    }
+
+    public boolean isSuccess()
+    {
+        return success;
+    }
+
+    public int getEndIndex()
+    {
+        return endIndex;
+    }
+
+    /**
+     * Apply the recorded stack effect to a value stack
+     *
+     * <p>If the values on top of the stack are not the ones which were
+     * popped when this entry was recorded, the stack is left untouched and
+     * this method returns false; the caller should then run the matcher
+     * normally.</p>
+     *
+     * @param stack the value stack
+     * @return true if the effect was applied
+     */
+    @SuppressWarnings("unchecked")
+    public boolean replay(final ValueStack<?> stack)
+    {
+        final int nrPopped = popped.length;
+
+        if (stack.size() < nrPopped)
+            return false;
+
+        for (int i = 0; i < nrPopped; i++)
+            if (stack.peek(i) != popped[i])
+                return false;
+
+        final ValueStack<Object> values = (ValueStack<Object>) stack;
+
+        for (int i = 0; i < nrPopped; i++)
+            values.pop();
+        for (int i = pushed.length - 1; i >= 0; i--)
+            values.push(pushed[i]);
+
+        return true;
+    }
+}
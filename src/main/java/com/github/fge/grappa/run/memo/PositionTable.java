@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.run.memo;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Arrays;
+
+/**
+ * A compact map of input positions to {@link MemoEntry}s
+ *
+ * <p>Positions are stored in an open addressing table of primitive ints, with
+ * linear probing; there is no per entry allocation besides the memo entries
+ * themselves.</p>
+ *
+ * <p>The table grows as needed up to a maximum number of entries; when an
+ * entry is added to a full table, all existing entries are dropped first.
+ * Entries for positions before a given one can also be dropped (see {@link
+ * #removeBefore(int)}).</p>
+ */
+@NotThreadSafe
+@ParametersAreNonnullByDefault
+public final class PositionTable
+{
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int NO_KEY = -1;
+
+    private final int maxEntries;
+
+    private int[] keys;
+    private MemoEntry[] entries;
+    private int size = 0;
+
+    /**
+     * Constructor
+     *
+     * @param maxEntries the maximum number of entries
+     * @throws IllegalArgumentException maximum is not strictly positive
+     */
+    public PositionTable(final int maxEntries)
+    {
+        Preconditions.checkArgument(maxEntries > 0,
+            "maximum number of entries must be strictly positive");
+        this.maxEntries = maxEntries;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Return the entry for a position
+     *
+     * @param index the position
+     * @return the entry, or null if there is none
+     */
+    @Nullable
+    public MemoEntry get(final int index)
+    {
+        final int mask = keys.length - 1;
+        int slot = hash(index) & mask;
+        int key;
+
+        while ((key = keys[slot]) != NO_KEY) {
+            if (key == index)
+                return entries[slot];
+            slot = (slot + 1) & mask;
+        }
+
+        return null;
+    }
+
+    /**
+     * Record the entry for a position
+     *
+     * @param index the position
+     * @param entry the entry
+     */
+    public void put(final int index, final MemoEntry entry)
+    {
+        Preconditions.checkArgument(index >= 0, "negative index");
+
+        if (size >= maxEntries)
+            clear();
+        else if (size * 2 >= keys.length)
+            grow();
+
+        final int mask = keys.length - 1;
+        int slot = hash(index) & mask;
+        int key;
+
+        while ((key = keys[slot]) != NO_KEY) {
+            if (key == index) {
+                entries[slot] = entry;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = index;
+        entries[slot] = entry;
+        size++;
+    }
+
+    /**
+     * Drop the entries for all positions before a given one
+     *
+     * @param index the position
+     * @return the number of dropped entries
+     */
+    public int removeBefore(final int index)
+    {
+        final int[] oldKeys = keys;
+        final MemoEntry[] oldEntries = entries;
+        final int oldSize = size;
+
+        allocate(oldKeys.length);
+        size = 0;
+
+        final int mask = keys.length - 1;
+        int slot;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == NO_KEY || oldKeys[i] < index)
+                continue;
+            slot = hash(oldKeys[i]) & mask;
+            while (keys[slot] != NO_KEY)
+                slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            entries[slot] = oldEntries[i];
+            size++;
+        }
+
+        return oldSize - size;
+    }
+
+    /**
+     * Drop all entries
+     */
+    public void clear()
+    {
+        if (size == 0)
+            return;
+        Arrays.fill(keys, NO_KEY);
+        Arrays.fill(entries, null);
+        size = 0;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    @VisibleForTesting
+    int getCapacity()
+    {
+        return keys.length;
+    }
+
+    private void grow()
+    {
+        final int[] oldKeys = keys;
+        final MemoEntry[] oldEntries = entries;
+
+        allocate(oldKeys.length * 2);
+
+        final int mask = keys.length - 1;
+        int slot;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == NO_KEY)
+                continue;
+            slot = hash(oldKeys[i]) & mask;
+            while (keys[slot] != NO_KEY)
+                slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            entries[slot] = oldEntries[i];
+        }
+    }
+
+    private void allocate(final int capacity)
+    {
+        keys = new int[capacity];
+        Arrays.fill(keys, NO_KEY);
+        entries = new MemoEntry[capacity];
+    }
+
+    /*
+     * Positions probed by a rule are often consecutive; spread them
+     */
+    private static int hash(final int index)
+    {
+        final int h = index * 0x9E3779B9;
+        return h ^ h >>> 16;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.run.profile;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Arrays;
+
+/**
+ * A latency histogram with fixed, power of two buckets
+ *
+ * <p>Bucket {@code 0} counts durations of zero nanoseconds; bucket {@code n}
+ * (for {@code n} greater than zero) counts durations between 2<sup>n-1</sup>
+ * (inclusive) and 2<sup>n</sup> (exclusive) nanoseconds. Recording a duration
+ * is therefore a constant time operation which never allocates, and the
+ * precision of the histogram is within a factor of two.</p>
+ */
+@NotThreadSafe
+public final class LatencyHistogram
+{
+    /**
+     * Number of buckets
+     */
+    public static final int NR_BUCKETS = 64;
+
+    private final long[] buckets = new long[NR_BUCKETS];
+    private long count = 0L;
+    private long total = 0L;
+    private long max = 0L;
+
+    /**
+     * Record a duration
+     *
+     * @param nanos the duration, in nanoseconds; negative values are recorded
+     * as zero
+     */
+    public void record(final long nanos)
+    {
+        final long value = Math.max(nanos, 0L);
+        buckets[bucketOf(value)]++;
+        count++;
+        total += value;
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Add the contents of another histogram to this one
+     *
+     * @param other the other histogram
+     */
+    public void add(final LatencyHistogram other)
+    {
+        for (int i = 0; i < NR_BUCKETS; i++)
+            buckets[i] += other.buckets[i];
+        count += other.count;
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+    public long getCount()
+    {
+        return count;
+    }
+
+    public long getTotal()
+    {
+        return total;
+    }
+
+    public long getMax()
+    {
+        return max;
+    }
+
+    /**
+     * Return the number of durations recorded in a given bucket
+     *
+     * @param bucket the bucket index
+     * @return the count
+     * @throws IllegalArgumentException illegal bucket index
+     */
+    public long getBucketCount(final int bucket)
+    {
+        Preconditions.checkArgument(bucket >= 0 && bucket < NR_BUCKETS,
+            "illegal bucket index %s", bucket);
+        return buckets[bucket];
+    }
+
+    /**
+     * Return an upper bound of a percentile of the recorded durations
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the upper bound of the bucket containing this percentile, capped
+     * by the maximum recorded duration; 0 if nothing was recorded
+     * @throws IllegalArgumentException illegal percentile
+     */
+    public long getPercentile(final double percentile)
+    {
+        Preconditions.checkArgument(percentile >= 0.0 && percentile <= 100.0,
+            "illegal percentile %s", percentile);
+
+        if (count == 0L)
+            return 0L;
+
+        final long rank = Math.max(1L,
+            (long) Math.ceil(count * percentile / 100.0));
+        long seen = 0L;
+
+        for (int i = 0; i < NR_BUCKETS; i++) {
+            seen += buckets[i];
+            if (seen >= rank)
+                return Math.min(max, upperBoundOf(i));
+        }
+
+        return max;
+    }
+
+    void reset()
+    {
+        Arrays.fill(buckets, 0L);
+        count = 0L;
+        total = 0L;
+        max = 0L;
+    }
+
+    private static int bucketOf(final long nanos)
+    {
+        return Math.min(NR_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+    }
+
+    private static long upperBoundOf(final int bucket)
+    {
+        return bucket >= NR_BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1L;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.run.profile;
+
+import com.github.fge.grappa.matchers.MatcherType;
+import com.github.fge.grappa.matchers.base.Matcher;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Aggregated profiling data for one matcher
+ *
+ * <p>Times are in nanoseconds. The inclusive time of a matcher includes the
+ * time spent in its children; its exclusive time does not.</p>
+ *
+ * <p>Consumed characters are the characters matched by successful
+ * invocations; backtracked characters are the characters a failed invocation
+ * had advanced over before it failed, and which will therefore be read
+ * again.</p>
+ *
+ * @see ProfilingListener
+ */
+@NotThreadSafe
+public final class MatcherProfile
+{
+    private final Matcher matcher;
+
+    long invocations = 0L;
+    long successes = 0L;
+    long consumedChars = 0L;
+    long backtrackedChars = 0L;
+    final LatencyHistogram inclusiveTimes = new LatencyHistogram();
+    final LatencyHistogram exclusiveTimes = new LatencyHistogram();
+
+    MatcherProfile(final Matcher matcher)
+    {
+        this.matcher = matcher;
+    }
+
+    public Matcher getMatcher()
+    {
+        return matcher;
+    }
+
+    public String getLabel()
+    {
+        return matcher.getLabel();
+    }
+
+    public MatcherType getType()
+    {
+        return matcher.getType();
+    }
+
+    public long getInvocations()
+    {
+        return invocations;
+    }
+
+    public long getSuccesses()
+    {
+        return successes;
+    }
+
+    public long getFailures()
+    {
+        return invocations - successes;
+    }
+
+    public long getConsumedChars()
+    {
+        return consumedChars;
+    }
+
+    public long getBacktrackedChars()
+    {
+        return backtrackedChars;
+    }
+
+    public long getInclusiveTime()
+    {
+        return inclusiveTimes.getTotal();
+    }
+
+    public long getExclusiveTime()
+    {
+        return exclusiveTimes.getTotal();
+    }
+
+    /**
+     * Return the histogram of the inclusive times of all invocations
+     *
+     * @return the histogram
+     */
+    public LatencyHistogram getInclusiveTimes()
+    {
+        return inclusiveTimes;
+    }
+
+    /**
+     * Return the histogram of the exclusive times of all invocations
+     *
+     * @return the histogram
+     */
+    public LatencyHistogram getExclusiveTimes()
+    {
+        return exclusiveTimes;
+    }
+
+    @Override
+    public String toString()
+    {
+        return matcher + ": " + invocations + " invocations, "
+            + getExclusiveTime() + " ns exclusive";
+    }
+}
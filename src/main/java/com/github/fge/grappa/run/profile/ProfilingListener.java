@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.run.profile;
+
+import com.github.fge.grappa.matchers.base.Matcher;
+import com.github.fge.grappa.run.ParseRunnerListener;
+import com.github.fge.grappa.run.context.MatcherContext;
+import com.github.fge.grappa.run.events.MatchFailureEvent;
+import com.github.fge.grappa.run.events.MatchSuccessEvent;
+import com.github.fge.grappa.run.events.PreMatchEvent;
+import com.github.fge.grappa.run.trace.LabelEscaper;
+import com.github.fge.grappa.run.trace.TracingListener;
+import com.google.common.escape.Escaper;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A listener aggregating profiling data for each matcher in memory
+ *
+ * <p>Unlike a {@link TracingListener}, which writes out every single event,
+ * this listener only keeps aggregated numbers for each matcher (see {@link
+ * MatcherProfile}); it can therefore be left registered for a large number of
+ * parsing runs, the data of which accumulate until {@link #reset()} is
+ * called.</p>
+ *
+ * <p>Profiles can be obtained as a list sorted by decreasing exclusive time,
+ * as a human readable report, or as a CSV dump (using semicolons as
+ * separators; the label of the matcher comes last).</p>
+ *
+ * <p>This listener must not be registered to runners used concurrently.</p>
+ *
+ * @param <V> type of values produced by the parser
+ */
+@NotThreadSafe
+@ParametersAreNonnullByDefault
+public final class ProfilingListener<V>
+    extends ParseRunnerListener<V>
+{
+    private static final Escaper ESCAPER = new LabelEscaper();
+    private static final int INITIAL_LEVELS = 16;
+
+    private static final Comparator<MatcherProfile> BY_EXCLUSIVE_TIME
+        = new Comparator<MatcherProfile>()
+    {
+        @Override
+        public int compare(final MatcherProfile o1, final MatcherProfile o2)
+        {
+            return Long.compare(o2.getExclusiveTime(), o1.getExclusiveTime());
+        }
+    };
+
+    private final Map<Matcher, MatcherProfile> profiles
+        = new IdentityHashMap<>();
+
+    /*
+     * State of the matches in progress, per context level
+     */
+    private MatcherProfile[] levelProfiles
+        = new MatcherProfile[INITIAL_LEVELS];
+    private long[] startTimes = new long[INITIAL_LEVELS];
+    private long[] childTimes = new long[INITIAL_LEVELS];
+    private int[] startIndices = new int[INITIAL_LEVELS];
+
+    @Override
+    public void beforeMatch(final PreMatchEvent<V> event)
+    {
+        final MatcherContext<V> context = event.getContext();
+        final Matcher matcher = context.getMatcher();
+        final int level = context.getLevel();
+
+        if (level >= startTimes.length)
+            grow(level);
+
+        MatcherProfile profile = profiles.get(matcher);
+        if (profile == null) {
+            profile = new MatcherProfile(matcher);
+            profiles.put(matcher, profile);
+        }
+
+        levelProfiles[level] = profile;
+        childTimes[level] = 0L;
+        startIndices[level] = context.getCurrentIndex();
+        startTimes[level] = System.nanoTime();
+    }
+
+    @Override
+    public void matchSuccess(final MatchSuccessEvent<V> event)
+    {
+        final long endTime = System.nanoTime();
+        final MatcherContext<V> context = event.getContext();
+        final int level = context.getLevel();
+        final MatcherProfile profile = record(level, endTime);
+
+        profile.successes++;
+        profile.consumedChars += context.getCurrentIndex()
+            - startIndices[level];
+    }
+
+    @Override
+    public void matchFailure(final MatchFailureEvent<V> event)
+    {
+        final long endTime = System.nanoTime();
+        final MatcherContext<V> context = event.getContext();
+        final int level = context.getLevel();
+        final MatcherProfile profile = record(level, endTime);
+
+        profile.backtrackedChars += Math.max(0,
+            context.getCurrentIndex() - startIndices[level]);
+    }
+
+    /**
+     * Return the profiles of all matchers run so far
+     *
+     * @return a list sorted by decreasing exclusive time
+     */
+    public List<MatcherProfile> getProfiles()
+    {
+        final List<MatcherProfile> ret = new ArrayList<>(profiles.values());
+        Collections.sort(ret, BY_EXCLUSIVE_TIME);
+        return ret;
+    }
+
+    /**
+     * Drop all profiling data
+     */
+    public void reset()
+    {
+        profiles.clear();
+        Arrays.fill(levelProfiles, null);
+    }
+
+    /**
+     * Write a human readable report
+     *
+     * <p>Matchers are sorted by decreasing exclusive time; times are in
+     * microseconds.</p>
+     *
+     * @param appendable where to write the report
+     * @throws IOException failed to write
+     */
+    public void writeReport(final Appendable appendable)
+        throws IOException
+    {
+        appendable.append(String.format("%12s %12s %10s %10s %10s %12s %12s"
+            + "  %s%n", "excl(us)", "incl(us)", "p50(us)", "p99(us)", "calls",
+            "consumed", "backtracked", "matcher"));
+
+        for (final MatcherProfile profile: getProfiles()) {
+            final LatencyHistogram times = profile.getInclusiveTimes();
+            appendable.append(String.format("%12d %12d %10d %10d %10d %12d %12d"
+                + "  %s%n", profile.getExclusiveTime() / 1000L,
+                profile.getInclusiveTime() / 1000L,
+                times.getPercentile(50.0) / 1000L,
+                times.getPercentile(99.0) / 1000L, profile.getInvocations(),
+                profile.getConsumedChars(), profile.getBacktrackedChars(),
+                ESCAPER.escape(profile.getMatcher().toString())));
+        }
+    }
+
+    /**
+     * Write all profiles in CSV format
+     *
+     * <p>Matchers are sorted by decreasing exclusive time; times are in
+     * nanoseconds. The first line is a header.</p>
+     *
+     * @param appendable where to write the data
+     * @throws IOException failed to write
+     */
+    public void writeCsv(final Appendable appendable)
+        throws IOException
+    {
+        final StringBuilder sb = new StringBuilder();
+
+        appendable.append("type;invocations;successes;failures;consumed;"
+            + "backtracked;inclusive;exclusive;p50;p90;p99;max;label\n");
+
+        for (final MatcherProfile profile: getProfiles()) {
+            final LatencyHistogram times = profile.getInclusiveTimes();
+            sb.setLength(0);
+            sb.append(profile.getType()).append(';')
+                .append(profile.getInvocations()).append(';')
+                .append(profile.getSuccesses()).append(';')
+                .append(profile.getFailures()).append(';')
+                .append(profile.getConsumedChars()).append(';')
+                .append(profile.getBacktrackedChars()).append(';')
+                .append(profile.getInclusiveTime()).append(';')
+                .append(profile.getExclusiveTime()).append(';')
+                .append(times.getPercentile(50.0)).append(';')
+                .append(times.getPercentile(90.0)).append(';')
+                .append(times.getPercentile(99.0)).append(';')
+                .append(times.getMax()).append(';')
+                .append(ESCAPER.escape(profile.getMatcher().toString()))
+                .append('\n');
+            appendable.append(sb);
+        }
+    }
+
+    private MatcherProfile record(final int level, final long endTime)
+    {
+        final MatcherProfile profile = levelProfiles[level];
+        final long elapsed = endTime - startTimes[level];
+
+        profile.invocations++;
+        profile.inclusiveTimes.record(elapsed);
+        profile.exclusiveTimes.record(elapsed - childTimes[level]);
+
+        if (level > 0)
+            childTimes[level - 1] += elapsed;
+
+        return profile;
+    }
+
+    private void grow(final int level)
+    {
+        final int size = Math.max(level + 1, startTimes.length * 2);
+        levelProfiles = Arrays.copyOf(levelProfiles, size);
+        startTimes = Arrays.copyOf(startTimes, size);
+        childTimes = Arrays.copyOf(childTimes, size);
+        startIndices = Arrays.copyOf(startIndices, size);
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.run.trace;
+
+import com.github.fge.grappa.matchers.MatcherType;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.zip.InflaterInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A reader for traces written by a {@link BinaryTracingListener}
+ *
+ * <p>A trace is a deflate compressed stream. It starts with a magic number
+ * ({@code GRPT}) and a version number, both as four byte big endian
+ * integers, and is followed by blocks. In a block, all integers are zigzag
+ * encoded variable length integers (LEB128); a block contains, in order:</p>
+ *
+ * <ul>
+ *     <li>the number of matchers first seen in this block, and for each
+ *     of them its id, class name, type and label (strings are written as
+ *     their length in bytes followed by their UTF-8 encoding);</li>
+ *     <li>the number of records, followed by the columns of parent node ids,
+ *     node ids, levels, matcher ids, start indices, end indices and times;
+ *     each value in a column is written as the difference with the previous
+ *     value in this column;</li>
+ *     <li>the outcomes of matches, as a bit set (eight per byte, least
+ *     significant bit first);</li>
+ *     <li>a byte telling whether the run ends with this block; if it does,
+ *     another byte for the outcome of the run, and its start time.</li>
+ * </ul>
+ */
+@ParametersAreNonnullByDefault
+public final class BinaryTraceReader
+{
+    private BinaryTraceReader()
+    {
+        throw new Error("nice try!");
+    }
+
+    /**
+     * Read a trace file
+     *
+     * @param path the trace file
+     * @param handler the handler to call for each record
+     * @throws IOException failed to read the file, or invalid trace
+     */
+    public static void read(final Path path, final TraceHandler handler)
+        throws IOException
+    {
+        Objects.requireNonNull(path, "path");
+        Objects.requireNonNull(handler, "handler");
+
+        try (
+            final InputStream in = new InflaterInputStream(
+                new BufferedInputStream(Files.newInputStream(path)))
+        ) {
+            if (readInt(in) != BinaryTracingListener.MAGIC)
+                throw new IOException("not a grappa trace file");
+            final int version = readInt(in);
+            if (version != BinaryTracingListener.VERSION)
+                throw new IOException("unsupported trace version " + version);
+
+            int first;
+            while ((first = in.read()) != -1)
+                readBlock(in, first, handler);
+        }
+    }
+
+    private static void readBlock(final InputStream in, final int first,
+        final TraceHandler handler)
+        throws IOException
+    {
+        final int nrMatchers = (int) readVarint(in, first);
+
+        for (int i = 0; i < nrMatchers; i++) {
+            final int id = (int) readVarint(in);
+            final String className = readString(in);
+            final MatcherType type = MatcherType.valueOf(readString(in));
+            handler.matcher(id, className, type, readString(in));
+        }
+
+        final int size = (int) readVarint(in);
+        final int[] parents = readColumn(in, size);
+        final int[] nodes = readColumn(in, size);
+        final int[] levels = readColumn(in, size);
+        final int[] matchers = readColumn(in, size);
+        final int[] starts = readColumn(in, size);
+        final int[] ends = readColumn(in, size);
+        final long[] times = new long[size];
+
+        long previous = 0L;
+        for (int i = 0; i < size; i++) {
+            previous += readVarint(in);
+            times[i] = previous;
+        }
+
+        int bits = 0;
+        for (int i = 0; i < size; i++) {
+            if ((i & 7) == 0)
+                bits = readByte(in);
+            handler.node(parents[i], nodes[i], levels[i], matchers[i],
+                starts[i], ends[i], times[i], (bits & 1 << (i & 7)) != 0);
+        }
+
+        if (readByte(in) == 0)
+            return;
+
+        final boolean success = readByte(in) != 0;
+        handler.endOfRun(success, readVarint(in));
+    }
+
+    private static int[] readColumn(final InputStream in, final int size)
+        throws IOException
+    {
+        final int[] ret = new int[size];
+        long previous = 0L;
+
+        for (int i = 0; i < size; i++) {
+            previous += readVarint(in);
+            ret[i] = (int) previous;
+        }
+
+        return ret;
+    }
+
+    private static String readString(final InputStream in)
+        throws IOException
+    {
+        final byte[] bytes = new byte[(int) readVarint(in)];
+        int offset = 0;
+        int nrRead;
+
+        while (offset < bytes.length) {
+            nrRead = in.read(bytes, offset, bytes.length - offset);
+            if (nrRead == -1)
+                throw new EOFException("truncated trace");
+            offset += nrRead;
+        }
+
+        return new String(bytes, UTF_8);
+    }
+
+    private static long readVarint(final InputStream in)
+        throws IOException
+    {
+        return readVarint(in, readByte(in));
+    }
+
+    private static long readVarint(final InputStream in, final int first)
+        throws IOException
+    {
+        long zigzag = first & 0x7F;
+        int b = first;
+        int shift = 7;
+
+        while ((b & 0x80) != 0) {
+            if (shift > 63)
+                throw new IOException("malformed variable length integer");
+            b = readByte(in);
+            zigzag |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        }
+
+        return (zigzag >>> 1) ^ -(zigzag & 1L);
+    }
+
+    private static int readInt(final InputStream in)
+        throws IOException
+    {
+        return readByte(in) << 24 | readByte(in) << 16 | readByte(in) << 8
+            | readByte(in);
+    }
+
+    private static int readByte(final InputStream in)
+        throws IOException
+    {
+        final int ret = in.read();
+        if (ret == -1)
+            throw new EOFException("truncated trace");
+        return ret;
+    }
+}
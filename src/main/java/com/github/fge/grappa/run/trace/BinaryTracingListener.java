@@ -0,0 +1,350 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.run.trace;
+
+import com.github.fge.grappa.exceptions.GrappaException;
+import com.github.fge.grappa.matchers.base.Matcher;
+import com.github.fge.grappa.run.ParseRunnerListener;
+import com.github.fge.grappa.run.context.MatcherContext;
+import com.github.fge.grappa.run.events.MatchFailureEvent;
+import com.github.fge.grappa.run.events.MatchSuccessEvent;
+import com.github.fge.grappa.run.events.PostParseEvent;
+import com.github.fge.grappa.run.events.PreMatchEvent;
+import com.github.fge.grappa.run.events.PreParseEvent;
+import com.google.common.base.Preconditions;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * A tracing listener writing a compact binary trace
+ *
+ * <p>This listener records the same data as a {@link TracingListener} (for
+ * each match: its parent node, node, level, matcher, start and end indices,
+ * time and outcome), but the parsing thread only stores these values into
+ * preallocated blocks of primitive arrays. Full blocks are handed over to a
+ * background thread through a ring of {@value #NR_BLOCKS} blocks; this thread
+ * encodes them column by column, using delta encoded variable length
+ * integers, and compresses the result on the fly. If the writer thread falls
+ * behind, the parsing thread waits for a free block.</p>
+ *
+ * <p>An optional sampling ratio limits the overhead further: only this
+ * proportion of matches is recorded (node numbers are still allocated to all
+ * of them, so a record may refer to a parent node which was not recorded).
+ * The input text is not included in the trace.</p>
+ *
+ * <p>Traces of any number of runs can be written to the same file; the
+ * listener must be {@link #close() closed} after the last run. The resulting
+ * file can be read using a {@link BinaryTraceReader}.</p>
+ */
+@NotThreadSafe
+@ParametersAreNonnullByDefault
+public final class BinaryTracingListener<V>
+    extends ParseRunnerListener<V>
+    implements Closeable
+{
+    static final int MAGIC = 0x47525054; // "GRPT"
+    static final int VERSION = 1;
+
+    private static final int NR_BLOCKS = 4;
+    private static final int INITIAL_LEVELS = 16;
+    private static final TraceBlock POISON = new TraceBlock();
+
+    private final BlockingQueue<TraceBlock> freeBlocks
+        = new ArrayBlockingQueue<>(NR_BLOCKS);
+    private final BlockingQueue<TraceBlock> fullBlocks
+        = new ArrayBlockingQueue<>(NR_BLOCKS + 1);
+    private final Thread writerThread;
+    private volatile Throwable writerError = null;
+    private boolean closed = false;
+
+    private final double samplingRatio;
+    private double credit = 0.0;
+
+    private TraceBlock block;
+
+    private final Map<Matcher, Integer> matcherIds = new IdentityHashMap<>();
+    private int nextMatcherId = 0;
+    private int nextNodeId = 0;
+    private long runStartTime = 0L;
+
+    /*
+     * State of the matches in progress, per context level
+     */
+    private int[] nodeIds = new int[INITIAL_LEVELS];
+    private int[] levelMatcherIds = new int[INITIAL_LEVELS];
+    private int[] startIndices = new int[INITIAL_LEVELS];
+    private long[] startTimes = new long[INITIAL_LEVELS];
+
+    /**
+     * Build a listener recording all matches
+     *
+     * @param path the file to write the trace to
+     * @throws IOException failed to open the file
+     */
+    public BinaryTracingListener(final Path path)
+        throws IOException
+    {
+        this(path, 1.0);
+    }
+
+    /**
+     * Build a listener recording a sample of matches
+     *
+     * @param path the file to write the trace to
+     * @param samplingRatio the proportion of matches to record
+     * @throws IOException failed to open the file
+     * @throws IllegalArgumentException the ratio is not in ]0, 1]
+     */
+    public BinaryTracingListener(final Path path, final double samplingRatio)
+        throws IOException
+    {
+        Preconditions.checkArgument(samplingRatio > 0.0
+            && samplingRatio <= 1.0, "sampling ratio must be in ]0, 1]");
+        this.samplingRatio = samplingRatio;
+
+        final OutputStream out = new DeflaterOutputStream(
+            new BufferedOutputStream(Files.newOutputStream(path)),
+            new Deflater(Deflater.BEST_SPEED), 1 << 16);
+
+        try {
+            writeInt(out, MAGIC);
+            writeInt(out, VERSION);
+        } catch (IOException e) {
+            out.close();
+            throw e;
+        }
+
+        for (int i = 0; i < NR_BLOCKS; i++)
+            freeBlocks.add(new TraceBlock());
+        block = freeBlocks.remove();
+
+        writerThread = new Thread(new Writer(out), "grappa-trace-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @Override
+    public void beforeParse(final PreParseEvent<V> event)
+    {
+        checkState();
+        nextNodeId = 0;
+        runStartTime = System.currentTimeMillis();
+    }
+
+    @Override
+    public void beforeMatch(final PreMatchEvent<V> event)
+    {
+        final MatcherContext<V> context = event.getContext();
+        final Matcher matcher = context.getMatcher();
+        final int level = context.getLevel();
+
+        if (level >= nodeIds.length)
+            grow(level);
+
+        Integer id = matcherIds.get(matcher);
+        if (id == null) {
+            //noinspection UnnecessaryBoxing
+            id = Integer.valueOf(nextMatcherId);
+            matcherIds.put(matcher, id);
+            block.newMatchers.add(new MatcherDescriptor(nextMatcherId,
+                matcher));
+            nextMatcherId++;
+        }
+
+        //noinspection AutoUnboxing
+        levelMatcherIds[level] = id;
+        nodeIds[level] = nextNodeId++;
+        startIndices[level] = context.getCurrentIndex();
+        startTimes[level] = System.nanoTime();
+    }
+
+    @Override
+    public void matchSuccess(final MatchSuccessEvent<V> event)
+    {
+        record(event.getContext(), true, System.nanoTime());
+    }
+
+    @Override
+    public void matchFailure(final MatchFailureEvent<V> event)
+    {
+        record(event.getContext(), false, System.nanoTime());
+    }
+
+    @Override
+    public void afterParse(final PostParseEvent<V> event)
+    {
+        block.endOfRun = true;
+        block.runSuccess = event.getResult().isSuccess();
+        block.runStartTime = runStartTime;
+        submit();
+    }
+
+    /**
+     * Write all pending records and close the trace file
+     *
+     * @throws IOException failed to write or close the file
+     */
+    @Override
+    public void close()
+        throws IOException
+    {
+        if (closed)
+            return;
+        closed = true;
+
+        try {
+            if (block.size > 0 || !block.newMatchers.isEmpty())
+                fullBlocks.put(block);
+            fullBlocks.put(POISON);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while closing trace", e);
+        }
+
+        if (writerError != null)
+            throw new IOException("failed to write trace", writerError);
+    }
+
+    private void record(final MatcherContext<V> context, final boolean success,
+        final long endTime)
+    {
+        credit += samplingRatio;
+        if (credit < 1.0)
+            return;
+        credit -= 1.0;
+
+        final int level = context.getLevel();
+        final TraceBlock b = block;
+        final int i = b.size++;
+
+        b.parents[i] = level == 0 ? -1 : nodeIds[level - 1];
+        b.nodes[i] = nodeIds[level];
+        b.levels[i] = level;
+        b.matchers[i] = levelMatcherIds[level];
+        b.starts[i] = startIndices[level];
+        b.ends[i] = context.getCurrentIndex();
+        b.times[i] = endTime - startTimes[level];
+        b.successes[i] = success;
+
+        if (b.isFull())
+            submit();
+    }
+
+    private void submit()
+    {
+        checkState();
+        try {
+            fullBlocks.put(block);
+            block = freeBlocks.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GrappaException("interrupted while writing trace", e);
+        }
+    }
+
+    private void checkState()
+    {
+        if (closed)
+            throw new IllegalStateException("trace is closed");
+        if (writerError != null)
+            throw new GrappaException("failed to write trace", writerError);
+    }
+
+    private void grow(final int level)
+    {
+        final int size = Math.max(level + 1, nodeIds.length * 2);
+        nodeIds = Arrays.copyOf(nodeIds, size);
+        levelMatcherIds = Arrays.copyOf(levelMatcherIds, size);
+        startIndices = Arrays.copyOf(startIndices, size);
+        startTimes = Arrays.copyOf(startTimes, size);
+    }
+
+    private static void writeInt(final OutputStream out, final int value)
+        throws IOException
+    {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private final class Writer
+        implements Runnable
+    {
+        private final OutputStream out;
+
+        private Writer(final OutputStream out)
+        {
+            this.out = out;
+        }
+
+        @Override
+        public void run()
+        {
+            boolean done = false;
+
+            try (
+                final OutputStream stream = out
+            ) {
+                TraceBlock b;
+                while ((b = fullBlocks.take()) != POISON) {
+                    b.writeTo(stream);
+                    b.clear();
+                    freeBlocks.put(b);
+                }
+                done = true;
+            } catch (IOException | RuntimeException e) {
+                writerError = e;
+                if (!done)
+                    drain();
+            } catch (InterruptedException e) {
+                writerError = e;
+            }
+        }
+
+        /*
+         * Keep recycling blocks so that the parsing thread never blocks
+         */
+        private void drain()
+        {
+            try {
+                TraceBlock b;
+                while ((b = fullBlocks.take()) != POISON) {
+                    b.clear();
+                    freeBlocks.put(b);
+                }
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.run.trace;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A block of trace records, stored by column
+ *
+ * <p>Blocks are filled by the parsing thread and encoded by the writer thread
+ * of a {@link BinaryTracingListener}; see {@link BinaryTraceReader} for the
+ * encoding.</p>
+ */
+@NotThreadSafe
+final class TraceBlock
+{
+    static final int CAPACITY = 4096;
+
+    final List<MatcherDescriptor> newMatchers = new ArrayList<>();
+
+    final int[] parents = new int[CAPACITY];
+    final int[] nodes = new int[CAPACITY];
+    final int[] levels = new int[CAPACITY];
+    final int[] matchers = new int[CAPACITY];
+    final int[] starts = new int[CAPACITY];
+    final int[] ends = new int[CAPACITY];
+    final long[] times = new long[CAPACITY];
+    final boolean[] successes = new boolean[CAPACITY];
+    int size = 0;
+
+    boolean endOfRun = false;
+    boolean runSuccess = false;
+    long runStartTime = 0L;
+
+    private final byte[] buf = new byte[10];
+
+    boolean isFull()
+    {
+        return size == CAPACITY;
+    }
+
+    void clear()
+    {
+        newMatchers.clear();
+        size = 0;
+        endOfRun = false;
+    }
+
+    void writeTo(final OutputStream out)
+        throws IOException
+    {
+        writeVarint(out, newMatchers.size());
+        for (final MatcherDescriptor descriptor: newMatchers) {
+            writeVarint(out, descriptor.getId());
+            writeString(out, descriptor.getClassName());
+            writeString(out, descriptor.getType().name());
+            writeString(out, descriptor.getName());
+        }
+
+        writeVarint(out, size);
+        writeColumn(out, parents);
+        writeColumn(out, nodes);
+        writeColumn(out, levels);
+        writeColumn(out, matchers);
+        writeColumn(out, starts);
+        writeColumn(out, ends);
+
+        long previous = 0L;
+        for (int i = 0; i < size; i++) {
+            writeVarint(out, times[i] - previous);
+            previous = times[i];
+        }
+
+        int bits = 0;
+        for (int i = 0; i < size; i++) {
+            if (successes[i])
+                bits |= 1 << (i & 7);
+            if ((i & 7) == 7 || i == size - 1) {
+                out.write(bits);
+                bits = 0;
+            }
+        }
+
+        out.write(endOfRun ? 1 : 0);
+        if (endOfRun) {
+            out.write(runSuccess ? 1 : 0);
+            writeVarint(out, runStartTime);
+        }
+    }
+
+    private void writeColumn(final OutputStream out, final int[] column)
+        throws IOException
+    {
+        int previous = 0;
+        for (int i = 0; i < size; i++) {
+            writeVarint(out, (long) column[i] - previous);
+            previous = column[i];
+        }
+    }
+
+    private void writeString(final OutputStream out, final String s)
+        throws IOException
+    {
+        final byte[] bytes = s.getBytes(UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    /*
+     * Zigzag encoded LEB128
+     */
+    private void writeVarint(final OutputStream out, final long value)
+        throws IOException
+    {
+        long zigzag = (value << 1) ^ (value >> 63);
+        int len = 0;
+
+        while ((zigzag & ~0x7FL) != 0L) {
+            buf[len++] = (byte) ((zigzag & 0x7F) | 0x80);
+            zigzag >>>= 7;
+        }
+        buf[len++] = (byte) zigzag;
+        out.write(buf, 0, len);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.run.trace;
+
+import com.github.fge.grappa.matchers.MatcherType;
+
+/**
+ * A handler for the records of a binary trace
+ *
+ * <p>All methods do nothing by default; override the ones you need.</p>
+ *
+ * @see BinaryTraceReader
+ */
+public abstract class TraceHandler
+{
+    /**
+     * Called when a matcher appears for the first time in the trace
+     *
+     * @param id the matcher id
+     * @param className the simple name of the matcher's class
+     * @param type the matcher type
+     * @param label the matcher's label, escaped
+     */
+    public void matcher(final int id, final String className,
+        final MatcherType type, final String label)
+    {
+    }
+
+    /**
+     * Called for each recorded match
+     *
+     * @param parent the parent node id, -1 for the root node of a run
+     * @param node the node id
+     * @param level the context level
+     * @param matcher the matcher id
+     * @param start the start index of the match
+     * @param end the end index of the match
+     * @param time the time taken by the match, in nanoseconds
+     * @param success whether the match succeeded
+     */
+    public void node(final int parent, final int node, final int level,
+        final int matcher, final int start, final int end, final long time,
+        final boolean success)
+    {
+    }
+
+    /**
+     * Called at the end of each parsing run
+     *
+     * @param success whether the run succeeded
+     * @param startTime the start time of the run, in milliseconds since the
+     * epoch
+     */
+    public void endOfRun(final boolean success, final long startTime)
+    {
+    }
+}
@@ -48,6 +48,7 @@ public final class DefaultValueStack<V>
     @Override
     public void clear()
     {
+        touch(0);
         stack.clear();
     }
 
@@ -64,7 +65,10 @@ public final class DefaultValueStack<V>
     {
         Objects.requireNonNull(snapshot);
         Preconditions.checkState(snapshot.getClass() == ArrayList.class);
-        stack = (List<V>) snapshot;
+        final List<V> list = (List<V>) snapshot;
+        if (isTracking())
+            touch(commonBottom(stack, list));
+        stack = list;
     }
 
     @Override
@@ -119,6 +123,25 @@ public final class DefaultValueStack<V>
         return stack.toString();
     }
 
+    /*
+     * Values are stored top first: the bottom is at the end of the lists
+     */
+    private static <V> int commonBottom(final List<V> first,
+        final List<V> second)
+    {
+        final int firstSize = first.size();
+        final int secondSize = second.size();
+        final int max = Math.min(firstSize, secondSize);
+
+        int ret = 0;
+
+        while (ret < max && first.get(firstSize - ret - 1)
+            == second.get(secondSize - ret - 1))
+            ret++;
+
+        return ret;
+    }
+
     @Override
     protected void checkIndex(final int index)
     {
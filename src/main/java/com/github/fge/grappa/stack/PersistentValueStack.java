@@ -0,0 +1,286 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.stack;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.UnmodifiableIterator;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * A value stack backed by an immutable linked list
+ *
+ * <p>Pushing and popping are O(1), and so are taking and restoring snapshots:
+ * a snapshot is simply the current head of the list. Operations working
+ * {@code down} elements below the top of the stack (and {@link #swap(int)})
+ * are O(down).</p>
+ *
+ * <p>This is a good fit for grammars with a lot of backtracking, since every
+ * sequence and action takes a snapshot of the stack before running.</p>
+ *
+ * @param <V> type of values in this stack
+ */
+@ParametersAreNonnullByDefault
+public final class PersistentValueStack<V>
+    extends ValueStackBase<V>
+{
+    private Node<V> head = Node.empty();
+
+    @Override
+    public boolean isEmpty()
+    {
+        return head.size == 0;
+    }
+
+    @Override
+    public int size()
+    {
+        return head.size;
+    }
+
+    @Override
+    public void clear()
+    {
+        touch(0);
+        head = Node.empty();
+    }
+
+    @Nonnull
+    @Override
+    public Object takeSnapshot()
+    {
+        return head;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void restoreSnapshot(final Object snapshot)
+    {
+        Objects.requireNonNull(snapshot);
+        Preconditions.checkState(snapshot.getClass() == Node.class);
+        final Node<V> node = (Node<V>) snapshot;
+        if (isTracking())
+            touch(commonBottom(head, node));
+        head = node;
+    }
+
+    @Override
+    protected void doPush(final int down, final V value)
+    {
+        if (down == 0) {
+            head = new Node<>(value, head);
+            return;
+        }
+
+        final Object[] above = new Object[down];
+        final Node<V> node = unwind(above);
+        head = rewind(new Node<>(value, node), above, down);
+    }
+
+    @Nonnull
+    @Override
+    protected V doPop(final int down)
+    {
+        if (down == 0) {
+            final V ret = head.value;
+            head = head.next;
+            return ret;
+        }
+
+        final Object[] above = new Object[down];
+        final Node<V> node = unwind(above);
+        head = rewind(node.next, above, down);
+        return node.value;
+    }
+
+    @Nonnull
+    @Override
+    protected V doPeek(final int down)
+    {
+        Node<V> node = head;
+        for (int i = 0; i < down; i++)
+            node = node.next;
+        return node.value;
+    }
+
+    @Override
+    protected void doPoke(final int down, final V value)
+    {
+        final Object[] above = new Object[down];
+        final Node<V> node = unwind(above);
+        head = rewind(new Node<>(value, node.next), above, down);
+    }
+
+    @Override
+    protected void doDup()
+    {
+        head = new Node<>(head.value, head);
+    }
+
+    @Override
+    protected void doSwap(final int n)
+    {
+        final Object[] above = new Object[n];
+        final Node<V> node = unwind(above);
+
+        Node<V> ret = node;
+        V value;
+        for (int i = 0; i < n; i++) {
+            value = cast(above[i]);
+            ret = new Node<>(value, ret);
+        }
+        head = ret;
+    }
+
+    @Override
+    public Iterator<V> iterator()
+    {
+        return new NodeIterator<>(head);
+    }
+
+    @Nonnull
+    @Override
+    public String toString()
+    {
+        return Iterables.toString(this);
+    }
+
+    @Override
+    protected void checkIndex(final int index)
+    {
+        Preconditions.checkState(index < head.size,
+            "not enough elements in stack");
+    }
+
+    /*
+     * Fill the given array with the values above the node at the given
+     * depth (which is the length of the array), and return that node
+     */
+    private Node<V> unwind(final Object[] above)
+    {
+        Node<V> node = head;
+        for (int i = 0; i < above.length; i++) {
+            above[i] = node.value;
+            node = node.next;
+        }
+        return node;
+    }
+
+    /*
+     * Push back values obtained by unwind() on top of the given node
+     */
+    private Node<V> rewind(final Node<V> node, final Object[] above,
+        final int count)
+    {
+        Node<V> ret = node;
+        V value;
+        for (int i = count - 1; i >= 0; i--) {
+            value = cast(above[i]);
+            ret = new Node<>(value, ret);
+        }
+        return ret;
+    }
+
+    /*
+     * Return the number of bottom values shared by two lists; only the values
+     * above are walked
+     */
+    private static <V> int commonBottom(final Node<V> first,
+        final Node<V> second)
+    {
+        Node<V> a = first;
+        Node<V> b = second;
+
+        while (a.size > b.size)
+            a = a.next;
+        while (b.size > a.size)
+            b = b.next;
+        while (a != b) {
+            a = a.next;
+            b = b.next;
+        }
+
+        return a.size;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V cast(final Object value)
+    {
+        return (V) value;
+    }
+
+    private static final class Node<V>
+    {
+        private static final Node<?> EMPTY = new Node<>();
+
+        private final V value;
+        private final Node<V> next;
+        private final int size;
+
+        @SuppressWarnings("unchecked")
+        private static <V> Node<V> empty()
+        {
+            return (Node<V>) EMPTY;
+        }
+
+        private Node()
+        {
+            value = null;
+            next = null;
+            size = 0;
+        }
+
+        private Node(final V value, final Node<V> next)
+        {
+            this.value = value;
+            this.next = next;
+            size = next.size + 1;
+        }
+    }
+
+    private static final class NodeIterator<V>
+        extends UnmodifiableIterator<V>
+    {
+        private Node<V> node;
+
+        private NodeIterator(final Node<V> head)
+        {
+            node = head;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return node.size != 0;
+        }
+
+        @Override
+        public V next()
+        {
+            if (node.size == 0)
+                throw new NoSuchElementException();
+            final V ret = node.value;
+            node = node.next;
+            return ret;
+        }
+    }
+}
@@ -16,19 +16,136 @@
 
 package com.github.fge.grappa.stack;
 
+import com.google.common.base.Preconditions;
+
 import javax.annotation.Nonnull;
 import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.Objects;
 
 /**
  * Base abstract implementation of a {@link ValueStack}
  *
+ * <p>This class also supports tracking the changes made to a stack (see {@link
+ * #startTracking()}); implementations must call {@link #touch(int)} from
+ * {@link #clear()} and {@link #restoreSnapshot(Object)}.</p>
+ *
  * @param <V> type parameter of this stack's values
  */
 @ParametersAreNonnullByDefault
 public abstract class ValueStackBase<V>
     implements ValueStack<V>
 {
+    private static final Object[] NO_VALUES = new Object[0];
+
+    /*
+     * Change tracking: the number of bottom values left untouched since the
+     * innermost tracking started, and the values replaced since then (oldest
+     * and topmost first). Frames hold, for each tracking in progress, the
+     * untouched count of the enclosing tracking and the start of its values.
+     */
+    private int untouched = 0;
+    private int[] frames = new int[16];
+    private int nrFrames = 0;
+    private Object[] saved = new Object[16];
+    private int nrSaved = 0;
+
+    /**
+     * Start tracking the changes made to this stack
+     *
+     * <p>Trackings can be nested; each call must be matched with a call to
+     * {@link #endTracking()}. While tracking is in progress, the values about
+     * to be removed or replaced are saved, but only the first time a given
+     * stack position is modified: the cost of tracking is proportional to
+     * the number of values changed, not to the size of the stack.</p>
+     */
+    public final void startTracking()
+    {
+        if (2 * nrFrames == frames.length)
+            frames = Arrays.copyOf(frames, frames.length * 2);
+
+        frames[2 * nrFrames] = untouched;
+        frames[2 * nrFrames + 1] = nrSaved;
+        nrFrames++;
+        untouched = size();
+    }
+
+    /**
+     * End the innermost tracking of changes
+     *
+     * <p>The returned values are the values removed or replaced since the
+     * matching {@link #startTracking()}, as they were when tracking started.
+     * If the stack had {@code n} values then, the other values (at the bottom
+     * of the stack) were never touched; the values currently on top of them
+     * are therefore the ones pushed instead.</p>
+     *
+     * @return the removed values, top first
+     * @throws IllegalStateException no tracking in progress
+     */
+    @Nonnull
+    public final Object[] endTracking()
+    {
+        Preconditions.checkState(nrFrames > 0, "no tracking in progress");
+        nrFrames--;
+
+        final int previous = frames[2 * nrFrames];
+        final int start = frames[2 * nrFrames + 1];
+        final Object[] ret = start == nrSaved ? NO_VALUES
+            : Arrays.copyOfRange(saved, start, nrSaved);
+
+        /*
+         * The enclosing tracking has not saved the values below its own
+         * untouched limit yet; they are the last values saved here
+         */
+        final int kept = nrFrames == 0 ? 0 : Math.max(0, previous - untouched);
+        System.arraycopy(saved, nrSaved - kept, saved, start, kept);
+        Arrays.fill(saved, start + kept, nrSaved, null);
+        nrSaved = start + kept;
+        untouched = Math.min(previous, untouched);
+        return ret;
+    }
+
+    /**
+     * Tell whether the changes made to this stack are being tracked
+     *
+     * @return true if so
+     */
+    protected final boolean isTracking()
+    {
+        return nrFrames > 0;
+    }
+
+    /**
+     * Signal that all values but the given number of bottom values are about
+     * to be changed
+     *
+     * <p>This must be called before the change is actually made.</p>
+     *
+     * @param bottom the number of values left untouched at the bottom of the
+     * stack
+     */
+    protected final void touch(final int bottom)
+    {
+        if (nrFrames == 0 || bottom >= untouched)
+            return;
+
+        final int count = untouched - bottom;
+
+        if (nrSaved + count > saved.length)
+            saved = Arrays.copyOf(saved,
+                Math.max(saved.length * 2, nrSaved + count));
+
+        final Iterator<V> iterator = iterator();
+
+        for (int i = size() - untouched; i > 0; i--)
+            iterator.next();
+        for (int i = 0; i < count; i++)
+            saved[nrSaved++] = iterator.next();
+
+        untouched = bottom;
+    }
+
     @Override
     public final void push(final V value)
     {
@@ -46,6 +163,7 @@ public abstract class ValueStackBase<V>
             throw new IllegalArgumentException("index cannot be negative");
         checkIndex(down - 1);
         Objects.requireNonNull(value);
+        touch(size() - down);
         doPush(down, value);
     }
 
@@ -74,6 +192,7 @@ public abstract class ValueStackBase<V>
         if (down < 0)
             throw new IllegalArgumentException("index cannot be negative");
         checkIndex(down);
+        touch(size() - down - 1);
         return doPop(down);
     }
 
@@ -155,6 +274,7 @@ public abstract class ValueStackBase<V>
             throw new IllegalArgumentException("index cannot be negative");
         checkIndex(down);
         Objects.requireNonNull(value);
+        touch(size() - down - 1);
         doPoke(down, value);
     }
 
@@ -178,6 +298,7 @@ public abstract class ValueStackBase<V>
          * As for .push(n, value), we need to check for n - 1 here
          */
         checkIndex(n - 1);
+        touch(size() - n);
         doSwap(n);
     }
 
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.transform;
+
+import com.github.fge.grappa.misc.AsmUtils;
+import com.github.fge.grappa.transform.process.GroupClassGenerator;
+import com.google.common.annotations.VisibleForTesting;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * An on-disk cache of generated parser classes
+ *
+ * <p>The cache is enabled by setting the {@value #DIRECTORY_PROPERTY} system
+ * property to a directory (which is created if needed). Each entry is a
+ * subdirectory named after the {@link ParserFingerprint fingerprint} of the
+ * parser class, and contains the class files of the extended parser class and
+ * all its action and var init classes.</p>
+ *
+ * <p>Entries are written in a temporary directory which is then atomically
+ * renamed, so that several JVMs can share a cache directory. Failing to write
+ * an entry is not an error, and an entry which cannot be read or defined is
+ * treated as a miss: the cache is only ever an optimization.</p>
+ */
+@ParametersAreNonnullByDefault
+final class BytecodeCache
+{
+    static final String DIRECTORY_PROPERTY = "grappa.bytecodeCache";
+
+    private static final String CLASS_SUFFIX = ".class";
+
+    private final Path directory;
+
+    @VisibleForTesting
+    BytecodeCache(final Path directory)
+    {
+        this.directory = Objects.requireNonNull(directory, "directory");
+    }
+
+    @Nullable
+    static BytecodeCache fromSystemProperties()
+    {
+        final String property = System.getProperty(DIRECTORY_PROPERTY);
+        return property == null || property.isEmpty()
+            ? null : new BytecodeCache(Paths.get(property));
+    }
+
+    /**
+     * Define the classes of a cache entry, if any
+     *
+     * @param fingerprint the fingerprint of the parser class
+     * @param extendedClassName the binary name of the extended parser class
+     * @param classLoader the class loader of the parser class
+     * @return the extended parser class, or null on a cache miss
+     */
+    @Nullable
+    Class<?> load(final String fingerprint, final String extendedClassName,
+        final ClassLoader classLoader)
+    {
+        final Path entry = directory.resolve(fingerprint);
+        final Path extended = entry.resolve(extendedClassName + CLASS_SUFFIX);
+
+        if (!Files.isRegularFile(extended))
+            return null;
+
+        try {
+            String name;
+
+            try (
+                final DirectoryStream<Path> stream
+                    = Files.newDirectoryStream(entry, '*' + CLASS_SUFFIX);
+            ) {
+                for (final Path path: stream) {
+                    if (path.equals(extended))
+                        continue;
+                    name = path.getFileName().toString();
+                    name = name.substring(0,
+                        name.length() - CLASS_SUFFIX.length());
+                    GroupClassGenerator.defineGroupClass(name,
+                        Files.readAllBytes(path), classLoader);
+                }
+            }
+
+            return AsmUtils.loadClass(extendedClassName,
+                Files.readAllBytes(extended), classLoader);
+        } catch (IOException | RuntimeException ignored) {
+            return null;
+        }
+    }
+
+    /**
+     * Store the classes generated for a parser class
+     *
+     * @param fingerprint the fingerprint of the parser class
+     * @param classes a map of internal class names to bytecode
+     *
+     * @see ParserTransformer#getGeneratedClasses
+     */
+    void store(final String fingerprint, final Map<String, byte[]> classes)
+    {
+        final Path entry = directory.resolve(fingerprint);
+
+        if (Files.exists(entry))
+            return;
+
+        Path tmp = null;
+
+        try {
+            Files.createDirectories(directory);
+            tmp = Files.createTempDirectory(directory, fingerprint);
+            for (final Map.Entry<String, byte[]> e: classes.entrySet())
+                Files.write(tmp.resolve(e.getKey().replace('/', '.')
+                    + CLASS_SUFFIX), e.getValue());
+            Files.move(tmp, entry, StandardCopyOption.ATOMIC_MOVE);
+            tmp = null;
+        } catch (IOException ignored) {
+            // Another JVM won the race, or the directory is not writable
+        } finally {
+            if (tmp != null)
+                deleteQuietly(tmp);
+        }
+    }
+
+    private static void deleteQuietly(final Path tmp)
+    {
+        try (
+            final DirectoryStream<Path> stream = Files.newDirectoryStream(tmp);
+        ) {
+            for (final Path path: stream)
+                Files.deleteIfExists(path);
+            Files.deleteIfExists(tmp);
+        } catch (IOException ignored) {
+            // nothing we can do
+        }
+    }
+}
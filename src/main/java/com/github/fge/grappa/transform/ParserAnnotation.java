@@ -23,6 +23,7 @@ import com.github.fge.grappa.annotations.DontExtend;
 import com.github.fge.grappa.annotations.DontLabel;
 import com.github.fge.grappa.annotations.DontSkipActionsInPredicates;
 import com.github.fge.grappa.annotations.ExplicitActionsOnly;
+import com.github.fge.grappa.annotations.Memoized;
 import com.github.fge.grappa.annotations.SkipActionsInPredicates;
 import com.github.fge.grappa.transform.base.RuleMethod;
 
@@ -44,18 +45,20 @@ public enum ParserAnnotation
     DONT_EXTEND(DontExtend.class),
     DONT_SKIP_ACTIONS_IN_PREDICATES(DontSkipActionsInPredicates.class),
     SKIP_ACTIONS_IN_PREDICATES(SkipActionsInPredicates.class),
+    MEMOIZED(Memoized.class),
     ;
 
     /**
      * @see RuleMethod#moveFlagsTo(RuleMethod)
      */
     private static final Set<ParserAnnotation> FLAGS_COPY
-        = EnumSet.of(CACHED, DONT_LABEL);
+        = EnumSet.of(CACHED, DONT_LABEL, MEMOIZED);
 
     /**
      * @see RuleMethod#moveFlagsTo(RuleMethod)
      */
-    private static final Set<ParserAnnotation> FLAGS_CLEAR = EnumSet.of(CACHED);
+    private static final Set<ParserAnnotation> FLAGS_CLEAR
+        = EnumSet.of(CACHED, MEMOIZED);
 
     /**
      * @see RuleMethod#moveFlagsTo(RuleMethod)
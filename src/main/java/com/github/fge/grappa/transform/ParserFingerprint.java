@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.transform;
+
+import com.github.fge.grappa.Grappa;
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CharStreams;
+import com.google.common.io.Closer;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+/**
+ * Fingerprint of the bytecode a precompiled parser class was generated from
+ *
+ * <p>The fingerprint is a SHA-256 hash of the class files of the parser class
+ * and of all its superclasses (up to, and excluding, {@link Object}), and of
+ * the version of grappa if known; the class files include grappa's own {@code
+ * BaseParser}, so that an upgrade of grappa also invalidates generated
+ * classes.</p>
+ *
+ * <p>For precompiled classes, it is stored as a resource next to the extended
+ * parser class, with the same name and a {@code .fingerprint} extension; the
+ * {@link BytecodeCache} uses it as a key.</p>
+ *
+ * @see ParserPrecompiler
+ */
+@ParametersAreNonnullByDefault
+final class ParserFingerprint
+{
+    static final String SUFFIX = ".fingerprint";
+
+    private ParserFingerprint()
+    {
+    }
+
+    static String compute(final Class<?> parserClass)
+        throws IOException
+    {
+        final Hasher hasher = Hashing.sha256().newHasher();
+        final String version
+            = Grappa.class.getPackage().getImplementationVersion();
+
+        hasher.putString(String.valueOf(version), Charsets.UTF_8);
+
+        Class<?> c = parserClass;
+        byte[] code;
+
+        while (!Object.class.equals(c)) {
+            code = readClassFile(c);
+            hasher.putInt(code.length).putBytes(code);
+            c = c.getSuperclass();
+        }
+
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Read the fingerprint recorded for an extended parser class
+     *
+     * @param classLoader the class loader of the parser class
+     * @param extendedClassName the (binary) name of the extended parser class
+     * @return the fingerprint, or null if there is none
+     * @throws IOException failed to read the resource
+     */
+    @Nullable
+    static String read(final ClassLoader classLoader,
+        final String extendedClassName)
+        throws IOException
+    {
+        final String resource = extendedClassName.replace('.', '/') + SUFFIX;
+
+        final Closer closer = Closer.create();
+        try {
+            final InputStream in = classLoader.getResourceAsStream(resource);
+            if (in == null)
+                return null;
+            closer.register(in);
+            return CharStreams.toString(
+                new InputStreamReader(in, Charsets.US_ASCII)).trim();
+        } finally {
+            closer.close();
+        }
+    }
+
+    private static byte[] readClassFile(final Class<?> c)
+        throws IOException
+    {
+        final String resource = c.getName().replace('.', '/') + ".class";
+        final ClassLoader classLoader = c.getClassLoader();
+
+        final Closer closer = Closer.create();
+        try {
+            final InputStream in = classLoader == null
+                ? ClassLoader.getSystemResourceAsStream(resource)
+                : classLoader.getResourceAsStream(resource);
+            if (in == null)
+                throw new IOException(c + " not found");
+            return ByteStreams.toByteArray(closer.register(in));
+        } finally {
+            closer.close();
+        }
+    }
+}
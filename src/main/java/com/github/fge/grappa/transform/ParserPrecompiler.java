@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.transform;
+
+import com.github.fge.grappa.Grappa;
+import com.github.fge.grappa.transform.base.ParserClassNode;
+import com.google.common.base.Charsets;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Ahead of time generation of extended parser classes
+ *
+ * <p>This class writes the classes which {@link
+ * Grappa#createParser(Class, Object...)} would otherwise generate at runtime
+ * (the extended parser class and its action and var init classes) as class
+ * files in a directory, so that they can be packaged along with the parser.
+ * When such classes are found by the class loader of a parser class, they are
+ * loaded as is: no bytecode analysis nor generation takes place.</p>
+ *
+ * <p>Along with the classes, a {@code .fingerprint} resource records the
+ * bytecode the classes were generated from. If the parser class (or one of its
+ * superclasses, including grappa's own) has changed since, the precompiled
+ * classes are ignored and the parser class is transformed at runtime as
+ * usual.</p>
+ *
+ * <p>It can be invoked from the command line, the first argument being the
+ * output directory and the others the names of parser classes. For instance,
+ * using Gradle:</p>
+ *
+ * <pre>
+ *     task precompileParsers(type: JavaExec, dependsOn: classes) {
+ *         classpath = sourceSets.main.runtimeClasspath;
+ *         main = "com.github.fge.grappa.transform.ParserPrecompiler";
+ *         args = [ sourceSets.main.output.classesDir, "com.foo.MyParser" ];
+ *     }
+ *
+ *     jar.dependsOn(precompileParsers);
+ * </pre>
+ */
+@ParametersAreNonnullByDefault
+public final class ParserPrecompiler
+{
+    private ParserPrecompiler()
+    {
+    }
+
+    public static void main(final String... args)
+        throws Exception
+    {
+        if (args.length < 2) {
+            System.err.println("Usage: " + ParserPrecompiler.class.getName()
+                + " outputDirectory parserClass...");
+            System.exit(2);
+        }
+
+        final Path outputDirectory = Paths.get(args[0]);
+        final ClassLoader classLoader
+            = Thread.currentThread().getContextClassLoader();
+
+        for (final String name: Arrays.asList(args).subList(1, args.length))
+            writeClasses(Class.forName(name, false, classLoader),
+                outputDirectory);
+    }
+
+    /**
+     * Generate and write the classes of an extended parser
+     *
+     * <p>Class files are written in the directory matching their package,
+     * relative to {@code outputDirectory}; existing files are overwritten.</p>
+     *
+     * @param parserClass the parser class
+     * @param outputDirectory the root output directory
+     * @throws Exception failed to generate or write the classes
+     */
+    public static void writeClasses(final Class<?> parserClass,
+        final Path outputDirectory)
+        throws Exception
+    {
+        Objects.requireNonNull(parserClass, "parserClass");
+        Objects.requireNonNull(outputDirectory, "outputDirectory");
+
+        final ParserClassNode classNode
+            = ParserTransformer.generateParserClass(parserClass, true);
+
+        final Map<String, byte[]> classes
+            = ParserTransformer.getGeneratedClasses(classNode);
+
+        for (final Map.Entry<String, byte[]> entry: classes.entrySet())
+            write(outputDirectory, entry.getKey() + ".class",
+                entry.getValue());
+
+        final String fingerprint = ParserFingerprint.compute(parserClass);
+        write(outputDirectory, classNode.name + ParserFingerprint.SUFFIX,
+            fingerprint.getBytes(Charsets.US_ASCII));
+    }
+
+    private static void write(final Path outputDirectory,
+        final String resource, final byte[] content)
+        throws IOException
+    {
+        final Path path = outputDirectory.resolve(resource);
+        Files.createDirectories(path.getParent());
+        Files.write(path, content);
+    }
+}
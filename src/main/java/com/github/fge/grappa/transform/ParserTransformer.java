@@ -16,6 +16,7 @@
 
 package com.github.fge.grappa.transform;
 
+import com.github.fge.grappa.transform.base.InstructionGroup;
 import com.github.fge.grappa.transform.base.ParserClassNode;
 import com.github.fge.grappa.transform.base.RuleMethod;
 import com.github.fge.grappa.transform.generate.ActionClassGenerator;
@@ -24,6 +25,8 @@ import com.github.fge.grappa.transform.generate.ConstructorGenerator;
 import com.github.fge.grappa.transform.generate.VarInitClassGenerator;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Striped;
 import org.objectweb.asm.ClassWriter;
 import com.github.fge.grappa.transform.process.BodyWithSuperCallReplacer;
 import com.github.fge.grappa.transform.process.CachingGenerator;
@@ -32,6 +35,7 @@ import com.github.fge.grappa.transform.process.InstructionGraphCreator;
 import com.github.fge.grappa.transform.process.InstructionGroupCreator;
 import com.github.fge.grappa.transform.process.InstructionGroupPreparer;
 import com.github.fge.grappa.transform.process.LabellingGenerator;
+import com.github.fge.grappa.transform.process.MemoizingGenerator;
 import com.github.fge.grappa.transform.process.ReturnInstructionUnifier;
 import com.github.fge.grappa.transform.process.RuleMethodProcessor;
 import com.github.fge.grappa.transform.process.RuleMethodRewriter;
@@ -39,8 +43,12 @@ import com.github.fge.grappa.transform.process.SuperCallRewriter;
 import com.github.fge.grappa.transform.process.UnusedLabelsRemover;
 import com.github.fge.grappa.transform.process.VarFramingGenerator;
 
+import javax.annotation.Nullable;
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.locks.Lock;
 
 import static com.github.fge.grappa.misc.AsmUtils.findLoadedClass;
 import static com.github.fge.grappa.misc.AsmUtils.getExtendedParserClassName;
@@ -48,13 +56,22 @@ import static com.github.fge.grappa.misc.AsmUtils.loadClass;
 
 public final class ParserTransformer
 {
+    /*
+     * Locks are per extended class name: transformations of different parser
+     * classes run concurrently, but a given class is only ever generated once.
+     */
+    private static final Striped<Lock> LOCKS = Striped.lazyWeakLock(64);
+
+    @Nullable
+    private static final BytecodeCache CACHE
+        = BytecodeCache.fromSystemProperties();
+
     private ParserTransformer()
     {
     }
 
-    // TODO: remove "synchronized" here
     // TODO: move to Parboiled or the future Grappa class
-    public static synchronized <T> Class<? extends T> transformParser(
+    public static <T> Class<? extends T> transformParser(
         final Class<T> parserClass)
         throws Exception
     {
@@ -63,11 +80,26 @@ public final class ParserTransformer
         // of the given parser class
         final String name
             = getExtendedParserClassName(parserClass.getName());
-        final Class<?> extendedClass
-            = findLoadedClass(name,parserClass.getClassLoader());
-        final Class<?> ret = extendedClass != null
-            ? extendedClass
-            : extendParserClass(parserClass).getExtendedClass();
+        final ClassLoader classLoader = parserClass.getClassLoader();
+
+        Class<?> ret = findLoadedClass(name, classLoader);
+
+        if (ret == null) {
+            final Lock lock = LOCKS.get(name);
+            lock.lock();
+            try {
+                ret = findLoadedClass(name, classLoader);
+                if (ret == null)
+                    ret = findPrecompiledClass(parserClass, name);
+                if (ret == null)
+                    ret = CACHE == null
+                        ? extendParserClass(parserClass).getExtendedClass()
+                        : extendParserClassCached(parserClass, name, CACHE);
+            } finally {
+                lock.unlock();
+            }
+        }
+
         return (Class<? extends T>) ret;
     }
 
@@ -94,21 +126,133 @@ public final class ParserTransformer
     @VisibleForTesting
     public static ParserClassNode extendParserClass(final Class<?> parserClass)
         throws Exception
+    {
+        final Lock lock
+            = LOCKS.get(getExtendedParserClassName(parserClass.getName()));
+        lock.lock();
+        try {
+            final ParserClassNode classNode
+                = generateParserClass(parserClass, false);
+            defineExtendedParserClass(classNode);
+            return classNode;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Generate the bytecode of an extended parser class without loading it
+     *
+     * <p>Action and var init classes are still loaded as they are generated.
+     * If {@code forceCodeBuilding} is true, their bytecode is also generated
+     * (and available from the instruction groups of the returned node) when
+     * they were already loaded.</p>
+     *
+     * @param parserClass the parser class
+     * @param forceCodeBuilding always build the code of group classes
+     * @return the class node, with its class code set
+     * @throws Exception FIXME
+     *
+     * @see ParserPrecompiler
+     */
+    static ParserClassNode generateParserClass(final Class<?> parserClass,
+        final boolean forceCodeBuilding)
+        throws Exception
     {
         final ParserClassNode classNode = new ParserClassNode(parserClass);
         new ClassNodeInitializer().process(classNode);
-        runMethodTransformers(classNode);
+        runMethodTransformers(classNode, forceCodeBuilding);
         new ConstructorGenerator().process(classNode);
-        defineExtendedParserClass(classNode);
+
+        final ClassWriter classWriter
+            = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        classNode.accept(classWriter);
+        classNode.setClassCode(classWriter.toByteArray());
         return classNode;
     }
 
+    /*
+     * Load the generated classes from the cache if present; otherwise,
+     * generate them (including the code of already loaded group classes) and
+     * store them. Called with the lock for this parser class held.
+     */
+    private static Class<?> extendParserClassCached(final Class<?> parserClass,
+        final String name, final BytecodeCache cache)
+        throws Exception
+    {
+        final String fingerprint = ParserFingerprint.compute(parserClass);
+        final ClassLoader classLoader = parserClass.getClassLoader();
+
+        final Class<?> ret = cache.load(fingerprint, name, classLoader);
+        if (ret != null)
+            return ret;
+
+        final ParserClassNode classNode
+            = generateParserClass(parserClass, true);
+        defineExtendedParserClass(classNode);
+        cache.store(fingerprint, getGeneratedClasses(classNode));
+        return classNode.getExtendedClass();
+    }
+
+    /**
+     * Return the bytecode of all classes generated for a parser class
+     *
+     * <p>The keys of the returned map are internal class names; the extended
+     * parser class comes first. The code of group classes is only available if
+     * it was generated, see {@link #generateParserClass(Class, boolean)}.</p>
+     *
+     * @param classNode the class node
+     * @return a map of internal class names to bytecode
+     */
+    static Map<String, byte[]> getGeneratedClasses(
+        final ParserClassNode classNode)
+    {
+        final Map<String, byte[]> ret = Maps.newLinkedHashMap();
+        ret.put(classNode.name, classNode.getClassCode());
+
+        byte[] code;
+
+        for (final RuleMethod method: classNode.getRuleMethods().values())
+            for (final InstructionGroup group: method.getGroups()) {
+                code = group.getGroupClassCode();
+                if (code != null)
+                    ret.put(group.getGroupClassType().getInternalName(), code);
+            }
+
+        return ret;
+    }
+
+    /*
+     * Load the extended parser class generated by ParserPrecompiler, if it is
+     * available from the parser's class loader and was generated from the
+     * same bytecode as the one currently loaded
+     */
+    @Nullable
+    private static Class<?> findPrecompiledClass(final Class<?> parserClass,
+        final String name)
+        throws IOException
+    {
+        final ClassLoader classLoader = parserClass.getClassLoader();
+        final String expected = ParserFingerprint.read(classLoader, name);
+
+        if (expected == null
+            || !expected.equals(ParserFingerprint.compute(parserClass)))
+            return null;
+
+        try {
+            return Class.forName(name, false, classLoader);
+        } catch (ClassNotFoundException ignored) {
+            return null;
+        }
+    }
+
     // TODO: poor exception handling again
-    private static void runMethodTransformers(final ParserClassNode classNode)
+    private static void runMethodTransformers(final ParserClassNode classNode,
+        final boolean forceCodeBuilding)
         throws Exception
     {
         final List<RuleMethodProcessor> methodProcessors
-            = createRuleMethodProcessors();
+            = createRuleMethodProcessors(forceCodeBuilding);
 
         // TODO: comment above may be right, but it's still dangerous
         // iterate through all rule methods
@@ -130,7 +274,8 @@ public final class ParserTransformer
         }
     }
 
-    private static List<RuleMethodProcessor> createRuleMethodProcessors()
+    private static List<RuleMethodProcessor> createRuleMethodProcessors(
+        final boolean forceCodeBuilding)
     {
         return ImmutableList.of(
             new UnusedLabelsRemover(),
@@ -139,12 +284,13 @@ public final class ParserTransformer
             new ImplicitActionsConverter(),
             new InstructionGroupCreator(),
             new InstructionGroupPreparer(),
-            new ActionClassGenerator(false),
-            new VarInitClassGenerator(false),
+            new ActionClassGenerator(forceCodeBuilding),
+            new VarInitClassGenerator(forceCodeBuilding),
             new RuleMethodRewriter(),
             new SuperCallRewriter(),
             new BodyWithSuperCallReplacer(),
             new VarFramingGenerator(),
+            new MemoizingGenerator(),
             new LabellingGenerator(),
             new CachingGenerator()
         );
@@ -152,10 +298,6 @@ public final class ParserTransformer
 
     private static void defineExtendedParserClass(final ParserClassNode node)
     {
-        final ClassWriter classWriter
-            = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
-        node.accept(classWriter);
-        node.setClassCode(classWriter.toByteArray());
         final Class<?> extendedClass  = loadClass(node.name.replace('/', '.'),
             node.getClassCode(), node.getParentClass().getClassLoader());
         node.setExtendedClass(extendedClass);
@@ -50,6 +50,7 @@ import static com.github.fge.grappa.transform.ParserAnnotation
     .DONT_SKIP_ACTIONS_IN_PREDICATES;
 import static com.github.fge.grappa.transform.ParserAnnotation
     .EXPLICIT_ACTIONS_ONLY;
+import static com.github.fge.grappa.transform.ParserAnnotation.MEMOIZED;
 import static com.github.fge.grappa.transform.ParserAnnotation
     .SKIP_ACTIONS_IN_PREDICATES;
 import static com.github.fge.grappa.transform.ParserAnnotation.moveTo;
@@ -176,6 +177,11 @@ public class RuleMethod
         return annotations.contains(DONT_LABEL);
     }
 
+    public boolean hasMemoizedAnnotation()
+    {
+        return annotations.contains(MEMOIZED);
+    }
+
     public boolean hasSkipActionsInPredicatesAnnotation()
     {
         return annotations.contains(SKIP_ACTIONS_IN_PREDICATES);
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.transform.compile;
+
+import com.github.fge.grappa.matchers.AnyMatcher;
+import com.github.fge.grappa.matchers.AnyOfMatcher;
+import com.github.fge.grappa.matchers.CharIgnoreCaseMatcher;
+import com.github.fge.grappa.matchers.CharMatcher;
+import com.github.fge.grappa.matchers.CharRangeMatcher;
+import com.github.fge.grappa.matchers.EmptyMatcher;
+import com.github.fge.grappa.matchers.EndOfInputMatcher;
+import com.github.fge.grappa.matchers.NothingMatcher;
+import com.github.fge.grappa.matchers.StringIgnoreCaseMatcher;
+import com.github.fge.grappa.matchers.StringMatcher;
+import com.github.fge.grappa.matchers.base.Matcher;
+import com.github.fge.grappa.matchers.delegate.FirstOfMatcher;
+import com.github.fge.grappa.matchers.delegate.OptionalMatcher;
+import com.github.fge.grappa.matchers.delegate.SequenceMatcher;
+import com.github.fge.grappa.matchers.join.BoundedBothJoinMatcher;
+import com.github.fge.grappa.matchers.join.BoundedDownJoinMatcher;
+import com.github.fge.grappa.matchers.join.BoundedUpJoinMatcher;
+import com.github.fge.grappa.matchers.join.ExactMatchesJoinMatcher;
+import com.github.fge.grappa.matchers.predicates.TestMatcher;
+import com.github.fge.grappa.matchers.predicates.TestNotMatcher;
+import com.github.fge.grappa.matchers.repeat.BoundedBothRepeatMatcher;
+import com.github.fge.grappa.matchers.repeat.BoundedDownRepeatMatcher;
+import com.github.fge.grappa.matchers.repeat.BoundedUpRepeatMatcher;
+import com.github.fge.grappa.matchers.repeat.ExactMatchesRepeatMatcher;
+import com.github.fge.grappa.matchers.trie.CaseInsensitiveTrieMatcher;
+import com.github.fge.grappa.matchers.trie.TrieMatcher;
+import com.github.fge.grappa.matchers.wrap.ProxyMatcher;
+import com.google.common.collect.ImmutableSet;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tells which matchers of a rule graph can be compiled
+ *
+ * <p>A matcher can be compiled if it is one of the terminals or composites the
+ * code generator knows about, and all of its descendants can be compiled. In
+ * particular, a subgraph containing an action (or a var framing matcher)
+ * cannot be compiled.</p>
+ *
+ * <p>Cycles are handled by first assuming that all matchers of a known kind
+ * can be compiled, then invalidating composites with a child which cannot be
+ * compiled until nothing changes.</p>
+ */
+@NotThreadSafe
+@ParametersAreNonnullByDefault
+final class CompilabilityAnalysis
+{
+    static final Set<Class<?>> TERMINALS = ImmutableSet.<Class<?>>of(
+        CharMatcher.class, CharIgnoreCaseMatcher.class, CharRangeMatcher.class,
+        AnyOfMatcher.class, StringMatcher.class, StringIgnoreCaseMatcher.class,
+        TrieMatcher.class, CaseInsensitiveTrieMatcher.class,
+        EmptyMatcher.class, NothingMatcher.class, AnyMatcher.class,
+        EndOfInputMatcher.class
+    );
+
+    static final Set<Class<?>> COMPOSITES = ImmutableSet.<Class<?>>of(
+        SequenceMatcher.class, FirstOfMatcher.class, OptionalMatcher.class,
+        TestMatcher.class, TestNotMatcher.class,
+        BoundedBothRepeatMatcher.class, BoundedDownRepeatMatcher.class,
+        BoundedUpRepeatMatcher.class, ExactMatchesRepeatMatcher.class,
+        BoundedBothJoinMatcher.class, BoundedDownJoinMatcher.class,
+        BoundedUpJoinMatcher.class, ExactMatchesJoinMatcher.class
+    );
+
+    private final Map<Matcher, Boolean> compilable = new IdentityHashMap<>();
+
+    CompilabilityAnalysis(final Matcher root)
+    {
+        final Deque<Matcher> queue = new ArrayDeque<>();
+        Matcher matcher;
+        Class<?> c;
+
+        queue.add(unwrap(root));
+
+        while (!queue.isEmpty()) {
+            matcher = queue.remove();
+            if (compilable.containsKey(matcher))
+                continue;
+            c = matcher.getClass();
+            compilable.put(matcher, TERMINALS.contains(c)
+                || COMPOSITES.contains(c));
+            // unarmed proxies have no children
+            if (matcher instanceof ProxyMatcher)
+                continue;
+            for (final Matcher child: matcher.getChildren())
+                queue.add(unwrap(child));
+        }
+
+        boolean changed;
+
+        do {
+            changed = false;
+            for (final Map.Entry<Matcher, Boolean> entry: compilable.entrySet())
+                if (entry.getValue() && !childrenCompilable(entry.getKey())) {
+                    entry.setValue(false);
+                    changed = true;
+                }
+        } while (changed);
+    }
+
+    /**
+     * Tell whether a matcher is the root of a subgraph worth compiling
+     *
+     * @param matcher the matcher
+     * @return true if the matcher can be compiled and is a composite
+     */
+    boolean isCompilableComposite(final Matcher matcher)
+    {
+        final Matcher target = unwrap(matcher);
+        return COMPOSITES.contains(target.getClass())
+            && Boolean.TRUE.equals(compilable.get(target));
+    }
+
+    /**
+     * Unwrap a matcher out of all its proxies
+     *
+     * @param matcher the matcher
+     * @return the innermost matcher; this is a proxy only if it is not armed
+     */
+    static Matcher unwrap(final Matcher matcher)
+    {
+        Matcher ret = matcher;
+        Matcher next;
+
+        while (ret instanceof ProxyMatcher) {
+            next = ProxyMatcher.unwrap(ret);
+            if (next == ret)
+                break;
+            ret = next;
+        }
+
+        return ret;
+    }
+
+    private boolean childrenCompilable(final Matcher matcher)
+    {
+        final List<Matcher> children = matcher.getChildren();
+
+        for (final Matcher child: children)
+            if (!compilable.get(unwrap(child)))
+                return false;
+
+        return true;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.transform.compile;
+
+import com.github.fge.grappa.buffers.InputBuffer;
+import com.github.fge.grappa.matchers.MatcherType;
+import com.github.fge.grappa.matchers.base.AbstractMatcher;
+import com.github.fge.grappa.matchers.base.Matcher;
+import com.github.fge.grappa.run.context.MatcherContext;
+
+import java.util.Objects;
+
+/**
+ * Base class of matchers generated by a {@link CompilingPass}
+ *
+ * <p>A compiled matcher replaces a whole subgraph of matchers (its {@link
+ * #getSource() source}) which contains no actions; it works directly on the
+ * input buffer and does not create any subcontext.</p>
+ *
+ * <p>A compiled matcher has no children, but it keeps the label and type of
+ * its source.</p>
+ */
+public abstract class CompiledMatcher
+    extends AbstractMatcher
+{
+    private final Matcher source;
+
+    protected CompiledMatcher(final Matcher source)
+    {
+        super(Objects.requireNonNull(source, "source").getLabel());
+        this.source = source;
+    }
+
+    /**
+     * Return the matcher this matcher was compiled from
+     *
+     * @return the source matcher
+     */
+    public final Matcher getSource()
+    {
+        return source;
+    }
+
+    @Override
+    public final MatcherType getType()
+    {
+        return source.getType();
+    }
+
+    /**
+     * Match at a given index of an input buffer
+     *
+     * @param buffer the input buffer
+     * @param index the index
+     * @return the index after the match, or -1 if there is no match
+     */
+    public abstract int matchAt(InputBuffer buffer, int index);
+
+    @Override
+    public final <V> boolean match(final MatcherContext<V> context)
+    {
+        final int index = context.getCurrentIndex();
+        final int end = matchAt(context.getInputBuffer(), index);
+
+        if (end == -1)
+            return false;
+
+        context.advanceIndex(end - index);
+        return true;
+    }
+}
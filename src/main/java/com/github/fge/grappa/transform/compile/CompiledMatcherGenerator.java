@@ -0,0 +1,816 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.transform.compile;
+
+import com.github.fge.grappa.buffers.InputBuffer;
+import com.github.fge.grappa.exceptions.GrappaException;
+import com.github.fge.grappa.matchers.AnyMatcher;
+import com.github.fge.grappa.matchers.AnyOfMatcher;
+import com.github.fge.grappa.matchers.CharIgnoreCaseMatcher;
+import com.github.fge.grappa.matchers.CharMatcher;
+import com.github.fge.grappa.matchers.CharRangeMatcher;
+import com.github.fge.grappa.matchers.EmptyMatcher;
+import com.github.fge.grappa.matchers.EndOfInputMatcher;
+import com.github.fge.grappa.matchers.NothingMatcher;
+import com.github.fge.grappa.matchers.StringIgnoreCaseMatcher;
+import com.github.fge.grappa.matchers.StringMatcher;
+import com.github.fge.grappa.matchers.analysis.FirstSetAnalyzer;
+import com.github.fge.grappa.matchers.base.Matcher;
+import com.github.fge.grappa.matchers.delegate.FirstOfMatcher;
+import com.github.fge.grappa.matchers.delegate.OptionalMatcher;
+import com.github.fge.grappa.matchers.delegate.SequenceMatcher;
+import com.github.fge.grappa.matchers.join.JoinMatcher;
+import com.github.fge.grappa.matchers.predicates.TestMatcher;
+import com.github.fge.grappa.matchers.predicates.TestNotMatcher;
+import com.github.fge.grappa.matchers.repeat.RepeatMatcher;
+import com.github.fge.grappa.matchers.trie.CaseInsensitiveTrieMatcher;
+import com.github.fge.grappa.matchers.trie.Trie;
+import com.github.fge.grappa.matchers.trie.TrieMatcher;
+import com.github.fge.grappa.support.Chars;
+import com.github.fge.grappa.support.Characters;
+import com.github.fge.grappa.transform.CodeBlock;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static me.qmx.jitescript.util.CodegenUtils.ci;
+import static me.qmx.jitescript.util.CodegenUtils.p;
+import static me.qmx.jitescript.util.CodegenUtils.sig;
+
+/**
+ * Generates the bytecode of a {@link CompiledMatcher} for a compilable subgraph
+ *
+ * <p>The generated class has one method per composite matcher of the subgraph,
+ * all of them with the same signature as {@link CompiledMatcher#matchAt(
+ * InputBuffer, int)}: the entry point is the method for the root matcher, and
+ * composites call each other's methods (this is how recursion is handled).
+ * Terminals are inlined at the point of use.</p>
+ *
+ * <p>Within a method, local variable 2 holds the current index; code for a
+ * matcher either falls through with this index updated, or jumps to a failure
+ * label, in which case the value of the index is undefined and the caller is
+ * responsible for restoring it. Ordered choices with enough alternatives
+ * switch on the current character, using the FIRST sets of the alternatives,
+ * to the first alternative which can match.</p>
+ *
+ * <p>If a method of the generated class would exceed the size limit of the
+ * JVM, no matcher is generated; the subgraph is then left to the
+ * interpreter.</p>
+ */
+@NotThreadSafe
+@ParametersAreNonnullByDefault
+final class CompiledMatcherGenerator
+    implements Opcodes
+{
+    private static final AtomicInteger CLASS_COUNTER = new AtomicInteger();
+
+    /*
+     * Choices with at least this number of alternatives are compiled into a
+     * switch on the current character...
+     */
+    private static final int SWITCH_MIN_ALTERNATIVES = 4;
+    /*
+     * ... unless their FIRST sets list too many characters
+     */
+    private static final int SWITCH_MAX_KEYS = 256;
+
+    /*
+     * Character sets with at most this number of characters are inlined as
+     * comparisons
+     */
+    private static final int MAX_INLINED_CHARS = 4;
+
+    private static final String BASE_CLASS = p(CompiledMatcher.class);
+    private static final String BUFFER = p(InputBuffer.class);
+    private static final String MATCH_DESC
+        = sig(int.class, InputBuffer.class, int.class);
+    private static final String ENTRY_POINT = "matchAt";
+
+    /*
+     * Messages of the exceptions thrown by ASM when a method, or the class,
+     * exceeds the size limits of the JVM
+     */
+    private static final String METHOD_TOO_LARGE = "Method code too large!";
+    private static final String CLASS_TOO_LARGE = "Class file too large!";
+
+    private static final int THIS = 0;
+    private static final int BUF = 1;
+    private static final int IDX = 2;
+
+    private final Matcher root;
+    private final String className;
+    private final String internalName;
+
+    private final FirstSetAnalyzer analyzer = new FirstSetAnalyzer();
+
+    private final Map<Matcher, String> methodNames = new IdentityHashMap<>();
+    private final Deque<Matcher> pending = new ArrayDeque<>();
+
+    private final Map<Object, Integer> constantIndices
+        = new IdentityHashMap<>();
+    private final List<Object> constants = new ArrayList<>();
+
+    private int nextLocal;
+
+    /**
+     * Compile a subgraph
+     *
+     * @param root the root of the subgraph, a compilable composite
+     * @return a new compiled matcher, or null if the generated code is too
+     * large for the JVM
+     */
+    @Nullable
+    static CompiledMatcher compile(final Matcher root)
+    {
+        return new CompiledMatcherGenerator(root).generate();
+    }
+
+    private CompiledMatcherGenerator(final Matcher root)
+    {
+        this.root = root;
+        className = CompiledMatcher.class.getName() + "$$"
+            + CLASS_COUNTER.incrementAndGet();
+        internalName = className.replace('.', '/');
+    }
+
+    @Nullable
+    private CompiledMatcher generate()
+    {
+        final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+
+        cw.visit(V1_7, ACC_PUBLIC + ACC_FINAL + ACC_SYNTHETIC, internalName,
+            null, BASE_CLASS, null);
+
+        methodNames.put(root, ENTRY_POINT);
+        pending.add(root);
+
+        Matcher matcher;
+        while (!pending.isEmpty()) {
+            matcher = pending.remove();
+            generateMethod(matcher, cw);
+        }
+
+        for (int i = 0; i < constants.size(); i++)
+            cw.visitField(ACC_PRIVATE + ACC_FINAL, "c" + i,
+                ci(constants.get(i).getClass()), null, null).visitEnd();
+
+        generateConstructor(cw);
+        cw.visitEnd();
+
+        final byte[] code;
+
+        try {
+            code = cw.toByteArray();
+        } catch (RuntimeException e) {
+            final String message = e.getMessage();
+            if (METHOD_TOO_LARGE.equals(message)
+                || CLASS_TOO_LARGE.equals(message))
+                return null;
+            throw new GrappaException("unable to generate compiled matcher"
+                + " for rule " + root, e);
+        }
+
+        final Class<?> c = new GeneratedClassLoader().define(className, code);
+
+        try {
+            return (CompiledMatcher) c.getConstructor(Matcher.class,
+                Object[].class).newInstance(root, constants.toArray());
+        } catch (NoSuchMethodException | InstantiationException
+            | IllegalAccessException | InvocationTargetException e) {
+            throw new GrappaException("unable to instantiate compiled matcher"
+                + " for rule " + root, e);
+        }
+    }
+
+    private void generateConstructor(final ClassWriter cw)
+    {
+        final String desc = sig(void.class, Matcher.class, Object[].class);
+        final CodeBlock block = CodeBlock.newCodeBlock()
+            .aload(THIS)
+            .aload(1)
+            .invokespecial(BASE_CLASS, "<init>", sig(void.class,
+                Matcher.class));
+
+        String type;
+
+        for (int i = 0; i < constants.size(); i++) {
+            type = p(constants.get(i).getClass());
+            block.aload(THIS)
+                .aload(2)
+                .pushInt(i)
+                .aaload()
+                .checkcast(type)
+                .putfield(internalName, "c" + i, 'L' + type + ';');
+        }
+
+        block.voidreturn();
+        addMethod(cw, ACC_PUBLIC, "<init>", desc, block);
+    }
+
+    private void generateMethod(final Matcher matcher, final ClassWriter cw)
+    {
+        final String name = methodNames.get(matcher);
+        final CodeBlock block = CodeBlock.newCodeBlock();
+        final LabelNode fail = new LabelNode();
+
+        nextLocal = IDX + 1;
+
+        composite(matcher, block, fail);
+        block.iload(IDX)
+            .ireturn()
+            .label(fail)
+            .iconst_m1()
+            .ireturn();
+
+        addMethod(cw, ENTRY_POINT.equals(name) ? ACC_PUBLIC : ACC_PRIVATE,
+            name, MATCH_DESC, block);
+    }
+
+    private static void addMethod(final ClassWriter cw, final int access,
+        final String name, final String desc, final CodeBlock block)
+    {
+        final MethodNode method = new MethodNode(access, name, desc, null,
+            null);
+        method.instructions.add(block.getInstructionList());
+        method.maxStack = 0;
+        method.maxLocals = 0;
+        method.accept(cw);
+    }
+
+    /*
+     * Code for a matcher at the point of use: terminals are inlined,
+     * composites are called
+     */
+    private void matcher(final Matcher m, final CodeBlock block,
+        final LabelNode fail)
+    {
+        final Matcher matcher = CompilabilityAnalysis.unwrap(m);
+
+        if (!CompilabilityAnalysis.COMPOSITES.contains(matcher.getClass())) {
+            terminal(matcher, block, fail);
+            return;
+        }
+
+        String name = methodNames.get(matcher);
+
+        if (name == null) {
+            name = "m" + methodNames.size();
+            methodNames.put(matcher, name);
+            pending.add(matcher);
+        }
+
+        block.aload(THIS)
+            .aload(BUF)
+            .iload(IDX)
+            .invokespecial(internalName, name, MATCH_DESC)
+            .dup()
+            .istore(IDX)
+            .iflt(fail);
+    }
+
+    private void composite(final Matcher matcher, final CodeBlock block,
+        final LabelNode fail)
+    {
+        final Class<?> c = matcher.getClass();
+        final List<Matcher> children = matcher.getChildren();
+
+        if (c == SequenceMatcher.class) {
+            for (final Matcher child: children)
+                matcher(child, block, fail);
+            return;
+        }
+
+        if (c == FirstOfMatcher.class) {
+            firstOf(children, block, fail);
+            return;
+        }
+
+        if (c == OptionalMatcher.class) {
+            final int saved = saveIndex(block);
+            final LabelNode noMatch = new LabelNode();
+            final LabelNode done = new LabelNode();
+            matcher(children.get(0), block, noMatch);
+            block.go_to(done).label(noMatch);
+            restoreIndex(block, saved);
+            block.label(done);
+            return;
+        }
+
+        if (c == TestMatcher.class) {
+            final int saved = saveIndex(block);
+            matcher(children.get(0), block, fail);
+            restoreIndex(block, saved);
+            return;
+        }
+
+        if (c == TestNotMatcher.class) {
+            final int saved = saveIndex(block);
+            final LabelNode noMatch = new LabelNode();
+            matcher(children.get(0), block, noMatch);
+            block.go_to(fail).label(noMatch);
+            restoreIndex(block, saved);
+            return;
+        }
+
+        if (matcher instanceof RepeatMatcher) {
+            final RepeatMatcher repeat = (RepeatMatcher) matcher;
+            repeat(children.get(0), repeat.getMinCycles(),
+                repeat.getMaxCycles(), block, fail);
+            return;
+        }
+
+        final JoinMatcher join = (JoinMatcher) matcher;
+        join(children.get(0), children.get(1), join.getMinCycles(),
+            join.getMaxCycles(), block, fail);
+    }
+
+    private void firstOf(final List<Matcher> alternatives,
+        final CodeBlock block, final LabelNode fail)
+    {
+        final int saved = saveIndex(block);
+        final int size = alternatives.size();
+
+        final Characters[] sets = new Characters[size];
+        final SortedMap<Character, LabelNode> keys = new TreeMap<>();
+
+        if (size >= SWITCH_MIN_ALTERNATIVES) {
+            for (int i = 0; i < size; i++) {
+                sets[i] = analyzer.analyze(alternatives.get(i))
+                    .getCandidates();
+                for (final char c: sets[i].getChars())
+                    keys.put(c, null);
+            }
+        }
+
+        final LabelNode[] entries = new LabelNode[size];
+        for (int i = 0; i < size; i++)
+            entries[i] = new LabelNode();
+
+        if (keys.isEmpty() || keys.size() > SWITCH_MAX_KEYS) {
+            tryAlternatives(alternatives, entries, block, saved, fail);
+            return;
+        }
+
+        /*
+         * The switch jumps to the first candidate for the current character;
+         * a character not listed in any set is only contained in subtractive
+         * sets.
+         *
+         * If this candidate fails, the alternatives after it are all tried in
+         * turn, whether they are candidates or not; they have no side effects,
+         * and this way the code of each alternative is only generated once.
+         */
+        for (final Map.Entry<Character, LabelNode> entry: keys.entrySet())
+            entry.setValue(firstCandidate(sets, entry.getKey(), entries,
+                fail));
+
+        LabelNode defaultEntry = fail;
+        for (int i = 0; i < size; i++)
+            if (sets[i].isSubtractive()) {
+                defaultEntry = entries[i];
+                break;
+            }
+
+        final int[] switchKeys = new int[keys.size()];
+        final LabelNode[] switchLabels = new LabelNode[keys.size()];
+
+        int index = 0;
+        for (final Map.Entry<Character, LabelNode> entry: keys.entrySet()) {
+            switchKeys[index] = entry.getKey();
+            switchLabels[index] = entry.getValue();
+            index++;
+        }
+
+        block.aload(BUF)
+            .iload(IDX)
+            .invokeinterface(BUFFER, "charAt", sig(char.class, int.class))
+            .lookupswitch(defaultEntry, switchKeys, switchLabels);
+
+        tryAlternatives(alternatives, entries, block, saved, fail);
+    }
+
+    private static LabelNode firstCandidate(final Characters[] sets,
+        final char c, final LabelNode[] entries, final LabelNode fail)
+    {
+        for (int i = 0; i < sets.length; i++)
+            if (sets[i].contains(c))
+                return entries[i];
+
+        return fail;
+    }
+
+    /*
+     * Try alternatives in order; each alternative starts at its entry label,
+     * with the index restored to its saved value
+     */
+    private void tryAlternatives(final List<Matcher> alternatives,
+        final LabelNode[] entries, final CodeBlock block, final int saved,
+        final LabelNode fail)
+    {
+        final int last = alternatives.size() - 1;
+
+        if (last == -1) {
+            block.go_to(fail);
+            return;
+        }
+
+        final LabelNode done = new LabelNode();
+        LabelNode next;
+
+        for (int i = 0; i < last; i++) {
+            next = new LabelNode();
+            block.label(entries[i]);
+            matcher(alternatives.get(i), block, next);
+            block.go_to(done).label(next);
+            restoreIndex(block, saved);
+        }
+
+        block.label(entries[last]);
+        matcher(alternatives.get(last), block, fail);
+        block.label(done);
+    }
+
+    /*
+     * Mirrors RepeatMatcher#match()
+     */
+    private void repeat(final Matcher child, final int min, final int max,
+        final CodeBlock block, final LabelNode fail)
+    {
+        final int cycles = nextLocal++;
+        final int before = saveIndex(block);
+
+        final LabelNode loop = new LabelNode();
+        final LabelNode noMatch = new LabelNode();
+        final LabelNode out = new LabelNode();
+        final LabelNode progress = new LabelNode();
+
+        block.iconst_0().istore(cycles).label(loop);
+
+        if (max != Integer.MAX_VALUE)
+            block.iload(cycles).pushInt(max).if_icmpge(out);
+
+        matcher(child, block, noMatch);
+
+        block.iload(IDX).iload(before).if_icmpne(progress);
+        throwGrappaException(block, "Inner rule of a RepeatMatcher"
+            + " cannot match an empty character sequence");
+        block.label(progress)
+            .iload(IDX)
+            .istore(before)
+            .iinc(cycles, 1)
+            .go_to(loop)
+            .label(noMatch);
+        restoreIndex(block, before);
+        block.label(out);
+
+        if (min > 0)
+            block.iload(cycles).pushInt(min).if_icmplt(fail);
+    }
+
+    /*
+     * Mirrors JoinMatcher#match()
+     */
+    private void join(final Matcher joined, final Matcher joining,
+        final int min, final int max, final CodeBlock block,
+        final LabelNode fail)
+    {
+        final int cycles = nextLocal++;
+        final int before = saveIndex(block);
+
+        final LabelNode loop = new LabelNode();
+        final LabelNode noCycle = new LabelNode();
+        final LabelNode out = new LabelNode();
+        final LabelNode progress = new LabelNode();
+        final LabelNode done = new LabelNode();
+
+        final LabelNode noFirstMatch = new LabelNode();
+        matcher(joined, block, noFirstMatch);
+
+        block.iconst_1().istore(cycles).iload(IDX).istore(before).label(loop);
+
+        if (max != Integer.MAX_VALUE)
+            block.iload(cycles).pushInt(max).if_icmpge(out);
+
+        matcher(joining, block, noCycle);
+
+        block.iload(IDX).iload(before).if_icmpne(progress);
+        throwGrappaException(block, "joining rule (" + joining + ") of a "
+            + "JoinMatcher cannot match an empty character sequence!");
+        block.label(progress);
+
+        matcher(joined, block, noCycle);
+
+        block.iload(IDX)
+            .istore(before)
+            .iinc(cycles, 1)
+            .go_to(loop)
+            .label(noCycle)
+            .label(out);
+        restoreIndex(block, before);
+
+        if (min > 1)
+            block.iload(cycles).pushInt(min).if_icmplt(fail);
+        block.go_to(done).label(noFirstMatch);
+        restoreIndex(block, before);
+        if (min > 0)
+            block.go_to(fail);
+        block.label(done);
+    }
+
+    private void terminal(final Matcher matcher, final CodeBlock block,
+        final LabelNode fail)
+    {
+        final Class<?> c = matcher.getClass();
+
+        if (c == EmptyMatcher.class)
+            return;
+
+        if (c == NothingMatcher.class) {
+            block.go_to(fail);
+            return;
+        }
+
+        if (c == AnyMatcher.class) {
+            codePointAt(block).iconst_m1().if_icmpeq(fail).iinc(IDX, 1);
+            return;
+        }
+
+        if (c == EndOfInputMatcher.class) {
+            codePointAt(block).iconst_m1().if_icmpne(fail);
+            return;
+        }
+
+        if (c == CharMatcher.class) {
+            charAt(block, 0).pushInt(((CharMatcher) matcher).getCharacter())
+                .if_icmpne(fail)
+                .iinc(IDX, 1);
+            return;
+        }
+
+        if (c == CharIgnoreCaseMatcher.class) {
+            final CharIgnoreCaseMatcher m = (CharIgnoreCaseMatcher) matcher;
+            anyOf(new char[] { m.getLowerBound(), m.getUpperBound() }, block,
+                fail);
+            return;
+        }
+
+        if (c == CharRangeMatcher.class) {
+            final CharRangeMatcher m = (CharRangeMatcher) matcher;
+            final int ch = nextLocal++;
+            charAt(block, 0).istore(ch)
+                .iload(ch).pushInt(m.getLowerBound()).if_icmplt(fail)
+                .iload(ch).pushInt(m.getUpperBound()).if_icmpgt(fail)
+                .iinc(IDX, 1);
+            return;
+        }
+
+        if (c == AnyOfMatcher.class) {
+            anyOf(((AnyOfMatcher) matcher).getCharacters(), block, fail);
+            return;
+        }
+
+        if (c == StringMatcher.class) {
+            string(((StringMatcher) matcher).getString(), block, fail);
+            return;
+        }
+
+        if (c == StringIgnoreCaseMatcher.class) {
+            stringIgnoreCase(((StringIgnoreCaseMatcher) matcher).getString(),
+                block, fail);
+            return;
+        }
+
+        if (c == TrieMatcher.class) {
+            trie(((TrieMatcher) matcher).getTrie(), false, block, fail);
+            return;
+        }
+
+        if (c == CaseInsensitiveTrieMatcher.class) {
+            trie(((CaseInsensitiveTrieMatcher) matcher).getTrie(), true, block,
+                fail);
+            return;
+        }
+
+        throw new IllegalStateException("cannot compile matcher " + matcher
+            + " (class " + c.getName() + ')');
+    }
+
+    private void anyOf(final Characters characters, final CodeBlock block,
+        final LabelNode fail)
+    {
+        final char[] chars = characters.getChars();
+
+        if (chars.length > MAX_INLINED_CHARS) {
+            getConstant(characters, block);
+            charAt(block, 0)
+                .invokevirtual(p(Characters.class), "contains",
+                    sig(boolean.class, char.class))
+                .ifeq(fail)
+                .iinc(IDX, 1);
+            return;
+        }
+
+        if (!characters.isSubtractive()) {
+            anyOf(chars, block, fail);
+            return;
+        }
+
+        final int ch = nextLocal++;
+        charAt(block, 0).istore(ch);
+        for (final char c: chars)
+            block.iload(ch).pushInt(c).if_icmpeq(fail);
+        block.iinc(IDX, 1);
+    }
+
+    private void anyOf(final char[] chars, final CodeBlock block,
+        final LabelNode fail)
+    {
+        final int ch = nextLocal++;
+        final LabelNode match = new LabelNode();
+
+        charAt(block, 0).istore(ch);
+        for (final char c: chars)
+            block.iload(ch).pushInt(c).if_icmpeq(match);
+        block.go_to(fail).label(match).iinc(IDX, 1);
+    }
+
+    private void string(final String string, final CodeBlock block,
+        final LabelNode fail)
+    {
+        final int length = string.length();
+
+        checkLength(string, block, fail);
+        for (int i = 0; i < length; i++)
+            charAt(block, i).pushInt(string.charAt(i)).if_icmpne(fail);
+        block.iinc(IDX, length);
+    }
+
+    /*
+     * Mirrors StringIgnoreCaseMatcher#match()
+     */
+    private void stringIgnoreCase(final String string, final CodeBlock block,
+        final LabelNode fail)
+    {
+        final int length = string.length();
+        final int ch = nextLocal++;
+        final String charDesc = sig(char.class, char.class);
+
+        char c;
+        char upper;
+        LabelNode match;
+
+        checkLength(string, block, fail);
+        for (int i = 0; i < length; i++) {
+            c = string.charAt(i);
+            upper = Character.toUpperCase(c);
+            match = new LabelNode();
+            charAt(block, i).istore(ch)
+                .iload(ch).pushInt(c).if_icmpeq(match)
+                .iload(ch)
+                .invokestatic(p(Character.class), "toUpperCase", charDesc)
+                .istore(ch)
+                .iload(ch).pushInt(upper).if_icmpeq(match)
+                .iload(ch)
+                .invokestatic(p(Character.class), "toLowerCase", charDesc)
+                .pushInt(Character.toLowerCase(upper))
+                .if_icmpne(fail)
+                .label(match);
+        }
+        block.iinc(IDX, length);
+    }
+
+    /*
+     * InputBuffer#charAt() returns EOI past the end of input; if the string
+     * contains this character, we need to check the length of the input first
+     */
+    private static void checkLength(final String string, final CodeBlock block,
+        final LabelNode fail)
+    {
+        if (string.indexOf(Chars.EOI) == -1)
+            return;
+
+        block.aload(BUF)
+            .invokeinterface(BUFFER, "length", sig(int.class))
+            .iload(IDX)
+            .isub()
+            .pushInt(string.length())
+            .if_icmplt(fail);
+    }
+
+    private void trie(final Trie trie, final boolean ignoreCase,
+        final CodeBlock block, final LabelNode fail)
+    {
+        final int length = nextLocal++;
+
+        getConstant(trie, block);
+        block.aload(BUF)
+            .iload(IDX)
+            .pushBoolean(ignoreCase)
+            .invokevirtual(p(Trie.class), "search", sig(int.class,
+                InputBuffer.class, int.class, boolean.class))
+            .dup()
+            .istore(length)
+            .iflt(fail)
+            .iload(IDX)
+            .iload(length)
+            .iadd()
+            .istore(IDX);
+    }
+
+    private void getConstant(final Object constant, final CodeBlock block)
+    {
+        Integer index = constantIndices.get(constant);
+
+        if (index == null) {
+            index = constants.size();
+            constants.add(constant);
+            constantIndices.put(constant, index);
+        }
+
+        block.aload(THIS).getfield(internalName, "c" + index,
+            ci(constant.getClass()));
+    }
+
+    private static CodeBlock charAt(final CodeBlock block, final int offset)
+    {
+        block.aload(BUF).iload(IDX);
+        if (offset != 0)
+            block.pushInt(offset).iadd();
+        return block.invokeinterface(BUFFER, "charAt",
+            sig(char.class, int.class));
+    }
+
+    private static CodeBlock codePointAt(final CodeBlock block)
+    {
+        return block.aload(BUF)
+            .iload(IDX)
+            .invokeinterface(BUFFER, "codePointAt", sig(int.class, int.class));
+    }
+
+    private int saveIndex(final CodeBlock block)
+    {
+        final int ret = nextLocal++;
+        block.iload(IDX).istore(ret);
+        return ret;
+    }
+
+    private static void restoreIndex(final CodeBlock block, final int saved)
+    {
+        block.iload(saved).istore(IDX);
+    }
+
+    private static void throwGrappaException(final CodeBlock block,
+        final String message)
+    {
+        final String exception = p(GrappaException.class);
+
+        block.newobj(exception)
+            .dup()
+            .ldc(message)
+            .invokespecial(exception, "<init>", sig(void.class, String.class))
+            .athrow();
+    }
+
+    private static final class GeneratedClassLoader
+        extends ClassLoader
+    {
+        private GeneratedClassLoader()
+        {
+            super(CompiledMatcher.class.getClassLoader());
+        }
+
+        private Class<?> define(final String name, final byte[] code)
+        {
+            return defineClass(name, code, 0, code.length);
+        }
+    }
+}
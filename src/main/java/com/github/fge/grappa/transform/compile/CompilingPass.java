@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.transform.compile;
+
+import com.github.fge.grappa.matchers.base.Matcher;
+import com.github.fge.grappa.matchers.optimize.OptimizationPass;
+import com.github.fge.grappa.matchers.optimize.PassReport;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * An optimization pass replacing subgraphs without actions with generated
+ * bytecode
+ *
+ * <p>The largest subgraphs of the rule graph which contain only known
+ * terminals and composites (that is, no actions, var framing or custom
+ * matchers) are each replaced with one {@link CompiledMatcher}. The rest of
+ * the graph is left as is, so that actions still see the same contexts.</p>
+ *
+ * <p>When a subgraph is too large to be compiled, its root is left as is and
+ * its children are compiled instead.</p>
+ *
+ * @see CompiledMatcherGenerator
+ */
+@ParametersAreNonnullByDefault
+public final class CompilingPass
+    extends OptimizationPass
+{
+    private CompilabilityAnalysis analysis;
+
+    @Override
+    public String getName()
+    {
+        return "compile";
+    }
+
+    @Override
+    protected void start(final Matcher root)
+    {
+        analysis = new CompilabilityAnalysis(root);
+    }
+
+    @Nullable
+    @Override
+    protected Matcher enter(final Matcher matcher, final PassReport report)
+    {
+        if (!analysis.isCompilableComposite(matcher))
+            return null;
+
+        final CompiledMatcher ret = CompiledMatcherGenerator.compile(matcher);
+
+        if (ret == null) {
+            report.record("%s: too large, not compiled", matcher);
+            return null;
+        }
+
+        report.record("%s: compiled", matcher);
+        return ret;
+    }
+}
@@ -17,6 +17,7 @@
 package com.github.fge.grappa.transform.process;
 
 import com.github.fge.grappa.transform.CodeBlock;
+import com.google.common.util.concurrent.Striped;
 import me.qmx.jitescript.util.CodegenUtils;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.MethodVisitor;
@@ -38,6 +39,7 @@ import com.github.fge.grappa.transform.base.RuleMethod;
 
 import javax.annotation.Nonnull;
 import java.util.Objects;
+import java.util.concurrent.locks.Lock;
 
 import static org.objectweb.asm.Opcodes.ACC_FINAL;
 import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
@@ -51,6 +53,12 @@ import static org.objectweb.asm.Opcodes.RETURN;
 public abstract class GroupClassGenerator
     implements RuleMethodProcessor
 {
+    /*
+     * Group class names are derived from a hash of the group's instructions,
+     * so that two parsers may share a group class; lock on the name only.
+     */
+    private static final Striped<Lock> LOCKS = Striped.lazyWeakLock(64);
+
     private final boolean forceCodeBuilding;
     protected ParserClassNode classNode;
     protected RuleMethod method;
@@ -81,15 +89,42 @@ public abstract class GroupClassGenerator
         final ClassLoader classLoader
             = classNode.getParentClass().getClassLoader();
 
-        final Class<?> groupClass;
-        synchronized (AsmUtils.class) {
-            groupClass = AsmUtils.findLoadedClass(className, classLoader);
+        final Lock lock = LOCKS.get(className);
+        lock.lock();
+        try {
+            final Class<?> groupClass
+                = AsmUtils.findLoadedClass(className, classLoader);
             if (groupClass == null || forceCodeBuilding) {
                 final byte[] groupClassCode = generateGroupClassCode(group);
                 group.setGroupClassCode(groupClassCode);
                 if (groupClass == null)
                     AsmUtils.loadClass(className, groupClassCode, classLoader);
             }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Load a group class from previously generated bytecode
+     *
+     * <p>Nothing is done if a class by that name is already loaded by the
+     * class loader.</p>
+     *
+     * @param className the binary name of the class
+     * @param code the bytecode
+     * @param classLoader the class loader of the parser class
+     */
+    public static void defineGroupClass(final String className,
+        final byte[] code, final ClassLoader classLoader)
+    {
+        final Lock lock = LOCKS.get(className);
+        lock.lock();
+        try {
+            if (AsmUtils.findLoadedClass(className, classLoader) == null)
+                AsmUtils.loadClass(className, code, classLoader);
+        } finally {
+            lock.unlock();
         }
     }
 
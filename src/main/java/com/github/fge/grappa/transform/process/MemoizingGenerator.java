@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.transform.process;
+
+import com.github.fge.grappa.annotations.Memoized;
+import com.github.fge.grappa.matchers.wrap.MemoizingMatcher;
+import com.github.fge.grappa.rules.Rule;
+import com.github.fge.grappa.transform.CodeBlock;
+import com.github.fge.grappa.transform.base.ParserClassNode;
+import com.github.fge.grappa.transform.base.RuleMethod;
+import me.qmx.jitescript.util.CodegenUtils;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnList;
+
+import javax.annotation.Nonnull;
+import java.util.Objects;
+
+import static org.objectweb.asm.Opcodes.ARETURN;
+
+/**
+ * Inserts code for wrapping the created rule into a {@link MemoizingMatcher}
+ * if the method is annotated with {@link Memoized}.
+ */
+public final class MemoizingGenerator
+    implements RuleMethodProcessor
+{
+    @Override
+    public boolean appliesTo(@Nonnull final ParserClassNode classNode,
+        @Nonnull final RuleMethod method)
+    {
+        Objects.requireNonNull(classNode, "classNode");
+        Objects.requireNonNull(method, "method");
+        return method.hasMemoizedAnnotation();
+    }
+
+    @Override
+    public void process(@Nonnull final ParserClassNode classNode,
+        @Nonnull final RuleMethod method)
+        throws Exception
+    {
+        Objects.requireNonNull(classNode, "classNode");
+        Objects.requireNonNull(method, "method");
+        final InsnList instructions = method.instructions;
+
+        AbstractInsnNode ret = instructions.getLast();
+        while (ret.getOpcode() != ARETURN)
+            ret = ret.getPrevious();
+
+        final CodeBlock block = CodeBlock.newCodeBlock();
+
+        block.newobj(CodegenUtils.p(MemoizingMatcher.class))
+            .dup_x1()
+            .swap()
+            .invokespecial(CodegenUtils.p(MemoizingMatcher.class), "<init>",
+                CodegenUtils.sig(void.class, Rule.class));
+
+        instructions.insertBefore(ret, block.getInstructionList());
+
+        method.setBodyRewritten();
+    }
+}
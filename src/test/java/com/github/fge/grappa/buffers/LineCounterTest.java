@@ -16,13 +16,11 @@
 
 package com.github.fge.grappa.buffers;
 
-import com.google.common.collect.ImmutableList.Builder;
-import com.google.common.collect.Range;
+import com.github.fge.grappa.support.IndexRange;
 import com.github.fge.grappa.support.Position;
+import com.google.common.collect.Range;
 import org.testng.annotations.Test;
 
-import java.util.List;
-
 import static org.assertj.core.api.Assertions.assertThat;
 
 public final class LineCounterTest
@@ -64,22 +62,34 @@ public final class LineCounterTest
             .isEqualTo(Range.closedOpen(6, 11));
     }
 
-    @SuppressWarnings("AutoBoxing")
     @Test(timeOut = 2000L)
     public void frontierIndexDoesNotCauseEndlessLoop()
     {
         final int expected = 4;
 
-        final List<Range<Integer>> ranges = new Builder<Range<Integer>>()
-            .add(Range.closedOpen(0, 3))
-            .add(Range.closedOpen(3, 7))
-            .add(Range.closedOpen(7, 16))
-            .add(Range.closedOpen(16, 18))
-            .add(Range.closedOpen(18, 20))
-            .build();
+        final int[] lineStarts = { 0, 3, 7, 16, 18 };
 
-        final LineCounter lineCounter = new LineCounter(ranges);
+        final LineCounter lineCounter = new LineCounter(lineStarts, 20);
 
         assertThat(lineCounter.binarySearch(18)).isEqualTo(expected);
     }
+
+    @Test
+    public void parallelScanFindsAllLines()
+    {
+        final StringBuilder sb = new StringBuilder();
+        while (sb.length() < 5 * (1 << 20))
+            sb.append("a line of text\n");
+        sb.append("last");
+        final int len = sb.length();
+
+        final LineCounter lineCounter = new LineCounter(sb.toString(), true);
+        final int nrLines = len / 15 + 1;
+
+        assertThat(lineCounter.getNrLines()).isEqualTo(nrLines);
+        assertThat(lineCounter.getLineIndexRange(nrLines))
+            .isEqualTo(new IndexRange(len - 4, len));
+        assertThat(lineCounter.toPosition(1 << 20))
+            .isEqualTo(new Position((1 << 20) / 15 + 1, (1 << 20) % 15 + 1));
+    }
 }
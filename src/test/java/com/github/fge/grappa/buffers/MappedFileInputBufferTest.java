@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.buffers;
+
+import com.github.fge.grappa.support.Chars;
+import org.assertj.core.api.SoftAssertions;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+public final class MappedFileInputBufferTest
+{
+    private static final String CONTENT = "hello, w\u00f6rld\r\n"
+        + "\n"
+        + "\u00e9t\u00e9 \ud834\udd1e clef\n"
+        + "\u20ac\u20ac\u20ac; the end";
+
+    @DataProvider
+    public Iterator<Object[]> getContents()
+    {
+        final List<Object[]> list = new ArrayList<>();
+
+        // Segments smaller than windows, and segments of several windows
+        for (final int segmentSize: new int[] { 16, 64 }) {
+            list.add(new Object[] { CONTENT, StandardCharsets.UTF_8,
+                segmentSize });
+            list.add(new Object[] { CONTENT + '\n', StandardCharsets.UTF_8,
+                segmentSize });
+            list.add(new Object[] { CONTENT, StandardCharsets.UTF_16LE,
+                segmentSize });
+            list.add(new Object[] { "caf\u00e9\nno newline",
+                StandardCharsets.ISO_8859_1, segmentSize });
+            list.add(new Object[] { "", StandardCharsets.UTF_8, segmentSize });
+        }
+
+        return list.iterator();
+    }
+
+    @Test(dataProvider = "getContents")
+    public void bufferBehavesLikeACharSequenceBuffer(final String content,
+        final Charset charset, final int segmentSize)
+        throws IOException
+    {
+        final Path path = Files.createTempFile("grappa", ".txt");
+        Files.write(path, content.getBytes(charset));
+
+        final InputBuffer expected = new CharSequenceInputBuffer(content);
+        final int length = content.length();
+
+        final SoftAssertions soft = new SoftAssertions();
+
+        try (
+            final MappedFileInputBuffer actual
+                = new MappedFileInputBuffer(path, charset, 7, segmentSize)
+        ) {
+            soft.assertThat(actual.length()).isEqualTo(length);
+            soft.assertThat(actual.getLineCount())
+                .isEqualTo(expected.getLineCount());
+
+            for (int i = 0; i <= length + 1; i++) {
+                soft.assertThat(actual.charAt(i)).as("char at " + i)
+                    .isEqualTo(expected.charAt(i));
+                soft.assertThat(actual.codePointAt(i))
+                    .as("code point at " + i)
+                    .isEqualTo(expected.codePointAt(i));
+                soft.assertThat(actual.getPosition(i)).as("position of " + i)
+                    .isEqualTo(expected.getPosition(i));
+            }
+
+            for (int start = 0; start < length; start += 3)
+                for (int end = start; end <= length + 2; end += 5)
+                    soft.assertThat(actual.extract(start, end))
+                        .isEqualTo(expected.extract(start, end));
+
+            for (int line = 1; line <= expected.getLineCount(); line++) {
+                soft.assertThat(actual.getLineRange(line))
+                    .isEqualTo(expected.getLineRange(line));
+                if (!expected.getLineRange(line).isEmpty())
+                    soft.assertThat(actual.extractLine(line))
+                        .isEqualTo(expected.extractLine(line));
+            }
+
+            soft.assertThat(actual.charAt(length)).isEqualTo(Chars.EOI);
+        } finally {
+            Files.delete(path);
+        }
+
+        soft.assertAll();
+    }
+
+    @Test
+    public void malformedInputIsReplaced()
+        throws IOException
+    {
+        final Path path = Files.createTempFile("grappa", ".txt");
+        Files.write(path, new byte[] { 'a', (byte) 0xff, 'b' });
+
+        try (
+            final MappedFileInputBuffer buffer = new MappedFileInputBuffer(path)
+        ) {
+            final SoftAssertions soft = new SoftAssertions();
+            soft.assertThat(buffer.length()).isEqualTo(3);
+            soft.assertThat(buffer.extract(0, 3)).isEqualTo("a\ufffdb");
+            soft.assertAll();
+        } finally {
+            Files.delete(path);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.buffers;
+
+import com.github.fge.grappa.support.Chars;
+import org.assertj.core.api.SoftAssertions;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static com.github.fge.grappa.util.CustomAssertions.shouldHaveThrown;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class StreamingInputBufferTest
+{
+    private static final String CONTENT = "hello, w\u00f6rld\r\n"
+        + "\n"
+        + "\u00e9t\u00e9 \ud834\udd1e clef\n"
+        + "\u20ac\u20ac\u20ac; the end";
+
+    @DataProvider
+    public Iterator<Object[]> getContents()
+    {
+        final List<Object[]> list = new ArrayList<>();
+
+        list.add(new Object[] { CONTENT });
+        list.add(new Object[] { CONTENT + '\n' });
+        list.add(new Object[] { "no newline" });
+        list.add(new Object[] { "" });
+
+        return list.iterator();
+    }
+
+    @Test(dataProvider = "getContents")
+    public void bufferBehavesLikeACharSequenceBuffer(final String content)
+        throws IOException
+    {
+        final InputBuffer expected = new CharSequenceInputBuffer(content);
+        final int length = content.length();
+
+        final SoftAssertions soft = new SoftAssertions();
+
+        try (
+            final StreamingInputBuffer actual
+                = new StreamingInputBuffer(new TrickleReader(content), 4)
+        ) {
+            for (int i = 0; i <= length + 1; i++) {
+                soft.assertThat(actual.charAt(i)).as("char at " + i)
+                    .isEqualTo(expected.charAt(i));
+                soft.assertThat(actual.codePointAt(i))
+                    .as("code point at " + i)
+                    .isEqualTo(expected.codePointAt(i));
+                soft.assertThat(actual.getPosition(i)).as("position of " + i)
+                    .isEqualTo(expected.getPosition(i));
+            }
+
+            for (int start = 0; start < length; start += 3)
+                for (int end = start; end <= length + 2; end += 5)
+                    soft.assertThat(actual.extract(start, end))
+                        .isEqualTo(expected.extract(start, end));
+
+            for (int line = 1; line <= expected.getLineCount(); line++) {
+                soft.assertThat(actual.getLineRange(line))
+                    .isEqualTo(expected.getLineRange(line));
+                if (!expected.getLineRange(line).isEmpty())
+                    soft.assertThat(actual.extractLine(line))
+                        .isEqualTo(expected.extractLine(line));
+            }
+
+            soft.assertThat(actual.length()).isEqualTo(length);
+            soft.assertThat(actual.getLineCount())
+                .isEqualTo(expected.getLineCount());
+            soft.assertThat(actual.charAt(length)).isEqualTo(Chars.EOI);
+        }
+
+        soft.assertAll();
+    }
+
+    @Test
+    public void discardingKeepsMemoryBoundedAndPositionsCorrect()
+        throws IOException
+    {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++)
+            sb.append("record ").append(i).append('\n');
+        final String content = sb.toString();
+        final InputBuffer expected = new CharSequenceInputBuffer(content);
+
+        final SoftAssertions soft = new SoftAssertions();
+
+        try (
+            final StreamingInputBuffer actual
+                = new StreamingInputBuffer(new TrickleReader(content), 16)
+        ) {
+            char c;
+            for (int i = 0; (c = actual.charAt(i)) != Chars.EOI; i++) {
+                if (c != '\n')
+                    continue;
+                soft.assertThat(actual.getPosition(i)).as("position of " + i)
+                    .isEqualTo(expected.getPosition(i));
+                final int line = expected.getPosition(i).getLine();
+                soft.assertThat(actual.extractLine(line))
+                    .isEqualTo(expected.extractLine(line));
+                actual.discardBefore(i + 1);
+            }
+
+            soft.assertThat(actual.getCapacity()).isLessThanOrEqualTo(64);
+            soft.assertThat(actual.length()).isEqualTo(content.length());
+            soft.assertThat(actual.getLineCount())
+                .isEqualTo(expected.getLineCount());
+            soft.assertThat(actual.getPosition(content.length()))
+                .isEqualTo(expected.getPosition(content.length()));
+        }
+
+        soft.assertAll();
+    }
+
+    @Test
+    public void discardedCharactersCannotBeAccessed()
+    {
+        final StreamingInputBuffer buffer
+            = new StreamingInputBuffer(new StringReader("abc\ndef"));
+
+        assertThat(buffer.charAt(5)).isEqualTo('e');
+        buffer.discardBefore(4);
+
+        try {
+            buffer.charAt(3);
+            shouldHaveThrown(IllegalStateException.class);
+        } catch (IllegalStateException ignored) {
+            // ok
+        }
+
+        try {
+            buffer.getLineRange(1);
+            shouldHaveThrown(IllegalStateException.class);
+        } catch (IllegalStateException ignored) {
+            // ok
+        }
+
+        assertThat(buffer.extract(4, 7)).isEqualTo("def");
+        assertThat(buffer.getPosition(4).getLine()).isEqualTo(2);
+    }
+
+    @Test
+    public void channelInputIsDecoded()
+    {
+        final byte[] bytes = "caf\u00e9".getBytes(StandardCharsets.UTF_8);
+        final ReadableByteChannel channel
+            = Channels.newChannel(new ByteArrayInputStream(bytes));
+        final StreamingInputBuffer buffer
+            = new StreamingInputBuffer(channel, StandardCharsets.UTF_8);
+
+        assertThat(buffer.extract(0, 10)).isEqualTo("caf\u00e9");
+    }
+
+    /*
+     * A reader returning at most three characters at a time
+     */
+    private static final class TrickleReader
+        extends Reader
+    {
+        private final String content;
+        private int index;
+
+        private TrickleReader(final String content)
+        {
+            this.content = content;
+        }
+
+        @Override
+        public int read(final char[] cbuf, final int off, final int len)
+        {
+            if (index == content.length())
+                return -1;
+            final int nrRead = Math.min(Math.min(len, 3),
+                content.length() - index);
+            content.getChars(index, index + nrRead, cbuf, off);
+            index += nrRead;
+            return nrRead;
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+}
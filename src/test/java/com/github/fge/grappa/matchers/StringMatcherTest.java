@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.matchers;
+
+import com.github.fge.grappa.run.MatchHandler;
+import com.github.fge.grappa.run.context.MatcherContext;
+import com.github.fge.grappa.util.MatcherContextBuilder;
+import com.github.fge.grappa.util.SimpleMatchHandler;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class StringMatcherTest
+{
+    private final MatchHandler handler = SimpleMatchHandler.INSTANCE;
+
+    @DataProvider
+    public Iterator<Object[]> getMatchData()
+    {
+        final List<Object[]> list = new ArrayList<>();
+
+        list.add(new Object[] { "select", "select *", 0, true });
+        list.add(new Object[] { "select", "SELECT", 0, false });
+        list.add(new Object[] { "select", "deselect", 2, true });
+        list.add(new Object[] { "select", "deselect", 3, false });
+        list.add(new Object[] { "select", "xelect", 0, false });
+        // match at end of input
+        list.add(new Object[] { "end", "the end", 4, true });
+        // literal longer than the remaining input
+        list.add(new Object[] { "select", "selec", 0, false });
+        list.add(new Object[] { "select", "deselec", 2, false });
+        list.add(new Object[] { "a", "a", 1, false });
+        list.add(new Object[] { "", "", 0, true });
+
+        return list.iterator();
+    }
+
+    @Test(dataProvider = "getMatchData")
+    public void matcherBehavesLikeStartsWith(final String s,
+        final String input, final int index, final boolean expected)
+    {
+        final MatcherContext<Object> context = new MatcherContextBuilder()
+            .withInput(input).withIndex(index)
+            .withMatcher(new StringMatcher(s)).build();
+
+        assertThat(input.startsWith(s, index)).as("test data is consistent")
+            .isEqualTo(expected);
+
+        assertThat(handler.match(context)).as("match result is correct")
+            .isEqualTo(expected);
+        if (expected)
+            assertThat(context.getCurrentIndex())
+                .as("index is advanced on success")
+                .isEqualTo(index + s.length());
+    }
+
+    @Test
+    public void matcherDoesNotMatchPastEndOfInput()
+    {
+        final MatcherContext<Object> context = new MatcherContextBuilder()
+            .withInput("ab")
+            .withMatcher(new StringMatcher("ab\uFFFF")).build();
+
+        assertThat(handler.match(context)).isFalse();
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.matchers.analysis;
+
+import com.github.fge.grappa.Grappa;
+import com.github.fge.grappa.matchers.ActionMatcher;
+import com.github.fge.grappa.matchers.CharMatcher;
+import com.github.fge.grappa.matchers.CharRangeMatcher;
+import com.github.fge.grappa.matchers.EndOfInputMatcher;
+import com.github.fge.grappa.matchers.StringIgnoreCaseMatcher;
+import com.github.fge.grappa.matchers.base.Matcher;
+import com.github.fge.grappa.matchers.delegate.OptionalMatcher;
+import com.github.fge.grappa.matchers.delegate.SequenceMatcher;
+import com.github.fge.grappa.matchers.predicates.TestNotMatcher;
+import com.github.fge.grappa.parsers.BaseParser;
+import com.github.fge.grappa.rules.Action;
+import com.github.fge.grappa.rules.Rule;
+import com.github.fge.grappa.run.BasicParseRunner;
+import com.github.fge.grappa.run.context.Context;
+import com.github.fge.grappa.support.Chars;
+import com.google.common.collect.ImmutableList;
+import org.assertj.core.api.SoftAssertions;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class FirstCharDispatchTest
+{
+    static class TestParser
+        extends BaseParser<Object>
+    {
+        int count = 0;
+
+        public Rule rule()
+        {
+            return firstOf(
+                sequence(optional('x'), count(), 'a'),
+                'b'
+            );
+        }
+
+        boolean count()
+        {
+            count++;
+            return true;
+        }
+    }
+
+    private static final Action<Object> ACTION = new Action<Object>()
+    {
+        @Override
+        public boolean run(final Context<Object> context)
+        {
+            return true;
+        }
+    };
+
+    @Test
+    public void candidatesAreComputedCorrectlyAndInOrder()
+    {
+        final Matcher digit = new CharRangeMatcher('0', '9');
+        final Matcher optionalMinus = new SequenceMatcher(new Rule[] {
+            new OptionalMatcher(new CharMatcher('-')), digit
+        });
+        final Matcher select = new StringIgnoreCaseMatcher("select");
+        final Matcher notA = new SequenceMatcher(new Rule[] {
+            new TestNotMatcher(new CharMatcher('a')), new CharMatcher('b')
+        });
+        final Matcher eoi = new EndOfInputMatcher();
+        final Matcher action = new ActionMatcher(ACTION);
+        final Matcher nonAscii = new CharMatcher('é');
+
+        final List<Matcher> alternatives = ImmutableList.of(digit,
+            optionalMinus, select, notA, eoi, action, nonAscii);
+        final FirstCharDispatch dispatch
+            = FirstCharDispatch.build(alternatives);
+
+        final SoftAssertions soft = new SoftAssertions();
+
+        soft.assertThat(dispatch.getCandidates('1')).as("digit")
+            .containsExactly(digit, optionalMinus, action);
+        soft.assertThat(dispatch.getCandidates('-')).as("minus")
+            .containsExactly(optionalMinus, action);
+        soft.assertThat(dispatch.getCandidates('S')).as("ignore case")
+            .containsExactly(select, action);
+        soft.assertThat(dispatch.getCandidates('ſ')).as("long s")
+            .containsExactly(select, action);
+        soft.assertThat(dispatch.getCandidates('b')).as("after testNot")
+            .containsExactly(notA, action);
+        soft.assertThat(dispatch.getCandidates(Chars.EOI)).as("end of input")
+            .containsExactly(eoi, action);
+        soft.assertThat(dispatch.getCandidates('é')).as("non ASCII")
+            .containsExactly(action, nonAscii);
+        soft.assertThat(dispatch.getCandidates('€')).as("others")
+            .containsExactly(action);
+
+        soft.assertAll();
+    }
+
+    @Test
+    public void alternativesStartingWithActionsAreNotPruned()
+    {
+        final Matcher actionFirst = new SequenceMatcher(new Rule[] {
+            new ActionMatcher(ACTION), new CharMatcher('a')
+        });
+        final Matcher b = new CharMatcher('b');
+        final FirstCharDispatch dispatch
+            = FirstCharDispatch.build(ImmutableList.of(actionFirst, b));
+
+        assertThat(dispatch.getCandidates('b'))
+            .containsExactly(actionFirst, b);
+    }
+
+    @Test
+    public void actionsAreRunWhateverTheCurrentCharacter()
+    {
+        final TestParser parser = Grappa.createParser(TestParser.class);
+        final BasicParseRunner<Object> runner
+            = new BasicParseRunner<>(parser.rule());
+
+        assertThat(runner.run("b").isSuccess()).isTrue();
+        assertThat(runner.run("a").isSuccess()).isTrue();
+        assertThat(runner.run("c").isSuccess()).isFalse();
+        assertThat(parser.count).isEqualTo(3);
+    }
+}
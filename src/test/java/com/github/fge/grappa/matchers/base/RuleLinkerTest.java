@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.matchers.base;
+
+import com.github.fge.grappa.Grappa;
+import com.github.fge.grappa.matchers.optimize.GrammarOptimizer;
+import com.github.fge.grappa.matchers.wrap.ProxyMatcher;
+import com.github.fge.grappa.matchers.wrap.VarFramingMatcher;
+import com.github.fge.grappa.parsers.BaseParser;
+import com.github.fge.grappa.rules.Rule;
+import com.github.fge.grappa.run.BasicParseRunner;
+import com.github.fge.grappa.run.ParsingResult;
+import com.github.fge.grappa.support.Var;
+import org.assertj.core.api.SoftAssertions;
+import org.testng.annotations.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class RuleLinkerTest
+{
+    static class TestParser
+        extends BaseParser<Object>
+    {
+        public Rule expr()
+        {
+            return sequence(term(),
+                zeroOrMore(firstOf('+', '-'), term(), push(match())));
+        }
+
+        public Rule term()
+        {
+            return firstOf(number(), sequence('(', expr(), ')'));
+        }
+
+        public Rule number()
+        {
+            return sequence(oneOrMore(digit()), push(match()));
+        }
+    }
+
+    @Test
+    public void linkedRecursiveGraphHasNoProxies()
+    {
+        final TestParser parser = Grappa.createParser(TestParser.class);
+        final Matcher before = (Matcher) parser.expr();
+
+        assertThat(countProxies(before)).isGreaterThan(0);
+
+        final Matcher after = (Matcher) RuleLinker.link(before);
+
+        final SoftAssertions soft = new SoftAssertions();
+
+        soft.assertThat(countProxies(after)).isEqualTo(0);
+        soft.assertThat(RuleLinker.link(after)).isSameAs(after);
+
+        final ParsingResult<Object> result
+            = new BasicParseRunner<>(after).run("1+(2-(3+4))");
+        soft.assertThat(result.isSuccess()).isTrue();
+        soft.assertThat(result.getTopStackValue()).isEqualTo("(2-(3+4))");
+
+        soft.assertAll();
+    }
+
+    @Test
+    public void nestedVarFramingMatchersAreFolded()
+    {
+        final TestParser parser = Grappa.createParser(TestParser.class);
+        final Rule number = parser.number();
+        final ProxyMatcher proxy = new ProxyMatcher();
+        proxy.arm(new VarFramingMatcher(number,
+            new Var<?>[] { new Var<>(0) }));
+
+        final Matcher before = new VarFramingMatcher(proxy,
+            new Var<?>[] { new Var<>("outer") });
+
+        final Matcher after = (Matcher) RuleLinker.link(before);
+
+        final SoftAssertions soft = new SoftAssertions();
+
+        soft.assertThat(after).isInstanceOf(VarFramingMatcher.class);
+        soft.assertThat(((VarFramingMatcher) after).getInner())
+            .isSameAs(number);
+        soft.assertThat(new BasicParseRunner<>(after).run("123")
+            .getTopStackValue()).isEqualTo("123");
+
+        soft.assertAll();
+    }
+
+    @Test
+    public void graphsAreLinkedOnceWhateverTheThread()
+        throws InterruptedException, ExecutionException
+    {
+        final TestParser parser = Grappa.createParser(TestParser.class);
+        final Rule rule = parser.expr();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final List<Future<Rule>> futures = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < 16; i++)
+                futures.add(executor.submit(new Callable<Rule>()
+                {
+                    @Override
+                    public Rule call()
+                    {
+                        return RuleLinker.link(rule);
+                    }
+                }));
+
+            final Rule expected = RuleLinker.link(rule);
+
+            for (final Future<Rule> future: futures)
+                assertThat(future.get()).isSameAs(expected);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void linkedGraphCanBeOptimized()
+    {
+        final TestParser parser = Grappa.createParser(TestParser.class);
+        final Rule linked = RuleLinker.link(parser.expr());
+        final Rule optimized = GrammarOptimizer.withDefaultPasses()
+            .optimize(linked).getRule();
+
+        final ParsingResult<Object> result
+            = new BasicParseRunner<>(optimized).run("(1+2)-3");
+
+        final SoftAssertions soft = new SoftAssertions();
+
+        soft.assertThat(result.isSuccess()).isTrue();
+        soft.assertThat(result.getTopStackValue()).isEqualTo("3");
+
+        soft.assertAll();
+    }
+
+    private static int countProxies(final Matcher root)
+    {
+        final Map<Matcher, Boolean> visited = new IdentityHashMap<>();
+        final Deque<Matcher> queue = new ArrayDeque<>();
+        Matcher matcher;
+        int ret = 0;
+
+        queue.add(root);
+
+        while (!queue.isEmpty()) {
+            matcher = queue.remove();
+            if (visited.put(matcher, Boolean.TRUE) != null)
+                continue;
+            if (matcher instanceof ProxyMatcher) {
+                ret++;
+                queue.add(ProxyMatcher.unwrap(matcher));
+            } else if (matcher instanceof VarFramingMatcher) {
+                queue.add(((VarFramingMatcher) matcher).getInner());
+            } else {
+                queue.addAll(matcher.getChildren());
+            }
+        }
+
+        return ret;
+    }
+}
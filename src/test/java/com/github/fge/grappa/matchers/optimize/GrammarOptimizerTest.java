@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.matchers.optimize;
+
+import com.github.fge.grappa.Grappa;
+import com.github.fge.grappa.matchers.AnyOfMatcher;
+import com.github.fge.grappa.matchers.StringMatcher;
+import com.github.fge.grappa.matchers.base.Matcher;
+import com.github.fge.grappa.parsers.BaseParser;
+import com.github.fge.grappa.rules.Rule;
+import com.github.fge.grappa.run.ListeningParseRunner;
+import com.github.fge.grappa.run.ParsingResult;
+import com.github.fge.grappa.support.Characters;
+import org.assertj.core.api.SoftAssertions;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class GrammarOptimizerTest
+{
+    static class TestParser
+        extends BaseParser<Object>
+    {
+        public Rule expr()
+        {
+            return sequence(term(),
+                zeroOrMore(firstOf('+', '-'), term(), push(match())));
+        }
+
+        public Rule term()
+        {
+            return firstOf(number(), sequence('(', expr(), ')'));
+        }
+
+        public Rule number()
+        {
+            return sequence(oneOrMore(digit()), push(match()));
+        }
+
+        public Rule keyword()
+        {
+            return sequence(sequence('i', 'f'), EMPTY, sequence('t', 'h'),
+                'e', 'n');
+        }
+
+        public Rule pair()
+        {
+            return sequence(firstOf('a', 'b'), firstOf('a', 'b'));
+        }
+
+        public Rule choice()
+        {
+            return firstOf('x', EMPTY, 'y');
+        }
+    }
+
+    private final TestParser parser = Grappa.createParser(TestParser.class);
+
+    @Test
+    public void literalsAreFoldedAndEmptyMatchersRemoved()
+    {
+        final Rule rule = parser.keyword();
+        final OptimizationResult result
+            = GrammarOptimizer.withDefaultPasses().optimize(rule);
+        final Matcher matcher = (Matcher) result.getRule();
+
+        final SoftAssertions soft = new SoftAssertions();
+
+        soft.assertThat(matcher.getLabel()).isEqualTo("keyword");
+        soft.assertThat(matcher.getChildren()).hasSize(1);
+        soft.assertThat(matcher.getChildren().get(0))
+            .isInstanceOf(StringMatcher.class);
+        soft.assertThat(((Matcher) rule).getChildren()).hasSize(5);
+        soft.assertThat(new ListeningParseRunner<>(result.getRule())
+            .run("ifthen").isSuccess()).isTrue();
+
+        soft.assertAll();
+    }
+
+    @Test
+    public void eachPassReportsItsChanges()
+    {
+        final OptimizationResult result
+            = GrammarOptimizer.withDefaultPasses().optimize(parser.keyword());
+        final List<String> changed = new ArrayList<>();
+
+        for (final PassReport report: result.getReports())
+            if (report.hasChanges())
+                changed.add(report.getPassName());
+
+        assertThat(result.getReports()).hasSize(5);
+        assertThat(changed).containsExactly("flatten", "removeEmpty",
+            "foldStrings");
+    }
+
+    @Test
+    public void charChoicesAreMergedAndIdenticalSubgraphsShared()
+    {
+        final Matcher matcher = (Matcher) GrammarOptimizer.withDefaultPasses()
+            .optimize(parser.pair()).getRule();
+        final List<Matcher> children = matcher.getChildren();
+
+        assertThat(children.get(0)).isInstanceOf(AnyOfMatcher.class);
+        assertThat(((AnyOfMatcher) children.get(0)).getCharacters())
+            .isEqualTo(Characters.of("ab"));
+        assertThat(children.get(1)).isSameAs(children.get(0));
+    }
+
+    @Test
+    public void alternativesAfterEmptyAreRemoved()
+    {
+        final Matcher matcher = (Matcher) GrammarOptimizer.withDefaultPasses()
+            .optimize(parser.choice()).getRule();
+
+        assertThat(matcher.getChildren()).hasSize(2);
+    }
+
+    @DataProvider
+    public Iterator<Object[]> getExpressions()
+    {
+        final List<Object[]> list = new ArrayList<>();
+
+        list.add(new Object[] { "1+(2-3)" });
+        list.add(new Object[] { "1+" });
+        list.add(new Object[] { "(((4)))-5" });
+        list.add(new Object[] { "((4)" });
+        list.add(new Object[] { "-1" });
+
+        return list.iterator();
+    }
+
+    @Test(dataProvider = "getExpressions")
+    public void optimizedRecursiveGrammarBehavesTheSame(final String input)
+    {
+        final Rule rule = parser.expr();
+        final Rule optimized
+            = GrammarOptimizer.withDefaultPasses().optimize(rule).getRule();
+
+        final ParsingResult<Object> expected
+            = new ListeningParseRunner<>(rule).run(input);
+        final ParsingResult<Object> actual
+            = new ListeningParseRunner<>(optimized).run(input);
+
+        final SoftAssertions soft = new SoftAssertions();
+
+        soft.assertThat(actual.isSuccess()).isEqualTo(expected.isSuccess());
+        soft.assertThat(actual.getValueStack())
+            .containsExactlyElementsOf(expected.getValueStack());
+
+        soft.assertAll();
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.matchers.trie;
+
+import com.github.fge.grappa.buffers.CharSequenceInputBuffer;
+import com.github.fge.grappa.buffers.InputBuffer;
+import com.google.common.collect.Lists;
+import org.assertj.core.api.SoftAssertions;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.Iterator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class TrieTest
+{
+    private static final String[] WORDS = {
+        "do", "double", "done", "Dollar", "éclair", "éCLAT", "a", "ab", "abc",
+        "ıf", "zzz"
+    };
+
+    private final Trie trie;
+    private final TrieNode reference;
+
+    public TrieTest()
+    {
+        final TrieBuilder builder = Trie.newBuilder();
+        final TrieNodeBuilder nodeBuilder = new TrieNodeBuilder();
+
+        for (final String word: WORDS) {
+            builder.addWord(word);
+            nodeBuilder.addWord(word);
+        }
+
+        trie = builder.build();
+        reference = nodeBuilder.build();
+    }
+
+    @DataProvider
+    public Iterator<Object[]> getNeedles()
+    {
+        final List<Object[]> list = Lists.newArrayList();
+
+        for (final String needle: new String[] {
+            "doubles", "doubling", "DOUBLE", "dollar", "DoLLAR", "Éclat",
+            "ÉCLAIRS", "abcd", "ABX", "b", "", "ıF", "IF", "zz", "zzzz"
+        })
+            list.add(new Object[] { needle });
+
+        return list.iterator();
+    }
+
+    @Test(dataProvider = "getNeedles")
+    public void flattenedTrieBehavesLikeTrieNodes(final String needle)
+    {
+        final SoftAssertions soft = new SoftAssertions();
+
+        soft.assertThat(trie.search(needle, false))
+            .as("case sensitive search")
+            .isEqualTo(reference.search(needle, false));
+        soft.assertThat(trie.search(needle, true))
+            .as("case insensitive search")
+            .isEqualTo(reference.search(needle, true));
+
+        soft.assertAll();
+    }
+
+    @Test
+    public void searchInInputBufferStopsAtEndOfInput()
+    {
+        final InputBuffer buffer = new CharSequenceInputBuffer("xxdoub");
+
+        assertThat(trie.search(buffer, 2, false)).isEqualTo(2);
+        assertThat(trie.search(buffer, 4, false)).isEqualTo(-1);
+        assertThat(trie.search(buffer, 6, false)).isEqualTo(-1);
+    }
+}
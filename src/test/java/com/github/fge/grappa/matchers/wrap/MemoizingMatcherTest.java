@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.matchers.wrap;
+
+import com.github.fge.grappa.Grappa;
+import com.github.fge.grappa.annotations.Memoized;
+import com.github.fge.grappa.buffers.CharSequenceInputBuffer;
+import com.github.fge.grappa.buffers.InputBuffer;
+import com.github.fge.grappa.matchers.base.Matcher;
+import com.github.fge.grappa.parsers.BaseParser;
+import com.github.fge.grappa.rules.Rule;
+import com.github.fge.grappa.run.BatchParseRunner;
+import com.github.fge.grappa.run.ListeningParseRunner;
+import com.github.fge.grappa.run.ParsingResult;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class MemoizingMatcherTest
+{
+    static class TestParser
+        extends BaseParser<Object>
+    {
+        int prefixCount = 0;
+
+        @Memoized
+        public Rule prefix()
+        {
+            return sequence(oneOrMore(digit()), countPrefix(), push(match()));
+        }
+
+        public Rule rule()
+        {
+            return firstOf(
+                sequence(prefix(), 'a'),
+                sequence(prefix(), 'b')
+            );
+        }
+
+        public Rule lookahead()
+        {
+            return sequence(test(prefix()), prefix(), 'b');
+        }
+
+        boolean countPrefix()
+        {
+            prefixCount++;
+            return true;
+        }
+    }
+
+    @Test
+    public void annotatedRulesAreWrapped()
+    {
+        final TestParser parser = Grappa.createParser(TestParser.class);
+        final Matcher rule = (Matcher) parser.prefix();
+
+        assertThat(rule).isInstanceOf(MemoizingMatcher.class);
+        assertThat(rule.getLabel()).isEqualTo("prefix");
+        assertThat(parser.rule()).isNotInstanceOf(MemoizingMatcher.class);
+    }
+
+    @Test
+    public void memoizedRulesAreNotMatchedAgain()
+    {
+        final TestParser parser = Grappa.createParser(TestParser.class);
+        final ListeningParseRunner<Object> runner
+            = new ListeningParseRunner<>(parser.rule());
+
+        final ParsingResult<Object> result = runner.run("123b");
+
+        assertThat(parser.prefixCount).isEqualTo(1);
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(result.getValueStack()).containsExactly("123");
+    }
+
+    @Test
+    public void outcomesDoNotOutliveTheirRun()
+    {
+        final TestParser parser = Grappa.createParser(TestParser.class);
+        final ListeningParseRunner<Object> runner
+            = new ListeningParseRunner<>(parser.rule());
+
+        assertThat(runner.run("1a").isSuccess()).isTrue();
+        assertThat(runner.run("1c").isSuccess()).isFalse();
+        assertThat(runner.run("22b").getValueStack()).containsExactly("22");
+        assertThat(parser.prefixCount).isEqualTo(3);
+    }
+
+    @Test
+    public void outcomesDoNotOutliveTheirRunWhenContextsAreReused()
+    {
+        final TestParser parser = Grappa.createParser(TestParser.class);
+        final BatchParseRunner<Object> runner
+            = new BatchParseRunner<>(parser.rule());
+        final InputBuffer buffer = new CharSequenceInputBuffer("1a");
+
+        assertThat(runner.run(buffer).getValueStack()).containsExactly("1");
+        assertThat(runner.run(buffer).getValueStack()).containsExactly("1");
+        assertThat(parser.prefixCount).isEqualTo(2);
+    }
+
+    @Test
+    public void outcomesWithinPredicatesAreKeptApart()
+    {
+        final TestParser parser = Grappa.createParser(TestParser.class);
+        final ListeningParseRunner<Object> runner
+            = new ListeningParseRunner<>(parser.lookahead());
+
+        final ParsingResult<Object> result = runner.run("12b");
+
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(result.getValueStack()).containsExactly("12");
+        assertThat(parser.prefixCount).isEqualTo(2);
+    }
+}
@@ -18,6 +18,7 @@ package com.github.fge.grappa.parserunners;
 
 import com.github.fge.grappa.parsers.BaseParser;
 import com.github.fge.grappa.rules.Rule;
+import com.github.fge.grappa.run.BasicParseRunner;
 import com.github.fge.grappa.run.ListeningParseRunner;
 import com.github.fge.grappa.run.ParseRunner;
 import com.github.fge.grappa.Grappa;
@@ -40,11 +41,17 @@ public final class BasicParseRunnerTest
         = Grappa.createParser(SimpleParser.class);
     private final ParseRunner<Object> runner
         = new ListeningParseRunner<>(parser.rule());
+    private final ParseRunner<Object> basicRunner
+        = new BasicParseRunner<>(parser.rule());
 
     @Test
     public void basicParseRunnerCanReliablyReportErrors()
     {
         assertThat(runner.run("bbb").isSuccess()).as("errors are reported")
             .isFalse();
+        assertThat(basicRunner.run("bbb").isSuccess())
+            .as("errors are reported").isFalse();
+        assertThat(basicRunner.run("aaa").isSuccess())
+            .as("matches are reported").isTrue();
     }
 }
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.run;
+
+import com.github.fge.grappa.Grappa;
+import com.github.fge.grappa.matchers.base.Matcher;
+import com.github.fge.grappa.parsers.BaseParser;
+import com.github.fge.grappa.rules.Rule;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class AdaptiveMemoizingParseRunnerTest
+{
+    static class TestParser
+        extends BaseParser<Object>
+    {
+        int prefixCount = 0;
+
+        public Rule prefix()
+        {
+            return sequence(oneOrMore(digit()), countPrefix(), push(match()));
+        }
+
+        public Rule rule()
+        {
+            return firstOf(
+                sequence(prefix(), 'a'),
+                sequence(prefix(), 'b'),
+                sequence(prefix(), 'c'),
+                sequence(prefix(), 'd')
+            );
+        }
+
+        boolean countPrefix()
+        {
+            prefixCount++;
+            return true;
+        }
+    }
+
+    @Test
+    public void matchersBelowThresholdAreNotMemoized()
+    {
+        final TestParser parser = Grappa.createParser(TestParser.class);
+        final AdaptiveMemoizingParseRunner<Object> runner
+            = new AdaptiveMemoizingParseRunner<>(parser.rule(), 10);
+
+        final ParsingResult<Object> result = runner.run("123d");
+
+        assertThat(parser.prefixCount).isEqualTo(4);
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(result.getValueStack()).containsExactly("123");
+        assertThat(runner.getMemoSize()).isZero();
+    }
+
+    @Test
+    public void matchersAreMemoizedOnceThresholdIsReached()
+    {
+        final TestParser parser = Grappa.createParser(TestParser.class);
+        final AdaptiveMemoizingParseRunner<Object> runner
+            = new AdaptiveMemoizingParseRunner<>(parser.rule(), 1);
+
+        final ParsingResult<Object> result = runner.run("123d");
+
+        // tried once, then once more to record the outcome
+        assertThat(parser.prefixCount).isEqualTo(2);
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(result.getValueStack()).containsExactly("123");
+        assertThat(runner.isMemoized((Matcher) parser.prefix())).isTrue();
+        assertThat(runner.isMemoized((Matcher) parser.rule())).isFalse();
+    }
+
+    @Test
+    public void stateIsResetBetweenRuns()
+    {
+        final TestParser parser = Grappa.createParser(TestParser.class);
+        final AdaptiveMemoizingParseRunner<Object> runner
+            = new AdaptiveMemoizingParseRunner<>(parser.rule(), 1);
+
+        assertThat(runner.run("1d").isSuccess()).isTrue();
+        assertThat(runner.run("1a").isSuccess()).isTrue();
+
+        assertThat(parser.prefixCount).isEqualTo(3);
+        assertThat(runner.isMemoized((Matcher) parser.prefix())).isFalse();
+    }
+}
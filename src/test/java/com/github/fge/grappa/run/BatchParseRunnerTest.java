@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.run;
+
+import com.github.fge.grappa.Grappa;
+import com.github.fge.grappa.exceptions.GrappaException;
+import com.github.fge.grappa.parsers.BaseParser;
+import com.github.fge.grappa.rules.Rule;
+import com.google.common.base.Supplier;
+import org.assertj.core.api.SoftAssertions;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.github.fge.grappa.util.CustomAssertions.shouldHaveThrown;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class BatchParseRunnerTest
+{
+    static class SumParser
+        extends BaseParser<Integer>
+    {
+        public Rule sum()
+        {
+            return sequence(number(),
+                zeroOrMore(',', number(), push(pop() + pop())), EOI);
+        }
+
+        public Rule number()
+        {
+            return sequence(oneOrMore(digit()),
+                push(Integer.parseInt(match())));
+        }
+
+        public Rule failing()
+        {
+            return sequence('a', ACTION(fail()));
+        }
+
+        boolean fail()
+        {
+            throw new IllegalStateException();
+        }
+    }
+
+    private static final Supplier<Rule> SUPPLIER = new Supplier<Rule>()
+    {
+        @Override
+        public Rule get()
+        {
+            return Grappa.createParser(SumParser.class).sum();
+        }
+    };
+
+    @Test
+    public void runAllGivesTheSameResultsAsAListeningRunner()
+    {
+        final Rule rule = SUPPLIER.get();
+        final List<String> inputs = Arrays.asList("1,2,3", "", "42", "1,,2",
+            "10,20");
+
+        final ListeningParseRunner<Integer> expected
+            = new ListeningParseRunner<>(rule);
+        final BatchParseRunner<Integer> runner = new BatchParseRunner<>(rule);
+
+        final SoftAssertions soft = new SoftAssertions();
+        int i = 0;
+
+        for (final ParsingResult<Integer> result: runner.runAll(inputs)) {
+            final ParsingResult<Integer> reference
+                = expected.run(inputs.get(i));
+            soft.assertThat(result.isSuccess()).as(inputs.get(i))
+                .isEqualTo(reference.isSuccess());
+            soft.assertThat(result.getValueStack().size()).as(inputs.get(i))
+                .isEqualTo(reference.getValueStack().size());
+            if (reference.isSuccess())
+                soft.assertThat(result.getTopStackValue()).as(inputs.get(i))
+                    .isEqualTo(reference.getTopStackValue());
+            i++;
+        }
+
+        soft.assertThat(i).isEqualTo(inputs.size());
+        soft.assertAll();
+    }
+
+    @Test
+    public void runnerCanBeReusedAfterAnException()
+    {
+        final SumParser parser = Grappa.createParser(SumParser.class);
+        final BatchParseRunner<Integer> runner
+            = new BatchParseRunner<>(parser.failing());
+
+        try {
+            runner.run("a");
+            shouldHaveThrown(GrappaException.class);
+        } catch (GrappaException ignored) {
+            // ok
+        }
+
+        assertThat(runner.run("b").isSuccess()).isFalse();
+    }
+
+    @Test
+    public void runnerCanBeSharedAcrossThreads()
+        throws Exception
+    {
+        final BatchParseRunner<Integer> runner
+            = new BatchParseRunner<>(SUPPLIER);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final List<Callable<Integer>> tasks = new ArrayList<>();
+
+        for (int i = 0; i < 16; i++) {
+            final int n = i;
+            tasks.add(new Callable<Integer>()
+            {
+                @Override
+                public Integer call()
+                {
+                    int total = 0;
+                    for (int j = 0; j < 200; j++) {
+                        final ParsingResult<Integer> result
+                            = runner.run(n + "," + j);
+                        total += result.getTopStackValue();
+                    }
+                    return total;
+                }
+            });
+        }
+
+        try {
+            final SoftAssertions soft = new SoftAssertions();
+            int i = 0;
+            for (final Future<Integer> future: executor.invokeAll(tasks)) {
+                soft.assertThat(future.get()).isEqualTo(200 * i + 199 * 100);
+                i++;
+            }
+            soft.assertAll();
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
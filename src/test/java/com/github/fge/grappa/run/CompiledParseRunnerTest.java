@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.run;
+
+import com.github.fge.grappa.Grappa;
+import com.github.fge.grappa.exceptions.GrappaException;
+import com.github.fge.grappa.matchers.EndOfInputMatcher;
+import com.github.fge.grappa.matchers.StringMatcher;
+import com.github.fge.grappa.matchers.base.Matcher;
+import com.github.fge.grappa.matchers.delegate.SequenceMatcher;
+import com.github.fge.grappa.parsers.BaseParser;
+import com.github.fge.grappa.rules.Rule;
+import com.github.fge.grappa.transform.compile.CompiledMatcher;
+import com.google.common.base.Strings;
+import org.assertj.core.api.SoftAssertions;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+
+public final class CompiledParseRunnerTest
+{
+    static class TestParser
+        extends BaseParser<Object>
+    {
+        public Rule document()
+        {
+            return sequence(spaces(), value(), spaces(), EOI);
+        }
+
+        public Rule value()
+        {
+            return firstOf(number(), string(), array(), object(), keyword());
+        }
+
+        public Rule number()
+        {
+            return sequence(optional('-'), oneOrMore(digit()),
+                optional('.', oneOrMore(digit())),
+                optional(ignoreCase('e'), optional(anyOf("+-")),
+                    repeat(digit()).min(1)));
+        }
+
+        public Rule string()
+        {
+            return sequence('"',
+                zeroOrMore(firstOf(sequence('\\', ANY), noneOf("\"\\"))), '"');
+        }
+
+        public Rule array()
+        {
+            return sequence('[', spaces(),
+                optional(join(value()).using(spaces(), ',', spaces()).min(1)),
+                spaces(), ']');
+        }
+
+        public Rule object()
+        {
+            return sequence('{', spaces(),
+                join(member()).using(spaces(), ',', spaces()).min(0),
+                spaces(), '}');
+        }
+
+        public Rule member()
+        {
+            return sequence(string(), spaces(), ':', spaces(), value());
+        }
+
+        public Rule keyword()
+        {
+            return sequence(firstOf(longestString("true", "false", "null"),
+                longestStringIgnoreCase("nan", "infinity")),
+                testNot(charRange('a', 'z')));
+        }
+
+        public Rule spaces()
+        {
+            return zeroOrMore(anyOf(" \t\n"));
+        }
+
+        public Rule numbers()
+        {
+            return sequence(join(sequence(number(), push(match())))
+                .using(',').min(1), EOI);
+        }
+
+        public Rule empty()
+        {
+            return repeat(optional('a')).min(0);
+        }
+
+        public Rule choice()
+        {
+            return sequence(firstOf("ab", "ac", 'x', "ad", "b"), EOI);
+        }
+    }
+
+    private final TestParser parser = Grappa.createParser(TestParser.class);
+
+    @DataProvider
+    public Iterator<Object[]> getDocuments()
+    {
+        final List<Object[]> list = new ArrayList<>();
+
+        list.add(new Object[] { "12" });
+        list.add(new Object[] { "-1.5E+10" });
+        list.add(new Object[] { "1e" });
+        list.add(new Object[] { "\"a\\\"b\"" });
+        list.add(new Object[] { "[1, [2, 3], \"x\" ]" });
+        list.add(new Object[] { "[1, ]" });
+        list.add(new Object[] { "{ \"a\": true, \"b\": { } }" });
+        list.add(new Object[] { "{ \"a\" true }" });
+        list.add(new Object[] { "NaN" });
+        list.add(new Object[] { "nullx" });
+        list.add(new Object[] { "[[[[[]]]]]" });
+
+        return list.iterator();
+    }
+
+    @Test(dataProvider = "getDocuments")
+    public void compiledGrammarMatchesTheSameInputs(final String input)
+    {
+        final Rule rule = parser.document();
+        final boolean expected
+            = new ListeningParseRunner<>(rule).run(input).isSuccess();
+        final boolean actual
+            = new CompiledParseRunner<>(rule).run(input).isSuccess();
+
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    public void grammarWithoutActionsIsCompiledAsAWhole()
+    {
+        final CompiledParseRunner<Object> runner
+            = new CompiledParseRunner<>(parser.document());
+
+        assertThat(runner.rootMatcher).isInstanceOf(CompiledMatcher.class);
+    }
+
+    @Test
+    public void actionsStillRunOnTheValueStack()
+    {
+        final CompiledParseRunner<Object> runner
+            = new CompiledParseRunner<>(parser.numbers());
+        final Matcher root = runner.rootMatcher;
+
+        final SoftAssertions soft = new SoftAssertions();
+
+        soft.assertThat(root).isNotInstanceOf(CompiledMatcher.class);
+        soft.assertThat(runner.run("1,-2.5,3e3").getValueStack())
+            .containsExactly("3e3", "-2.5", "1");
+        soft.assertThat(runner.run("1,,2").isSuccess()).isFalse();
+
+        soft.assertAll();
+    }
+
+    @Test
+    public void emptyRepetitionsAreStillDetected()
+    {
+        final CompiledParseRunner<Object> runner
+            = new CompiledParseRunner<>(parser.empty());
+
+        try {
+            runner.run("b");
+            failBecauseExceptionWasNotThrown(GrappaException.class);
+        } catch (GrappaException e) {
+            assertThat(e).hasMessage("Inner rule of a RepeatMatcher"
+                + " cannot match an empty character sequence");
+        }
+    }
+
+    @Test
+    public void choicesTryAllAlternativesAfterTheFirstCandidate()
+    {
+        final CompiledParseRunner<Object> runner
+            = new CompiledParseRunner<>(parser.choice());
+
+        final SoftAssertions soft = new SoftAssertions();
+
+        soft.assertThat(runner.rootMatcher)
+            .isInstanceOf(CompiledMatcher.class);
+        for (final String input: new String[] { "ab", "ac", "ad", "b", "x" })
+            soft.assertThat(runner.run(input).isSuccess()).as(input).isTrue();
+        for (final String input: new String[] { "ae", "a", "", "c" })
+            soft.assertThat(runner.run(input).isSuccess()).as(input)
+                .isFalse();
+
+        soft.assertAll();
+    }
+
+    @Test
+    public void tooLargeSubgraphsAreInterpreted()
+    {
+        final String big = Strings.repeat("ab", 10000);
+        final CompiledParseRunner<Object> runner
+            = new CompiledParseRunner<>(new SequenceMatcher(new Rule[] {
+                new StringMatcher(big), new EndOfInputMatcher()
+            }));
+
+        final SoftAssertions soft = new SoftAssertions();
+
+        soft.assertThat(runner.rootMatcher)
+            .isNotInstanceOf(CompiledMatcher.class);
+        soft.assertThat(runner.run(big).isSuccess()).isTrue();
+        soft.assertThat(runner.run(big + 'a').isSuccess()).isFalse();
+
+        soft.assertAll();
+    }
+}
@@ -17,6 +17,7 @@
 package com.github.fge.grappa.run;
 
 import com.github.fge.grappa.buffers.InputBuffer;
+import com.github.fge.grappa.exceptions.GrappaException;
 import com.github.fge.grappa.matchers.base.Matcher;
 import com.github.fge.grappa.run.events.MatchFailureEvent;
 import com.github.fge.grappa.run.events.MatchSuccessEvent;
@@ -29,13 +30,21 @@ import com.github.fge.grappa.run.context.MatcherContext;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.util.List;
+
+import static com.github.fge.grappa.util.CustomAssertions.shouldHaveThrown;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.same;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public final class EventBasedParseRunnerTest
@@ -134,4 +143,48 @@ public final class EventBasedParseRunnerTest
         assertThat(preMatch.getValue().getContext()).isSameAs(context);
         assertThat(postMatch.getValue().getContext()).isSameAs(context);
     }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @Test
+    public void eventsAreReusedForTheSameContext()
+    {
+        when(context.getMatcher()).thenReturn(matcher);
+        when(matcher.match(context)).thenReturn(true);
+
+        parseRunner.match(context);
+        parseRunner.match(context);
+
+        final ArgumentCaptor<PreMatchEvent> preMatch
+            = ArgumentCaptor.forClass(PreMatchEvent.class);
+
+        verify(listener, times(2)).beforeMatch(preMatch.capture());
+
+        final List<PreMatchEvent> events = preMatch.getAllValues();
+        assertThat(events.get(0)).isSameAs(events.get(1));
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @Test
+    public void listenerExceptionsAreAggregated()
+    {
+        final RuntimeException first = new RuntimeException();
+        final RuntimeException second = new RuntimeException();
+        final ParseRunnerListener<Object> other
+            = spy(new ParseRunnerListener<>());
+
+        parseRunner.registerListener(other);
+        doThrow(first).when(listener).beforeMatch(any(PreMatchEvent.class));
+        doThrow(second).when(other).beforeMatch(any(PreMatchEvent.class));
+        when(context.getMatcher()).thenReturn(matcher);
+
+        try {
+            parseRunner.match(context);
+            shouldHaveThrown(GrappaException.class);
+        } catch (GrappaException e) {
+            assertThat(e.getCause()).isSameAs(first);
+            assertThat(first.getSuppressed()).containsExactly(second);
+        }
+
+        verify(matcher, never()).match(context);
+    }
 }
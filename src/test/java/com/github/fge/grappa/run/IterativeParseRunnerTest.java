@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.run;
+
+import com.github.fge.grappa.Grappa;
+import com.github.fge.grappa.annotations.Memoized;
+import com.github.fge.grappa.exceptions.GrappaException;
+import com.github.fge.grappa.matchers.wrap.ProxyMatcher;
+import com.github.fge.grappa.matchers.wrap.VarFramingMatcher;
+import com.github.fge.grappa.parsers.BaseParser;
+import com.github.fge.grappa.rules.Action;
+import com.github.fge.grappa.rules.Rule;
+import com.github.fge.grappa.run.context.Context;
+import com.github.fge.grappa.support.Var;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import org.assertj.core.api.SoftAssertions;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+
+public final class IterativeParseRunnerTest
+{
+    static class TestParser
+        extends BaseParser<Object>
+    {
+        public Rule nested()
+        {
+            return firstOf(sequence('(', nested(), ')'), 'x');
+        }
+
+        public Rule number()
+        {
+            return sequence(oneOrMore(digit()), push(match()));
+        }
+
+        @Memoized
+        public Rule atom()
+        {
+            return firstOf(
+                number(),
+                sequence('[', list(), ']'),
+                sequence(test('#'), "#!", push("bang"))
+            );
+        }
+
+        public Rule list()
+        {
+            return sequence(push("list"), join(atom()).using(',').min(0),
+                optional(';'), testNot('!'));
+        }
+
+        public Rule pair()
+        {
+            return sequence(repeat(anyOf("ab")).times(2, 3), push(match()),
+                zeroOrMore(' '));
+        }
+
+        public Rule rule()
+        {
+            return sequence(list(), zeroOrMore(pair()), EOI);
+        }
+
+        public Rule emptyRepeat()
+        {
+            return zeroOrMore(optional('a'));
+        }
+    }
+
+    private final TestParser parser = Grappa.createParser(TestParser.class);
+
+    @DataProvider
+    public Iterator<Object[]> getInputs()
+    {
+        final List<String> inputs = ImmutableList.of("", "1,22,[3,[4]];ab",
+            "1,", "#!", "[1,[2", "1!", "1abbaab", "1aaaa", "[[[#!]],5];ba a",
+            "((x))");
+        final List<Object[]> list = new ArrayList<>();
+
+        for (final String input: inputs)
+            list.add(new Object[] { input });
+
+        return list.iterator();
+    }
+
+    @Test(dataProvider = "getInputs")
+    public void resultsAreTheSameAsWithRecursiveRunner(final String input)
+    {
+        final ParsingResult<Object> expected
+            = new BasicParseRunner<>(parser.rule()).run(input);
+        final ParsingResult<Object> actual
+            = new IterativeParseRunner<>(parser.rule()).run(input);
+
+        final SoftAssertions soft = new SoftAssertions();
+
+        soft.assertThat(actual.isSuccess()).isEqualTo(expected.isSuccess());
+        soft.assertThat(actual.getValueStack())
+            .containsExactlyElementsOf(expected.getValueStack());
+
+        soft.assertAll();
+    }
+
+    @Test
+    public void deeplyNestedInputsDoNotOverflowTheStack()
+    {
+        final int depth = 200000;
+        final String input = Strings.repeat("(", depth) + 'x'
+            + Strings.repeat(")", depth);
+        final IterativeParseRunner<Object> runner
+            = new IterativeParseRunner<>(parser.nested());
+
+        final ParsingResult<Object> result = runner.run(input);
+
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(runner.run(input.substring(0, input.length() - 1))
+            .isSuccess()).isFalse();
+    }
+
+    @Test
+    public void varFramesAreEnteredAndExited()
+    {
+        final Var<Integer> var = new Var<>(0);
+        final int level = var.getLevel();
+        final Action<Object> pushLevel = new Action<Object>()
+        {
+            @Override
+            public boolean run(final Context<Object> context)
+            {
+                context.getValueStack().push(var.getLevel());
+                return true;
+            }
+        };
+        final ProxyMatcher proxy = new ProxyMatcher();
+        proxy.arm(new VarFramingMatcher(parser.firstOf(
+            parser.sequence('(', proxy, ')', pushLevel), 'x'),
+            new Var<?>[] { var }));
+
+        final ParsingResult<Object> expected
+            = new BasicParseRunner<>(proxy).run("((x))");
+        final ParsingResult<Object> actual
+            = new IterativeParseRunner<>(proxy).run("((x))");
+
+        assertThat(expected.getValueStack()).hasSize(2);
+        assertThat(actual.getValueStack())
+            .containsExactlyElementsOf(expected.getValueStack());
+        assertThat(var.getLevel()).isEqualTo(level);
+    }
+
+    @Test
+    public void emptyMatchesOfRepeatedRulesAreRejected()
+    {
+        final IterativeParseRunner<Object> runner
+            = new IterativeParseRunner<>(parser.emptyRepeat());
+
+        try {
+            runner.run("aa");
+            failBecauseExceptionWasNotThrown(GrappaException.class);
+        } catch (GrappaException e) {
+            assertThat(e).hasMessageContaining("RepeatMatcher");
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.run;
+
+import com.github.fge.grappa.matchers.CharMatcher;
+import com.github.fge.grappa.run.events.MatchSuccessEvent;
+import com.github.fge.grappa.run.events.PreMatchEvent;
+import com.google.common.eventbus.Subscribe;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class LegacySubscribersTest
+{
+    static final class Listener
+        extends ParseRunnerListener<Object>
+    {
+        int preMatch = 0;
+        int success = 0;
+        int all = 0;
+
+        @Subscribe
+        public void onPreMatch(final PreMatchEvent<Object> event)
+        {
+            preMatch++;
+        }
+
+        @Subscribe
+        public void onAnyEvent(final Object event)
+        {
+            all++;
+        }
+
+        @Subscribe
+        @Override
+        public void matchSuccess(final MatchSuccessEvent<Object> event)
+        {
+            success++;
+        }
+    }
+
+    @Test
+    public void subscriberMethodsAreCalled()
+    {
+        final ListeningParseRunner<Object> runner
+            = new ListeningParseRunner<>(new CharMatcher('a'));
+        final Listener listener = new Listener();
+
+        runner.registerListener(listener);
+
+        assertThat(runner.run("a").isSuccess()).isTrue();
+        assertThat(listener.preMatch).isEqualTo(1);
+        assertThat(listener.all).isEqualTo(4);
+        assertThat(listener.success).as("overrides are only called once")
+            .isEqualTo(1);
+    }
+
+    @Test
+    public void listenersWithoutSubscriberMethodsHaveNoSubscribers()
+    {
+        assertThat(LegacySubscribers.find(new ParseRunnerListener<>()))
+            .isNull();
+    }
+}
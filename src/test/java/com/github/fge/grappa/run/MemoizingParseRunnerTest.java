@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.run;
+
+import com.github.fge.grappa.Grappa;
+import com.github.fge.grappa.parsers.BaseParser;
+import com.github.fge.grappa.rules.Rule;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class MemoizingParseRunnerTest
+{
+    static class TestParser
+        extends BaseParser<Object>
+    {
+        int prefixCount = 0;
+
+        public Rule prefix()
+        {
+            return sequence(oneOrMore(digit()), countPrefix(), push(match()));
+        }
+
+        public Rule rule()
+        {
+            return firstOf(
+                sequence(prefix(), 'a'),
+                sequence(prefix(), 'b')
+            );
+        }
+
+        public Rule list()
+        {
+            return sequence(zeroOrMore(sequence(digit(), ' ')), rule());
+        }
+
+        boolean countPrefix()
+        {
+            prefixCount++;
+            return true;
+        }
+    }
+
+    @Test
+    public void memoizedRulesAreNotMatchedAgain()
+    {
+        final TestParser parser = Grappa.createParser(TestParser.class);
+        final ListeningParseRunner<Object> listening
+            = new ListeningParseRunner<>(parser.rule());
+
+        final ParsingResult<Object> expected = listening.run("123b");
+        assertThat(parser.prefixCount).isEqualTo(2);
+
+        parser.prefixCount = 0;
+
+        final MemoizingParseRunner<Object> runner
+            = new MemoizingParseRunner<>(parser.rule());
+        final ParsingResult<Object> actual = runner.run("123b");
+
+        assertThat(parser.prefixCount).isEqualTo(1);
+        assertThat(actual.isSuccess()).isTrue();
+        assertThat(actual.getValueStack())
+            .containsExactlyElementsOf(expected.getValueStack());
+    }
+
+    @Test
+    public void cappedMemoStillGivesTheSameResult()
+    {
+        final TestParser parser = Grappa.createParser(TestParser.class);
+        final MemoizingParseRunner<Object> runner
+            = new MemoizingParseRunner<>(parser.rule(), 1);
+
+        final ParsingResult<Object> result = runner.run("42b");
+
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(result.getValueStack()).containsExactly("42");
+        assertThat(runner.getMemoSize()).isEqualTo(1);
+    }
+
+    @Test
+    public void recentOutcomesSurviveTheCap()
+    {
+        final TestParser parser = Grappa.createParser(TestParser.class);
+        final Rule rule = parser.list();
+        MemoizingParseRunner<Object> runner;
+
+        for (int maxEntries = 4; maxEntries < 20; maxEntries++) {
+            parser.prefixCount = 0;
+            runner = new MemoizingParseRunner<>(rule, maxEntries);
+            assertThat(runner.run("1 2 3 4 5 6 7 8 9 42b").isSuccess())
+                .isTrue();
+            assertThat(parser.prefixCount).as("cap %s", maxEntries)
+                .isEqualTo(1);
+            assertThat(runner.getMemoSize())
+                .isLessThanOrEqualTo(maxEntries);
+        }
+    }
+
+    @Test
+    public void memoIsClearedBetweenRuns()
+    {
+        final TestParser parser = Grappa.createParser(TestParser.class);
+        final MemoizingParseRunner<Object> runner
+            = new MemoizingParseRunner<>(parser.rule());
+
+        assertThat(runner.run("1a").isSuccess()).isTrue();
+        assertThat(runner.run("1c").isSuccess()).isFalse();
+        assertThat(runner.run("22b").getValueStack()).containsExactly("22");
+    }
+}
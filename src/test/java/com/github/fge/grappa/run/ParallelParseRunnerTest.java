@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.run;
+
+import com.github.fge.grappa.Grappa;
+import com.github.fge.grappa.buffers.CharSequenceInputBuffer;
+import com.github.fge.grappa.buffers.InputBuffer;
+import com.github.fge.grappa.buffers.MappedFileInputBuffer;
+import com.github.fge.grappa.buffers.SubInputBuffer;
+import com.github.fge.grappa.parsers.BaseParser;
+import com.github.fge.grappa.rules.Rule;
+import com.google.common.base.Supplier;
+import com.google.common.collect.Lists;
+import org.assertj.core.api.SoftAssertions;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class ParallelParseRunnerTest
+{
+    static class LogParser
+        extends BaseParser<String>
+    {
+        public Rule lines()
+        {
+            return sequence(zeroOrMore(line()), EOI);
+        }
+
+        public Rule line()
+        {
+            return sequence(oneOrMore(alpha()), push(match()), '=',
+                oneOrMore(digit()), '\n');
+        }
+
+        public Rule records()
+        {
+            return sequence(join(sequence(oneOrMore(alpha()), push(match())))
+                .using(";;").min(0), optional(";;"), EOI);
+        }
+
+        public Rule delimiter()
+        {
+            return string(";;");
+        }
+    }
+
+    private static final Supplier<Rule> LINES = new Supplier<Rule>()
+    {
+        @Override
+        public Rule get()
+        {
+            return Grappa.createParser(LogParser.class).lines();
+        }
+    };
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterClass
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+
+    @Test
+    public void mergedResultIsTheSameAsASequentialParse()
+    {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 500; i++)
+            sb.append("key").append((char) ('a' + i % 26)).append('=')
+                .append(i).append('\n');
+        final String input = sb.toString();
+
+        final ParsingResult<String> expected
+            = new BasicParseRunner<String>(LINES.get()).run(input);
+        final ParallelParseRunner<String> runner = new ParallelParseRunner<>(
+            LINES, RecordSplitter.newline(), 100, pool);
+
+        final ParsingResult<String> actual = runner.run(input);
+
+        assertThat(runner.runChunks(new CharSequenceInputBuffer(input)))
+            .hasSize(41);
+        assertThat(actual.isSuccess()).isTrue();
+        assertThat(Lists.newArrayList(actual.getValueStack()))
+            .containsExactlyElementsOf(expected.getValueStack());
+    }
+
+    @Test
+    public void mappedFilesCanBeParsedInParallel()
+        throws IOException
+    {
+        // more windows than the mapped buffer keeps in memory
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 60000; i++)
+            sb.append("key").append((char) ('a' + i % 26)).append('=')
+                .append(i).append('\n');
+        final String input = sb.toString();
+
+        final Path path = Files.createTempFile("parallel", ".txt");
+        try {
+            Files.write(path, input.getBytes(StandardCharsets.UTF_8));
+            final ParsingResult<String> expected
+                = new BasicParseRunner<String>(LINES.get()).run(input);
+            final ParallelParseRunner<String> runner
+                = new ParallelParseRunner<>(LINES, RecordSplitter.newline(),
+                1000, pool);
+
+            final ParsingResult<String> actual;
+            try (
+                final MappedFileInputBuffer buffer
+                    = new MappedFileInputBuffer(path);
+            ) {
+                actual = runner.run(buffer);
+            }
+
+            assertThat(actual.isSuccess()).isTrue();
+            assertThat(Lists.newArrayList(actual.getValueStack()))
+                .containsExactlyElementsOf(expected.getValueStack());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void failuresAreReportedInOriginalPositions()
+    {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++)
+            sb.append(i == 42 ? "oops\n" : "key=1\n");
+        final InputBuffer buffer = new CharSequenceInputBuffer(sb);
+
+        final ParallelParseRunner<String> runner = new ParallelParseRunner<>(
+            LINES, RecordSplitter.newline(), 30, pool);
+
+        final SoftAssertions soft = new SoftAssertions();
+
+        soft.assertThat(runner.run(buffer).isSuccess()).isFalse();
+
+        final List<ParsingResult<String>> results = runner.runChunks(buffer);
+        int nrFailures = 0;
+        for (final ParsingResult<String> result: results) {
+            if (result.isSuccess())
+                continue;
+            nrFailures++;
+            final SubInputBuffer chunk
+                = (SubInputBuffer) result.getInputBuffer();
+            soft.assertThat(chunk.getStart()).isLessThanOrEqualTo(42 * 6);
+            soft.assertThat(chunk.getPosition(0).getLine())
+                .isEqualTo(chunk.getStart() / 6 + 1);
+            soft.assertThat(chunk.getPosition(0).getColumn()).isEqualTo(1);
+        }
+        soft.assertThat(nrFailures).isEqualTo(1);
+
+        soft.assertAll();
+    }
+
+    @Test
+    public void delimiterRulesCanSplitRecords()
+    {
+        final LogParser parser = Grappa.createParser(LogParser.class);
+        final Supplier<Rule> supplier = new Supplier<Rule>()
+        {
+            @Override
+            public Rule get()
+            {
+                return Grappa.createParser(LogParser.class).records();
+            }
+        };
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++)
+            sb.append("rec").append((char) ('a' + i % 26)).append(";;");
+
+        final ParallelParseRunner<String> runner = new ParallelParseRunner<>(
+            supplier, RecordSplitter.delimiter(parser.delimiter()), 50, pool);
+        final ParsingResult<String> result = runner.run(sb);
+
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(result.getValueStack().size()).isEqualTo(100);
+        assertThat(result.getValueStack().peek()).isEqualTo("recv");
+    }
+}
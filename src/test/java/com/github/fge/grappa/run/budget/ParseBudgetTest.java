@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.run.budget;
+
+import com.github.fge.grappa.Grappa;
+import com.github.fge.grappa.exceptions.ParseBudgetExceededException;
+import com.github.fge.grappa.exceptions.ParseBudgetExceededException.Limit;
+import com.github.fge.grappa.parsers.BaseParser;
+import com.github.fge.grappa.rules.Rule;
+import com.github.fge.grappa.run.BasicParseRunner;
+import com.github.fge.grappa.run.ParsingResult;
+import com.github.fge.grappa.support.Position;
+import com.google.common.base.Strings;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+
+public final class ParseBudgetTest
+{
+    static class TestParser
+        extends BaseParser<Object>
+    {
+        public Rule chars()
+        {
+            return zeroOrMore(ANY, push(match()));
+        }
+
+        public Rule nested()
+        {
+            return firstOf(sequence('(', nested(), ')'), 'x');
+        }
+    }
+
+    private final TestParser parser = Grappa.createParser(TestParser.class);
+
+    @Test
+    public void runsWithinBudgetAreUnaffected()
+    {
+        final BasicParseRunner<Object> runner
+            = new BasicParseRunner<>(parser.nested());
+
+        runner.setParseBudget(ParseBudget.newBuilder().maxDepth(100)
+            .maxInvocations(1000L).timeout(1L, TimeUnit.MINUTES).build());
+
+        final ParsingResult<Object> result = runner.run("(((x)))");
+
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(result.getInputBuffer().length()).isEqualTo(7);
+    }
+
+    @Test
+    public void invocationLimitIsEnforcedExactly()
+    {
+        final BasicParseRunner<Object> runner
+            = new BasicParseRunner<>(parser.chars());
+
+        runner.setParseBudget(ParseBudget.newBuilder().maxInvocations(100L)
+            .build());
+
+        final ParseBudgetExceededException e = expectFailure(runner,
+            Strings.repeat("a", 1000));
+
+        assertThat(e.getLimit()).isSameAs(Limit.INVOCATIONS);
+        // zeroOrMore, then sequence, ANY and action for each character
+        assertThat(e.getIndex()).isEqualTo(33);
+    }
+
+    @Test
+    public void depthLimitIsEnforced()
+    {
+        final BasicParseRunner<Object> runner
+            = new BasicParseRunner<>(parser.nested());
+
+        runner.setParseBudget(ParseBudget.newBuilder().maxDepth(10).build());
+
+        final String input = Strings.repeat("(", 50) + 'x'
+            + Strings.repeat(")", 50);
+        final ParseBudgetExceededException e = expectFailure(runner, input);
+
+        assertThat(e.getLimit()).isSameAs(Limit.DEPTH);
+        assertThat(e.getPosition())
+            .isEqualTo(new Position(1, e.getIndex() + 1));
+    }
+
+    @Test
+    public void stackSizeLimitIsEnforced()
+    {
+        final BasicParseRunner<Object> runner
+            = new BasicParseRunner<>(parser.chars());
+
+        runner.setParseBudget(ParseBudget.newBuilder().maxStackSize(5)
+            .checkInterval(1).build());
+
+        final ParseBudgetExceededException e = expectFailure(runner,
+            Strings.repeat("a", 10));
+
+        assertThat(e.getLimit()).isSameAs(Limit.STACK_SIZE);
+        assertThat(e.getIndex()).isEqualTo(6);
+    }
+
+    @Test
+    public void deadlineIsEnforced()
+    {
+        final BasicParseRunner<Object> runner
+            = new BasicParseRunner<>(parser.chars());
+
+        runner.setParseBudget(ParseBudget.newBuilder()
+            .timeout(1L, TimeUnit.NANOSECONDS).checkInterval(1).build());
+
+        final ParseBudgetExceededException e = expectFailure(runner,
+            Strings.repeat("a", 100000));
+
+        assertThat(e.getLimit()).isSameAs(Limit.DEADLINE);
+    }
+
+    @Test
+    public void runsCanBeCancelled()
+    {
+        final BasicParseRunner<Object> runner
+            = new BasicParseRunner<>(parser.chars());
+        final CancellationToken token = new CancellationToken();
+
+        runner.setParseBudget(ParseBudget.newBuilder()
+            .cancellationToken(token).build());
+        token.cancel();
+
+        final ParseBudgetExceededException e = expectFailure(runner, "aaa");
+
+        assertThat(e.getLimit()).isSameAs(Limit.CANCELLED);
+        assertThat(e.getIndex()).isZero();
+    }
+
+    @Test
+    public void runsStopWhenThreadIsInterrupted()
+    {
+        final BasicParseRunner<Object> runner
+            = new BasicParseRunner<>(parser.chars());
+
+        runner.setParseBudget(ParseBudget.newBuilder().build());
+
+        Thread.currentThread().interrupt();
+        try {
+            final ParseBudgetExceededException e = expectFailure(runner,
+                "aaa");
+            assertThat(e.getLimit()).isSameAs(Limit.INTERRUPTED);
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    private static ParseBudgetExceededException expectFailure(
+        final BasicParseRunner<Object> runner, final String input)
+    {
+        try {
+            runner.run(input);
+            failBecauseExceptionWasNotThrown(
+                ParseBudgetExceededException.class);
+            throw new IllegalStateException("unreachable");
+        } catch (ParseBudgetExceededException e) {
+            return e;
+        }
+    }
+}
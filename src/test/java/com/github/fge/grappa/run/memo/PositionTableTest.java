@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.run.memo;
+
+import com.github.fge.grappa.stack.DefaultValueStack;
+import org.assertj.core.api.SoftAssertions;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class PositionTableTest
+{
+    private static final MemoEntry ENTRY = MemoEntry.record(true, 0,
+        new Object[0], new DefaultValueStack<>());
+
+    @Test
+    public void entriesCanBeRetrievedAfterGrowth()
+    {
+        final PositionTable table = new PositionTable(1000);
+        final MemoEntry[] entries = new MemoEntry[100];
+
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = MemoEntry.record(true, i, new Object[0],
+                new DefaultValueStack<>());
+            table.put(i * 3, entries[i]);
+        }
+
+        final SoftAssertions soft = new SoftAssertions();
+
+        soft.assertThat(table.size()).isEqualTo(entries.length);
+        soft.assertThat(table.getCapacity()).isGreaterThan(entries.length);
+        for (int i = 0; i < entries.length; i++) {
+            soft.assertThat(table.get(i * 3)).isSameAs(entries[i]);
+            soft.assertThat(table.get(i * 3 + 1)).isNull();
+        }
+
+        soft.assertAll();
+    }
+
+    @Test
+    public void entriesAreReplaced()
+    {
+        final PositionTable table = new PositionTable(10);
+        final MemoEntry other = MemoEntry.record(false, 0, new Object[0],
+            new DefaultValueStack<>());
+
+        table.put(4, ENTRY);
+        table.put(4, other);
+
+        assertThat(table.size()).isEqualTo(1);
+        assertThat(table.get(4)).isSameAs(other);
+    }
+
+    @Test
+    public void fullTableIsClearedBeforeInsertion()
+    {
+        final PositionTable table = new PositionTable(2);
+
+        table.put(0, ENTRY);
+        table.put(1, ENTRY);
+        table.put(2, ENTRY);
+
+        final SoftAssertions soft = new SoftAssertions();
+
+        soft.assertThat(table.size()).isEqualTo(1);
+        soft.assertThat(table.get(0)).isNull();
+        soft.assertThat(table.get(2)).isSameAs(ENTRY);
+
+        soft.assertAll();
+    }
+
+    @Test
+    public void entriesBeforeAPositionCanBeRemoved()
+    {
+        final PositionTable table = new PositionTable(100);
+
+        for (int i = 0; i < 50; i++)
+            table.put(i * 2, ENTRY);
+
+        final SoftAssertions soft = new SoftAssertions();
+
+        soft.assertThat(table.removeBefore(40)).isEqualTo(20);
+        soft.assertThat(table.size()).isEqualTo(30);
+        soft.assertThat(table.get(38)).isNull();
+        soft.assertThat(table.get(40)).isSameAs(ENTRY);
+        soft.assertThat(table.get(98)).isSameAs(ENTRY);
+
+        soft.assertAll();
+    }
+}
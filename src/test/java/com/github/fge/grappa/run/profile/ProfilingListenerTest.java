@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.run.profile;
+
+import com.github.fge.grappa.Grappa;
+import com.github.fge.grappa.matchers.base.Matcher;
+import com.github.fge.grappa.parsers.BaseParser;
+import com.github.fge.grappa.rules.Rule;
+import com.github.fge.grappa.run.ListeningParseRunner;
+import org.assertj.core.api.SoftAssertions;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class ProfilingListenerTest
+{
+    static class TestParser
+        extends BaseParser<Object>
+    {
+        public Rule rule()
+        {
+            return sequence(firstOf(string("abx"), string("ab")), 'c', EOI);
+        }
+    }
+
+    @Test
+    public void profilesAreAggregatedAcrossRuns()
+        throws IOException
+    {
+        final TestParser parser = Grappa.createParser(TestParser.class);
+        final Rule rule = parser.rule();
+        final ListeningParseRunner<Object> runner
+            = new ListeningParseRunner<>(rule);
+        final ProfilingListener<Object> listener = new ProfilingListener<>();
+        runner.registerListener(listener);
+
+        runner.run("abc");
+        runner.run("abc");
+        runner.run("abd");
+
+        final List<MatcherProfile> profiles = listener.getProfiles();
+        final Map<Matcher, MatcherProfile> byMatcher = new IdentityHashMap<>();
+        for (final MatcherProfile profile: profiles)
+            byMatcher.put(profile.getMatcher(), profile);
+
+        final MatcherProfile root = byMatcher.get((Matcher) rule);
+
+        final SoftAssertions soft = new SoftAssertions();
+
+        soft.assertThat(root.getInvocations()).isEqualTo(3L);
+        soft.assertThat(root.getSuccesses()).isEqualTo(2L);
+        soft.assertThat(root.getConsumedChars()).isEqualTo(6L);
+        soft.assertThat(root.getBacktrackedChars()).isEqualTo(2L);
+        soft.assertThat(root.getInclusiveTimes().getCount()).isEqualTo(3L);
+        soft.assertThat(root.getInclusiveTime())
+            .isGreaterThanOrEqualTo(root.getExclusiveTime());
+
+        for (int i = 1; i < profiles.size(); i++)
+            soft.assertThat(profiles.get(i - 1).getExclusiveTime())
+                .isGreaterThanOrEqualTo(profiles.get(i).getExclusiveTime());
+
+        final StringBuilder csv = new StringBuilder();
+        listener.writeCsv(csv);
+        soft.assertThat(csv.toString().split("\n"))
+            .hasSize(profiles.size() + 1);
+
+        soft.assertAll();
+
+        listener.reset();
+        assertThat(listener.getProfiles()).isEmpty();
+    }
+
+    @Test
+    public void histogramPercentilesAreBucketUpperBounds()
+    {
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        for (long i = 1; i <= 100; i++)
+            histogram.record(i * 10L);
+
+        final SoftAssertions soft = new SoftAssertions();
+
+        soft.assertThat(histogram.getCount()).isEqualTo(100L);
+        soft.assertThat(histogram.getMax()).isEqualTo(1000L);
+        // 500 is in [256, 512)
+        soft.assertThat(histogram.getPercentile(50.0)).isEqualTo(511L);
+        soft.assertThat(histogram.getPercentile(100.0)).isEqualTo(1000L);
+        soft.assertThat(histogram.getBucketCount(0)).isEqualTo(0L);
+
+        soft.assertAll();
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.run.trace;
+
+import com.github.fge.grappa.Grappa;
+import com.github.fge.grappa.matchers.MatcherType;
+import com.github.fge.grappa.parsers.BaseParser;
+import com.github.fge.grappa.rules.Rule;
+import com.github.fge.grappa.run.ListeningParseRunner;
+import com.github.fge.grappa.run.ParseRunnerListener;
+import com.github.fge.grappa.run.events.MatchFailureEvent;
+import com.github.fge.grappa.run.events.MatchSuccessEvent;
+import com.google.common.base.Strings;
+import org.assertj.core.api.SoftAssertions;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+public final class BinaryTracingListenerTest
+{
+    static class TestParser
+        extends BaseParser<Object>
+    {
+        public Rule rule()
+        {
+            return sequence(zeroOrMore(firstOf('b', 'a')), 'c', EOI);
+        }
+    }
+
+    private static final String INPUT = Strings.repeat("a", 3000) + 'c';
+
+    @Test
+    public void allMatchesAreRecorded()
+        throws IOException
+    {
+        final Path path = Files.createTempFile("grappa", ".trace");
+
+        try {
+            final Counter counter = new Counter();
+            final Collector collector = new Collector();
+
+            trace(path, 1.0, counter);
+            BinaryTraceReader.read(path, collector);
+
+            final SoftAssertions soft = new SoftAssertions();
+            soft.assertThat(collector.nrNodes).isEqualTo(counter.nrMatches);
+            soft.assertThat(collector.nrRuns).isEqualTo(2);
+            soft.assertThat(collector.successes).isEqualTo(1);
+            soft.assertThat(collector.roots).isEqualTo(2);
+            soft.assertThat(collector.maxEnd).isEqualTo(INPUT.length());
+            soft.assertThat(collector.unknownMatchers).isZero();
+            soft.assertAll();
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void samplingRecordsAProportionOfMatches()
+        throws IOException
+    {
+        final Path path = Files.createTempFile("grappa", ".trace");
+
+        try {
+            final Counter counter = new Counter();
+            final Collector collector = new Collector();
+
+            trace(path, 0.25, counter);
+            BinaryTraceReader.read(path, collector);
+
+            final SoftAssertions soft = new SoftAssertions();
+            soft.assertThat(collector.nrNodes)
+                .isEqualTo(counter.nrMatches / 4);
+            soft.assertThat(collector.nrRuns).isEqualTo(2);
+            soft.assertThat(collector.unknownMatchers).isZero();
+            soft.assertAll();
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    private static void trace(final Path path, final double ratio,
+        final Counter counter)
+        throws IOException
+    {
+        final TestParser parser = Grappa.createParser(TestParser.class);
+        final ListeningParseRunner<Object> runner
+            = new ListeningParseRunner<>(parser.rule());
+
+        try (
+            final BinaryTracingListener<Object> listener
+                = new BinaryTracingListener<>(path, ratio)
+        ) {
+            runner.registerListener(listener);
+            runner.registerListener(counter);
+            runner.run(INPUT);
+            runner.run("ab");
+        }
+    }
+
+    private static final class Counter
+        extends ParseRunnerListener<Object>
+    {
+        private int nrMatches = 0;
+
+        @Override
+        public void matchSuccess(final MatchSuccessEvent<Object> event)
+        {
+            nrMatches++;
+        }
+
+        @Override
+        public void matchFailure(final MatchFailureEvent<Object> event)
+        {
+            nrMatches++;
+        }
+    }
+
+    private static final class Collector
+        extends TraceHandler
+    {
+        private final Set<Integer> matchers = new HashSet<>();
+        private int nrNodes = 0;
+        private int nrRuns = 0;
+        private int successes = 0;
+        private int roots = 0;
+        private int maxEnd = 0;
+        private int unknownMatchers = 0;
+
+        @SuppressWarnings("AutoBoxing")
+        @Override
+        public void matcher(final int id, final String className,
+            final MatcherType type, final String label)
+        {
+            matchers.add(id);
+        }
+
+        @SuppressWarnings("AutoBoxing")
+        @Override
+        public void node(final int parent, final int node, final int level,
+            final int matcher, final int start, final int end,
+            final long time, final boolean success)
+        {
+            nrNodes++;
+            if (parent == -1)
+                roots++;
+            if (!matchers.contains(matcher))
+                unknownMatchers++;
+            maxEnd = Math.max(maxEnd, end);
+        }
+
+        @Override
+        public void endOfRun(final boolean success, final long startTime)
+        {
+            nrRuns++;
+            if (success)
+                successes++;
+        }
+    }
+}
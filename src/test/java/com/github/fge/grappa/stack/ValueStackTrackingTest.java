@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.stack;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+
+public final class ValueStackTrackingTest
+{
+    @DataProvider
+    public Iterator<Object[]> stacks()
+    {
+        final ValueStackBase<Object> defaultStack = new DefaultValueStack<>();
+        final ValueStackBase<Object> persistentStack
+            = new PersistentValueStack<>();
+        return Arrays.asList(
+            new Object[] { defaultStack },
+            new Object[] { persistentStack }
+        ).iterator();
+    }
+
+    @Test(dataProvider = "stacks")
+    public void pushesAloneSaveNothing(final ValueStackBase<Object> stack)
+    {
+        stack.push("a");
+        stack.startTracking();
+        stack.push("b");
+        stack.push("c");
+
+        assertThat(stack.endTracking()).isEmpty();
+    }
+
+    @Test(dataProvider = "stacks")
+    public void removedValuesAreSavedOnce(final ValueStackBase<Object> stack)
+    {
+        stack.push("a");
+        stack.push("b");
+        stack.push("c");
+        stack.startTracking();
+        stack.pop();
+        stack.push("x");
+        stack.pop();
+        stack.poke("y");
+        stack.swap();
+
+        assertThat(stack.endTracking()).containsExactly("c", "b", "a");
+    }
+
+    @Test(dataProvider = "stacks")
+    public void nestedTrackingsSeeTheirOwnChanges(
+        final ValueStackBase<Object> stack)
+    {
+        stack.push("a");
+        stack.push("b");
+        stack.startTracking();
+        stack.push("c");
+        stack.startTracking();
+        stack.pop();
+        stack.pop();
+
+        assertThat(stack.endTracking()).containsExactly("c", "b");
+
+        stack.pop();
+
+        assertThat(stack.endTracking()).containsExactly("b", "a");
+    }
+
+    @Test(dataProvider = "stacks")
+    public void restoringASnapshotOnlySavesTheChangedPart(
+        final ValueStackBase<Object> stack)
+    {
+        stack.push("a");
+        stack.push("b");
+        final Object snapshot = stack.takeSnapshot();
+        stack.startTracking();
+        stack.pop();
+        stack.push("x");
+        stack.push("y");
+        stack.restoreSnapshot(snapshot);
+
+        assertThat(stack.endTracking()).containsExactly("b");
+        assertThat(stack).containsExactly("b", "a");
+    }
+
+    @Test(dataProvider = "stacks")
+    public void clearingSavesEverything(final ValueStackBase<Object> stack)
+    {
+        stack.push("a");
+        stack.push("b");
+        stack.startTracking();
+        stack.clear();
+
+        assertThat(stack.endTracking()).containsExactly("b", "a");
+    }
+
+    @Test(dataProvider = "stacks")
+    public void cannotEndTrackingWhichHasNotStarted(
+        final ValueStackBase<Object> stack)
+    {
+        try {
+            stack.endTracking();
+            failBecauseExceptionWasNotThrown(IllegalStateException.class);
+        } catch (IllegalStateException ignored) {
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.transform;
+
+import com.github.fge.grappa.parsers.BaseParser;
+import com.github.fge.grappa.rules.Rule;
+import com.github.fge.grappa.run.BasicParseRunner;
+import com.github.fge.grappa.run.ParsingResult;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class BytecodeCacheTest
+{
+    static class CachedParser
+        extends BaseParser<Object>
+    {
+        public Rule rule()
+        {
+            return sequence(oneOrMore(alpha()), push(match().length()), EOI);
+        }
+    }
+
+    private static final String PARSER_NAME = CachedParser.class.getName();
+    private static final String EXTENDED_NAME = PARSER_NAME + "$$grappa";
+
+    private Path directory;
+    private BytecodeCache cache;
+
+    @BeforeClass
+    public void createCache()
+        throws IOException
+    {
+        directory = Files.createTempDirectory("grappa");
+        cache = new BytecodeCache(directory.resolve("cache"));
+    }
+
+    @AfterClass
+    public void cleanup()
+        throws IOException
+    {
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult visitFile(final Path file,
+                final BasicFileAttributes attrs)
+                throws IOException
+            {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(final Path dir,
+                final IOException exc)
+                throws IOException
+            {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    @Test
+    public void storedClassesAreDefinedOnLoad()
+        throws Exception
+    {
+        final ClassLoader first = new ParserClassLoader();
+        final Class<?> firstParser = Class.forName(PARSER_NAME, false, first);
+        final String fingerprint = ParserFingerprint.compute(firstParser);
+
+        assertThat(cache.load(fingerprint, EXTENDED_NAME, first)).isNull();
+
+        final Map<String, byte[]> classes = ParserTransformer
+            .getGeneratedClasses(
+                ParserTransformer.generateParserClass(firstParser, true));
+        cache.store(fingerprint, classes);
+
+        assertThat(directory.resolve("cache").resolve(fingerprint).toFile()
+            .list()).hasSize(classes.size());
+
+        final ClassLoader second = new ParserClassLoader();
+        final Class<?> secondParser = Class.forName(PARSER_NAME, false,
+            second);
+
+        assertThat(ParserFingerprint.compute(secondParser))
+            .isEqualTo(fingerprint);
+
+        final Class<?> extendedClass
+            = cache.load(fingerprint, EXTENDED_NAME, second);
+
+        assertThat(extendedClass).isNotNull();
+        assertThat(extendedClass.getClassLoader()).isSameAs(second);
+
+        final Object parser = extendedClass.newInstance();
+        final Rule rule = (Rule) extendedClass.getMethod("rule")
+            .invoke(parser);
+        final ParsingResult<Object> result
+            = new BasicParseRunner<>(rule).run("abcd");
+
+        assertThat(result.getTopStackValue()).isEqualTo(4);
+    }
+
+    @Test
+    public void invalidEntriesAreMisses()
+    {
+        final String internalName = EXTENDED_NAME.replace('.', '/');
+        cache.store("invalid", ImmutableMap.of(internalName, new byte[3]));
+
+        assertThat(cache.load("invalid", EXTENDED_NAME,
+            new ParserClassLoader())).isNull();
+    }
+
+    /*
+     * Defines the parser class itself, so that each instance of this loader
+     * needs its own extended parser class
+     */
+    private static final class ParserClassLoader
+        extends ClassLoader
+    {
+        private ParserClassLoader()
+        {
+            super(ParserClassLoader.class.getClassLoader());
+        }
+
+        @Override
+        protected Class<?> loadClass(final String name, final boolean resolve)
+            throws ClassNotFoundException
+        {
+            if (!PARSER_NAME.equals(name))
+                return super.loadClass(name, resolve);
+
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> c = findLoadedClass(name);
+                if (c == null)
+                    c = findClass(name);
+                return c;
+            }
+        }
+
+        @Override
+        protected Class<?> findClass(final String name)
+            throws ClassNotFoundException
+        {
+            final String resource = name.replace('.', '/') + ".class";
+            try (
+                final InputStream in = getParent()
+                    .getResourceAsStream(resource);
+            ) {
+                final byte[] code = ByteStreams.toByteArray(in);
+                return defineClass(name, code, 0, code.length);
+            } catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.transform;
+
+import com.github.fge.grappa.parsers.BaseParser;
+import com.github.fge.grappa.rules.Rule;
+import com.github.fge.grappa.run.BasicParseRunner;
+import com.github.fge.grappa.run.ParsingResult;
+import com.google.common.collect.Sets;
+import com.google.common.io.ByteStreams;
+import org.assertj.core.api.SoftAssertions;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class ParserPrecompilerTest
+{
+    static class PrecompiledParser
+        extends BaseParser<Object>
+    {
+        public Rule rule()
+        {
+            return sequence(oneOrMore(digit()),
+                push(Integer.parseInt(match())), EOI);
+        }
+    }
+
+    private static final String PARSER_NAME = PrecompiledParser.class.getName();
+    private static final String EXTENDED_NAME = PARSER_NAME + "$$grappa";
+
+    private Path outputDirectory;
+    private Path fingerprint;
+
+    @BeforeClass
+    public void precompile()
+        throws Exception
+    {
+        outputDirectory = Files.createTempDirectory("grappa");
+        ParserPrecompiler.writeClasses(PrecompiledParser.class,
+            outputDirectory);
+        fingerprint = outputDirectory.resolve(
+            EXTENDED_NAME.replace('.', '/') + ParserFingerprint.SUFFIX);
+    }
+
+    @AfterClass
+    public void cleanup()
+        throws IOException
+    {
+        Files.walkFileTree(outputDirectory, new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult visitFile(final Path file,
+                final BasicFileAttributes attrs)
+                throws IOException
+            {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(final Path dir,
+                final IOException exc)
+                throws IOException
+            {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    @Test
+    public void precompiledClassesAreWritten()
+        throws IOException
+    {
+        final Path extended = outputDirectory.resolve(
+            EXTENDED_NAME.replace('.', '/') + ".class");
+
+        final SoftAssertions soft = new SoftAssertions();
+
+        soft.assertThat(Files.isRegularFile(extended)).isTrue();
+        soft.assertThat(new String(Files.readAllBytes(fingerprint), "ASCII"))
+            .isEqualTo(ParserFingerprint.compute(PrecompiledParser.class));
+        soft.assertThat(extended.getParent().toFile().list())
+            .hasSize(3);
+
+        soft.assertAll();
+    }
+
+    @Test
+    public void precompiledClassesAreLoadedAsIs()
+        throws Exception
+    {
+        final PrecompiledClassLoader loader
+            = new PrecompiledClassLoader(outputDirectory);
+        final Class<?> parserClass = Class.forName(PARSER_NAME, false, loader);
+        final Class<?> extendedClass
+            = ParserTransformer.transformParser(parserClass);
+
+        assertThat(extendedClass.getClassLoader()).isSameAs(loader);
+        assertThat(loader.precompiled).contains(EXTENDED_NAME);
+        checkParser(extendedClass);
+    }
+
+    @Test(dependsOnMethods = {
+        "precompiledClassesAreWritten", "precompiledClassesAreLoadedAsIs"
+    })
+    public void staleClassesAreIgnored()
+        throws Exception
+    {
+        Files.write(fingerprint, "0123".getBytes("ASCII"));
+
+        final PrecompiledClassLoader loader
+            = new PrecompiledClassLoader(outputDirectory);
+        final Class<?> parserClass = Class.forName(PARSER_NAME, false, loader);
+        final Class<?> extendedClass
+            = ParserTransformer.transformParser(parserClass);
+
+        assertThat(extendedClass.getClassLoader()).isSameAs(loader);
+        assertThat(loader.precompiled).doesNotContain(EXTENDED_NAME);
+        checkParser(extendedClass);
+    }
+
+    private static void checkParser(final Class<?> extendedClass)
+        throws Exception
+    {
+        final Object parser = extendedClass.newInstance();
+        final Rule rule = (Rule) extendedClass.getMethod("rule")
+            .invoke(parser);
+        final ParsingResult<Object> result
+            = new BasicParseRunner<>(rule).run("1234");
+
+        assertThat(result.getTopStackValue()).isEqualTo(1234);
+    }
+
+    /*
+     * Defines the parser class itself, and serves classes and resources from
+     * the output directory before delegating to its parent
+     */
+    private static final class PrecompiledClassLoader
+        extends ClassLoader
+    {
+        private final Path directory;
+        private final Set<String> precompiled = Sets.newHashSet();
+
+        private PrecompiledClassLoader(final Path directory)
+        {
+            super(PrecompiledClassLoader.class.getClassLoader());
+            this.directory = directory;
+        }
+
+        @Override
+        protected Class<?> loadClass(final String name, final boolean resolve)
+            throws ClassNotFoundException
+        {
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> c = findLoadedClass(name);
+                if (c == null)
+                    c = PARSER_NAME.equals(name)
+                        || Files.exists(classFile(name))
+                        ? findClass(name) : super.loadClass(name, false);
+                if (resolve)
+                    resolveClass(c);
+                return c;
+            }
+        }
+
+        @Override
+        protected Class<?> findClass(final String name)
+            throws ClassNotFoundException
+        {
+            final Path path = classFile(name);
+
+            try {
+                final byte[] code;
+                if (Files.exists(path)) {
+                    code = Files.readAllBytes(path);
+                    precompiled.add(name);
+                } else {
+                    code = readParentClass(name);
+                }
+                return defineClass(name, code, 0, code.length);
+            } catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+        }
+
+        @Override
+        public URL getResource(final String name)
+        {
+            final Path path = directory.resolve(name);
+            if (!Files.exists(path))
+                return super.getResource(name);
+            try {
+                return path.toUri().toURL();
+            } catch (MalformedURLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private Path classFile(final String name)
+        {
+            return directory.resolve(name.replace('.', File.separatorChar)
+                + ".class");
+        }
+
+        private byte[] readParentClass(final String name)
+            throws IOException
+        {
+            final String resource = name.replace('.', '/') + ".class";
+            try (
+                final InputStream in = getParent()
+                    .getResourceAsStream(resource);
+            ) {
+                return ByteStreams.toByteArray(in);
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2015 Francis Galiegue <fgaliegue@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fge.grappa.transform;
+
+import com.github.fge.grappa.parsers.BaseParser;
+import com.github.fge.grappa.rules.Rule;
+import com.github.fge.grappa.run.BasicParseRunner;
+import com.github.fge.grappa.run.ParsingResult;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.assertj.core.api.SoftAssertions;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public final class ParserTransformerTest
+{
+    private static final int NR_THREADS = 8;
+
+    static class FirstParser
+        extends BaseParser<Object>
+    {
+        Rule rule()
+        {
+            return sequence(oneOrMore(digit()), push(match()), EOI);
+        }
+    }
+
+    static class SecondParser
+        extends BaseParser<Object>
+    {
+        Rule rule()
+        {
+            return sequence(oneOrMore(alpha()), push(match().length()), EOI);
+        }
+    }
+
+    static class ThirdParser
+        extends BaseParser<Object>
+    {
+        Rule rule()
+        {
+            final int i = 3;
+            return sequence(zeroOrMore('x'), push(i), EOI);
+        }
+    }
+
+    private static final List<Class<? extends BaseParser<Object>>> PARSERS
+        = ImmutableList.<Class<? extends BaseParser<Object>>>of(
+            FirstParser.class, SecondParser.class, ThirdParser.class);
+
+    @Test
+    public void concurrentTransformationsYieldOneClassPerParser()
+        throws Exception
+    {
+        final ExecutorService executor
+            = Executors.newFixedThreadPool(NR_THREADS);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final List<Future<List<Class<?>>>> futures = Lists.newArrayList();
+
+        try {
+            for (int i = 0; i < NR_THREADS; i++)
+                futures.add(executor.submit(new Transformer(latch, i)));
+            latch.countDown();
+
+            final List<Class<?>> expected = futures.get(0).get();
+            final SoftAssertions soft = new SoftAssertions();
+
+            for (final Future<List<Class<?>>> future: futures)
+                soft.assertThat(future.get()).containsExactlyElementsOf(
+                    expected);
+
+            soft.assertAll();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(dependsOnMethods = "concurrentTransformationsYieldOneClassPerParser")
+    public void concurrentlyTransformedParsersWork()
+        throws Exception
+    {
+        final FirstParser first = (FirstParser) ParserTransformer
+            .transformParser(FirstParser.class).newInstance();
+        final SecondParser second = (SecondParser) ParserTransformer
+            .transformParser(SecondParser.class).newInstance();
+        final ThirdParser third = (ThirdParser) ParserTransformer
+            .transformParser(ThirdParser.class).newInstance();
+
+        final ParsingResult<Object> r1
+            = new BasicParseRunner<>(first.rule()).run("42");
+        final ParsingResult<Object> r2
+            = new BasicParseRunner<>(second.rule()).run("abc");
+        final ParsingResult<Object> r3
+            = new BasicParseRunner<>(third.rule()).run("xx");
+
+        final SoftAssertions soft = new SoftAssertions();
+
+        soft.assertThat(r1.getTopStackValue()).isEqualTo("42");
+        soft.assertThat(r2.getTopStackValue()).isEqualTo(3);
+        soft.assertThat(r3.getTopStackValue()).isEqualTo(3);
+
+        soft.assertAll();
+    }
+
+    private static final class Transformer
+        implements Callable<List<Class<?>>>
+    {
+        private final CountDownLatch latch;
+        private final int rotation;
+
+        private Transformer(final CountDownLatch latch, final int rotation)
+        {
+            this.latch = latch;
+            this.rotation = rotation;
+        }
+
+        @Override
+        public List<Class<?>> call()
+            throws Exception
+        {
+            final List<Class<? extends BaseParser<Object>>> order
+                = Lists.newArrayList(PARSERS);
+            Collections.rotate(order, rotation);
+
+            final Class<?>[] ret = new Class<?>[PARSERS.size()];
+
+            latch.await();
+            for (final Class<? extends BaseParser<Object>> c: order)
+                ret[PARSERS.indexOf(c)] = ParserTransformer.transformParser(c);
+
+            return ImmutableList.copyOf(ret);
+        }
+    }
+}